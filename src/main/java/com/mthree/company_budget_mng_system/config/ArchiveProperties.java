@@ -0,0 +1,26 @@
+package com.mthree.company_budget_mng_system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "budget.archive")
+public class ArchiveProperties {
+
+    // Archive closed years on a schedule; POST /api/budgets/{budgetId}/archive works either way
+    private boolean enabled = false;
+
+    // Where the archive files are kept; they are the only copy of the archived expenses and must be backed up
+    private String directory = "data/expense-archive";
+
+    // Closed years left in the expense table by the scheduled run, e.g. 1 keeps last year's expenses in the table
+    private int keepClosedYears = 1;
+
+    // Delay after startup and pause between scheduled runs
+    private Duration initialDelay = Duration.ofMinutes(10);
+    private Duration interval = Duration.ofDays(1);
+}
@@ -0,0 +1,17 @@
+package com.mthree.company_budget_mng_system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "budget.plan")
+public class BudgetPlanProperties {
+
+    // Move plans left in the former budget_category_amounts table into the plan column on startup
+    private boolean migrateTable = true;
+
+    // Budgets moved per transaction
+    private int migrationChunkSize = 500;
+}
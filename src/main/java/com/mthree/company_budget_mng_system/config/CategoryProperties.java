@@ -0,0 +1,16 @@
+package com.mthree.company_budget_mng_system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "budget.categories")
+public class CategoryProperties {
+
+    // How often the categories are reloaded, to pick up changes made by other instances
+    private Duration refreshInterval = Duration.ofMinutes(1);
+}
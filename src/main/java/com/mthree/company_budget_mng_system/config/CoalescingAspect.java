@@ -0,0 +1,50 @@
+package com.mthree.company_budget_mng_system.config;
+
+import com.mthree.company_budget_mng_system.service.RequestCoalescer;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Arrays;
+
+/**
+ * Routes methods annotated with {@link com.mthree.company_budget_mng_system.service.Coalesced} through the
+ * {@link RequestCoalescer}. It runs before transactional advice, so calls that share a result open no transaction.
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class CoalescingAspect {
+    private final RequestCoalescer requestCoalescer;
+
+    @Autowired
+    public CoalescingAspect(RequestCoalescer requestCoalescer) {
+        this.requestCoalescer = requestCoalescer;
+    }
+
+    @Around("@annotation(com.mthree.company_budget_mng_system.service.Coalesced)")
+    public Object coalesce(ProceedingJoinPoint joinPoint) throws Throwable {
+        String name = joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName();
+        String key = name + Arrays.deepToString(joinPoint.getArgs());
+        try {
+            return requestCoalescer.execute(name, key, () -> {
+                try {
+                    return joinPoint.proceed();
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new UndeclaredThrowableException(e);
+                }
+            });
+        } catch (UndeclaredThrowableException e) {
+            throw e.getUndeclaredThrowable();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.mthree.company_budget_mng_system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "budget.coalescing")
+public class CoalescingProperties {
+
+    // How long a finished read is handed to further identical calls; 0 only shares reads that are still running
+    private Duration freshness = Duration.ofMillis(100);
+
+    // Upper bound of remembered results, expired ones are dropped when it is reached
+    private int maxResults = 1000;
+}
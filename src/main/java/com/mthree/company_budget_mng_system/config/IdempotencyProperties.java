@@ -0,0 +1,22 @@
+package com.mthree.company_budget_mng_system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "budget.idempotency")
+public class IdempotencyProperties {
+
+    // How long a response is replayed for a repeated Idempotency-Key
+    private Duration ttl = Duration.ofHours(24);
+
+    // Upper bound of remembered keys; expired and then the oldest completed keys are dropped first
+    private int maxEntries = 10000;
+
+    // How long a duplicate request waits for the original one that is still in flight
+    private Duration waitTimeout = Duration.ofSeconds(30);
+}
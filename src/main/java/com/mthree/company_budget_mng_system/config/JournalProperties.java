@@ -0,0 +1,31 @@
+package com.mthree.company_budget_mng_system.config;
+
+import com.mthree.company_budget_mng_system.model.JournalSyncMode;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "budget.journal")
+public class JournalProperties {
+
+    // Accept expenses on POST /api/expenses/journal and apply them to the database in the background
+    private boolean enabled = false;
+
+    // Where segment files are kept; must survive restarts, pending records are replayed from it
+    private String directory = "data/expense-journal";
+
+    // Size of one memory-mapped segment file; a full segment is rolled over to a new one
+    private DataSize segmentSize = DataSize.ofMegabytes(16);
+
+    // BATCH shares one fsync between concurrent appends, RECORD forces every record on its own
+    private JournalSyncMode sync = JournalSyncMode.BATCH;
+
+    // Records applied to the database in one transaction
+    private int batchSize = 1000;
+
+    // Outcomes of applied or rejected records kept for status requests, the oldest are dropped first
+    private int maxOutcomes = 10000;
+}
@@ -0,0 +1,24 @@
+package com.mthree.company_budget_mng_system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "budget.pacing")
+public class PacingProperties {
+
+    // How far (in percent) actual spend may run ahead of the expected spend before a category is flagged
+    private BigDecimal tolerance = BigDecimal.TEN;
+
+    // Optional seasonal curves: 12 monthly weights per category code, e.g. budget.pacing.curves.IT=1,1,1,2,...
+    // Categories without a curve are expected to spend evenly over the year. Codes are resolved when pacing is
+    // calculated, so a curve may name a category that is only created later
+    private Map<String, List<Integer>> curves = new TreeMap<>();
+}
@@ -0,0 +1,44 @@
+package com.mthree.company_budget_mng_system.config;
+
+import com.mthree.company_budget_mng_system.model.Role;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "budget.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    // Rate and burst of every authenticated user, by the user's role
+    private Map<Role, Limit> users = new EnumMap<>(Map.of(
+            Role.USER, new Limit(20, 40),
+            Role.MANAGER, new Limit(50, 100),
+            Role.ADMIN, new Limit(100, 200)));
+
+    // Rate and burst of every client address without a token
+    private Limit anonymous = new Limit(10, 20);
+
+    // Requests handled at the same time: writes to expenses and budgets, and all API reads
+    private int maxConcurrentWrites = 20;
+    private int maxConcurrentReads = 50;
+
+    // How long a request waits for a free slot before it is rejected with 503
+    private Duration bulkheadMaxWait = Duration.ZERO;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+        private double requestsPerSecond;
+        private int burst;
+    }
+}
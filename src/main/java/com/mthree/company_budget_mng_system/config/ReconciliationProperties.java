@@ -0,0 +1,32 @@
+package com.mthree.company_budget_mng_system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "budget.reconciliation")
+public class ReconciliationProperties {
+
+    private boolean enabled = true;
+
+    // Delay after startup and pause between the end of one run and the start of the next
+    private Duration initialDelay = Duration.ofMinutes(5);
+    private Duration interval = Duration.ofHours(1);
+
+    // Chunks of budgets verified concurrently, each with one grouped query per store
+    private int threads = 2;
+    private int chunkSize = 50;
+
+    // Upper bound of the verification rate, so a run never competes with foreground traffic
+    private int maxBudgetsPerSecond = 20;
+
+    // Repair confirmed discrepancies; when false they are only reported
+    private boolean autoRepair = true;
+
+    // Most recent discrepancies kept for the metrics endpoint
+    private int maxReportedDiscrepancies = 100;
+}
@@ -0,0 +1,23 @@
+package com.mthree.company_budget_mng_system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "budget.reports.jobs")
+public class ReportJobProperties {
+
+    // Number of reports generated at the same time
+    private int workers = 2;
+
+    // Jobs waiting for a worker; further submissions are rejected until the queue drains
+    private int queueCapacity = 50;
+
+    // Finished jobs kept with their result files, the oldest are removed first
+    private int maxRetained = 100;
+
+    // Where result files are written; the directory is emptied on startup
+    private String directory = System.getProperty("java.io.tmpdir") + "/budget-reports";
+}
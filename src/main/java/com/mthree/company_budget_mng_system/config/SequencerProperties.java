@@ -0,0 +1,28 @@
+package com.mthree.company_budget_mng_system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "budget.sequencer")
+public class SequencerProperties {
+
+    // Post expense creates and updates through one in-memory writer per budget instead of locking the budget row per expense
+    private boolean enabled = false;
+
+    // Threads shared by the writers; a budget is only ever written by one of them at a time
+    private int threads = 2;
+
+    // Commands committed together in one transaction
+    private int batchSize = 100;
+
+    // Commands waiting per budget; further commands are rejected until the queue drains
+    private int queueCapacity = 10000;
+
+    // How long a request waits for its command to be committed
+    private Duration timeout = Duration.ofSeconds(10);
+}
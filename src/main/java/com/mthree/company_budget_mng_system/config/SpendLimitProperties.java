@@ -0,0 +1,23 @@
+package com.mthree.company_budget_mng_system.config;
+
+import com.mthree.company_budget_mng_system.model.Role;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "budget.spend-limits")
+public class SpendLimitProperties {
+
+    // Most a user may spend per budget, by the user's role; roles without an entry are not limited
+    private Map<Role, BigDecimal> roles = new EnumMap<>(Role.class);
+
+    // Limits of single users by username, taking precedence over the role limit
+    private Map<String, BigDecimal> users = new HashMap<>();
+}
@@ -0,0 +1,25 @@
+package com.mthree.company_budget_mng_system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "budget.auth")
+public class TokenProperties {
+
+    private String issuer = "company-budget-mng-system";
+
+    // Access tokens are checked on every request without a database read, so they are kept short-lived
+    private Duration accessTokenTtl = Duration.ofMinutes(15);
+    private Duration refreshTokenTtl = Duration.ofDays(7);
+
+    // A new signing key is generated every interval; older keys only verify tokens until those expire
+    private Duration keyRotation = Duration.ofHours(24);
+
+    // Upper bound of the keys accepted at a time; rotating more often drops the keys that retire first
+    private int maxSigningKeys = 10;
+}
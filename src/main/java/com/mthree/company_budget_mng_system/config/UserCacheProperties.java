@@ -0,0 +1,19 @@
+package com.mthree.company_budget_mng_system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "budget.auth.user-cache")
+public class UserCacheProperties {
+
+    // How long a loaded user is reused; updates and deletes through the API evict it right away
+    private Duration ttl = Duration.ofMinutes(5);
+
+    // Upper bound of cached users; expired and then the oldest entries are dropped first
+    private int maxEntries = 10000;
+}
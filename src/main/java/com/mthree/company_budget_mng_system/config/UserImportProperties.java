@@ -0,0 +1,20 @@
+package com.mthree.company_budget_mng_system.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "budget.users.bulk")
+public class UserImportProperties {
+
+    // Upper bound of users in one bulk request
+    private int maxRows = 1000;
+
+    // Threads hashing passwords; BCrypt is CPU bound, so more threads than cores don't help
+    private int hashThreads = Runtime.getRuntime().availableProcessors();
+
+    // Rows sent to the database per JDBC batch
+    private int batchSize = 500;
+}
@@ -0,0 +1,50 @@
+package com.mthree.company_budget_mng_system.controller;
+
+import com.mthree.company_budget_mng_system.dto.LoginRequestDTO;
+import com.mthree.company_budget_mng_system.dto.RefreshTokenRequestDTO;
+import com.mthree.company_budget_mng_system.dto.TokenDTO;
+import com.mthree.company_budget_mng_system.service.TokenService;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/auth")
+public class AuthController {
+    private final TokenService tokenService;
+
+    @Autowired
+    public AuthController(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @PostMapping("/login")
+    public ResponseEntity<TokenDTO> login(@Valid @RequestBody LoginRequestDTO loginRequest) {
+        return new ResponseEntity<>(tokenService.login(loginRequest), HttpStatus.OK);
+    }
+
+    @PostMapping("/refresh")
+    public ResponseEntity<TokenDTO> refresh(@Valid @RequestBody RefreshTokenRequestDTO refreshRequest) {
+        return new ResponseEntity<>(tokenService.refresh(refreshRequest.getRefreshToken()), HttpStatus.OK);
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@Valid @RequestBody RefreshTokenRequestDTO refreshRequest,
+                                       @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        String prefix = TokenService.TOKEN_TYPE + " ";
+        String accessToken = authorization != null && authorization.startsWith(prefix) ? authorization.substring(prefix.length()) : null;
+        tokenService.logout(refreshRequest.getRefreshToken(), accessToken);
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
+    @PostMapping("/keys/rotate")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Void> rotateKeys() {
+        tokenService.rotateKeys();
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+}
@@ -1,19 +1,44 @@
 package com.mthree.company_budget_mng_system.controller;
 
+import com.mthree.company_budget_mng_system.dto.AlertLevelsDTO;
 import com.mthree.company_budget_mng_system.dto.BudgetDTO;
+import com.mthree.company_budget_mng_system.dto.BulkDeleteResultDTO;
+import com.mthree.company_budget_mng_system.dto.BurnRateDTO;
 import com.mthree.company_budget_mng_system.dto.ExpenseDTO;
+import com.mthree.company_budget_mng_system.dto.ForecastDTO;
+import com.mthree.company_budget_mng_system.dto.LedgerEventDTO;
+import com.mthree.company_budget_mng_system.dto.LedgerViewDTO;
+import com.mthree.company_budget_mng_system.dto.PacingDTO;
+import com.mthree.company_budget_mng_system.dto.SummaryRebuildDTO;
+import com.mthree.company_budget_mng_system.dto.ThresholdStateDTO;
+import com.mthree.company_budget_mng_system.dto.YearArchiveDTO;
 import com.mthree.company_budget_mng_system.exception.BudgetAlreadyExistsException;
 import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
+import com.mthree.company_budget_mng_system.model.CategoryType;
 import com.mthree.company_budget_mng_system.service.BudgetService;
+import com.mthree.company_budget_mng_system.service.BudgetSummaryService;
+import com.mthree.company_budget_mng_system.service.BulkExpenseService;
+import com.mthree.company_budget_mng_system.service.ForecastService;
+import com.mthree.company_budget_mng_system.service.IdempotencyService;
+import com.mthree.company_budget_mng_system.service.LedgerService;
+import com.mthree.company_budget_mng_system.service.PacingService;
+import com.mthree.company_budget_mng_system.service.RequestCoalescer;
+import com.mthree.company_budget_mng_system.service.RollupService;
+import com.mthree.company_budget_mng_system.service.ThresholdService;
+import com.mthree.company_budget_mng_system.service.YearArchiveService;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.List;
 
 @Slf4j
@@ -22,62 +47,197 @@ import java.util.List;
 public class BudgetController {
 
     private final BudgetService budgetService;
+    private final ThresholdService thresholdService;
+    private final RollupService rollupService;
+    private final ForecastService forecastService;
+    private final PacingService pacingService;
+    private final IdempotencyService idempotencyService;
+    private final LedgerService ledgerService;
+    private final BudgetSummaryService budgetSummaryService;
+    private final BulkExpenseService bulkExpenseService;
+    private final YearArchiveService yearArchiveService;
 
     @Autowired
-    public BudgetController(BudgetService budgetService) {
+    public BudgetController(BudgetService budgetService, ThresholdService thresholdService, RollupService rollupService,
+                            ForecastService forecastService, PacingService pacingService, IdempotencyService idempotencyService,
+                            LedgerService ledgerService, BudgetSummaryService budgetSummaryService,
+                            BulkExpenseService bulkExpenseService, YearArchiveService yearArchiveService) {
         this.budgetService = budgetService;
+        this.thresholdService = thresholdService;
+        this.rollupService = rollupService;
+        this.forecastService = forecastService;
+        this.pacingService = pacingService;
+        this.idempotencyService = idempotencyService;
+        this.ledgerService = ledgerService;
+        this.budgetSummaryService = budgetSummaryService;
+        this.bulkExpenseService = bulkExpenseService;
+        this.yearArchiveService = yearArchiveService;
     }
 
     @PostMapping
 //    @PreAuthorize("hasRole('MANAGER')")
-    public ResponseEntity<BudgetDTO> createBudget(@Valid @RequestBody BudgetDTO budgetDTO) {
-        BudgetDTO createdBudget = budgetService.createBudget(budgetDTO);
-        return ResponseEntity.ok(createdBudget);
+    public ResponseEntity<BudgetDTO> createBudget(@Valid @RequestBody BudgetDTO budgetDTO,
+                                                  @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, "POST /api/budgets", budgetDTO, () -> {
+            BudgetDTO createdBudget = budgetService.createBudget(budgetDTO);
+            return ResponseEntity.ok(createdBudget);
+        });
     }
 
     @GetMapping
 //    @PreAuthorize("hasAnyRole('MANAGER', 'USER')")
     public ResponseEntity<List<BudgetDTO>> getAllBudgets() {
-        return ResponseEntity.ok(budgetService.getAllBudgets());
+        return ResponseEntity.ok(budgetSummaryService.getAllBudgets());
+    }
+
+    @PostMapping("/summaries/rebuild")
+//    @PreAuthorize("hasRole('MANAGER')")
+    public ResponseEntity<SummaryRebuildDTO> rebuildSummaries() {
+        return ResponseEntity.ok(budgetSummaryService.rebuildAll());
     }
 
     @GetMapping("/{id}")
 //    @PreAuthorize("hasAnyRole('MANAGER', 'USER')")
-    public ResponseEntity<BudgetDTO> getBudgetById(@PathVariable Long id) {
-        return ResponseEntity.ok(budgetService.getBudgetById(id));
+    public ResponseEntity<BudgetDTO> getBudgetById(@PathVariable Long id, WebRequest request) {
+        String eTag = budgetService.getBudgetETag(id);
+        if (request.checkNotModified(eTag)) {
+            return notModified(eTag);
+        }
+        return ResponseEntity.ok().eTag(eTag).body(RequestCoalescer.atVersion(eTag, () -> budgetSummaryService.getBudgetById(id)));
     }
 
     @GetMapping("/{budgetId}/expenses")
 //    @PreAuthorize("hasAnyRole('MANAGER', 'USER')")
-    public ResponseEntity<List<ExpenseDTO>> getActualExpenses(@PathVariable Long budgetId) {
-        List<ExpenseDTO> expenses = budgetService.getActualExpenses(budgetId);
-        return ResponseEntity.ok(expenses);
+    public ResponseEntity<List<ExpenseDTO>> getActualExpenses(@PathVariable Long budgetId, WebRequest request) {
+        String eTag = budgetService.getBudgetETag(budgetId);
+        if (request.checkNotModified(eTag)) {
+            return notModified(eTag);
+        }
+        List<ExpenseDTO> expenses = RequestCoalescer.atVersion(eTag, () -> budgetService.getActualExpenses(budgetId));
+        return ResponseEntity.ok().eTag(eTag).body(expenses);
+    }
+
+    @DeleteMapping("/{budgetId}/expenses")
+//    @PreAuthorize("hasRole('MANAGER')")
+    public ResponseEntity<BulkDeleteResultDTO> deleteExpenses(@PathVariable Long budgetId,
+                                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                              @RequestParam(required = false) CategoryType categoryType,
+                                                              @RequestParam(defaultValue = "false") boolean archive) {
+        return ResponseEntity.ok(bulkExpenseService.deleteExpenses(budgetId, from, to, categoryType, archive));
+    }
+
+    @PostMapping("/{budgetId}/archive")
+//    @PreAuthorize("hasRole('MANAGER')")
+    public ResponseEntity<YearArchiveDTO> archiveBudget(@PathVariable Long budgetId) {
+        return ResponseEntity.ok(yearArchiveService.archive(budgetId));
+    }
+
+    @GetMapping("/{budgetId}/archive")
+//    @PreAuthorize("hasAnyRole('MANAGER', 'USER')")
+    public ResponseEntity<YearArchiveDTO> getArchive(@PathVariable Long budgetId) {
+        return ResponseEntity.ok(yearArchiveService.getArchive(budgetId));
     }
 
     @PutMapping("/{id}")
 //    @PreAuthorize("hasRole('MANAGER')")
-    public ResponseEntity<BudgetDTO> updateBudget(@PathVariable Long id, @Valid @RequestBody BudgetDTO budgetDTO) {
-        return ResponseEntity.ok(budgetService.updateBudget(id, budgetDTO));
+    public ResponseEntity<BudgetDTO> updateBudget(@PathVariable Long id, @Valid @RequestBody BudgetDTO budgetDTO,
+                                                  @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, "PUT /api/budgets/" + id, budgetDTO,
+                () -> ResponseEntity.ok(budgetService.updateBudget(id, budgetDTO)));
     }
 
     @DeleteMapping("/{id}")
 //    @PreAuthorize("hasRole('MANAGER')")
-    public ResponseEntity<Void> deleteBudget(@PathVariable Long id) {
-        budgetService.deleteBudget(id);
-        return ResponseEntity.noContent().build();
+    public ResponseEntity<Void> deleteBudget(@PathVariable Long id,
+                                             @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, "DELETE /api/budgets/" + id, null, () -> {
+            budgetService.deleteBudget(id);
+            return ResponseEntity.noContent().build();
+        });
     }
 
     @GetMapping("/{budgetId}/percentage-used")
 //    @PreAuthorize("hasAnyRole('MANAGER', 'USER')")
-    public ResponseEntity<BigDecimal> getPercentageOfBudgetUsed(@PathVariable Long budgetId) {
-        BigDecimal percentageUsed = budgetService.calculatePercentageOfBudgetUsed(budgetId);
-        return ResponseEntity.ok(percentageUsed);
+    public ResponseEntity<BigDecimal> getPercentageOfBudgetUsed(@PathVariable Long budgetId, WebRequest request) {
+        String eTag = budgetService.getBudgetETag(budgetId);
+        if (request.checkNotModified(eTag)) {
+            return notModified(eTag);
+        }
+        BigDecimal percentageUsed = RequestCoalescer.atVersion(eTag, () -> budgetSummaryService.getPercentageOfBudgetUsed(budgetId));
+        return ResponseEntity.ok().eTag(eTag).body(percentageUsed);
     }
 
     @GetMapping("/{budgetId}/rest")
 //    @PreAuthorize("hasAnyRole('MANAGER', 'USER')")
-    public ResponseEntity<BigDecimal> getRestOfBudgetAvailable(@PathVariable Long budgetId) {
-        BigDecimal calculateRestFoBudget = budgetService.calculateRestOfBudget(budgetId);
-        return ResponseEntity.ok(calculateRestFoBudget);
+    public ResponseEntity<BigDecimal> getRestOfBudgetAvailable(@PathVariable Long budgetId, WebRequest request) {
+        String eTag = budgetService.getBudgetETag(budgetId);
+        if (request.checkNotModified(eTag)) {
+            return notModified(eTag);
+        }
+        BigDecimal calculateRestFoBudget = RequestCoalescer.atVersion(eTag, () -> budgetSummaryService.getRestOfBudget(budgetId));
+        return ResponseEntity.ok().eTag(eTag).body(calculateRestFoBudget);
+    }
+
+    @GetMapping("/{budgetId}/thresholds")
+//    @PreAuthorize("hasAnyRole('MANAGER', 'USER')")
+    public ResponseEntity<List<ThresholdStateDTO>> getThresholdStates(@PathVariable Long budgetId) {
+        return ResponseEntity.ok(thresholdService.getThresholdStates(budgetId));
+    }
+
+    @PutMapping("/{budgetId}/thresholds")
+//    @PreAuthorize("hasRole('MANAGER')")
+    public ResponseEntity<AlertLevelsDTO> updateAlertLevels(@PathVariable Long budgetId, @Valid @RequestBody AlertLevelsDTO alertLevelsDTO,
+                                                            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, "PUT /api/budgets/" + budgetId + "/thresholds", alertLevelsDTO,
+                () -> ResponseEntity.ok(thresholdService.updateAlertLevels(budgetId, alertLevelsDTO)));
+    }
+
+    @GetMapping("/{budgetId}/burn")
+//    @PreAuthorize("hasAnyRole('MANAGER', 'USER')")
+    public ResponseEntity<BurnRateDTO> getBurnRate(@PathVariable Long budgetId,
+                                                   @RequestParam(defaultValue = "month") String granularity,
+                                                   @RequestParam(required = false) CategoryType categoryType) {
+        return ResponseEntity.ok(rollupService.getBurnRate(budgetId, granularity, categoryType));
+    }
+
+    @PostMapping("/{budgetId}/burn/rebuild")
+//    @PreAuthorize("hasRole('MANAGER')")
+    public ResponseEntity<Void> rebuildRollups(@PathVariable Long budgetId) {
+        rollupService.rebuild(budgetId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/{budgetId}/forecast")
+//    @PreAuthorize("hasAnyRole('MANAGER', 'USER')")
+    public ResponseEntity<ForecastDTO> getForecast(@PathVariable Long budgetId) {
+        return ResponseEntity.ok(forecastService.getForecast(budgetId));
+    }
+
+    @GetMapping("/{budgetId}/pacing")
+//    @PreAuthorize("hasAnyRole('MANAGER', 'USER')")
+    public ResponseEntity<PacingDTO> getPacing(@PathVariable Long budgetId) {
+        return ResponseEntity.ok(pacingService.getPacing(budgetId));
+    }
+
+    @GetMapping("/{budgetId}/ledger")
+//    @PreAuthorize("hasAnyRole('MANAGER', 'USER')")
+    public ResponseEntity<LedgerViewDTO> getLedgerView(@PathVariable Long budgetId,
+                                                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant asOf) {
+        return ResponseEntity.ok(ledgerService.getView(budgetId, asOf));
+    }
+
+    @GetMapping("/{budgetId}/ledger/events")
+//    @PreAuthorize("hasAnyRole('MANAGER', 'USER')")
+    public ResponseEntity<List<LedgerEventDTO>> getLedgerEvents(@PathVariable Long budgetId,
+                                                                @RequestParam(defaultValue = "0") long after,
+                                                                @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(ledgerService.getEvents(budgetId, after, limit));
+    }
+
+    // The version is read before the data, and coalesced reads are only shared between callers that saw the same version,
+    // so a body is never older than its ETag; a concurrent change can at worst cost the client one extra full response
+    private static <T> ResponseEntity<T> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
     }
 }
@@ -0,0 +1,41 @@
+package com.mthree.company_budget_mng_system.controller;
+
+import com.mthree.company_budget_mng_system.dto.CategoryDTO;
+import com.mthree.company_budget_mng_system.service.CategoryRegistry;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/categories")
+public class CategoryController {
+
+    private final CategoryRegistry categoryRegistry;
+
+    @Autowired
+    public CategoryController(CategoryRegistry categoryRegistry) {
+        this.categoryRegistry = categoryRegistry;
+    }
+
+    @GetMapping
+//    @PreAuthorize("hasAnyRole('MANAGER', 'USER')")
+    public ResponseEntity<List<CategoryDTO>> getAllCategories() {
+        return ResponseEntity.ok(categoryRegistry.getAllCategories());
+    }
+
+    @PostMapping
+//    @PreAuthorize("hasRole('MANAGER')")
+    public ResponseEntity<CategoryDTO> createCategory(@Valid @RequestBody CategoryDTO categoryDTO) {
+        return new ResponseEntity<>(categoryRegistry.createCategory(categoryDTO), HttpStatus.CREATED);
+    }
+
+    @PutMapping("/{code}")
+//    @PreAuthorize("hasRole('MANAGER')")
+    public ResponseEntity<CategoryDTO> updateCategory(@PathVariable String code, @Valid @RequestBody CategoryDTO categoryDTO) {
+        return ResponseEntity.ok(categoryRegistry.updateCategory(code, categoryDTO));
+    }
+}
@@ -0,0 +1,56 @@
+package com.mthree.company_budget_mng_system.controller;
+
+import com.mthree.company_budget_mng_system.dto.CostCenterDTO;
+import com.mthree.company_budget_mng_system.dto.CostCenterRollupDTO;
+import com.mthree.company_budget_mng_system.service.CostCenterService;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/cost-centers")
+public class CostCenterController {
+
+    private final CostCenterService costCenterService;
+
+    @Autowired
+    public CostCenterController(CostCenterService costCenterService) {
+        this.costCenterService = costCenterService;
+    }
+
+    @PostMapping
+//    @PreAuthorize("hasRole('MANAGER')")
+    public ResponseEntity<CostCenterDTO> createCostCenter(@Valid @RequestBody CostCenterDTO costCenterDTO) {
+        return new ResponseEntity<>(costCenterService.createCostCenter(costCenterDTO), HttpStatus.CREATED);
+    }
+
+    @GetMapping
+//    @PreAuthorize("hasAnyRole('MANAGER', 'USER')")
+    public ResponseEntity<List<CostCenterDTO>> getAllCostCenters() {
+        return ResponseEntity.ok(costCenterService.getAllCostCenters());
+    }
+
+    @GetMapping("/{id}")
+//    @PreAuthorize("hasAnyRole('MANAGER', 'USER')")
+    public ResponseEntity<CostCenterDTO> getCostCenterById(@PathVariable Long id) {
+        return ResponseEntity.ok(costCenterService.getCostCenterById(id));
+    }
+
+    @GetMapping("/{id}/rollup")
+//    @PreAuthorize("hasAnyRole('MANAGER', 'USER')")
+    public ResponseEntity<CostCenterRollupDTO> getRollup(@PathVariable Long id, @RequestParam int year) {
+        return ResponseEntity.ok(costCenterService.getRollup(id, year));
+    }
+
+    @DeleteMapping("/{id}")
+//    @PreAuthorize("hasRole('MANAGER')")
+    public ResponseEntity<Void> deleteCostCenter(@PathVariable Long id) {
+        costCenterService.deleteCostCenter(id);
+        return ResponseEntity.noContent().build();
+    }
+}
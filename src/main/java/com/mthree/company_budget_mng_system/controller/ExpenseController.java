@@ -1,19 +1,24 @@
 package com.mthree.company_budget_mng_system.controller;
 
 import com.mthree.company_budget_mng_system.dto.ExpenseDTO;
+import com.mthree.company_budget_mng_system.dto.JournalEntryDTO;
 import com.mthree.company_budget_mng_system.exception.BudgetThresholdExceededException;
 import com.mthree.company_budget_mng_system.exception.CategoryThresholdExceededException;
 import com.mthree.company_budget_mng_system.exception.CategoryThresholdExceededException;
 import com.mthree.company_budget_mng_system.exception.ExpenseNotFoundException;
 import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
 import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.service.ExpenseSequencer;
 import com.mthree.company_budget_mng_system.service.ExpenseService;
+import com.mthree.company_budget_mng_system.service.IdempotencyService;
+import com.mthree.company_budget_mng_system.service.JournalService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,16 +28,44 @@ import java.util.Map;
 //@PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_MANAGER', 'ROLE_USER')")
 public class ExpenseController {
     private final ExpenseService expenseService;
+    private final IdempotencyService idempotencyService;
+    private final ExpenseSequencer expenseSequencer;
+    private final JournalService journalService;
 
     @Autowired
-    public ExpenseController(ExpenseService expenseService) {
+    public ExpenseController(ExpenseService expenseService, IdempotencyService idempotencyService, ExpenseSequencer expenseSequencer,
+                             JournalService journalService) {
         this.expenseService = expenseService;
+        this.idempotencyService = idempotencyService;
+        this.expenseSequencer = expenseSequencer;
+        this.journalService = journalService;
     }
 
     @PostMapping
-    public ResponseEntity<ExpenseDTO> createExpense(@RequestBody ExpenseDTO expenseDTO) {
-        ExpenseDTO createdExpense = expenseService.createExpense(expenseDTO);
-        return ResponseEntity.ok(createdExpense);
+    public ResponseEntity<ExpenseDTO> createExpense(@RequestBody ExpenseDTO expenseDTO,
+                                                    @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, "POST /api/expenses", expenseDTO, () -> {
+            ExpenseDTO createdExpense = expenseSequencer.isEnabled()
+                    ? expenseSequencer.createExpense(expenseDTO)
+                    : expenseService.createExpense(expenseDTO);
+            return ResponseEntity.ok(createdExpense);
+        });
+    }
+
+    @PostMapping("/journal")
+    public ResponseEntity<JournalEntryDTO> journalExpense(@RequestBody ExpenseDTO expenseDTO,
+                                                         @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, "POST /api/expenses/journal", expenseDTO, () -> {
+            JournalEntryDTO entry = journalService.append(expenseDTO);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/expenses/journal/" + entry.getSequence()))
+                    .body(entry);
+        });
+    }
+
+    @GetMapping("/journal/{sequence}")
+    public ResponseEntity<JournalEntryDTO> getJournalEntry(@PathVariable long sequence) {
+        return ResponseEntity.ok(journalService.getEntry(sequence));
     }
 
     @GetMapping
@@ -46,13 +79,20 @@ public class ExpenseController {
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<ExpenseDTO> updateExpense(@PathVariable Long id, @RequestBody ExpenseDTO expenseDTO) {
-        return ResponseEntity.ok(expenseService.updateExpense(id, expenseDTO));
+    public ResponseEntity<ExpenseDTO> updateExpense(@PathVariable Long id, @RequestBody ExpenseDTO expenseDTO,
+                                                    @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, "PUT /api/expenses/" + id, expenseDTO,
+                () -> ResponseEntity.ok(expenseSequencer.isEnabled()
+                        ? expenseSequencer.updateExpense(id, expenseDTO)
+                        : expenseService.updateExpense(id, expenseDTO)));
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteExpense(@PathVariable Long id) {
-        expenseService.deleteExpense(id);
-        return ResponseEntity.noContent().build();
+    public ResponseEntity<Void> deleteExpense(@PathVariable Long id,
+                                              @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, "DELETE /api/expenses/" + id, null, () -> {
+            expenseService.deleteExpense(id);
+            return ResponseEntity.noContent().build();
+        });
     }
 }
@@ -0,0 +1,56 @@
+package com.mthree.company_budget_mng_system.controller;
+
+import com.mthree.company_budget_mng_system.dto.CoalescingStatsDTO;
+import com.mthree.company_budget_mng_system.dto.RateLimitStatsDTO;
+import com.mthree.company_budget_mng_system.dto.ReconciliationStatsDTO;
+import com.mthree.company_budget_mng_system.service.RateLimiter;
+import com.mthree.company_budget_mng_system.service.ReconciliationService;
+import com.mthree.company_budget_mng_system.service.RequestCoalescer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+
+    private final RequestCoalescer requestCoalescer;
+    private final ReconciliationService reconciliationService;
+    private final RateLimiter rateLimiter;
+
+    @Autowired
+    public MetricsController(RequestCoalescer requestCoalescer, ReconciliationService reconciliationService, RateLimiter rateLimiter) {
+        this.requestCoalescer = requestCoalescer;
+        this.reconciliationService = reconciliationService;
+        this.rateLimiter = rateLimiter;
+    }
+
+    @GetMapping("/coalescing")
+//    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<CoalescingStatsDTO>> getCoalescingStats() {
+        return ResponseEntity.ok(requestCoalescer.getStats());
+    }
+
+    @GetMapping("/reconciliation")
+//    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ReconciliationStatsDTO> getReconciliationStats() {
+        return ResponseEntity.ok(reconciliationService.getStats());
+    }
+
+    @PostMapping("/reconciliation/run")
+//    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ReconciliationStatsDTO> runReconciliation() {
+        return ResponseEntity.ok(reconciliationService.reconcile());
+    }
+
+    @GetMapping("/rate-limit")
+//    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<RateLimitStatsDTO> getRateLimitStats() {
+        return ResponseEntity.ok(rateLimiter.getStats());
+    }
+}
@@ -0,0 +1,83 @@
+package com.mthree.company_budget_mng_system.controller;
+
+import com.mthree.company_budget_mng_system.dto.BudgetComparisonDTO;
+import com.mthree.company_budget_mng_system.dto.ReportJobDTO;
+import com.mthree.company_budget_mng_system.dto.ReportRequestDTO;
+import com.mthree.company_budget_mng_system.model.ReportJobStatus;
+import com.mthree.company_budget_mng_system.service.ReportJobService;
+import com.mthree.company_budget_mng_system.service.ReportService;
+import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.List;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/reports")
+public class ReportController {
+
+    private final ReportService reportService;
+    private final ReportJobService reportJobService;
+
+    @Autowired
+    public ReportController(ReportService reportService, ReportJobService reportJobService) {
+        this.reportService = reportService;
+        this.reportJobService = reportJobService;
+    }
+
+    @GetMapping("/comparison")
+//    @PreAuthorize("hasAnyRole('MANAGER', 'USER')")
+    public ResponseEntity<BudgetComparisonDTO> compareYears(@RequestParam List<Integer> years) {
+        return ResponseEntity.ok(reportService.compareYears(years));
+    }
+
+    @PostMapping
+//    @PreAuthorize("hasAnyRole('MANAGER', 'USER')")
+    public ResponseEntity<ReportJobDTO> submitReport(@Valid @RequestBody ReportRequestDTO reportRequestDTO) {
+        ReportJobDTO job = reportJobService.submit(reportRequestDTO);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/reports/" + job.getId()))
+                .body(job);
+    }
+
+    /**
+     * Returns the report file once the job is completed (byte ranges are supported), otherwise the state of the job:
+     * 202 while it is queued or running, 409 when it failed or was cancelled.
+     */
+    @GetMapping("/{id}")
+//    @PreAuthorize("hasAnyRole('MANAGER', 'USER')")
+    public ResponseEntity<?> getReport(@PathVariable String id) {
+        ReportJobDTO job = reportJobService.getJob(id);
+        if (job.getStatus() == ReportJobStatus.COMPLETED) {
+            Path result = reportJobService.getResultFile(id);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(job.getContentType()))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + result.getFileName() + "\"")
+                    .body(new FileSystemResource(result));
+        }
+        HttpStatus status = job.getStatus().isFinished() ? HttpStatus.CONFLICT : HttpStatus.ACCEPTED;
+        return ResponseEntity.status(status).body(job);
+    }
+
+    @GetMapping("/{id}/status")
+//    @PreAuthorize("hasAnyRole('MANAGER', 'USER')")
+    public ResponseEntity<ReportJobDTO> getReportStatus(@PathVariable String id) {
+        return ResponseEntity.ok(reportJobService.getJob(id));
+    }
+
+    @DeleteMapping("/{id}")
+//    @PreAuthorize("hasAnyRole('MANAGER', 'USER')")
+    public ResponseEntity<ReportJobDTO> cancelReport(@PathVariable String id) {
+        return ResponseEntity.ok(reportJobService.cancel(id));
+    }
+}
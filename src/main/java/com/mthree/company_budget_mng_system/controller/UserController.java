@@ -1,12 +1,17 @@
 package com.mthree.company_budget_mng_system.controller;
 
+import com.mthree.company_budget_mng_system.dto.BulkUserResultDTO;
 import com.mthree.company_budget_mng_system.dto.UserDTO;
+import com.mthree.company_budget_mng_system.dto.UserSpendDTO;
 import com.mthree.company_budget_mng_system.exception.ConflictException;
 import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
+import com.mthree.company_budget_mng_system.service.UserImportService;
 import com.mthree.company_budget_mng_system.service.UserService;
+import com.mthree.company_budget_mng_system.service.UserSpendService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -19,10 +24,14 @@ import java.util.List;
 public class UserController {
 
     private final UserService userService;
+    private final UserImportService userImportService;
+    private final UserSpendService userSpendService;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, UserImportService userImportService, UserSpendService userSpendService) {
         this.userService = userService;
+        this.userImportService = userImportService;
+        this.userSpendService = userSpendService;
     }
 
     @PostMapping
@@ -31,12 +40,27 @@ public class UserController {
         return new ResponseEntity<>(createdUser, HttpStatus.CREATED);
     }
 
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkUserResultDTO> createUsers(@RequestBody List<UserDTO> users) {
+        return new ResponseEntity<>(userImportService.importUsers(users), HttpStatus.OK);
+    }
+
+    @PostMapping(value = "/bulk", consumes = "text/csv")
+    public ResponseEntity<BulkUserResultDTO> createUsersFromCsv(@RequestBody String csv) {
+        return new ResponseEntity<>(userImportService.importCsv(csv), HttpStatus.OK);
+    }
+
     @GetMapping("/{username}")
     public ResponseEntity<UserDTO> getUserByUsername(@PathVariable String username) {
         UserDTO userDTO = userService.findUserByUsername(username);
         return new ResponseEntity<>(userDTO, HttpStatus.OK);
     }
 
+    @GetMapping("/{username}/spend")
+    public ResponseEntity<UserSpendDTO> getUserSpend(@PathVariable String username) {
+        return new ResponseEntity<>(userSpendService.getUserSpend(username), HttpStatus.OK);
+    }
+
     @PutMapping("/{username}")
     public ResponseEntity<UserDTO> updateUser(@PathVariable String username, @Valid @RequestBody UserDTO userDTO) {
         UserDTO updatedUser = userService.update(username, userDTO);
@@ -0,0 +1,27 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AlertLevelsDTO {
+
+    // Leave empty to configure the levels for the whole budget
+    private CategoryType categoryType;
+
+    @NotEmpty(message = "Provide at least one alert level.")
+    @Size(max = 64, message = "Too many alert levels (max = 64).")
+    @Builder.Default
+    private List<Integer> levels = new ArrayList<>();
+}
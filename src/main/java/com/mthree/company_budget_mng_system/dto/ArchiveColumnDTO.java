@@ -0,0 +1,19 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ArchiveColumnDTO {
+    private String column;
+    // Smallest and largest value of the column, descriptions by their length
+    private String min;
+    private String max;
+    private int compressedBytes;
+    private int rawBytes;
+}
@@ -0,0 +1,22 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BudgetComparisonDTO {
+
+    @Builder.Default
+    private List<Integer> years = new ArrayList<>();
+
+    @Builder.Default
+    private List<CategoryComparisonDTO> categories = new ArrayList<>();
+}
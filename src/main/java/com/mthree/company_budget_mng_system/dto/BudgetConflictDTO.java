@@ -0,0 +1,22 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BudgetConflictDTO {
+    private Long budgetId;
+    private String message;
+    private Long requestVersion;
+    private Long currentVersion;
+    // Fields changed both by the request and by someone else after the request version
+    private List<FieldConflictDTO> conflicts;
+    private BudgetDTO current;
+}
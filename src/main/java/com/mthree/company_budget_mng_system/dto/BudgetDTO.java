@@ -22,8 +22,14 @@ public class BudgetDTO {
 
     private Integer year;
 
+    // Null for a budget of the whole company; set when the budget is created and not changed by updates
+    private Long costCenterId;
+
     private List<CategoryTypeAmountDTO> categoryTypeAmountDTOS = new ArrayList<>();
 
+    // Version the client based its update on; changes made after it are merged or reported as conflicts
+    private Long version;
+
     public boolean validateBudget(BudgetDTO budgetDTO) {
         BigDecimal totalCalculatedAmount = budgetDTO.getCategoryTypeAmountDTOS().stream()
                 .map(CategoryTypeAmountDTO::getAmount)
@@ -0,0 +1,19 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkDeleteResultDTO {
+    private Long budgetId;
+    private long deleted;
+    // Whether the deleted expenses were copied to the expense archive
+    private boolean archived;
+    private int chunks;
+    private long elapsedMillis;
+}
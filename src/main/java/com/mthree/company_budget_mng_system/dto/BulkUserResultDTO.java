@@ -0,0 +1,20 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkUserResultDTO {
+    private int total;
+    private int created;
+    private int failed;
+    private long elapsedMillis;
+    private List<BulkUserRowDTO> rows;
+}
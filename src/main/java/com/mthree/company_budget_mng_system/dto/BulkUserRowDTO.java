@@ -0,0 +1,20 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import com.mthree.company_budget_mng_system.model.BulkRowStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkUserRowDTO {
+    // 1-based position in the request, without the CSV header
+    private int row;
+    private String username;
+    private Long id;
+    private BulkRowStatus status;
+    private String message;
+}
@@ -0,0 +1,25 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BurnPointDTO {
+
+    private LocalDate bucketStart;
+
+    private BigDecimal spent;
+
+    private BigDecimal cumulativeSpent;
+
+    // Planned amount left after this bucket (burn-down)
+    private BigDecimal remaining;
+}
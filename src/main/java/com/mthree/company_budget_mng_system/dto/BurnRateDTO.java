@@ -0,0 +1,31 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.RollupGranularity;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BurnRateDTO {
+
+    private Long budgetId;
+
+    private RollupGranularity granularity;
+
+    // null when the series covers all categories of the budget
+    private CategoryType categoryType;
+
+    private BigDecimal planned;
+
+    @Builder.Default
+    private List<BurnPointDTO> points = new ArrayList<>();
+}
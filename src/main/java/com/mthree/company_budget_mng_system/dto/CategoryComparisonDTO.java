@@ -0,0 +1,23 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CategoryComparisonDTO {
+
+    // null for the totals of the whole budgets
+    private CategoryType categoryType;
+
+    @Builder.Default
+    private List<YearComparisonDTO> years = new ArrayList<>();
+}
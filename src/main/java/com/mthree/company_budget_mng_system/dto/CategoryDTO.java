@@ -0,0 +1,32 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CategoryDTO {
+    private Integer id;
+
+    // Ignored on updates, the code of a category never changes
+    @Pattern(regexp = "[A-Z][A-Z0-9_]{0,49}", message = "The code consists of up to 50 upper case letters, digits and underscores.")
+    private String code;
+
+    @NotBlank(message = "Provide the name of the category.")
+    private String name;
+
+    // Null for top-level categories
+    private String parentCode;
+
+    // Defaults to true when a category is created
+    private Boolean active;
+
+    // False when the category or one of its parents is inactive; only set when categories are listed
+    private Boolean effectiveActive;
+}
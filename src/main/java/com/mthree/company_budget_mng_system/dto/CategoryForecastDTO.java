@@ -0,0 +1,37 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CategoryForecastDTO {
+
+    private CategoryType categoryType;
+
+    private BigDecimal planned;
+
+    private BigDecimal spentToDate;
+
+    // Year-end spend if the average daily spend so far continues
+    private BigDecimal linearForecast;
+
+    // Year-end spend following the monthly profile of the previous years, null without history
+    private BigDecimal seasonalForecast;
+
+    // Year-end spend continuing the exponentially weighted monthly spend
+    private BigDecimal ewmaForecast;
+
+    private boolean overrunPredicted;
+
+    // Day on which the planned amount is expected to be used up, null if not within the year
+    private LocalDate predictedOverrunDate;
+}
@@ -0,0 +1,30 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CategoryPacingDTO {
+
+    private CategoryType categoryType;
+
+    private BigDecimal planned;
+
+    private BigDecimal spent;
+
+    // Share of the planned amount that should be spent by now according to the calendar (or seasonal curve)
+    private BigDecimal expected;
+
+    // Actual spend as a percentage of the expected spend
+    private BigDecimal pacePercentage;
+
+    private boolean aheadOfPace;
+}
@@ -0,0 +1,22 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CoalescingStatsDTO {
+    private String method;
+    private long calls;
+    private long executions;
+    // Calls that waited for a running execution
+    private long joined;
+    // Calls answered with a result finished within the freshness window
+    private long fresh;
+    // Share of calls that did not execute the method, from 0 to 1
+    private double collapseRatio;
+}
@@ -0,0 +1,23 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CostCenterDTO {
+    private Long id;
+
+    @NotBlank(message = "Provide the name of the cost center.")
+    private String name;
+
+    // Null for top-level cost centers
+    private Long parentId;
+
+    private Integer depth;
+}
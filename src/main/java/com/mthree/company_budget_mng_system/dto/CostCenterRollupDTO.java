@@ -0,0 +1,27 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CostCenterRollupDTO {
+    private Long costCenterId;
+    private String name;
+    private Integer year;
+    // Own budget of the cost center, null when it has none in the year
+    private Long budgetId;
+    private BigDecimal plannedAmount;
+    private BigDecimal spent;
+    // The cost center and all cost centers below it
+    private BigDecimal subtreePlannedAmount;
+    private BigDecimal subtreeSpent;
+    private BigDecimal subtreePercentageUsed;
+    private BigDecimal subtreeRest;
+}
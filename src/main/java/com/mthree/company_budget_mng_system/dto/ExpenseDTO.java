@@ -28,4 +28,7 @@ public class ExpenseDTO {
     @NotNull(message = "Provide category of your expense.")
     private CategoryType categoryType;
 
+    // Cost center whose budget the expense is booked on, null for the budget of the whole company
+    private Long costCenterId;
+
 }
@@ -0,0 +1,17 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FieldConflictDTO {
+    // totalAmount, year or a category name
+    private String field;
+    private String requestedValue;
+    private String currentValue;
+}
@@ -0,0 +1,18 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import com.mthree.company_budget_mng_system.model.JournalEntryStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JournalEntryDTO {
+    private Long sequence;
+    private JournalEntryStatus status;
+    private Long expenseId;
+    private String message;
+}
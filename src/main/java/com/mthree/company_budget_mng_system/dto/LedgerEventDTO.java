@@ -0,0 +1,27 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.LedgerEventType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LedgerEventDTO {
+    private Long id;
+    private LedgerEventType type;
+    private Instant occurredAt;
+    private Integer year;
+    private Long expenseId;
+    private CategoryType categoryType;
+    private BigDecimal amount;
+    private CategoryType previousCategoryType;
+    private BigDecimal previousAmount;
+}
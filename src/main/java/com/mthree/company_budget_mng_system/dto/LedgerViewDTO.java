@@ -0,0 +1,27 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LedgerViewDTO {
+    private Long budgetId;
+    private Integer year;
+    private Instant asOf;
+    private Long lastEventId;
+    // Snapshot the view started from (null when replayed from the first event) and the events replayed after it
+    private Long snapshotEventId;
+    private Integer replayedEvents;
+    private BigDecimal totalAmount;
+    private BigDecimal totalSpent;
+    private List<LedgerCategoryDTO> categories;
+}
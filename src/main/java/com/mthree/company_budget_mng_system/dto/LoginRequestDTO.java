@@ -0,0 +1,20 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LoginRequestDTO {
+
+    @NotBlank(message = "You need to provide username!")
+    private String username;
+
+    @NotBlank(message = "Password cannot be blank!")
+    private String password;
+}
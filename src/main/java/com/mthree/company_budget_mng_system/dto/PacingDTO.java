@@ -0,0 +1,26 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PacingDTO {
+
+    private Long budgetId;
+
+    private Integer year;
+
+    private LocalDate asOf;
+
+    @Builder.Default
+    private List<CategoryPacingDTO> categories = new ArrayList<>();
+}
@@ -0,0 +1,19 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RateLimitStatsDTO {
+    private int trackedCallers;
+    private long rateLimited;
+    private int activeReads;
+    private int activeWrites;
+    private long rejectedReads;
+    private long rejectedWrites;
+}
@@ -0,0 +1,30 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.ReconciledStore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationDiscrepancyDTO {
+    private ReconciledStore store;
+    private Long budgetId;
+    // Null for budget-level figures
+    private CategoryType categoryType;
+    // The figure that differs, e.g. totalSpent, spent or the rollup granularity
+    private String figure;
+    // Computed from the source rows
+    private BigDecimal expected;
+    // Found in the store, null if missing
+    private BigDecimal actual;
+    private boolean repaired;
+    private Instant detectedAt;
+}
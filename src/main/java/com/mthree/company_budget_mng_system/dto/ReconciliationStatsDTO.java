@@ -0,0 +1,28 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationStatsDTO {
+    private boolean running;
+    private long runs;
+    private Instant lastStartedAt;
+    private long lastDurationMillis;
+    private int lastBudgetsChecked;
+    // Budgets whose stores looked inconsistent at first and were verified again under the budget lock
+    private int lastSuspected;
+    private int lastDiscrepancies;
+    private int lastRepaired;
+    private long totalDiscrepancies;
+    private long totalRepaired;
+    private List<ReconciliationDiscrepancyDTO> recentDiscrepancies;
+}
@@ -0,0 +1,17 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RefreshTokenRequestDTO {
+
+    @NotBlank(message = "You need to provide the refresh token!")
+    private String refreshToken;
+}
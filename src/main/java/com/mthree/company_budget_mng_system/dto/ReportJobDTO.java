@@ -0,0 +1,29 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import com.mthree.company_budget_mng_system.model.ReportJobStatus;
+import com.mthree.company_budget_mng_system.model.ReportPriority;
+import com.mthree.company_budget_mng_system.model.ReportType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReportJobDTO {
+    private String id;
+    private ReportType type;
+    private List<Integer> years;
+    private ReportPriority priority;
+    private ReportJobStatus status;
+    private Instant submittedAt;
+    private Instant completedAt;
+    private String contentType;
+    private Long size;
+    private String error;
+}
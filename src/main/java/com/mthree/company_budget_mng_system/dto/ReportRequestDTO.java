@@ -0,0 +1,27 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import com.mthree.company_budget_mng_system.model.ReportPriority;
+import com.mthree.company_budget_mng_system.model.ReportType;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReportRequestDTO {
+    @NotNull(message = "Report type is required")
+    private ReportType type;
+
+    @NotEmpty(message = "At least one year is required")
+    private List<Integer> years;
+
+    // Defaults to NORMAL
+    private ReportPriority priority;
+}
@@ -0,0 +1,16 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SummaryRebuildDTO {
+    private int budgets;
+    private int threads;
+    private long elapsedMillis;
+}
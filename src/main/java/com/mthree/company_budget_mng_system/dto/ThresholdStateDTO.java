@@ -0,0 +1,26 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ThresholdStateDTO {
+
+    // null for the state of the whole budget
+    private CategoryType categoryType;
+
+    @Builder.Default
+    private List<Integer> levels = new ArrayList<>();
+
+    @Builder.Default
+    private List<Integer> crossedLevels = new ArrayList<>();
+}
@@ -0,0 +1,19 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TokenDTO {
+    private String accessToken;
+    private String refreshToken;
+    private String tokenType;
+    // Lifetimes in seconds
+    private long expiresIn;
+    private long refreshExpiresIn;
+}
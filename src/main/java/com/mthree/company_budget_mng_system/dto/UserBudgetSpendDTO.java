@@ -0,0 +1,23 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserBudgetSpendDTO {
+    private Long budgetId;
+    private Integer year;
+    private BigDecimal spent;
+    private long expenseCount;
+    // Spending limit of the user in the budget, null when not limited
+    private BigDecimal spendingLimit;
+    private List<CategoryTypeAmountDTO> categories;
+}
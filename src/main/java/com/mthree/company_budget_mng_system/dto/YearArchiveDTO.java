@@ -0,0 +1,22 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class YearArchiveDTO {
+    private Long budgetId;
+    private Integer year;
+    private Instant archivedAt;
+    private int expenses;
+    private long fileBytes;
+    private List<ArchiveColumnDTO> columns;
+}
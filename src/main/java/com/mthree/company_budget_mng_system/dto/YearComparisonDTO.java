@@ -0,0 +1,27 @@
+package com.mthree.company_budget_mng_system.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class YearComparisonDTO {
+
+    private Integer year;
+
+    private BigDecimal planned;
+
+    private BigDecimal actual;
+
+    // planned - actual
+    private BigDecimal variance;
+
+    // Growth of the actual spend in percent compared with the previous year of the report, null for the first year
+    private BigDecimal yoyGrowth;
+}
@@ -0,0 +1,16 @@
+package com.mthree.company_budget_mng_system.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published by the budget service after a budget was created, updated or deleted.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class BudgetChangedEvent {
+    private final Long budgetId;
+    private final boolean deleted;
+}
@@ -0,0 +1,15 @@
+package com.mthree.company_budget_mng_system.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published by the category registry after a category was created or updated.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class CategoryChangedEvent {
+    private final String code;
+}
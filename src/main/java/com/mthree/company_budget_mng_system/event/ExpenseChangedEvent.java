@@ -0,0 +1,19 @@
+package com.mthree.company_budget_mng_system.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published by the expense service after an expense was created, updated or deleted.
+ * {@code previous} is null for a new expense and {@code current} is null for a deleted one. Expenses deleted in bulk
+ * are published per group, without {@code expenseId}.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ExpenseChangedEvent {
+    private final Long expenseId;
+    private final ExpenseSnapshot previous;
+    private final ExpenseSnapshot current;
+}
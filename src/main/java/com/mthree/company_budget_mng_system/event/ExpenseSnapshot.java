@@ -0,0 +1,39 @@
+package com.mthree.company_budget_mng_system.event;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.Expense;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Immutable copy of the fields of an expense that derived totals depend on. Bulk operations publish one snapshot
+ * per group of expenses with equal fields, holding their summed amount and their number.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ExpenseSnapshot {
+    private final Long budgetId;
+    private final CategoryType categoryType;
+    private final LocalDate date;
+    private final BigDecimal amount;
+    private final Long userId;
+    private final long expenseCount;
+
+    public ExpenseSnapshot(Long budgetId, CategoryType categoryType, LocalDate date, BigDecimal amount, Long userId) {
+        this(budgetId, categoryType, date, amount, userId, 1);
+    }
+
+    public static ExpenseSnapshot of(Expense expense) {
+        return new ExpenseSnapshot(
+                expense.getBudget() == null ? null : expense.getBudget().getId(),
+                expense.getCategoryType(),
+                expense.getDate(),
+                expense.getAmount(),
+                expense.getUser() == null ? null : expense.getUser().getId());
+    }
+}
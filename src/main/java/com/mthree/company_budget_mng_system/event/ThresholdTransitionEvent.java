@@ -0,0 +1,19 @@
+package com.mthree.company_budget_mng_system.event;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class ThresholdTransitionEvent {
+    private final Long budgetId;
+    private final Integer year;
+    // null when the level belongs to the whole budget
+    private final CategoryType categoryType;
+    private final int level;
+    // true when the level was crossed, false when spending dropped back below it
+    private final boolean crossed;
+}
@@ -0,0 +1,17 @@
+package com.mthree.company_budget_mng_system.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published by the user service after a user was updated or deleted.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class UserChangedEvent {
+    private final Long userId;
+    private final String username;
+    private final boolean deleted;
+}
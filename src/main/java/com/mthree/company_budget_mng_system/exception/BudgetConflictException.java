@@ -0,0 +1,16 @@
+package com.mthree.company_budget_mng_system.exception;
+
+import com.mthree.company_budget_mng_system.dto.BudgetConflictDTO;
+
+public class BudgetConflictException extends RuntimeException {
+    private final BudgetConflictDTO conflict;
+
+    public BudgetConflictException(BudgetConflictDTO conflict) {
+        super(conflict.getMessage());
+        this.conflict = conflict;
+    }
+
+    public BudgetConflictDTO getConflict() {
+        return conflict;
+    }
+}
@@ -0,0 +1,7 @@
+package com.mthree.company_budget_mng_system.exception;
+
+public class ServiceUnavailableException extends RuntimeException {
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.mthree.company_budget_mng_system.exception;
+
+public class UnauthorizedException extends RuntimeException {
+    public UnauthorizedException(String message) {
+        super(message);
+    }
+}
@@ -21,8 +21,16 @@ public interface BudgetMapper {
     List<Budget> mapToEntityList(List<BudgetDTO> budgetDTOS);
 
     @Mapping(target = "budgetPlanned", source = "categoryTypeAmountDTOS")
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "fieldChanges", ignore = true)
+    @Mapping(target = "costCenter", ignore = true)
+    @Mapping(target = "archivedAt", ignore = true)
+    @Mapping(target = "scopeId", ignore = true)
+    @Mapping(target = "archivedMinExpenseId", ignore = true)
+    @Mapping(target = "archivedMaxExpenseId", ignore = true)
     Budget toEntity(BudgetDTO budgetDTO);
     @Mapping(target = "categoryTypeAmountDTOS", source = "budgetPlanned")
+    @Mapping(target = "costCenterId", source = "costCenter.id")
     BudgetDTO toDto(Budget budget);
 
     // Mapping between CategoryTypeAmountDTO and Map<CategoryType, BigDecimal>
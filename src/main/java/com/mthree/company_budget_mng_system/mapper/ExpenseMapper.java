@@ -10,6 +10,7 @@ import java.util.List;
 @Mapper(componentModel = "spring")
 public interface ExpenseMapper {
     @Mapping(target = "categoryType", source = "categoryType")
+    @Mapping(target = "costCenterId", source = "budget.costCenter.id")
     ExpenseDTO map(Expense expense);
 
     @Mapping(target = "categoryType", source = "categoryType")
@@ -0,0 +1,28 @@
+package com.mthree.company_budget_mng_system.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "alert_level_config",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"budget_id", "category_type"}))
+public class AlertLevelConfig {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "budget_id", nullable = false)
+    private Long budgetId;
+
+    // null means the levels apply to the whole budget and to categories without their own config
+    @Column(name = "category_type")
+    private CategoryType categoryType;
+
+    // Comma separated percentages, e.g. "50,75,90,100"
+    @Column(nullable = false)
+    private String levels;
+}
@@ -5,6 +5,7 @@ import jakarta.persistence.*;
 import lombok.*;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -15,7 +16,7 @@ import java.util.Map;
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
-@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"year"}))
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"scope_id", "year"}))
 public class Budget {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -27,11 +28,9 @@ public class Budget {
     @Column(nullable = false)
     private Integer year;
 
-    @ElementCollection
-    @CollectionTable(name = "budget_category_amounts",
-            joinColumns = @JoinColumn(name = "budget_id"))
-    @MapKeyColumn(name = "category_type")
-    @Column(name = "amount")
+    // All category amounts in one column, read with the budget itself instead of one row per category
+    @Convert(converter = BudgetPlanConverter.class)
+    @Column(name = "planned_amounts", length = BudgetPlanConverter.MAX_LENGTH)
     private Map<CategoryType, BigDecimal> budgetPlanned = new HashMap<>();
 
     @OneToMany(cascade = {CascadeType.PERSIST, CascadeType.MERGE})
@@ -42,4 +41,33 @@ public class Budget {
     @JoinColumn(name = "manager_id")
     private User manager;
 
+    // Null for the budgets of the whole company
+    @ManyToOne
+    @JoinColumn(name = "cost_center_id")
+    private CostCenter costCenter;
+
+    // The cost center id, or 0 for the company budgets; keys the unique year per scope, since NULLs never collide
+    @Column(name = "scope_id", insertable = false, updatable = false,
+            columnDefinition = "bigint generated always as (coalesce(cost_center_id, 0))")
+    private Long scopeId;
+
+    // Every change of a field (totalAmount, year or a category name), used to merge updates made from an older version
+    @ElementCollection
+    @CollectionTable(name = "budget_field_history",
+            joinColumns = @JoinColumn(name = "budget_id"))
+    @Builder.Default
+    private List<BudgetFieldChange> fieldChanges = new ArrayList<>();
+
+    // Bumped on every change of the budget and of its expenses, used as ETag of the budget and its summaries
+    @Version
+    private long version;
+
+    // Set once the expenses of the closed year were moved to an archive file; the budget takes no changes after that
+    private Instant archivedAt;
+
+    // Lowest and highest expense id in the archive file, null while there is none; a lookup by expense id only opens
+    // the archive files whose range contains it
+    private Long archivedMinExpenseId;
+    private Long archivedMaxExpenseId;
+
 }
@@ -0,0 +1,26 @@
+package com.mthree.company_budget_mng_system.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One change of a field of a budget (its total, its year or the planned amount of one category):
+ * the budget version that introduced it and the value it replaced.
+ */
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BudgetFieldChange {
+    @Column(name = "field_name", nullable = false)
+    private String field;
+
+    @Column(name = "changed_in_version", nullable = false)
+    private long version;
+
+    @Column(name = "previous_value")
+    private String previousValue;
+}
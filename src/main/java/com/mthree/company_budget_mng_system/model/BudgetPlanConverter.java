@@ -0,0 +1,73 @@
+package com.mthree.company_budget_mng_system.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Packs the planned amounts of a budget into one binary column: a format byte followed by one entry per category
+ * in id order, each the category id, the scale and the length and bytes of the unscaled amount. A plan of all 64
+ * categories fits in 2 KB; a typical plan of a few categories takes well under 100 bytes.
+ */
+@Converter
+public class BudgetPlanConverter implements AttributeConverter<Map<CategoryType, BigDecimal>, byte[]> {
+    public static final int MAX_LENGTH = 2048;
+
+    private static final byte FORMAT = 1;
+    // Same scale as the amount column of the former collection table
+    private static final int SCALE = 2;
+    // 38 digits like the other amount columns; also keeps the length within its byte and every plan within MAX_LENGTH
+    private static final int MAX_UNSCALED_BYTES = 16;
+
+    @Override
+    public byte[] convertToDatabaseColumn(Map<CategoryType, BigDecimal> plan) {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_LENGTH);
+        buffer.put(FORMAT);
+        if (plan != null) {
+            // Entries in id order, so an unchanged plan always encodes to the same bytes
+            BigDecimal[] amounts = new BigDecimal[CategoryType.MAX_CATEGORIES];
+            plan.forEach((categoryType, amount) -> amounts[categoryType.ordinal()] = amount);
+            for (int id = 0; id < amounts.length; id++) {
+                if (amounts[id] == null) {
+                    continue;
+                }
+                byte[] unscaled = amounts[id].setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().toByteArray();
+                if (unscaled.length > MAX_UNSCALED_BYTES) {
+                    throw new IllegalArgumentException("The planned amount of " + CategoryType.fromId(id) + " is too large.");
+                }
+                buffer.put((byte) id).put((byte) SCALE).put((byte) unscaled.length).put(unscaled);
+            }
+        }
+        byte[] column = new byte[buffer.position()];
+        buffer.flip().get(column);
+        return column;
+    }
+
+    @Override
+    public Map<CategoryType, BigDecimal> convertToEntityAttribute(byte[] column) {
+        Map<CategoryType, BigDecimal> plan = new HashMap<>();
+        // Budgets of the collection table are not migrated yet, see BudgetPlanMigration
+        if (column == null || column.length == 0) {
+            return plan;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(column);
+        byte format = buffer.get();
+        if (format != FORMAT) {
+            throw new IllegalStateException("Unknown format " + format + " of a budget plan.");
+        }
+        while (buffer.hasRemaining()) {
+            int id = buffer.get();
+            int scale = buffer.get();
+            byte[] unscaled = new byte[buffer.get()];
+            buffer.get(unscaled);
+            plan.put(CategoryType.fromId(id), new BigDecimal(new BigInteger(unscaled), scale));
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,46 @@
+package com.mthree.company_budget_mng_system.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Read model of a budget with its spend and the figures derived from it, kept up to date by the projection in
+ * {@code BudgetSummaryService}. Reads never touch the budget or expense tables.
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "budget_summary")
+public class BudgetSummary {
+    @Id
+    @Column(name = "budget_id")
+    private Long budgetId;
+
+    @Column(nullable = false)
+    private Integer year;
+
+    // Null for budgets of the whole company
+    @Column(name = "cost_center_id")
+    private Long costCenterId;
+
+    @Column(name = "total_amount", nullable = false)
+    private BigDecimal totalAmount;
+
+    @Column(name = "total_spent", nullable = false)
+    private BigDecimal totalSpent;
+
+    // Null while the total amount is zero
+    @Column(name = "percentage_used")
+    private BigDecimal percentageUsed;
+
+    @Column(name = "rest_of_budget", nullable = false)
+    private BigDecimal restOfBudget;
+
+    // Version of the budget the summary reflects
+    @Column(name = "budget_version", nullable = false)
+    private long budgetVersion;
+}
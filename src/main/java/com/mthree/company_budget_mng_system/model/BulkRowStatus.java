@@ -0,0 +1,8 @@
+package com.mthree.company_budget_mng_system.model;
+
+public enum BulkRowStatus {
+    CREATED,
+    INVALID,
+    DUPLICATE,
+    CONFLICT
+}
@@ -0,0 +1,6 @@
+package com.mthree.company_budget_mng_system.model;
+
+public enum BulkheadType {
+    READ,
+    WRITE
+}
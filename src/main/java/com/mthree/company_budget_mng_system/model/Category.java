@@ -0,0 +1,30 @@
+package com.mthree.company_budget_mng_system.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "category")
+public class Category {
+    // Dense id, also the index of the category in per-category arrays; assigned in order and never reused
+    @Id
+    private Integer id;
+
+    @Column(nullable = false, unique = true, length = 50)
+    private String code;
+
+    @Column(nullable = false)
+    private String name;
+
+    // Null for top-level categories
+    @Column(name = "parent_id")
+    private Integer parentId;
+
+    // Inactive categories keep their expenses and plans but take no new ones
+    @Column(nullable = false)
+    private boolean active;
+}
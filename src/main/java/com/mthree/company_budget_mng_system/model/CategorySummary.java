@@ -0,0 +1,33 @@
+package com.mthree.company_budget_mng_system.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Read model of one category of a budget: its planned amount (null if not planned) and its spend.
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "category_summary",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"budget_id", "category_type"}))
+public class CategorySummary {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "budget_id", nullable = false)
+    private Long budgetId;
+
+    @Column(name = "category_type", nullable = false)
+    private CategoryType categoryType;
+
+    private BigDecimal planned;
+
+    @Column(nullable = false)
+    private BigDecimal spent;
+}
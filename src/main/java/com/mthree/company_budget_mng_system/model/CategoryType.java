@@ -1,11 +1,116 @@
 package com.mthree.company_budget_mng_system.model;
 
-public enum CategoryType {
-    HR,
-    MARKETING,
-    SALES,
-    IT,
-    OTHER,
-    TRAVEL,
-    OPERATIONS;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Expense category. Categories are rows of the {@code category} table and are managed at runtime; this class only
+ * carries the identity of a category: its code, used in the API and stored in the category columns, and a dense id
+ * below {@link #MAX_CATEGORIES} that indexes per-category arrays. There is exactly one instance per category, so
+ * categories compare like the enum constants they replaced. Names, hierarchy and active flags are held by the
+ * {@code CategoryRegistry}.
+ */
+public final class CategoryType implements Comparable<CategoryType> {
+    // Upper bound of categories, and the size of per-category arrays
+    public static final int MAX_CATEGORIES = 64;
+
+    // Copy-on-write tables of every category known to this JVM
+    private static volatile CategoryType[] byId = new CategoryType[0];
+    private static volatile Map<String, CategoryType> byCode = Map.of();
+
+    // Built-in categories, with their ids equal to the ordinals they had as enum constants
+    public static final CategoryType HR = register(0, "HR");
+    public static final CategoryType MARKETING = register(1, "MARKETING");
+    public static final CategoryType SALES = register(2, "SALES");
+    public static final CategoryType IT = register(3, "IT");
+    public static final CategoryType OTHER = register(4, "OTHER");
+    public static final CategoryType TRAVEL = register(5, "TRAVEL");
+    public static final CategoryType OPERATIONS = register(6, "OPERATIONS");
+
+    private final int id;
+    private final String code;
+
+    private CategoryType(int id, String code) {
+        this.id = id;
+        this.code = code;
+    }
+
+    /**
+     * Returns the category with the given id and code, creating it when it is new.
+     *
+     * @throws IllegalStateException if the id or the code already belongs to another category
+     */
+    public static synchronized CategoryType register(int id, String code) {
+        Objects.requireNonNull(code, "code");
+        if (id < 0 || id >= MAX_CATEGORIES) {
+            throw new IllegalStateException("Category id " + id + " is not below " + MAX_CATEGORIES + ".");
+        }
+        CategoryType existing = byCode.get(code);
+        if (existing != null) {
+            if (existing.id != id) {
+                throw new IllegalStateException("Category " + code + " already has the id " + existing.id + ".");
+            }
+            return existing;
+        }
+        if (id < byId.length && byId[id] != null) {
+            throw new IllegalStateException("Category id " + id + " already belongs to " + byId[id].code + ".");
+        }
+        CategoryType categoryType = new CategoryType(id, code);
+        CategoryType[] ids = Arrays.copyOf(byId, Math.max(byId.length, id + 1));
+        ids[id] = categoryType;
+        Map<String, CategoryType> codes = new HashMap<>(byCode);
+        codes.put(code, categoryType);
+        byId = ids;
+        byCode = Map.copyOf(codes);
+        return categoryType;
+    }
+
+    /**
+     * All known categories in id order, active or not.
+     */
+    public static CategoryType[] values() {
+        return Arrays.stream(byId).filter(Objects::nonNull).toArray(CategoryType[]::new);
+    }
+
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public static CategoryType valueOf(String code) {
+        CategoryType categoryType = code == null ? null : byCode.get(code);
+        if (categoryType == null) {
+            throw new IllegalArgumentException("Unknown category: " + code);
+        }
+        return categoryType;
+    }
+
+    public static CategoryType fromId(int id) {
+        CategoryType[] ids = byId;
+        if (id < 0 || id >= ids.length || ids[id] == null) {
+            throw new IllegalArgumentException("Unknown category id: " + id);
+        }
+        return ids[id];
+    }
+
+    // Dense id, named like the enum method so per-category arrays are indexed the same way
+    public int ordinal() {
+        return id;
+    }
+
+    @JsonValue
+    public String name() {
+        return code;
+    }
+
+    @Override
+    public int compareTo(CategoryType other) {
+        return Integer.compare(id, other.id);
+    }
+
+    @Override
+    public String toString() {
+        return code;
+    }
 }
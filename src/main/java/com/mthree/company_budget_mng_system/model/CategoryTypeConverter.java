@@ -0,0 +1,20 @@
+package com.mthree.company_budget_mng_system.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Stores categories by code, like the enum columns did.
+ */
+@Converter(autoApply = true)
+public class CategoryTypeConverter implements AttributeConverter<CategoryType, String> {
+    @Override
+    public String convertToDatabaseColumn(CategoryType categoryType) {
+        return categoryType == null ? null : categoryType.name();
+    }
+
+    @Override
+    public CategoryType convertToEntityAttribute(String code) {
+        return code == null ? null : CategoryType.valueOf(code);
+    }
+}
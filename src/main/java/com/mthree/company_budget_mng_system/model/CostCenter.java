@@ -0,0 +1,36 @@
+package com.mthree.company_budget_mng_system.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Department or team of the company. Cost centers form a tree, and every cost center can have its own budget
+ * per year; the spend of a cost center rolls up into all of its ancestors.
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "cost_center", uniqueConstraints = @UniqueConstraint(columnNames = {"parent_id", "name"}))
+public class CostCenter {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String name;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "parent_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private CostCenter parent;
+
+    // Ids from the root down to this cost center, e.g. "/1/4/9/", so the ancestors are known without walking the tree
+    @Column(nullable = false, length = 1000)
+    private String path;
+
+    @Column(nullable = false)
+    private int depth;
+}
@@ -0,0 +1,47 @@
+package com.mthree.company_budget_mng_system.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Planned amount and spend of a cost center in one year, both of its own budget and of its whole subtree.
+ * Kept up to date by {@code CostCenterService}, which adds the delta of every change to the cost center and all
+ * of its ancestors.
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "cost_center_rollup",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"cost_center_id", "year"}),
+        indexes = @Index(columnList = "budget_id"))
+public class CostCenterRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "cost_center_id", nullable = false)
+    private Long costCenterId;
+
+    @Column(nullable = false)
+    private Integer year;
+
+    // Null while the cost center has no budget of its own in the year
+    @Column(name = "budget_id")
+    private Long budgetId;
+
+    @Column(name = "planned_amount", nullable = false)
+    private BigDecimal plannedAmount;
+
+    @Column(nullable = false)
+    private BigDecimal spent;
+
+    @Column(name = "subtree_planned_amount", nullable = false)
+    private BigDecimal subtreePlannedAmount;
+
+    @Column(name = "subtree_spent", nullable = false)
+    private BigDecimal subtreeSpent;
+}
@@ -31,7 +31,6 @@ public class Expense {
     @JoinColumn(name = "budget_id")
     private Budget budget;
 
-    @Enumerated(EnumType.STRING)
     @Column(name = "category_type", nullable = false)
     private CategoryType categoryType;
 
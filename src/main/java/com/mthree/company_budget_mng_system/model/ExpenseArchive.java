@@ -0,0 +1,42 @@
+package com.mthree.company_budget_mng_system.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Copy of an expense removed by a bulk deletion with archival. Keeps the id of the expense.
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "expense_archive", indexes = @Index(columnList = "budget_id, date"))
+public class ExpenseArchive {
+    @Id
+    private Long id;
+
+    @Column(name = "budget_id")
+    private Long budgetId;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    private String description;
+
+    @Column(nullable = false)
+    private LocalDate date;
+
+    @Column(name = "category_type", nullable = false)
+    private CategoryType categoryType;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "archived_at", nullable = false)
+    private Instant archivedAt;
+}
@@ -0,0 +1,22 @@
+package com.mthree.company_budget_mng_system.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Sequence of the last journal record applied to the database, written in the same transaction as the expenses
+ * of the record so a replay after a crash neither loses nor duplicates them.
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "journal_checkpoint")
+public class JournalCheckpoint {
+    @Id
+    private String journal;
+
+    @Column(name = "applied_sequence", nullable = false)
+    private long appliedSequence;
+}
@@ -0,0 +1,7 @@
+package com.mthree.company_budget_mng_system.model;
+
+public enum JournalEntryStatus {
+    PENDING,
+    APPLIED,
+    REJECTED
+}
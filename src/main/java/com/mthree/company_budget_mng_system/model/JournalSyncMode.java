@@ -0,0 +1,8 @@
+package com.mthree.company_budget_mng_system.model;
+
+public enum JournalSyncMode {
+    // Concurrent appends share one fsync of the segment
+    BATCH,
+    // Every record is forced to disk on its own before it is acknowledged
+    RECORD
+}
@@ -0,0 +1,52 @@
+package com.mthree.company_budget_mng_system.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * One immutable change of a budget. Events of a budget are ordered by id; a null category on a
+ * reallocation is the total amount of the budget, a posting without expense is the opening spend of a category.
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "ledger_event", indexes = {
+        @Index(name = "idx_ledger_event_budget", columnList = "budget_id, id"),
+        @Index(name = "idx_ledger_event_budget_time", columnList = "budget_id, occurred_at")})
+public class LedgerEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "budget_id", nullable = false)
+    private Long budgetId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private LedgerEventType type;
+
+    @Column(name = "occurred_at", nullable = false)
+    private Instant occurredAt;
+
+    // Year of the budget, set on budget level events
+    private Integer year;
+
+    @Column(name = "expense_id")
+    private Long expenseId;
+
+    @Column(name = "category_type")
+    private CategoryType categoryType;
+
+    private BigDecimal amount;
+
+    @Column(name = "previous_category_type")
+    private CategoryType previousCategoryType;
+
+    @Column(name = "previous_amount")
+    private BigDecimal previousAmount;
+}
@@ -0,0 +1,9 @@
+package com.mthree.company_budget_mng_system.model;
+
+public enum LedgerEventType {
+    BUDGET_CREATED,
+    CATEGORY_REALLOCATED,
+    EXPENSE_POSTED,
+    EXPENSE_AMENDED,
+    EXPENSE_DELETED
+}
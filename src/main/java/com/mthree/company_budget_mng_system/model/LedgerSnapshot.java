@@ -0,0 +1,41 @@
+package com.mthree.company_budget_mng_system.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * One row of the state of a budget after the ledger event {@code eventId}: the row without category holds the year
+ * and total amount, the others the planned amount and spend of a category.
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "ledger_snapshot", indexes = @Index(name = "idx_ledger_snapshot_budget", columnList = "budget_id, event_id"))
+public class LedgerSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "budget_id", nullable = false)
+    private Long budgetId;
+
+    @Column(name = "event_id", nullable = false)
+    private Long eventId;
+
+    @Column(name = "taken_at", nullable = false)
+    private Instant takenAt;
+
+    private Integer year;
+
+    @Column(name = "category_type")
+    private CategoryType categoryType;
+
+    private BigDecimal planned;
+
+    private BigDecimal spent;
+}
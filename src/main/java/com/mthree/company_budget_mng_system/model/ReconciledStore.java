@@ -0,0 +1,12 @@
+package com.mthree.company_budget_mng_system.model;
+
+/**
+ * Stores of totals derived from the expense table that are verified by the reconciliation job.
+ */
+public enum ReconciledStore {
+    BUDGET_SUMMARY,
+    CATEGORY_SUMMARY,
+    SPEND_ROLLUP,
+    LEDGER,
+    MONTHLY_SPEND_CACHE
+}
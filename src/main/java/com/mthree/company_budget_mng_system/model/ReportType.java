@@ -0,0 +1,10 @@
+package com.mthree.company_budget_mng_system.model;
+
+public enum ReportType {
+    // Planned, actual, variance and growth per category across the requested years (JSON)
+    COMPARISON,
+    // Monthly spend per category of every requested year (CSV)
+    PIVOT,
+    // Every expense of the requested years (CSV)
+    EXPORT
+}
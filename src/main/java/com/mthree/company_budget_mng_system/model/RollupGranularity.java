@@ -0,0 +1,26 @@
+package com.mthree.company_budget_mng_system.model;
+
+import java.time.LocalDate;
+import java.time.temporal.IsoFields;
+
+public enum RollupGranularity {
+    DAY,
+    MONTH,
+    QUARTER;
+
+    public LocalDate bucketStart(LocalDate date) {
+        return switch (this) {
+            case DAY -> date;
+            case MONTH -> date.withDayOfMonth(1);
+            case QUARTER -> date.with(IsoFields.DAY_OF_QUARTER, 1);
+        };
+    }
+
+    public static RollupGranularity fromString(String granularity) {
+        try {
+            return valueOf(granularity.trim().toUpperCase());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IllegalArgumentException("Unknown granularity '" + granularity + "', use day, month or quarter.");
+        }
+    }
+}
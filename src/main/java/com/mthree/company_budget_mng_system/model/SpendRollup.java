@@ -0,0 +1,39 @@
+package com.mthree.company_budget_mng_system.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "spend_rollup",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"budget_id", "granularity", "bucket_start", "category_type"}))
+public class SpendRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "budget_id", nullable = false)
+    private Long budgetId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private RollupGranularity granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDate bucketStart;
+
+    @Column(name = "category_type", nullable = false)
+    private CategoryType categoryType;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Column(name = "expense_count", nullable = false)
+    private Long expenseCount;
+}
@@ -0,0 +1,34 @@
+package com.mthree.company_budget_mng_system.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(name = "user_spend",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "budget_id", "category_type"}))
+public class UserSpend {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "budget_id", nullable = false)
+    private Long budgetId;
+
+    @Column(name = "category_type", nullable = false)
+    private CategoryType categoryType;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Column(name = "expense_count", nullable = false)
+    private Long expenseCount;
+}
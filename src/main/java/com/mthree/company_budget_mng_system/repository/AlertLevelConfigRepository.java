@@ -0,0 +1,16 @@
+package com.mthree.company_budget_mng_system.repository;
+
+import com.mthree.company_budget_mng_system.model.AlertLevelConfig;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AlertLevelConfigRepository extends JpaRepository<AlertLevelConfig, Long> {
+    List<AlertLevelConfig> findByBudgetId(Long budgetId);
+
+    Optional<AlertLevelConfig> findByBudgetIdAndCategoryType(Long budgetId, CategoryType categoryType);
+}
@@ -0,0 +1,16 @@
+package com.mthree.company_budget_mng_system.repository;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+
+import java.math.BigDecimal;
+
+/**
+ * Sum of the expenses of one category of one budget, as returned by grouped expense queries over several budgets.
+ */
+public interface BudgetCategoryTotal {
+    Long getBudgetId();
+
+    CategoryType getCategoryType();
+
+    BigDecimal getAmount();
+}
@@ -1,15 +1,85 @@
 package com.mthree.company_budget_mng_system.repository;
 
 import com.mthree.company_budget_mng_system.model.Budget;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 
 @Repository
 public interface BudgetRepository extends JpaRepository<Budget, Long> {
-    boolean existsByYear(Integer year);
+    // Lookups by year only find budgets of the whole company, budgets of cost centers are found by both
+    @Query("select count(b) > 0 from Budget b where b.year = :year and b.costCenter is null")
+    boolean existsByYear(@Param("year") Integer year);
 
-    Optional<Budget> findByYear(Integer year);
+    @Query("select b from Budget b where b.year = :year and b.costCenter is null")
+    Optional<Budget> findByYear(@Param("year") Integer year);
+
+    @Query("select count(b) > 0 from Budget b where b.costCenter.id = :costCenterId and b.year = :year")
+    boolean existsByCostCenterIdAndYear(@Param("costCenterId") Long costCenterId, @Param("year") Integer year);
+
+    @Query("select b from Budget b where b.costCenter.id = :costCenterId and b.year = :year")
+    Optional<Budget> findByCostCenterIdAndYear(@Param("costCenterId") Long costCenterId, @Param("year") Integer year);
+
+    @Query("select b.id from Budget b where b.costCenter.id = :costCenterId and b.year = :year")
+    Optional<Long> findIdByCostCenterIdAndYear(@Param("costCenterId") Long costCenterId, @Param("year") Integer year);
+
+    boolean existsByCostCenterId(Long costCenterId);
+
+    @Query("select b.id from Budget b order by b.id")
+    List<Long> findAllIds();
+
+    @Query("select b.id from Budget b where b.year = :year and b.costCenter is null")
+    Optional<Long> findIdByYear(@Param("year") Integer year);
+
+    @Query("select b from Budget b where b.year in :years and b.costCenter is null")
+    List<Budget> findByYearIn(@Param("years") Collection<Integer> years);
+
+    List<Budget> findByIdIn(Collection<Long> ids);
+
+    // Locks the row without changing the budget, for work that rebuilds data derived from it
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from Budget b where b.id = :id")
+    Optional<Budget> findByIdForRebuild(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_FORCE_INCREMENT)
+    @Query("select b from Budget b where b.id = :id")
+    Optional<Budget> findByIdForUpdate(@Param("id") Long id);
+
+    @Query("select b.version from Budget b where b.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    // For a change to derived data that clients must see as a new version of the budget
+    @Modifying
+    @Query("update Budget b set b.version = b.version + 1 where b.id = :id")
+    int incrementVersion(@Param("id") Long id);
+
+    @Query("select b.id from Budget b where b.year <= :lastYear and b.archivedAt is null order by b.year, b.id")
+    List<Long> findIdsToArchive(@Param("lastYear") Integer lastYear);
+
+    @Query("select b.id from Budget b where b.year in :years and b.costCenter is null and b.archivedAt is not null " +
+            "order by b.year, b.id")
+    List<Long> findArchivedIdsByYearIn(@Param("years") Collection<Integer> years);
+
+    @Query("select b.id from Budget b where b.archivedAt is not null and b.archivedMinExpenseId is not null order by b.id")
+    List<Long> findArchivedIdsWithExpenses();
+
+    @Query("select b.id from Budget b where b.archivedAt is not null " +
+            "and b.archivedMinExpenseId <= :expenseId and b.archivedMaxExpenseId >= :expenseId order by b.id")
+    List<Long> findArchivedIdsByExpenseId(@Param("expenseId") Long expenseId);
+
+    @Query("select b.id from Budget b where b.archivedAt is not null and b.archivedMinExpenseId is null order by b.id")
+    List<Long> findArchivedIdsWithoutExpenseRange();
+
+    @Modifying
+    @Query("update Budget b set b.archivedMinExpenseId = :minId, b.archivedMaxExpenseId = :maxId where b.id = :id")
+    int setArchivedExpenseRange(@Param("id") Long id, @Param("minId") Long minId, @Param("maxId") Long maxId);
 }
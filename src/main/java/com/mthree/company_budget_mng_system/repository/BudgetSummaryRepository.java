@@ -0,0 +1,28 @@
+package com.mthree.company_budget_mng_system.repository;
+
+import com.mthree.company_budget_mng_system.model.BudgetSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface BudgetSummaryRepository extends JpaRepository<BudgetSummary, Long> {
+    List<BudgetSummary> findAllByOrderByBudgetId();
+
+    @Query("select b.id from Budget b where not exists (select s.budgetId from BudgetSummary s where s.budgetId = b.id)")
+    List<Long> findBudgetIdsWithoutSummary();
+
+    @Modifying
+    @Query("update BudgetSummary s set s.budgetVersion = (select b.version from Budget b where b.id = s.budgetId) " +
+            "where s.budgetId in :budgetIds and exists (select b.id from Budget b where b.id = s.budgetId)")
+    int copyBudgetVersions(@Param("budgetIds") Collection<Long> budgetIds);
+
+    @Modifying
+    @Query("delete from BudgetSummary s where not exists (select b.id from Budget b where b.id = s.budgetId)")
+    int deleteOrphans();
+}
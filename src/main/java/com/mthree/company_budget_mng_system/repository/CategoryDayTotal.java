@@ -0,0 +1,19 @@
+package com.mthree.company_budget_mng_system.repository;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Sum of the expenses of one category on one day, as returned by grouped expense queries.
+ */
+public interface CategoryDayTotal {
+    CategoryType getCategoryType();
+
+    LocalDate getDate();
+
+    BigDecimal getAmount();
+
+    Long getExpenseCount();
+}
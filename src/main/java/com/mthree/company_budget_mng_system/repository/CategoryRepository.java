@@ -0,0 +1,21 @@
+package com.mthree.company_budget_mng_system.repository;
+
+import com.mthree.company_budget_mng_system.model.Category;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CategoryRepository extends JpaRepository<Category, Integer> {
+    List<Category> findAllByOrderByIdAsc();
+
+    Optional<Category> findByCode(String code);
+
+    boolean existsByCode(String code);
+
+    @Query("select coalesce(max(c.id), -1) from Category c")
+    int findMaxId();
+}
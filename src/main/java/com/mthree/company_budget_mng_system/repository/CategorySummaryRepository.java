@@ -0,0 +1,32 @@
+package com.mthree.company_budget_mng_system.repository;
+
+import com.mthree.company_budget_mng_system.model.CategorySummary;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CategorySummaryRepository extends JpaRepository<CategorySummary, Long> {
+    List<CategorySummary> findByBudgetIdOrderByCategoryType(Long budgetId);
+
+    List<CategorySummary> findAllByOrderByBudgetIdAscCategoryTypeAsc();
+
+    List<CategorySummary> findByBudgetIdIn(Collection<Long> budgetIds);
+
+    Optional<CategorySummary> findByBudgetIdAndCategoryType(Long budgetId, CategoryType categoryType);
+
+    @Modifying
+    @Query("delete from CategorySummary c where c.budgetId = :budgetId")
+    int deleteByBudgetId(@Param("budgetId") Long budgetId);
+
+    @Modifying
+    @Query("delete from CategorySummary c where not exists (select b.id from Budget b where b.id = c.budgetId)")
+    int deleteOrphans();
+}
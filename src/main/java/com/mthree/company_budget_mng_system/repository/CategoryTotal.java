@@ -0,0 +1,14 @@
+package com.mthree.company_budget_mng_system.repository;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+
+import java.math.BigDecimal;
+
+/**
+ * Sum of the expenses of one category, as returned by grouped expense queries.
+ */
+public interface CategoryTotal {
+    CategoryType getCategoryType();
+
+    BigDecimal getAmount();
+}
@@ -0,0 +1,16 @@
+package com.mthree.company_budget_mng_system.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Position of a budget in the cost center rollups and the amounts it contributes to them.
+ */
+public interface CostCenterBudgetTotals {
+    Long getCostCenterId();
+
+    Integer getYear();
+
+    BigDecimal getPlannedAmount();
+
+    BigDecimal getSpent();
+}
@@ -0,0 +1,28 @@
+package com.mthree.company_budget_mng_system.repository;
+
+import com.mthree.company_budget_mng_system.model.CostCenter;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CostCenterRepository extends JpaRepository<CostCenter, Long> {
+    List<CostCenter> findAllByOrderByPathAsc();
+
+    boolean existsByParentId(Long parentId);
+
+    @Query("select c.path from CostCenter c where c.id = :id")
+    Optional<String> findPathById(@Param("id") Long id);
+
+    // Root first, so concurrent callers lock a common ancestor in the same order
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from CostCenter c where c.id in :ids order by c.depth")
+    List<CostCenter> lockByIdIn(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,47 @@
+package com.mthree.company_budget_mng_system.repository;
+
+import com.mthree.company_budget_mng_system.model.CostCenterRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CostCenterRollupRepository extends JpaRepository<CostCenterRollup, Long> {
+    Optional<CostCenterRollup> findByCostCenterIdAndYear(Long costCenterId, Integer year);
+
+    // Scalar values, so amounts changed by the bulk updates below are never read from a stale entity
+    @Query("select r.costCenterId as costCenterId, r.year as year, r.plannedAmount as plannedAmount, r.spent as spent " +
+            "from CostCenterRollup r where r.budgetId = :budgetId")
+    Optional<CostCenterBudgetTotals> findTotalsByBudgetId(@Param("budgetId") Long budgetId);
+
+    @Query("select r.costCenterId from CostCenterRollup r where r.costCenterId in :costCenterIds and r.year = :year")
+    List<Long> findCostCenterIdsByYear(@Param("costCenterIds") Collection<Long> costCenterIds, @Param("year") Integer year);
+
+    @Modifying
+    @Query("update CostCenterRollup r set r.subtreePlannedAmount = r.subtreePlannedAmount + :planned, " +
+            "r.subtreeSpent = r.subtreeSpent + :spent where r.costCenterId in :costCenterIds and r.year = :year")
+    int addToSubtree(@Param("costCenterIds") Collection<Long> costCenterIds, @Param("year") Integer year,
+                     @Param("planned") BigDecimal planned, @Param("spent") BigDecimal spent);
+
+    @Modifying
+    @Query("update CostCenterRollup r set r.plannedAmount = r.plannedAmount + :planned, r.spent = r.spent + :spent " +
+            "where r.budgetId = :budgetId")
+    int addToBudget(@Param("budgetId") Long budgetId, @Param("planned") BigDecimal planned, @Param("spent") BigDecimal spent);
+
+    @Modifying
+    @Query("update CostCenterRollup r set r.budgetId = :budgetId, r.plannedAmount = :planned, r.spent = :spent " +
+            "where r.costCenterId = :costCenterId and r.year = :year")
+    int setBudget(@Param("costCenterId") Long costCenterId, @Param("year") Integer year, @Param("budgetId") Long budgetId,
+                  @Param("planned") BigDecimal planned, @Param("spent") BigDecimal spent);
+
+    @Modifying
+    @Query("delete from CostCenterRollup r where r.costCenterId = :costCenterId")
+    int deleteByCostCenterId(@Param("costCenterId") Long costCenterId);
+}
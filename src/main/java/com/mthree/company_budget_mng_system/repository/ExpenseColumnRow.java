@@ -0,0 +1,23 @@
+package com.mthree.company_budget_mng_system.repository;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Flat, unmanaged view of an expense as it is written to an archive file.
+ */
+public interface ExpenseColumnRow {
+    Long getId();
+
+    LocalDate getDate();
+
+    CategoryType getCategoryType();
+
+    BigDecimal getAmount();
+
+    String getDescription();
+
+    Long getUserId();
+}
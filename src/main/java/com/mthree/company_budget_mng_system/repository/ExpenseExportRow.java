@@ -0,0 +1,25 @@
+package com.mthree.company_budget_mng_system.repository;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Flat, unmanaged view of an expense used by exports, so streaming many rows does not fill the persistence context.
+ */
+public interface ExpenseExportRow {
+    Long getId();
+
+    Integer getYear();
+
+    LocalDate getDate();
+
+    CategoryType getCategoryType();
+
+    BigDecimal getAmount();
+
+    String getDescription();
+
+    String getUsername();
+}
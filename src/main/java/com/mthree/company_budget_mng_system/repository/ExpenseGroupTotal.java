@@ -0,0 +1,21 @@
+package com.mthree.company_budget_mng_system.repository;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Sum of the expenses of one category, day and user, as returned by grouped expense queries.
+ */
+public interface ExpenseGroupTotal {
+    CategoryType getCategoryType();
+
+    LocalDate getDate();
+
+    Long getUserId();
+
+    BigDecimal getAmount();
+
+    Long getExpenseCount();
+}
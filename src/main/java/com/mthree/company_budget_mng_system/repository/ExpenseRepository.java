@@ -2,12 +2,80 @@ package com.mthree.company_budget_mng_system.repository;
 
 import com.mthree.company_budget_mng_system.model.CategoryType;
 import com.mthree.company_budget_mng_system.model.Expense;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface ExpenseRepository extends JpaRepository<Expense, Long> {
     List<Expense> findByCategoryType(CategoryType categoryType);
+
+    @Query("select e.categoryType as categoryType, e.date as date, sum(e.amount) as amount, count(e) as expenseCount " +
+            "from Expense e where e.budget.id = :budgetId group by e.categoryType, e.date")
+    List<CategoryDayTotal> sumByCategoryAndDate(@Param("budgetId") Long budgetId);
+
+    @Query("select e.categoryType as categoryType, sum(e.amount) as amount " +
+            "from Expense e where e.budget.id = :budgetId group by e.categoryType")
+    List<CategoryTotal> sumByCategory(@Param("budgetId") Long budgetId);
+
+    @Query("select e.budget.id as budgetId, e.categoryType as categoryType, sum(e.amount) as amount " +
+            "from Expense e where e.budget.id in :budgetIds group by e.budget.id, e.categoryType")
+    List<BudgetCategoryTotal> sumByBudgetAndCategory(@Param("budgetIds") Collection<Long> budgetIds);
+
+    // Company budgets only, like findByYearIn; cost center spend isn't part of the company figures
+    @Query("select b.year as year, e.categoryType as categoryType, sum(e.amount) as amount " +
+            "from Expense e join e.budget b where b.year in :years and b.costCenter is null " +
+            "group by b.year, e.categoryType")
+    List<YearCategoryTotal> sumByYearAndCategory(@Param("years") Collection<Integer> years);
+
+    @Query("select e.id from Expense e where e.budget.id = :budgetId " +
+            "and (:from is null or e.date >= :from) and (:to is null or e.date <= :to) " +
+            "and (:categoryType is null or e.categoryType = :categoryType) order by e.id")
+    List<Long> findIdsByBudgetId(@Param("budgetId") Long budgetId, @Param("from") LocalDate from, @Param("to") LocalDate to,
+                                 @Param("categoryType") CategoryType categoryType, Pageable pageable);
+
+    @Query("select e.categoryType as categoryType, e.date as date, e.user.id as userId, sum(e.amount) as amount, " +
+            "count(e) as expenseCount from Expense e where e.id in :ids group by e.categoryType, e.date, e.user.id")
+    List<ExpenseGroupTotal> sumByGroupIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("insert into ExpenseArchive (id, budgetId, amount, description, date, categoryType, userId, archivedAt) " +
+            "select e.id, e.budget.id, e.amount, e.description, e.date, e.categoryType, e.user.id, :archivedAt " +
+            "from Expense e where e.id in :ids")
+    int archiveByIdIn(@Param("ids") Collection<Long> ids, @Param("archivedAt") Instant archivedAt);
+
+    @Modifying
+    @Query("delete from Expense e where e.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("select e.id as id, b.year as year, e.date as date, e.categoryType as categoryType, e.amount as amount, " +
+            "e.description as description, u.username as username " +
+            "from Expense e join e.budget b left join e.user u where b.year in :years and b.costCenter is null " +
+            "order by b.year, e.date, e.id")
+    Stream<ExpenseExportRow> streamExportRows(@Param("years") Collection<Integer> years);
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("select e.id as id, e.date as date, e.categoryType as categoryType, e.amount as amount, " +
+            "e.description as description, e.user.id as userId from Expense e where e.budget.id = :budgetId order by e.id")
+    Stream<ExpenseColumnRow> streamColumnRows(@Param("budgetId") Long budgetId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Expense e set e.user = null where e.user.id = :userId")
+    int detachUser(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("delete from Expense e where e.budget.id = :budgetId")
+    int deleteByBudgetId(@Param("budgetId") Long budgetId);
 }
@@ -0,0 +1,29 @@
+package com.mthree.company_budget_mng_system.repository;
+
+import com.mthree.company_budget_mng_system.model.LedgerEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface LedgerEventRepository extends JpaRepository<LedgerEvent, Long> {
+    boolean existsByBudgetId(Long budgetId);
+
+    @Query("select max(e.id) from LedgerEvent e where e.budgetId = :budgetId")
+    Long findLastEventId(@Param("budgetId") Long budgetId);
+
+    @Query("select max(e.id) from LedgerEvent e where e.budgetId = :budgetId and e.occurredAt <= :asOf")
+    Long findLastEventIdAt(@Param("budgetId") Long budgetId, @Param("asOf") Instant asOf);
+
+    List<LedgerEvent> findByBudgetIdAndIdGreaterThanAndIdLessThanEqualOrderById(Long budgetId, Long afterId, Long upToId);
+
+    List<LedgerEvent> findByBudgetIdAndIdGreaterThanOrderById(Long budgetId, Long afterId, Pageable pageable);
+
+    @Query("select b.id from Budget b where not exists (select e.id from LedgerEvent e where e.budgetId = b.id)")
+    List<Long> findBudgetIdsWithoutLedger();
+}
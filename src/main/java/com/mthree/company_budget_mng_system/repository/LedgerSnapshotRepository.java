@@ -0,0 +1,17 @@
+package com.mthree.company_budget_mng_system.repository;
+
+import com.mthree.company_budget_mng_system.model.LedgerSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface LedgerSnapshotRepository extends JpaRepository<LedgerSnapshot, Long> {
+    @Query("select max(s.eventId) from LedgerSnapshot s where s.budgetId = :budgetId and s.eventId <= :eventId")
+    Long findLastSnapshotEventId(@Param("budgetId") Long budgetId, @Param("eventId") Long eventId);
+
+    List<LedgerSnapshot> findByBudgetIdAndEventId(Long budgetId, Long eventId);
+}
@@ -0,0 +1,19 @@
+package com.mthree.company_budget_mng_system.repository;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.RollupGranularity;
+
+import java.math.BigDecimal;
+
+/**
+ * Sum of all buckets of one granularity and category of a budget's spend rollups.
+ */
+public interface RollupTotal {
+    Long getBudgetId();
+
+    RollupGranularity getGranularity();
+
+    CategoryType getCategoryType();
+
+    BigDecimal getAmount();
+}
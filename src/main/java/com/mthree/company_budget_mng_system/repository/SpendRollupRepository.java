@@ -0,0 +1,39 @@
+package com.mthree.company_budget_mng_system.repository;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.RollupGranularity;
+import com.mthree.company_budget_mng_system.model.SpendRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface SpendRollupRepository extends JpaRepository<SpendRollup, Long> {
+    List<SpendRollup> findByBudgetIdAndGranularityOrderByBucketStart(Long budgetId, RollupGranularity granularity);
+
+    List<SpendRollup> findByBudgetIdAndGranularityAndCategoryTypeOrderByBucketStart(Long budgetId, RollupGranularity granularity,
+                                                                                     CategoryType categoryType);
+
+    @Query("select r.budgetId as budgetId, r.granularity as granularity, r.categoryType as categoryType, sum(r.amount) as amount " +
+            "from SpendRollup r where r.budgetId in :budgetIds group by r.budgetId, r.granularity, r.categoryType")
+    List<RollupTotal> sumByBudgetGranularityAndCategory(@Param("budgetIds") Collection<Long> budgetIds);
+
+    @Modifying
+    @Query("update SpendRollup r set r.amount = r.amount + :amount, r.expenseCount = r.expenseCount + :count " +
+            "where r.budgetId = :budgetId and r.granularity = :granularity " +
+            "and r.bucketStart = :bucketStart and r.categoryType = :categoryType")
+    int addToBucket(@Param("budgetId") Long budgetId, @Param("granularity") RollupGranularity granularity,
+                    @Param("bucketStart") LocalDate bucketStart, @Param("categoryType") CategoryType categoryType,
+                    @Param("amount") BigDecimal amount, @Param("count") long count);
+
+    @Modifying
+    @Query("delete from SpendRollup r where r.budgetId = :budgetId")
+    int deleteByBudgetId(@Param("budgetId") Long budgetId);
+}
@@ -0,0 +1,16 @@
+package com.mthree.company_budget_mng_system.repository;
+
+import com.mthree.company_budget_mng_system.model.Role;
+
+/**
+ * Login columns of a user, read without the user's expenses.
+ */
+public interface UserCredentials {
+    Long getId();
+
+    String getUsername();
+
+    String getPassword();
+
+    Role getRole();
+}
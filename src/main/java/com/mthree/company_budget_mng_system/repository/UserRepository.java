@@ -2,13 +2,27 @@ package com.mthree.company_budget_mng_system.repository;
 
 import com.mthree.company_budget_mng_system.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
 
+    Optional<UserCredentials> findCredentialsByUsername(String username);
+
+    Optional<UserCredentials> findCredentialsById(Long id);
+
     boolean existsByUsername(String username);
+
+    // Matches case-insensitively through the collation of the username column, which keeps the index usable
+    @Query("select u.username from User u where u.username in :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    List<UserCredentials> findCredentialsByUsernameIn(Collection<String> usernames);
 }
@@ -0,0 +1,34 @@
+package com.mthree.company_budget_mng_system.repository;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.UserSpend;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface UserSpendRepository extends JpaRepository<UserSpend, Long> {
+    List<UserSpend> findByUserIdOrderByBudgetIdAscCategoryTypeAsc(Long userId);
+
+    @Query("select coalesce(sum(s.amount), 0) from UserSpend s where s.userId = :userId and s.budgetId = :budgetId")
+    BigDecimal sumByUserIdAndBudgetId(@Param("userId") Long userId, @Param("budgetId") Long budgetId);
+
+    @Modifying
+    @Query("update UserSpend s set s.amount = s.amount + :amount, s.expenseCount = s.expenseCount + :count " +
+            "where s.userId = :userId and s.budgetId = :budgetId and s.categoryType = :categoryType")
+    int addToTotal(@Param("userId") Long userId, @Param("budgetId") Long budgetId, @Param("categoryType") CategoryType categoryType,
+                   @Param("amount") BigDecimal amount, @Param("count") long count);
+
+    @Modifying
+    @Query("delete from UserSpend s where s.budgetId = :budgetId")
+    int deleteByBudgetId(@Param("budgetId") Long budgetId);
+
+    @Modifying
+    @Query("delete from UserSpend s where s.userId = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+}
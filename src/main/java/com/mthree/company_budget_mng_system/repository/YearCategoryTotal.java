@@ -0,0 +1,16 @@
+package com.mthree.company_budget_mng_system.repository;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+
+import java.math.BigDecimal;
+
+/**
+ * Sum of the expenses of one category in the budget of one year, as returned by grouped expense queries.
+ */
+public interface YearCategoryTotal {
+    Integer getYear();
+
+    CategoryType getCategoryType();
+
+    BigDecimal getAmount();
+}
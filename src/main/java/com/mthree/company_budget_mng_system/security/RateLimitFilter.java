@@ -0,0 +1,116 @@
+package com.mthree.company_budget_mng_system.security;
+
+import com.mthree.company_budget_mng_system.model.BulkheadType;
+import com.mthree.company_budget_mng_system.model.Role;
+import com.mthree.company_budget_mng_system.service.RateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the per-caller rate limit and the read and write bulkheads to API requests. Runs after the token filter,
+ * so authenticated callers are limited by user and role and other callers by client address.
+ */
+@Slf4j
+public class RateLimitFilter extends OncePerRequestFilter {
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    private final RateLimiter rateLimiter;
+
+    public RateLimitFilter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !rateLimiter.isEnabled() || !path(request).startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        long wait;
+        String caller;
+        if (authentication != null && authentication.isAuthenticated() && !(authentication instanceof AnonymousAuthenticationToken)) {
+            caller = authentication.getName();
+            wait = rateLimiter.tryAcquire(caller, roleOf(authentication));
+        } else {
+            caller = request.getRemoteAddr();
+            wait = rateLimiter.tryAcquire(caller, null);
+        }
+        if (wait > 0) {
+            log.warn("Rate limit exceeded by '{}' on {} {}.", caller, request.getMethod(), request.getRequestURI());
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1),
+                    "Too many requests, retry later.");
+            return;
+        }
+
+        BulkheadType bulkhead = bulkheadOf(request);
+        if (bulkhead == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (!rateLimiter.tryEnter(bulkhead)) {
+            log.warn("{} bulkhead is full, rejecting {} {}.", bulkhead, request.getMethod(), request.getRequestURI());
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, 1, "Server is busy, retry later.");
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            rateLimiter.exit(bulkhead);
+        }
+    }
+
+    // Reads share one bulkhead; writes to expenses and budgets get their own, so a flood of them can't block the reads
+    private static BulkheadType bulkheadOf(HttpServletRequest request) {
+        String method = request.getMethod();
+        if (method.equals("GET") || method.equals("HEAD")) {
+            return BulkheadType.READ;
+        }
+        String path = path(request);
+        if (path.startsWith("/api/expenses") || path.startsWith("/api/budgets")) {
+            return BulkheadType.WRITE;
+        }
+        return null;
+    }
+
+    private static Role roleOf(Authentication authentication) {
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            String name = authority.getAuthority();
+            if (name != null && name.startsWith(ROLE_PREFIX)) {
+                try {
+                    return Role.valueOf(name.substring(ROLE_PREFIX.length()));
+                } catch (IllegalArgumentException e) {
+                    // Not one of the application roles
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, long retryAfterSeconds, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfterSeconds)));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write(message);
+    }
+}
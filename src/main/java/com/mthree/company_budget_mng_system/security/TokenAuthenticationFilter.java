@@ -0,0 +1,62 @@
+package com.mthree.company_budget_mng_system.security;
+
+import com.mthree.company_budget_mng_system.exception.UnauthorizedException;
+import com.mthree.company_budget_mng_system.service.TokenService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Authenticates requests carrying a bearer access token from the token alone. Requests without a token
+ * are passed on unauthenticated; requests with an invalid one are rejected with 401.
+ */
+@Slf4j
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+    private static final String PREFIX = TokenService.TOKEN_TYPE + " ";
+
+    private final TokenService tokenService;
+
+    public TokenAuthenticationFilter(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // A stale access token must not prevent getting a new one
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return path.equals("/api/auth/login") || path.equals("/api/auth/refresh");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization == null || !authorization.startsWith(PREFIX)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        try {
+            TokenClaims claims = tokenService.verifyAccessToken(authorization.substring(PREFIX.length()));
+            UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                    claims.sub(), null, List.of(new SimpleGrantedAuthority("ROLE_" + claims.role())));
+            SecurityContextHolder.getContext().setAuthentication(authentication);
+        } catch (UnauthorizedException e) {
+            log.debug("Rejected access token: {}", e.getMessage());
+            SecurityContextHolder.clearContext();
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED, e.getMessage());
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+}
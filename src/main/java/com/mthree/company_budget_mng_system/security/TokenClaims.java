@@ -0,0 +1,12 @@
+package com.mthree.company_budget_mng_system.security;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.mthree.company_budget_mng_system.model.Role;
+
+/**
+ * Claims of an access or refresh token. Times are epoch seconds; gen is the revocation generation current when
+ * the token was issued.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record TokenClaims(String iss, String sub, Role role, String typ, String jti, long iat, long exp, long gen) {
+}
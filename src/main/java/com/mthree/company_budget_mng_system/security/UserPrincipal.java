@@ -0,0 +1,31 @@
+package com.mthree.company_budget_mng_system.security;
+
+import com.mthree.company_budget_mng_system.model.Role;
+import com.mthree.company_budget_mng_system.repository.UserCredentials;
+import lombok.ToString;
+import lombok.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+
+/**
+ * Immutable authentication view of a user, without the user's expenses. It is shared through the user details
+ * cache, so it deliberately does not implement CredentialsContainer: erasing the hash after one authentication
+ * would break the next one.
+ */
+@Value
+public class UserPrincipal implements UserDetails {
+    Long id;
+    String username;
+    @ToString.Exclude
+    String password;
+    Role role;
+    List<GrantedAuthority> authorities;
+
+    public static UserPrincipal of(UserCredentials credentials) {
+        return new UserPrincipal(credentials.getId(), credentials.getUsername(), credentials.getPassword(), credentials.getRole(),
+                List.of(new SimpleGrantedAuthority("ROLE_" + credentials.getRole())));
+    }
+}
@@ -0,0 +1,93 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.BudgetPlanProperties;
+import com.mthree.company_budget_mng_system.model.BudgetPlanConverter;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves budget plans from the {@code budget_category_amounts} table, which held one row per budget and category,
+ * into the plan column of the budget. Runs on startup, before budgets are read, in chunks of budgets that each
+ * commit on their own, so an interrupted migration continues where it stopped. Moved rows are deleted; once the
+ * table is empty it can be dropped.
+ */
+@Slf4j
+@Component
+public class BudgetPlanMigration {
+    private static final String LEGACY_TABLE = "budget_category_amounts";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BudgetPlanProperties properties;
+    private final BudgetPlanConverter converter = new BudgetPlanConverter();
+
+    // Categories are loaded first, so plans of categories added at runtime can be decoded
+    @Autowired
+    public BudgetPlanMigration(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                               BudgetPlanProperties properties, CategoryRegistry categoryRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        if (!properties.isMigrateTable() || !legacyTableExists()) {
+            return;
+        }
+        int migrated = 0;
+        int chunk;
+        do {
+            chunk = transactionTemplate.execute(status -> migrateChunk());
+            migrated += chunk;
+        } while (chunk > 0);
+        if (migrated > 0) {
+            log.info("Moved the plans of {} budget(s) into the plan column.", migrated);
+        }
+    }
+
+    private boolean legacyTableExists() {
+        try {
+            jdbcTemplate.queryForObject("select count(*) from " + LEGACY_TABLE + " where 1 = 0", Long.class);
+            return true;
+        } catch (DataAccessException e) {
+            return false;
+        }
+    }
+
+    private int migrateChunk() {
+        List<Long> budgetIds = jdbcTemplate.queryForList(
+                "select distinct budget_id from " + LEGACY_TABLE + " order by budget_id limit ?",
+                Long.class, properties.getMigrationChunkSize());
+        if (budgetIds.isEmpty()) {
+            return 0;
+        }
+        String in = String.join(",", Collections.nCopies(budgetIds.size(), "?"));
+        Map<Long, Map<CategoryType, BigDecimal>> plans = new HashMap<>();
+        jdbcTemplate.query("select budget_id, category_type, amount from " + LEGACY_TABLE + " where budget_id in (" + in + ")",
+                resultSet -> {
+                    plans.computeIfAbsent(resultSet.getLong(1), id -> new HashMap<>())
+                            .put(CategoryType.fromId(resultSet.getInt(2)), resultSet.getBigDecimal(3));
+                }, budgetIds.toArray());
+        List<Object[]> updates = new ArrayList<>();
+        plans.forEach((budgetId, plan) -> updates.add(new Object[]{converter.convertToDatabaseColumn(plan), budgetId}));
+        // A budget whose plan was already written to the column keeps it, its rows are outdated
+        jdbcTemplate.batchUpdate("update budget set planned_amounts = ? where id = ? and planned_amounts is null", updates);
+        jdbcTemplate.update("delete from " + LEGACY_TABLE + " where budget_id in (" + in + ")", budgetIds.toArray());
+        return budgetIds.size();
+    }
+}
@@ -1,54 +1,99 @@
 package com.mthree.company_budget_mng_system.service;
 
+import com.mthree.company_budget_mng_system.dto.BudgetConflictDTO;
 import com.mthree.company_budget_mng_system.dto.BudgetDTO;
 import com.mthree.company_budget_mng_system.dto.ExpenseDTO;
+import com.mthree.company_budget_mng_system.dto.FieldConflictDTO;
+import com.mthree.company_budget_mng_system.event.BudgetChangedEvent;
 import com.mthree.company_budget_mng_system.exception.BudgetAlreadyExistsException;
+import com.mthree.company_budget_mng_system.exception.BudgetConflictException;
+import com.mthree.company_budget_mng_system.exception.ConflictException;
 import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
 import com.mthree.company_budget_mng_system.mapper.BudgetMapper;
 import com.mthree.company_budget_mng_system.mapper.ExpenseMapper;
 import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.BudgetFieldChange;
 import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.CostCenter;
 import com.mthree.company_budget_mng_system.model.Expense;
 import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import jakarta.persistence.OptimisticLockException;
 import org.springframework.transaction.annotation.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.List;
+import java.util.*;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class BudgetService {
+    private static final String TOTAL_AMOUNT_FIELD = "totalAmount";
+    private static final String YEAR_FIELD = "year";
+
     private final BudgetRepository budgetRepository;
     private final BudgetMapper budgetMapper;
     private final ExpenseMapper expenseMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CostCenterService costCenterService;
+    private final CategoryRegistry categoryRegistry;
+    private final BulkExpenseService bulkExpenseService;
+    private final YearArchiveService yearArchiveService;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxUpdateAttempts;
 
     @Autowired
-    public BudgetService(BudgetRepository budgetRepository, BudgetMapper budgetMapper, ExpenseMapper expenseMapper) {
+    public BudgetService(BudgetRepository budgetRepository, BudgetMapper budgetMapper, ExpenseMapper expenseMapper,
+                         ApplicationEventPublisher eventPublisher, CostCenterService costCenterService,
+                         CategoryRegistry categoryRegistry, BulkExpenseService bulkExpenseService,
+                         YearArchiveService yearArchiveService, PlatformTransactionManager transactionManager,
+                         @Value("${budget.update.max-attempts:3}") int maxUpdateAttempts) {
         this.budgetRepository = budgetRepository;
         this.budgetMapper = budgetMapper;
         this.expenseMapper = expenseMapper;
+        this.eventPublisher = eventPublisher;
+        this.costCenterService = costCenterService;
+        this.categoryRegistry = categoryRegistry;
+        this.bulkExpenseService = bulkExpenseService;
+        this.yearArchiveService = yearArchiveService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxUpdateAttempts = maxUpdateAttempts;
     }
 
     @Transactional
     public BudgetDTO createBudget(BudgetDTO budgetDTO) {
         log.info("Creating new budget");
-        // 1.Check if a budget for the specified year already exists
-        if (budgetRepository.existsByYear(budgetDTO.getYear())) {
-            String message = "A budget for the year " + budgetDTO.getYear() + " already exists.";
+        // 1.Check if a budget for the specified year (and cost center) already exists
+        CostCenter costCenter = budgetDTO.getCostCenterId() == null ? null
+                : costCenterService.findCostCenter(budgetDTO.getCostCenterId());
+        boolean exists = costCenter == null
+                ? budgetRepository.existsByYear(budgetDTO.getYear())
+                : budgetRepository.existsByCostCenterIdAndYear(costCenter.getId(), budgetDTO.getYear());
+        if (exists) {
+            String message = "A budget for the year " + budgetDTO.getYear() + " already exists"
+                    + (costCenter == null ? "." : " for the cost center " + costCenter.getName() + ".");
             log.error(message);
             throw new BudgetAlreadyExistsException(message);
         }
         // 2. Check if amounts sum up to total amount -> IllegalArgumentException
         budgetDTO.validateBudget(budgetDTO);
+        if (budgetDTO.getCategoryTypeAmountDTOS() != null) {
+            budgetDTO.getCategoryTypeAmountDTOS().forEach(categoryDTO -> categoryRegistry.requireActive(categoryDTO.getCategoryType()));
+        }
         // 3. Map BudgetDTO to Budget
         Budget budget = budgetMapper.toEntity(budgetDTO);
+        budget.setCostCenter(costCenter);
         Budget savedBudget = budgetRepository.save(budget);
+        eventPublisher.publishEvent(new BudgetChangedEvent(savedBudget.getId(), false));
         BudgetDTO savedBudgetDTO = budgetMapper.toDto(savedBudget);
         log.info("Creating budget completed.");
         return savedBudgetDTO;
@@ -71,6 +116,16 @@ public class BudgetService {
         return dto;
     }
 
+    /**
+     * Strong ETag of the budget and everything derived from it, read without loading the budget or its expenses.
+     */
+    public String getBudgetETag(Long id) {
+        Long version = budgetRepository.findVersionById(id)
+                .orElseThrow(handleBudgetNotFound());
+        return "\"budget-" + id + "-" + version + "\"";
+    }
+
+    @Coalesced
     public List<ExpenseDTO> getActualExpenses(Long budgetId) {
         log.info("Getting actual expenses");
         // Retrieve the budget by ID
@@ -80,6 +135,11 @@ public class BudgetService {
                     log.error(message);
                     throw new ResourceNotFoundException(message);
                 });
+        if (budget.getArchivedAt() != null) {
+            List<ExpenseDTO> archivedExpenses = yearArchiveService.getExpenses(budgetId);
+            log.info("Actual expenses fetched from the archive");
+            return archivedExpenses;
+        }
 
         // Map the actual expenses from the Budget entity to ExpenseDTOs
         List<ExpenseDTO> expenseDTOs = budget.getActualExpenses().stream()
@@ -89,15 +149,39 @@ public class BudgetService {
         return expenseDTOs;
     }
 
-    @Transactional
+    /**
+     * Updates the budget without holding locks. A request based on an older version is merged field by field with
+     * the changes made since; only fields changed on both sides are reported as a conflict. Updates that lose a race
+     * with a concurrent write are retried on fresh data.
+     */
     public BudgetDTO updateBudget(Long id, BudgetDTO budgetDTO) {
         log.info("Updating budget with id '{}'.", id);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                BudgetDTO updatedBudget = transactionTemplate.execute(status -> applyUpdate(id, budgetDTO));
+                log.info("Update completed.");
+                return updatedBudget;
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                if (attempt >= maxUpdateAttempts) {
+                    String message = "The budget keeps changing concurrently, try again.";
+                    log.error(message);
+                    throw new ConflictException(message);
+                }
+                log.info("Budget with id '{}' changed concurrently, retrying the update (attempt {}).", id, attempt + 1);
+            }
+        }
+    }
+
+    private BudgetDTO applyUpdate(Long id, BudgetDTO budgetDTO) {
         Budget budget = budgetRepository.findById(id)
                 .orElseThrow(handleBudgetNotFound());
+        YearArchiveService.requireNotArchived(budget);
+        long baseVersion = budgetDTO.getVersion() == null ? budget.getVersion() : budgetDTO.getVersion();
+        List<FieldConflictDTO> conflicts = new ArrayList<>();
 
-        budget.setTotalAmount(budgetDTO.getTotalAmount());
-        budget.setYear(budgetDTO.getYear());
-
+        boolean updateTotal = isChangeToApply(budget, TOTAL_AMOUNT_FIELD, budget.getTotalAmount(), budgetDTO.getTotalAmount(), baseVersion, conflicts);
+        boolean updateYear = isChangeToApply(budget, YEAR_FIELD, budget.getYear(), budgetDTO.getYear(), baseVersion, conflicts);
+        Map<CategoryType, BigDecimal> categoryUpdates = new TreeMap<>();
         if (budgetDTO.getCategoryTypeAmountDTOS() != null) {
             for (var categoryDTO : budgetDTO.getCategoryTypeAmountDTOS()) {
                 var categoryType = categoryDTO.getCategoryType();
@@ -105,20 +189,104 @@ public class BudgetService {
 
                 if (budget.getBudgetPlanned().containsKey(categoryType)) {
                     var oldCategoryAmount = budget.getBudgetPlanned().get(categoryType);
+                    if (!isChangeToApply(budget, categoryType.name(), oldCategoryAmount, newCategoryAmount, baseVersion, conflicts)) {
+                        continue;
+                    }
                     var totalActualExpensesForCategory = getTotalActualExpensesForCategory(budget, categoryType);
                     if (isNewAmountOutOfLimits(newCategoryAmount, totalActualExpensesForCategory, oldCategoryAmount)) {
                         sendWarning();
                     }
-                    budget.getBudgetPlanned().put(categoryType, newCategoryAmount);
+                    categoryUpdates.put(categoryType, newCategoryAmount);
                 }
             }
         }
+        if (!conflicts.isEmpty()) {
+            throw conflict(budget, budgetDTO, conflicts);
+        }
+
+        // The version this update will get once it is flushed
+        long nextVersion = budget.getVersion() + 1;
+        if (updateTotal) {
+            recordChange(budget, TOTAL_AMOUNT_FIELD, budget.getTotalAmount(), nextVersion);
+            budget.setTotalAmount(budgetDTO.getTotalAmount());
+        }
+        if (updateYear) {
+            recordChange(budget, YEAR_FIELD, budget.getYear(), nextVersion);
+            budget.setYear(budgetDTO.getYear());
+        }
+        categoryUpdates.forEach((categoryType, amount) -> {
+            recordChange(budget, categoryType.name(), budget.getBudgetPlanned().get(categoryType), nextVersion);
+            budget.getBudgetPlanned().put(categoryType, amount);
+        });
         Budget savedBudget = budgetRepository.save(budget);
+        eventPublisher.publishEvent(new BudgetChangedEvent(id, false));
         BudgetDTO updatedBudget = budgetMapper.toDto(savedBudget);
-        log.info("Update completed.");
+        if (updateTotal || updateYear || !categoryUpdates.isEmpty()) {
+            // The version is only incremented when the change is flushed on commit
+            updatedBudget.setVersion(nextVersion);
+        }
         return updatedBudget;
     }
 
+    /**
+     * Decides whether a requested value has to be written. A field changed after the base version keeps its newer
+     * value when the request only repeats the value the field had at the base version; any other differing value
+     * is a conflict.
+     */
+    private static boolean isChangeToApply(Budget budget, String field, Object currentValue, Object requestedValue,
+                                           long baseVersion, List<FieldConflictDTO> conflicts) {
+        String current = asText(currentValue);
+        String requested = asText(requestedValue);
+        if (Objects.equals(current, requested)) {
+            return false;
+        }
+        // The first change after the base version replaced the value the request was based on
+        Optional<BudgetFieldChange> firstChange = budget.getFieldChanges() == null ? Optional.empty()
+                : budget.getFieldChanges().stream()
+                .filter(change -> change.getField().equals(field) && change.getVersion() > baseVersion)
+                .min(Comparator.comparingLong(BudgetFieldChange::getVersion));
+        if (firstChange.isEmpty()) {
+            return true;
+        }
+        if (!Objects.equals(requested, firstChange.get().getPreviousValue())) {
+            conflicts.add(FieldConflictDTO.builder()
+                    .field(field)
+                    .requestedValue(requested)
+                    .currentValue(current)
+                    .build());
+        }
+        return false;
+    }
+
+    private static void recordChange(Budget budget, String field, Object previousValue, long version) {
+        if (budget.getFieldChanges() == null) {
+            budget.setFieldChanges(new ArrayList<>());
+        }
+        budget.getFieldChanges().add(new BudgetFieldChange(field, version, asText(previousValue)));
+    }
+
+    private static String asText(Object value) {
+        if (value instanceof BigDecimal amount) {
+            return amount.stripTrailingZeros().toPlainString();
+        }
+        return value == null ? null : value.toString();
+    }
+
+    private BudgetConflictException conflict(Budget budget, BudgetDTO budgetDTO, List<FieldConflictDTO> conflicts) {
+        String message = "The budget was changed by someone else in the fields " + conflicts.stream()
+                .map(FieldConflictDTO::getField)
+                .collect(Collectors.joining(", ")) + ".";
+        log.error(message);
+        return new BudgetConflictException(BudgetConflictDTO.builder()
+                .budgetId(budget.getId())
+                .message(message)
+                .requestVersion(budgetDTO.getVersion())
+                .currentVersion(budget.getVersion())
+                .conflicts(conflicts)
+                .current(budgetMapper.toDto(budget))
+                .build());
+    }
+
     private static Supplier<RuntimeException> handleBudgetNotFound() {
         return () -> {
             String message = "Budget with given id doesn't exist";
@@ -141,16 +309,22 @@ public class BudgetService {
     }
 
     private static boolean isNewAmountOutOfLimits(BigDecimal newCategoryAmount, BigDecimal totalActualExpensesForCategory, BigDecimal oldCategoryAmount) {
-        return newCategoryAmount.compareTo(totalActualExpensesForCategory) > 0 && newCategoryAmount.compareTo(oldCategoryAmount) < 0;
+        return newCategoryAmount.compareTo(totalActualExpensesForCategory) < 0 && newCategoryAmount.compareTo(oldCategoryAmount) < 0;
     }
 
-    @Transactional
     public void deleteBudget(Long id) {
         log.info("Removing budget with id '{}'.", id);
-        Budget budget = budgetRepository.findById(id)
+        budgetRepository.findById(id)
                 .orElseThrow(handleBudgetNotFound());
-        budgetRepository.delete(budget);
-        log.info("Removing budget completed");
+        // The expenses go first in short chunks, instead of all of them in the transaction deleting the budget
+        long deleted = bulkExpenseService.deleteAllExpenses(id);
+        transactionTemplate.executeWithoutResult(status -> budgetRepository.findById(id).ifPresent(budget -> {
+            // Expenses added since the last chunk
+            bulkExpenseService.deleteAllExpenses(id);
+            budgetRepository.delete(budget);
+            eventPublisher.publishEvent(new BudgetChangedEvent(id, true));
+        }));
+        log.info("Removing budget and {} expense(s) completed", deleted);
     }
 
     public BigDecimal calculatePercentageOfBudgetUsed(Long budgetId) {
@@ -0,0 +1,393 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.dto.BudgetDTO;
+import com.mthree.company_budget_mng_system.dto.CategoryTypeAmountDTO;
+import com.mthree.company_budget_mng_system.dto.SummaryRebuildDTO;
+import com.mthree.company_budget_mng_system.event.BudgetChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseSnapshot;
+import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.BudgetSummary;
+import com.mthree.company_budget_mng_system.model.CategorySummary;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.BudgetSummaryRepository;
+import com.mthree.company_budget_mng_system.repository.CategorySummaryRepository;
+import com.mthree.company_budget_mng_system.repository.CategoryTotal;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Query side of the budgets. The budget_summary and category_summary tables are projections of the budget and
+ * expense tables, updated in the transaction of every change, so the budget reads are primary key lookups that
+ * compute nothing. The projections can be regenerated from the source tables at any time.
+ */
+@Slf4j
+@Service
+public class BudgetSummaryService {
+    private final BudgetSummaryRepository budgetSummaryRepository;
+    private final CategorySummaryRepository categorySummaryRepository;
+    private final BudgetRepository budgetRepository;
+    private final ExpenseRepository expenseRepository;
+    private final YearArchiveService yearArchiveService;
+    private final TransactionTemplate transactionTemplate;
+    private final int rebuildThreads;
+
+    @Autowired
+    public BudgetSummaryService(BudgetSummaryRepository budgetSummaryRepository, CategorySummaryRepository categorySummaryRepository,
+                                BudgetRepository budgetRepository, ExpenseRepository expenseRepository,
+                                YearArchiveService yearArchiveService, PlatformTransactionManager transactionManager,
+                                @Value("${budget.summary.rebuild-threads:4}") int rebuildThreads) {
+        this.budgetSummaryRepository = budgetSummaryRepository;
+        this.categorySummaryRepository = categorySummaryRepository;
+        this.budgetRepository = budgetRepository;
+        this.expenseRepository = expenseRepository;
+        this.yearArchiveService = yearArchiveService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rebuildThreads = Math.max(1, rebuildThreads);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildMissingSummaries() {
+        try {
+            List<Long> budgetIds = transactionTemplate.execute(status -> budgetSummaryRepository.findBudgetIdsWithoutSummary());
+            if (!budgetIds.isEmpty()) {
+                rebuild(budgetIds);
+                log.info("Built the summaries of {} existing budget(s).", budgetIds.size());
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not build the summaries of existing budgets, they are built on their next change.", e);
+        }
+    }
+
+    @EventListener
+    @Transactional
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        // Deltas per budget, an expense moved to another year changes two budgets
+        Map<Long, Map<CategoryType, BigDecimal>> deltas = new LinkedHashMap<>();
+        addDelta(deltas, event.getPrevious(), true);
+        addDelta(deltas, event.getCurrent(), false);
+        deltas.forEach(this::applySpent);
+    }
+
+    @EventListener
+    @Transactional
+    public void onBudgetChanged(BudgetChangedEvent event) {
+        Long budgetId = event.getBudgetId();
+        if (event.isDeleted()) {
+            categorySummaryRepository.deleteByBudgetId(budgetId);
+            budgetSummaryRepository.findById(budgetId).ifPresent(budgetSummaryRepository::delete);
+            return;
+        }
+        Budget budget = budgetRepository.findById(budgetId).orElse(null);
+        if (budget == null) {
+            return;
+        }
+        BudgetSummary summary = budgetSummaryRepository.findById(budgetId).orElse(null);
+        if (summary == null) {
+            build(budget);
+            return;
+        }
+        Map<CategoryType, BigDecimal> planned = budget.getBudgetPlanned();
+        Map<CategoryType, CategorySummary> rows = new TreeMap<>();
+        for (CategorySummary row : categorySummaryRepository.findByBudgetIdOrderByCategoryType(budgetId)) {
+            rows.put(row.getCategoryType(), row);
+        }
+        for (CategoryType categoryType : CategoryType.values()) {
+            CategorySummary row = rows.get(categoryType);
+            BigDecimal plannedAmount = planned.get(categoryType);
+            if (row == null && plannedAmount != null) {
+                categorySummaryRepository.save(newRow(budgetId, categoryType, plannedAmount, BigDecimal.ZERO));
+            } else if (row != null && !Objects.equals(row.getPlanned(), plannedAmount)) {
+                row.setPlanned(plannedAmount);
+            }
+        }
+        summary.setYear(budget.getYear());
+        summary.setCostCenterId(budget.getCostCenter() == null ? null : budget.getCostCenter().getId());
+        summary.setTotalAmount(budget.getTotalAmount());
+        derive(summary);
+        copyVersionBeforeCommit(budgetId);
+    }
+
+    @Coalesced
+    @Transactional(readOnly = true)
+    public List<BudgetDTO> getAllBudgets() {
+        log.info("Fetching all budgets...");
+        Map<Long, List<CategorySummary>> categories = new HashMap<>();
+        for (CategorySummary row : categorySummaryRepository.findAllByOrderByBudgetIdAscCategoryTypeAsc()) {
+            categories.computeIfAbsent(row.getBudgetId(), id -> new ArrayList<>()).add(row);
+        }
+        List<BudgetDTO> budgetDTOS = budgetSummaryRepository.findAllByOrderByBudgetId().stream()
+                .map(summary -> toDto(summary, categories.getOrDefault(summary.getBudgetId(), List.of())))
+                .toList();
+        log.info("Fetch completed.");
+        return budgetDTOS;
+    }
+
+    @Coalesced
+    @Transactional(readOnly = true)
+    public BudgetDTO getBudgetById(Long id) {
+        log.info("Fetching budget with id '{}'.", id);
+        BudgetSummary summary = findSummary(id);
+        BudgetDTO dto = toDto(summary, categorySummaryRepository.findByBudgetIdOrderByCategoryType(id));
+        log.info("Fetch completed");
+        return dto;
+    }
+
+    @Coalesced
+    public BigDecimal getPercentageOfBudgetUsed(Long budgetId) {
+        log.info("Fetching percentage of the budget used with id '{}'.", budgetId);
+        BudgetSummary summary = findSummary(budgetId);
+        if (summary.getPercentageUsed() == null) {
+            String message = "Total budget amount must be greater than zero.";
+            log.error(message);
+            throw new IllegalStateException(message);
+        }
+        log.info("Fetch completed.");
+        return summary.getPercentageUsed();
+    }
+
+    @Coalesced
+    public BigDecimal getRestOfBudget(Long budgetId) {
+        log.info("Fetching the rest of the budget with id '{}'.", budgetId);
+        BigDecimal rest = findSummary(budgetId).getRestOfBudget();
+        log.info("Fetch completed.");
+        return rest;
+    }
+
+    /**
+     * Regenerates the summaries of all budgets from the budget and expense tables. Budgets are rebuilt in parallel,
+     * each in its own transaction holding the budget lock, so concurrent expense changes are neither lost nor counted
+     * twice.
+     */
+    public SummaryRebuildDTO rebuildAll() {
+        log.info("Rebuilding all budget summaries.");
+        long start = System.nanoTime();
+        List<Long> budgetIds = transactionTemplate.execute(status -> {
+            categorySummaryRepository.deleteOrphans();
+            budgetSummaryRepository.deleteOrphans();
+            return budgetRepository.findAllIds();
+        });
+        int threads = rebuild(budgetIds);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        log.info("Rebuilding {} budget summaries completed in {} ms.", budgetIds.size(), elapsedMillis);
+        return SummaryRebuildDTO.builder()
+                .budgets(budgetIds.size())
+                .threads(threads)
+                .elapsedMillis(elapsedMillis)
+                .build();
+    }
+
+    /**
+     * Regenerates the summary of one budget in the current transaction; the caller holds the budget lock.
+     */
+    @Transactional
+    public void rebuild(Long budgetId) {
+        log.info("Rebuilding the summary of budget with id '{}'.", budgetId);
+        budgetRepository.findById(budgetId).ifPresent(this::build);
+    }
+
+    private int rebuild(List<Long> budgetIds) {
+        int threads = Math.max(1, Math.min(rebuildThreads, budgetIds.size()));
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "summary-rebuild-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> rebuilds = new ArrayList<>(budgetIds.size());
+            for (Long budgetId : budgetIds) {
+                rebuilds.add(executor.submit(() -> transactionTemplate.executeWithoutResult(status ->
+                        budgetRepository.findByIdForRebuild(budgetId).ifPresent(this::build))));
+            }
+            for (Future<?> rebuild : rebuilds) {
+                rebuild.get();
+            }
+            return threads;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rebuilding the budget summaries.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Rebuilding the budget summaries failed.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes the summary of the budget from its planned amounts and the spend grouped by category. The query sees
+     * the changes of the current transaction; the spend of archived budgets is summed from their archive file.
+     */
+    private void build(Budget budget) {
+        Long budgetId = budget.getId();
+        List<CategoryTotal> categoryTotals = budget.getArchivedAt() == null
+                ? expenseRepository.sumByCategory(budgetId) : yearArchiveService.sumByCategory(budgetId);
+        Map<CategoryType, BigDecimal> spent = new TreeMap<>();
+        for (CategoryTotal categoryTotal : categoryTotals) {
+            spent.put(categoryTotal.getCategoryType(), categoryTotal.getAmount());
+        }
+        categorySummaryRepository.deleteByBudgetId(budgetId);
+        List<CategorySummary> rows = new ArrayList<>();
+        BigDecimal totalSpent = BigDecimal.ZERO;
+        for (CategoryType categoryType : CategoryType.values()) {
+            BigDecimal planned = budget.getBudgetPlanned().get(categoryType);
+            BigDecimal categorySpent = spent.getOrDefault(categoryType, BigDecimal.ZERO);
+            if (planned != null || spent.containsKey(categoryType)) {
+                rows.add(newRow(budgetId, categoryType, planned, categorySpent));
+                totalSpent = totalSpent.add(categorySpent);
+            }
+        }
+        categorySummaryRepository.saveAll(rows);
+
+        BudgetSummary summary = budgetSummaryRepository.findById(budgetId)
+                .orElseGet(() -> BudgetSummary.builder().budgetId(budgetId).build());
+        summary.setYear(budget.getYear());
+        summary.setCostCenterId(budget.getCostCenter() == null ? null : budget.getCostCenter().getId());
+        summary.setTotalAmount(budget.getTotalAmount());
+        summary.setTotalSpent(totalSpent);
+        derive(summary);
+        summary.setBudgetVersion(budget.getVersion());
+        budgetSummaryRepository.save(summary);
+        copyVersionBeforeCommit(budgetId);
+    }
+
+    private void applySpent(Long budgetId, Map<CategoryType, BigDecimal> categoryDeltas) {
+        BudgetSummary summary = budgetSummaryRepository.findById(budgetId).orElse(null);
+        if (summary == null) {
+            // Built from the source tables, which already contain this change
+            budgetRepository.findById(budgetId).ifPresent(this::build);
+            return;
+        }
+        BigDecimal totalDelta = BigDecimal.ZERO;
+        for (Map.Entry<CategoryType, BigDecimal> entry : categoryDeltas.entrySet()) {
+            CategorySummary row = categorySummaryRepository.findByBudgetIdAndCategoryType(budgetId, entry.getKey())
+                    .orElse(null);
+            if (row == null) {
+                categorySummaryRepository.save(newRow(budgetId, entry.getKey(), null, entry.getValue()));
+            } else {
+                row.setSpent(row.getSpent().add(entry.getValue()));
+            }
+            totalDelta = totalDelta.add(entry.getValue());
+        }
+        summary.setTotalSpent(summary.getTotalSpent().add(totalDelta));
+        derive(summary);
+        copyVersionBeforeCommit(budgetId);
+    }
+
+    private static void addDelta(Map<Long, Map<CategoryType, BigDecimal>> deltas, ExpenseSnapshot snapshot, boolean removed) {
+        if (snapshot == null || snapshot.getBudgetId() == null || snapshot.getCategoryType() == null
+                || snapshot.getAmount() == null) {
+            return;
+        }
+        BigDecimal amount = removed ? snapshot.getAmount().negate() : snapshot.getAmount();
+        deltas.computeIfAbsent(snapshot.getBudgetId(), id -> new TreeMap<>())
+                .merge(snapshot.getCategoryType(), amount, BigDecimal::add);
+    }
+
+    // Same figures as calculated by the budget service from the source tables
+    private static void derive(BudgetSummary summary) {
+        BigDecimal totalAmount = summary.getTotalAmount();
+        summary.setRestOfBudget(totalAmount.subtract(summary.getTotalSpent()));
+        summary.setPercentageUsed(totalAmount.signum() == 0 ? null : summary.getTotalSpent()
+                .multiply(BigDecimal.valueOf(100))
+                .divide(totalAmount, 2, RoundingMode.HALF_UP));
+    }
+
+    /**
+     * The version of a budget is only final once the transaction is flushed, and writers may still change the budget
+     * after publishing their event. The versions of all budgets changed in the transaction are copied just before it
+     * commits, by one update that flushes first.
+     */
+    @SuppressWarnings("unchecked")
+    private void copyVersionBeforeCommit(Long budgetId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            budgetSummaryRepository.copyBudgetVersions(List.of(budgetId));
+            return;
+        }
+        Set<Long> budgetIds = (Set<Long>) TransactionSynchronizationManager.getResource(this);
+        if (budgetIds == null) {
+            Set<Long> changedBudgetIds = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(this, changedBudgetIds);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    budgetSummaryRepository.copyBudgetVersions(changedBudgetIds);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(BudgetSummaryService.this);
+                }
+            });
+            budgetIds = changedBudgetIds;
+        }
+        budgetIds.add(budgetId);
+    }
+
+    private static CategorySummary newRow(Long budgetId, CategoryType categoryType, BigDecimal planned, BigDecimal spent) {
+        return CategorySummary.builder()
+                .budgetId(budgetId)
+                .categoryType(categoryType)
+                .planned(planned)
+                .spent(spent)
+                .build();
+    }
+
+    private static BudgetDTO toDto(BudgetSummary summary, List<CategorySummary> categories) {
+        List<CategoryTypeAmountDTO> categoryTypeAmountDTOS = new ArrayList<>();
+        for (CategorySummary category : categories) {
+            if (category.getPlanned() != null) {
+                categoryTypeAmountDTOS.add(CategoryTypeAmountDTO.builder()
+                        .categoryType(category.getCategoryType())
+                        .amount(category.getPlanned())
+                        .build());
+            }
+        }
+        return BudgetDTO.builder()
+                .id(summary.getBudgetId())
+                .totalAmount(summary.getTotalAmount())
+                .year(summary.getYear())
+                .costCenterId(summary.getCostCenterId())
+                .categoryTypeAmountDTOS(categoryTypeAmountDTOS)
+                .version(summary.getBudgetVersion())
+                .build();
+    }
+
+    private BudgetSummary findSummary(Long budgetId) {
+        return budgetSummaryRepository.findById(budgetId)
+                .orElseThrow(handleBudgetNotFound());
+    }
+
+    private static Supplier<RuntimeException> handleBudgetNotFound() {
+        return () -> {
+            String message = "Budget with given id doesn't exist";
+            log.error(message);
+            throw new ResourceNotFoundException(message);
+        };
+    }
+}
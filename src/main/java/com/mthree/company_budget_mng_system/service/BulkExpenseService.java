@@ -0,0 +1,162 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.dto.BulkDeleteResultDTO;
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseSnapshot;
+import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.CategoryTotal;
+import com.mthree.company_budget_mng_system.repository.ExpenseGroupTotal;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Deletes the expenses of a budget with set-based statements, optionally copying them to the expense archive
+ * first. Expenses are removed in chunks, each in its own transaction holding the budget lock, so expense writes of
+ * the budget wait for one chunk at most. Derived totals are kept in step by publishing one expense change per
+ * category, day and user of a chunk instead of one per expense.
+ */
+@Slf4j
+@Service
+public class BulkExpenseService {
+    private final BudgetRepository budgetRepository;
+    private final ExpenseRepository expenseRepository;
+    private final ThresholdService thresholdService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Clock clock;
+
+    @Autowired
+    public BulkExpenseService(BudgetRepository budgetRepository, ExpenseRepository expenseRepository,
+                              ThresholdService thresholdService, ApplicationEventPublisher eventPublisher,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${budget.expenses.bulk-chunk-size:1000}") int chunkSize) {
+        this(budgetRepository, expenseRepository, thresholdService, eventPublisher, transactionManager, chunkSize,
+                Clock.systemUTC());
+    }
+
+    BulkExpenseService(BudgetRepository budgetRepository, ExpenseRepository expenseRepository,
+                       ThresholdService thresholdService, ApplicationEventPublisher eventPublisher,
+                       PlatformTransactionManager transactionManager, int chunkSize, Clock clock) {
+        this.budgetRepository = budgetRepository;
+        this.expenseRepository = expenseRepository;
+        this.thresholdService = thresholdService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.clock = clock;
+    }
+
+    /**
+     * Deletes the expenses of the budget matching all given filters; null filters match every expense.
+     *
+     * @param archive copy the expenses to the expense archive before deleting them
+     */
+    public BulkDeleteResultDTO deleteExpenses(Long budgetId, LocalDate from, LocalDate to, CategoryType categoryType,
+                                              boolean archive) {
+        log.info("Removing expenses of budget with id '{}' between {} and {} of category {}.", budgetId, from, to, categoryType);
+        if (from != null && to != null && from.isAfter(to)) {
+            String message = "The start of the date range must not be after its end.";
+            log.error(message);
+            throw new IllegalArgumentException(message);
+        }
+        if (!budgetRepository.existsById(budgetId)) {
+            String message = "Budget with given id doesn't exist";
+            log.error(message);
+            throw new ResourceNotFoundException(message);
+        }
+        long started = System.nanoTime();
+        long deleted = 0;
+        int chunks = 0;
+        int chunk;
+        do {
+            chunk = transactionTemplate.execute(status -> deleteChunk(budgetId, from, to, categoryType, archive));
+            deleted += chunk;
+            chunks++;
+        } while (chunk == chunkSize);
+        log.info("Removing {} expense(s) in {} chunk(s) completed.", deleted, chunks);
+        return BulkDeleteResultDTO.builder()
+                .budgetId(budgetId)
+                .deleted(deleted)
+                .archived(archive)
+                .chunks(chunks)
+                .elapsedMillis((System.nanoTime() - started) / 1_000_000)
+                .build();
+    }
+
+    /**
+     * Deletes all expenses of the budget, as the first step of deleting the budget. Joins the current transaction
+     * if there is one.
+     */
+    public long deleteAllExpenses(Long budgetId) {
+        long deleted = 0;
+        int chunk;
+        do {
+            chunk = transactionTemplate.execute(status -> deleteChunk(budgetId, null, null, null, false));
+            deleted += chunk;
+        } while (chunk == chunkSize);
+        return deleted;
+    }
+
+    private int deleteChunk(Long budgetId, LocalDate from, LocalDate to, CategoryType categoryType, boolean archive) {
+        // Expense writes lock the budget too, so the chunk can't change between reading and deleting it
+        Budget budget = budgetRepository.findByIdForUpdate(budgetId).orElse(null);
+        if (budget == null) {
+            return 0;
+        }
+        List<Long> ids = expenseRepository.findIdsByBudgetId(budgetId, from, to, categoryType, PageRequest.of(0, chunkSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<ExpenseGroupTotal> groups = expenseRepository.sumByGroupIdIn(ids);
+        if (archive) {
+            expenseRepository.archiveByIdIn(ids, clock.instant());
+        }
+        expenseRepository.deleteByIdIn(ids);
+
+        Map<CategoryType, BigDecimal> deletedByCategory = new TreeMap<>();
+        for (ExpenseGroupTotal group : groups) {
+            eventPublisher.publishEvent(new ExpenseChangedEvent(null, new ExpenseSnapshot(budgetId, group.getCategoryType(),
+                    group.getDate(), group.getAmount(), group.getUserId(), group.getExpenseCount()), null));
+            deletedByCategory.merge(group.getCategoryType(), group.getAmount(), BigDecimal::add);
+        }
+        evaluateThresholds(budget, deletedByCategory);
+        return ids.size();
+    }
+
+    // Deletions may un-cross alert levels of the categories and of the budget
+    private void evaluateThresholds(Budget budget, Map<CategoryType, BigDecimal> deletedByCategory) {
+        Map<CategoryType, BigDecimal> remaining = new TreeMap<>();
+        for (CategoryTotal total : expenseRepository.sumByCategory(budget.getId())) {
+            remaining.put(total.getCategoryType(), total.getAmount());
+        }
+        BigDecimal remainingTotal = BigDecimal.ZERO;
+        BigDecimal deletedTotal = BigDecimal.ZERO;
+        for (BigDecimal amount : remaining.values()) {
+            remainingTotal = remainingTotal.add(amount);
+        }
+        for (Map.Entry<CategoryType, BigDecimal> deleted : deletedByCategory.entrySet()) {
+            BigDecimal categoryRemaining = remaining.getOrDefault(deleted.getKey(), BigDecimal.ZERO);
+            thresholdService.evaluate(budget, deleted.getKey(), categoryRemaining.add(deleted.getValue()), categoryRemaining);
+            deletedTotal = deletedTotal.add(deleted.getValue());
+        }
+        thresholdService.evaluate(budget, null, remainingTotal.add(deletedTotal), remainingTotal);
+    }
+}
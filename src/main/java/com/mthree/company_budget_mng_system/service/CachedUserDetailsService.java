@@ -0,0 +1,96 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.UserCacheProperties;
+import com.mthree.company_budget_mng_system.event.UserChangedEvent;
+import com.mthree.company_budget_mng_system.repository.UserRepository;
+import com.mthree.company_budget_mng_system.security.UserPrincipal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads users for Spring Security with their role as authority. Users are read without their expenses and kept
+ * for a limited time, so repeated authentications and role checks don't query the database. Updating or deleting
+ * a user evicts it once the change is committed.
+ */
+@Slf4j
+@Service
+public class CachedUserDetailsService implements UserDetailsService {
+
+    private final UserRepository userRepository;
+    private final UserCacheProperties properties;
+    private final Clock clock;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // Incremented on every eviction; a load that overlapped one may have read the old row and is not cached
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Autowired
+    public CachedUserDetailsService(UserRepository userRepository, UserCacheProperties properties) {
+        this(userRepository, properties, Clock.systemUTC());
+    }
+
+    CachedUserDetailsService(UserRepository userRepository, UserCacheProperties properties, Clock clock) {
+        this.userRepository = userRepository;
+        this.properties = properties;
+        this.clock = clock;
+    }
+
+    @Override
+    public UserPrincipal loadUserByUsername(String username) {
+        long now = clock.millis();
+        Entry cached = entries.get(username);
+        if (cached != null && now < cached.expiresAt()) {
+            return cached.principal();
+        }
+        long generation = invalidations.get();
+        UserPrincipal principal = userRepository.findCredentialsByUsername(username)
+                .map(UserPrincipal::of)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        if (invalidations.get() == generation) {
+            entries.put(username, new Entry(principal, now + properties.getTtl().toMillis()));
+            evictIfFull();
+        }
+        return principal;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        log.info("Evicting cached user with username '{}'.", event.getUsername());
+        invalidations.incrementAndGet();
+        entries.remove(event.getUsername());
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void evictIfFull() {
+        if (entries.size() <= properties.getMaxEntries()) {
+            return;
+        }
+        long now = clock.millis();
+        entries.values().removeIf(entry -> now >= entry.expiresAt());
+        int excess = entries.size() - properties.getMaxEntries();
+        if (excess > 0) {
+            entries.entrySet().stream()
+                    .sorted(Comparator.comparingLong(e -> e.getValue().expiresAt()))
+                    .limit(excess)
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(entries::remove);
+        }
+    }
+
+    private record Entry(UserPrincipal principal, long expiresAt) {
+    }
+}
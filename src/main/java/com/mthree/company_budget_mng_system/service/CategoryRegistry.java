@@ -0,0 +1,260 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.dto.CategoryDTO;
+import com.mthree.company_budget_mng_system.event.CategoryChangedEvent;
+import com.mthree.company_budget_mng_system.exception.ConflictException;
+import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
+import com.mthree.company_budget_mng_system.model.Category;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.repository.CategoryRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Holds the expense categories of the {@code category} table in memory. The categories are read into an immutable
+ * snapshot indexed by category id, which is replaced as a whole after every change and on a schedule, so checking
+ * a category on the expense path is an array read without locks or allocations. A category is usable while it and
+ * all of its parents are active.
+ */
+@Slf4j
+@Service
+public class CategoryRegistry {
+    private final CategoryRepository categoryRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile Snapshot snapshot = Snapshot.of(builtInCategories());
+
+    @Autowired
+    public CategoryRegistry(CategoryRepository categoryRepository, ApplicationEventPublisher eventPublisher,
+                            PlatformTransactionManager transactionManager) {
+        this.categoryRepository = categoryRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Loads the categories before any expense is read, adding the built-in categories to an empty table first.
+     */
+    @PostConstruct
+    public void load() {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (categoryRepository.count() == 0) {
+                    categoryRepository.saveAll(builtInCategories());
+                    log.info("Added the built-in categories.");
+                }
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.info("The built-in categories were added by another instance.");
+        }
+        refresh();
+    }
+
+    @Scheduled(initialDelayString = "#{@categoryProperties.refreshInterval.toMillis()}",
+            fixedDelayString = "#{@categoryProperties.refreshInterval.toMillis()}")
+    public void refresh() {
+        List<Category> categories = transactionTemplate.execute(status -> categoryRepository.findAllByOrderByIdAsc());
+        for (Category category : categories) {
+            CategoryType.register(category.getId(), category.getCode());
+        }
+        snapshot = Snapshot.of(categories);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        log.info("Reloading categories after a change of category '{}'.", event.getCode());
+        refresh();
+    }
+
+    public boolean isActive(CategoryType categoryType) {
+        return snapshot.active[categoryType.ordinal()];
+    }
+
+    /**
+     * Rejects new expenses and plans of inactive categories. Existing ones keep their category.
+     */
+    public void requireActive(CategoryType categoryType) {
+        if (categoryType != null && !isActive(categoryType)) {
+            String message = "The category " + categoryType + " is not active.";
+            log.error(message);
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    /**
+     * The category with the given code, if the table has one.
+     */
+    public Optional<CategoryType> findByCode(String code) {
+        for (Category category : snapshot.categories) {
+            if (category != null && category.getCode().equals(code)) {
+                return Optional.of(CategoryType.fromId(category.getId()));
+            }
+        }
+        return Optional.empty();
+    }
+
+    public List<CategoryDTO> getAllCategories() {
+        log.info("Fetching all categories...");
+        Snapshot current = snapshot;
+        List<CategoryDTO> categories = new ArrayList<>();
+        for (Category category : current.categories) {
+            if (category != null) {
+                Category parent = category.getParentId() == null ? null : current.categories[category.getParentId()];
+                categories.add(toDto(category, parent == null ? null : parent.getCode(), current.active[category.getId()]));
+            }
+        }
+        log.info("Fetch completed.");
+        return categories;
+    }
+
+    @Transactional
+    public CategoryDTO createCategory(CategoryDTO categoryDTO) {
+        log.info("Creating category '{}'.", categoryDTO.getCode());
+        if (categoryDTO.getCode() == null) {
+            handleIllegalArgument("Provide the code of the category.");
+        }
+        if (categoryRepository.existsByCode(categoryDTO.getCode())) {
+            handleConflict("Category with code " + categoryDTO.getCode() + " already exists.");
+        }
+        int id = categoryRepository.findMaxId() + 1;
+        if (id >= CategoryType.MAX_CATEGORIES) {
+            handleIllegalArgument("No more than " + CategoryType.MAX_CATEGORIES + " categories are supported.");
+        }
+        Category category = Category.builder()
+                .id(id)
+                .code(categoryDTO.getCode())
+                .name(categoryDTO.getName())
+                .parentId(findParentId(categoryDTO.getParentCode(), null))
+                .active(categoryDTO.getActive() == null || categoryDTO.getActive())
+                .build();
+        try {
+            categoryRepository.saveAndFlush(category);
+        } catch (DataIntegrityViolationException e) {
+            // Ids are handed out in order, so two categories created at the same time may get the same one
+            handleConflict("Another category was created at the same time, try again.");
+        }
+        eventPublisher.publishEvent(new CategoryChangedEvent(category.getCode()));
+        log.info("Creating category completed.");
+        return toDto(category, categoryDTO.getParentCode(), null);
+    }
+
+    @Transactional
+    public CategoryDTO updateCategory(String code, CategoryDTO categoryDTO) {
+        log.info("Updating category '{}'.", code);
+        Category category = categoryRepository.findByCode(code)
+                .orElseThrow(handleCategoryNotFound(code));
+        category.setName(categoryDTO.getName());
+        category.setParentId(findParentId(categoryDTO.getParentCode(), category.getId()));
+        if (categoryDTO.getActive() != null) {
+            category.setActive(categoryDTO.getActive());
+        }
+        eventPublisher.publishEvent(new CategoryChangedEvent(code));
+        log.info("Updating category completed.");
+        return toDto(category, categoryDTO.getParentCode(), null);
+    }
+
+    private Integer findParentId(String parentCode, Integer id) {
+        if (parentCode == null) {
+            return null;
+        }
+        Category parent = categoryRepository.findByCode(parentCode)
+                .orElseThrow(handleCategoryNotFound(parentCode));
+        // Walks up from the new parent, which must not reach the category itself
+        Snapshot current = snapshot;
+        Integer ancestor = parent.getId();
+        for (int depth = 0; ancestor != null && depth < CategoryType.MAX_CATEGORIES; depth++) {
+            if (ancestor.equals(id)) {
+                handleIllegalArgument("A category can't be placed below itself.");
+            }
+            Category category = current.categories[ancestor];
+            ancestor = category == null ? null : category.getParentId();
+        }
+        return parent.getId();
+    }
+
+    private static CategoryDTO toDto(Category category, String parentCode, Boolean effectiveActive) {
+        return CategoryDTO.builder()
+                .id(category.getId())
+                .code(category.getCode())
+                .name(category.getName())
+                .parentCode(parentCode)
+                .active(category.isActive())
+                .effectiveActive(effectiveActive)
+                .build();
+    }
+
+    private static List<Category> builtInCategories() {
+        return Arrays.stream(CategoryType.values())
+                .map(categoryType -> Category.builder()
+                        .id(categoryType.ordinal())
+                        .code(categoryType.name())
+                        .name(categoryType.name().charAt(0) + categoryType.name().substring(1).toLowerCase())
+                        .active(true)
+                        .build())
+                .toList();
+    }
+
+    private static void handleIllegalArgument(String message) {
+        log.error(message);
+        throw new IllegalArgumentException(message);
+    }
+
+    private static void handleConflict(String message) {
+        log.error(message);
+        throw new ConflictException(message);
+    }
+
+    private static Supplier<ResourceNotFoundException> handleCategoryNotFound(String code) {
+        return () -> {
+            String message = "Category not found with code " + code;
+            log.error(message);
+            throw new ResourceNotFoundException(message);
+        };
+    }
+
+    /**
+     * The categories by id, with the active flags already combined with those of the parents.
+     */
+    private static final class Snapshot {
+        private final Category[] categories = new Category[CategoryType.MAX_CATEGORIES];
+        private final boolean[] active = new boolean[CategoryType.MAX_CATEGORIES];
+
+        private static Snapshot of(List<Category> categories) {
+            Snapshot snapshot = new Snapshot();
+            for (Category category : categories) {
+                snapshot.categories[category.getId()] = category;
+            }
+            for (Category category : categories) {
+                boolean active = true;
+                // Bounded by the number of categories, in case a cycle was written to the table directly
+                Integer id = category.getId();
+                for (int depth = 0; id != null && depth < CategoryType.MAX_CATEGORIES; depth++) {
+                    Category ancestor = snapshot.categories[id];
+                    if (ancestor == null || !ancestor.isActive()) {
+                        active = false;
+                        break;
+                    }
+                    id = ancestor.getParentId();
+                }
+                snapshot.active[category.getId()] = active && id == null;
+            }
+            return snapshot;
+        }
+    }
+}
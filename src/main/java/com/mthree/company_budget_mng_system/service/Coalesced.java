@@ -0,0 +1,15 @@
+package com.mthree.company_budget_mng_system.service;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a read method whose concurrent calls with equal arguments may share one execution, see {@link RequestCoalescer}.
+ * Callers receive the same result instance, so they must not modify it.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Coalesced {
+}
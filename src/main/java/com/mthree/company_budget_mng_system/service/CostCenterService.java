@@ -0,0 +1,264 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.dto.CostCenterDTO;
+import com.mthree.company_budget_mng_system.dto.CostCenterRollupDTO;
+import com.mthree.company_budget_mng_system.event.BudgetChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseSnapshot;
+import com.mthree.company_budget_mng_system.exception.ConflictException;
+import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CostCenter;
+import com.mthree.company_budget_mng_system.model.CostCenterRollup;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.CategoryTotal;
+import com.mthree.company_budget_mng_system.repository.CostCenterBudgetTotals;
+import com.mthree.company_budget_mng_system.repository.CostCenterRepository;
+import com.mthree.company_budget_mng_system.repository.CostCenterRollupRepository;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Manages the cost center tree and its rollups. Every change of a budget or expense of a cost center adds its delta
+ * to one rollup row per level of the tree, with one statement, so the utilization of any subtree is a single row
+ * read. The path of a cost center lists its ancestors, so they are found without walking the tree.
+ */
+@Slf4j
+@Service
+public class CostCenterService {
+    private final CostCenterRepository costCenterRepository;
+    private final CostCenterRollupRepository rollupRepository;
+    private final BudgetRepository budgetRepository;
+    private final ExpenseRepository expenseRepository;
+
+    @Autowired
+    public CostCenterService(CostCenterRepository costCenterRepository, CostCenterRollupRepository rollupRepository,
+                             BudgetRepository budgetRepository, ExpenseRepository expenseRepository) {
+        this.costCenterRepository = costCenterRepository;
+        this.rollupRepository = rollupRepository;
+        this.budgetRepository = budgetRepository;
+        this.expenseRepository = expenseRepository;
+    }
+
+    @Transactional
+    public CostCenterDTO createCostCenter(CostCenterDTO costCenterDTO) {
+        log.info("Creating cost center '{}'.", costCenterDTO.getName());
+        CostCenter parent = costCenterDTO.getParentId() == null ? null
+                : costCenterRepository.findById(costCenterDTO.getParentId())
+                .orElseThrow(handleCostCenterNotFound(costCenterDTO.getParentId()));
+        CostCenter costCenter = costCenterRepository.save(CostCenter.builder()
+                .name(costCenterDTO.getName())
+                .parent(parent)
+                .path("/")
+                .depth(parent == null ? 0 : parent.getDepth() + 1)
+                .build());
+        // The path ends with the own id, which is only known once the cost center is saved
+        costCenter.setPath((parent == null ? "/" : parent.getPath()) + costCenter.getId() + "/");
+        log.info("Creating cost center completed.");
+        return toDto(costCenter);
+    }
+
+    @Transactional(readOnly = true)
+    public List<CostCenterDTO> getAllCostCenters() {
+        log.info("Fetching all cost centers...");
+        // Ordered by path, so every cost center follows its parent
+        List<CostCenterDTO> costCenters = costCenterRepository.findAllByOrderByPathAsc().stream()
+                .map(CostCenterService::toDto)
+                .toList();
+        log.info("Fetch completed.");
+        return costCenters;
+    }
+
+    @Transactional(readOnly = true)
+    public CostCenterDTO getCostCenterById(Long id) {
+        log.info("Fetching cost center with id '{}'.", id);
+        CostCenterDTO costCenter = toDto(findCostCenter(id));
+        log.info("Fetch completed.");
+        return costCenter;
+    }
+
+    public CostCenter findCostCenter(Long id) {
+        return costCenterRepository.findById(id)
+                .orElseThrow(handleCostCenterNotFound(id));
+    }
+
+    @Transactional
+    public void deleteCostCenter(Long id) {
+        log.info("Removing cost center with id '{}'.", id);
+        CostCenter costCenter = findCostCenter(id);
+        if (costCenterRepository.existsByParentId(id)) {
+            handleConflict("The cost center still has cost centers below it.");
+        }
+        if (budgetRepository.existsByCostCenterId(id)) {
+            handleConflict("The cost center still has budgets.");
+        }
+        // Without budgets in its subtree all rollups of the cost center are zero
+        rollupRepository.deleteByCostCenterId(id);
+        costCenterRepository.delete(costCenter);
+        log.info("Removing cost center completed.");
+    }
+
+    @Transactional(readOnly = true)
+    public CostCenterRollupDTO getRollup(Long id, int year) {
+        log.info("Fetching rollup of cost center with id '{}' for the year {}.", id, year);
+        CostCenter costCenter = findCostCenter(id);
+        CostCenterRollup rollup = rollupRepository.findByCostCenterIdAndYear(id, year)
+                .orElseGet(() -> emptyRollup(id, year));
+        BigDecimal planned = rollup.getSubtreePlannedAmount();
+        BigDecimal spent = rollup.getSubtreeSpent();
+        CostCenterRollupDTO rollupDTO = CostCenterRollupDTO.builder()
+                .costCenterId(id)
+                .name(costCenter.getName())
+                .year(year)
+                .budgetId(rollup.getBudgetId())
+                .plannedAmount(rollup.getPlannedAmount())
+                .spent(rollup.getSpent())
+                .subtreePlannedAmount(planned)
+                .subtreeSpent(spent)
+                .subtreePercentageUsed(planned.signum() == 0 ? null : spent
+                        .multiply(BigDecimal.valueOf(100))
+                        .divide(planned, 2, RoundingMode.HALF_UP))
+                .subtreeRest(planned.subtract(spent))
+                .build();
+        log.info("Fetch completed.");
+        return rollupDTO;
+    }
+
+    @EventListener
+    @Transactional
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        ExpenseSnapshot previous = event.getPrevious();
+        ExpenseSnapshot current = event.getCurrent();
+        if (previous != null && current != null && Objects.equals(previous.getBudgetId(), current.getBudgetId())) {
+            addSpent(current.getBudgetId(), amount(current).subtract(amount(previous)));
+            return;
+        }
+        if (previous != null) {
+            addSpent(previous.getBudgetId(), amount(previous).negate());
+        }
+        if (current != null) {
+            addSpent(current.getBudgetId(), amount(current));
+        }
+    }
+
+    @EventListener
+    @Transactional
+    public void onBudgetChanged(BudgetChangedEvent event) {
+        Budget budget = event.isDeleted() ? null : budgetRepository.findById(event.getBudgetId()).orElse(null);
+        CostCenter costCenter = budget == null ? null : budget.getCostCenter();
+        CostCenterBudgetTotals totals = rollupRepository.findTotalsByBudgetId(event.getBudgetId()).orElse(null);
+        if (totals != null && (costCenter == null || !totals.getCostCenterId().equals(costCenter.getId())
+                || !totals.getYear().equals(budget.getYear()))) {
+            // The budget is gone or moved to another year, so its amounts leave the rollups of the old year
+            rollupRepository.setBudget(totals.getCostCenterId(), totals.getYear(), null, BigDecimal.ZERO, BigDecimal.ZERO);
+            rollupRepository.addToSubtree(getPathIds(totals.getCostCenterId()), totals.getYear(),
+                    totals.getPlannedAmount().negate(), totals.getSpent().negate());
+            totals = null;
+        }
+        if (costCenter == null) {
+            return;
+        }
+        List<Long> pathIds = getPathIds(costCenter.getId());
+        if (totals == null) {
+            BigDecimal spent = expenseRepository.sumByCategory(budget.getId()).stream()
+                    .map(CategoryTotal::getAmount)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            createMissingRollups(pathIds, budget.getYear());
+            rollupRepository.setBudget(costCenter.getId(), budget.getYear(), budget.getId(), budget.getTotalAmount(), spent);
+            rollupRepository.addToSubtree(pathIds, budget.getYear(), budget.getTotalAmount(), spent);
+        } else {
+            BigDecimal planned = budget.getTotalAmount().subtract(totals.getPlannedAmount());
+            if (planned.signum() != 0) {
+                rollupRepository.addToBudget(budget.getId(), planned, BigDecimal.ZERO);
+                rollupRepository.addToSubtree(pathIds, budget.getYear(), planned, BigDecimal.ZERO);
+            }
+        }
+    }
+
+    private void addSpent(Long budgetId, BigDecimal amount) {
+        if (budgetId == null || amount.signum() == 0) {
+            return;
+        }
+        // Budgets of the whole company have no rollup
+        rollupRepository.findTotalsByBudgetId(budgetId).ifPresent(totals -> {
+            rollupRepository.addToBudget(budgetId, BigDecimal.ZERO, amount);
+            rollupRepository.addToSubtree(getPathIds(totals.getCostCenterId()), totals.getYear(), BigDecimal.ZERO, amount);
+        });
+    }
+
+    /**
+     * Creates the rollups of the cost centers that had no budget in their subtree in the year yet. The cost centers
+     * are locked first, so concurrent budgets below a common ancestor don't both create its rollup.
+     */
+    private void createMissingRollups(List<Long> pathIds, int year) {
+        costCenterRepository.lockByIdIn(pathIds);
+        Set<Long> missing = new HashSet<>(pathIds);
+        missing.removeAll(rollupRepository.findCostCenterIdsByYear(pathIds, year));
+        for (Long costCenterId : missing) {
+            rollupRepository.save(emptyRollup(costCenterId, year));
+        }
+    }
+
+    // The cost center and all of its ancestors
+    private List<Long> getPathIds(Long costCenterId) {
+        String path = costCenterRepository.findPathById(costCenterId)
+                .orElseThrow(handleCostCenterNotFound(costCenterId));
+        List<Long> ids = new ArrayList<>();
+        for (String id : path.split("/")) {
+            if (!id.isEmpty()) {
+                ids.add(Long.valueOf(id));
+            }
+        }
+        return ids;
+    }
+
+    private static BigDecimal amount(ExpenseSnapshot snapshot) {
+        return snapshot.getAmount() == null ? BigDecimal.ZERO : snapshot.getAmount();
+    }
+
+    private static CostCenterRollup emptyRollup(Long costCenterId, int year) {
+        return CostCenterRollup.builder()
+                .costCenterId(costCenterId)
+                .year(year)
+                .plannedAmount(BigDecimal.ZERO)
+                .spent(BigDecimal.ZERO)
+                .subtreePlannedAmount(BigDecimal.ZERO)
+                .subtreeSpent(BigDecimal.ZERO)
+                .build();
+    }
+
+    private static CostCenterDTO toDto(CostCenter costCenter) {
+        return CostCenterDTO.builder()
+                .id(costCenter.getId())
+                .name(costCenter.getName())
+                .parentId(costCenter.getParent() == null ? null : costCenter.getParent().getId())
+                .depth(costCenter.getDepth())
+                .build();
+    }
+
+    private static void handleConflict(String message) {
+        log.error(message);
+        throw new ConflictException(message);
+    }
+
+    private static Supplier<ResourceNotFoundException> handleCostCenterNotFound(Long id) {
+        return () -> {
+            String message = "Cost center not found with id " + id;
+            log.error(message);
+            throw new ResourceNotFoundException(message);
+        };
+    }
+}
@@ -0,0 +1,397 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Column-oriented file holding the expenses of one closed budget year. The values of each column are stored together
+ * and deflated on their own, so a query only inflates the columns it reads, and the header keeps the minimum and
+ * maximum of every column, so files that can't match a lookup are skipped without inflating anything. A file is
+ * written once to a temporary file and moved into place, and is only read through a memory mapping afterwards.
+ * <p>
+ * Layout: {@code [int magic][byte version][long budget id][long cost center id, 0 for none][int year][int rows]
+ * [byte columns]}, one entry per column {@code [byte column][int offset][int compressed length][int raw length]
+ * [long min][long max][int crc32 of the raw bytes]}, then the deflated columns. Rows are ordered by id. Ids and dates
+ * (epoch days) are stored as differences to the previous row, amounts in cents, users as their id or 0 for none, and
+ * descriptions as their UTF-8 length plus one (0 for none) followed by the bytes; all numbers are variable-length.
+ * The statistics of descriptions are their lengths.
+ */
+public final class ExpenseColumnFile {
+    static final String SUFFIX = ".expcol";
+    private static final int MAGIC = 0x45585043;
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = Integer.BYTES + 1 + Long.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES + 1;
+    private static final int ENTRY_SIZE = 1 + Integer.BYTES * 3 + Long.BYTES * 2 + Integer.BYTES;
+    private static final int AMOUNT_SCALE = 2;
+
+    public enum Column {
+        ID, DATE, CATEGORY, AMOUNT, USER, DESCRIPTION
+    }
+
+    public record ColumnStats(long min, long max, int compressedLength, int rawLength) {
+    }
+
+    private record Entry(int offset, ColumnStats stats, int checksum) {
+    }
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final long budgetId;
+    private final Long costCenterId;
+    private final int year;
+    private final int rows;
+    private final Entry[] entries = new Entry[Column.values().length];
+
+    private ExpenseColumnFile(Path path, MappedByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.get(Integer.BYTES) != VERSION) {
+            throw corrupt("has no valid header");
+        }
+        int position = Integer.BYTES + 1;
+        budgetId = buffer.getLong(position);
+        long costCenter = buffer.getLong(position + Long.BYTES);
+        costCenterId = costCenter == 0 ? null : costCenter;
+        year = buffer.getInt(position + Long.BYTES * 2);
+        rows = buffer.getInt(position + Long.BYTES * 2 + Integer.BYTES);
+        int columns = buffer.get(HEADER_SIZE - 1);
+        if (rows < 0 || columns != entries.length || HEADER_SIZE + columns * ENTRY_SIZE > buffer.capacity()) {
+            throw corrupt("has an invalid header");
+        }
+        for (int i = 0; i < columns; i++) {
+            ByteBuffer entry = buffer.slice(HEADER_SIZE + i * ENTRY_SIZE, ENTRY_SIZE);
+            int column = entry.get();
+            int offset = entry.getInt();
+            int compressedLength = entry.getInt();
+            int rawLength = entry.getInt();
+            ColumnStats stats = new ColumnStats(entry.getLong(), entry.getLong(), compressedLength, rawLength);
+            if (column != i || offset < 0 || compressedLength < 0 || rawLength < 0
+                    || (long) offset + compressedLength > buffer.capacity()) {
+                throw corrupt("has an invalid entry for column " + i);
+            }
+            entries[i] = new Entry(offset, stats, entry.getInt());
+        }
+    }
+
+    /**
+     * Maps an existing file; the mapping stays valid after the channel is closed.
+     */
+    public static ExpenseColumnFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new ExpenseColumnFile(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public long getBudgetId() {
+        return budgetId;
+    }
+
+    public Long getCostCenterId() {
+        return costCenterId;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public long getSize() {
+        return buffer.capacity();
+    }
+
+    public ColumnStats getStats(Column column) {
+        return entries[column.ordinal()].stats();
+    }
+
+    /**
+     * False when the statistics of the column rule out the value, without reading the column.
+     */
+    public boolean mayContain(Column column, long value) {
+        ColumnStats stats = getStats(column);
+        return rows > 0 && stats.min() <= value && value <= stats.max();
+    }
+
+    public long[] readIds() {
+        Decoder decoder = new Decoder(inflate(Column.ID));
+        long[] ids = new long[rows];
+        long id = 0;
+        for (int row = 0; row < rows; row++) {
+            id += decoder.varLong();
+            ids[row] = id;
+        }
+        return ids;
+    }
+
+    public LocalDate[] readDates() {
+        Decoder decoder = new Decoder(inflate(Column.DATE));
+        LocalDate[] dates = new LocalDate[rows];
+        long day = 0;
+        for (int row = 0; row < rows; row++) {
+            day += decoder.zigZagLong();
+            dates[row] = LocalDate.ofEpochDay(day);
+        }
+        return dates;
+    }
+
+    public CategoryType[] readCategories() {
+        byte[] raw = inflate(Column.CATEGORY);
+        CategoryType[] categories = new CategoryType[rows];
+        for (int row = 0; row < rows; row++) {
+            categories[row] = CategoryType.fromId(raw[row]);
+        }
+        return categories;
+    }
+
+    /**
+     * The amounts in cents, for sums that don't need a {@link BigDecimal} per row.
+     */
+    public long[] readAmountCents() {
+        Decoder decoder = new Decoder(inflate(Column.AMOUNT));
+        long[] cents = new long[rows];
+        for (int row = 0; row < rows; row++) {
+            cents[row] = decoder.zigZagLong();
+        }
+        return cents;
+    }
+
+    public Long[] readUserIds() {
+        Decoder decoder = new Decoder(inflate(Column.USER));
+        Long[] userIds = new Long[rows];
+        for (int row = 0; row < rows; row++) {
+            long userId = decoder.varLong();
+            userIds[row] = userId == 0 ? null : userId;
+        }
+        return userIds;
+    }
+
+    public String[] readDescriptions() {
+        byte[] raw = inflate(Column.DESCRIPTION);
+        Decoder decoder = new Decoder(raw);
+        String[] descriptions = new String[rows];
+        for (int row = 0; row < rows; row++) {
+            int length = (int) decoder.varLong() - 1;
+            if (length >= 0) {
+                descriptions[row] = new String(raw, decoder.position, length, StandardCharsets.UTF_8);
+                decoder.position += length;
+            }
+        }
+        return descriptions;
+    }
+
+    public static BigDecimal toAmount(long cents) {
+        return BigDecimal.valueOf(cents, AMOUNT_SCALE);
+    }
+
+    /**
+     * Inflates one column straight from the mapping into a buffer of its raw length and verifies its checksum.
+     */
+    private byte[] inflate(Column column) {
+        Entry entry = entries[column.ordinal()];
+        byte[] raw = new byte[entry.stats().rawLength()];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(buffer.slice(entry.offset(), entry.stats().compressedLength()));
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, raw.length - length);
+                if (inflated == 0 && inflater.needsInput()) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != raw.length || checksum(raw) != entry.checksum()) {
+                throw corrupt("has a corrupt column " + column);
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw corrupt("has a corrupt column " + column);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private IllegalStateException corrupt(String problem) {
+        return new IllegalStateException("The archive file '" + path.getFileName() + "' " + problem + ".");
+    }
+
+    private static int checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private static final class Decoder {
+        private final byte[] bytes;
+        private int position;
+
+        Decoder(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        long varLong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        long zigZagLong() {
+            long value = varLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+
+    /**
+     * Collects the expenses of a budget column by column, in ascending id order, and writes them as one file.
+     */
+    public static final class Writer {
+        private final long budgetId;
+        private final Long costCenterId;
+        private final int year;
+        private final ByteArrayOutputStream[] columns = new ByteArrayOutputStream[Column.values().length];
+        private final long[] min = new long[Column.values().length];
+        private final long[] max = new long[Column.values().length];
+        private int rows;
+        private long previousId;
+        private long previousDay;
+
+        public Writer(long budgetId, Long costCenterId, int year) {
+            this.budgetId = budgetId;
+            this.costCenterId = costCenterId;
+            this.year = year;
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = new ByteArrayOutputStream();
+            }
+            Arrays.fill(min, Long.MAX_VALUE);
+            Arrays.fill(max, Long.MIN_VALUE);
+        }
+
+        public void add(long id, LocalDate date, CategoryType categoryType, BigDecimal amount, String description, Long userId) {
+            if (rows > 0 && id <= previousId) {
+                throw new IllegalArgumentException("Expenses must be added in ascending id order.");
+            }
+            long day = date.toEpochDay();
+            // Amounts are stored with two decimals, like the amount column; anything finer would be lost
+            long cents = amount.setScale(AMOUNT_SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+            byte[] text = description == null ? null : description.getBytes(StandardCharsets.UTF_8);
+
+            putVarLong(Column.ID, id - previousId);
+            putVarLong(Column.DATE, zigZag(day - previousDay));
+            columns[Column.CATEGORY.ordinal()].write(categoryType.ordinal());
+            putVarLong(Column.AMOUNT, zigZag(cents));
+            putVarLong(Column.USER, userId == null ? 0 : userId);
+            putVarLong(Column.DESCRIPTION, text == null ? 0 : text.length + 1);
+            if (text != null) {
+                columns[Column.DESCRIPTION.ordinal()].writeBytes(text);
+            }
+
+            track(Column.ID, id);
+            track(Column.DATE, day);
+            track(Column.CATEGORY, categoryType.ordinal());
+            track(Column.AMOUNT, cents);
+            if (userId != null) {
+                track(Column.USER, userId);
+            }
+            track(Column.DESCRIPTION, text == null ? 0 : text.length);
+            previousId = id;
+            previousDay = day;
+            rows++;
+        }
+
+        /**
+         * Writes the file next to its target, forces it to disk and moves it into place, so the target is either
+         * missing or complete.
+         */
+        public ExpenseColumnFile write(Path path) throws IOException {
+            int columnCount = columns.length;
+            byte[][] compressed = new byte[columnCount][];
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + columnCount * ENTRY_SIZE);
+            header.putInt(MAGIC).put(VERSION).putLong(budgetId).putLong(costCenterId == null ? 0 : costCenterId)
+                    .putInt(year).putInt(rows).put((byte) columnCount);
+            int offset = header.capacity();
+            for (int i = 0; i < columnCount; i++) {
+                byte[] raw = columns[i].toByteArray();
+                compressed[i] = deflate(raw);
+                boolean empty = min[i] > max[i];
+                header.put((byte) i).putInt(offset).putInt(compressed[i].length).putInt(raw.length)
+                        .putLong(empty ? 0 : min[i]).putLong(empty ? 0 : max[i]).putInt(checksum(raw));
+                offset += compressed[i].length;
+            }
+            header.flip();
+
+            Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(header);
+                for (byte[] column : compressed) {
+                    ByteBuffer data = ByteBuffer.wrap(column);
+                    while (data.hasRemaining()) {
+                        channel.write(data);
+                    }
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return open(path);
+        }
+
+        private void putVarLong(Column column, long value) {
+            ByteArrayOutputStream out = columns[column.ordinal()];
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        private void track(Column column, long value) {
+            min[column.ordinal()] = Math.min(min[column.ordinal()], value);
+            max[column.ordinal()] = Math.max(max[column.ordinal()], value);
+        }
+
+        private static long zigZag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+
+        private static byte[] deflate(byte[] raw) {
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try {
+                deflater.setInput(raw);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+                byte[] chunk = new byte[8192];
+                while (!deflater.finished()) {
+                    out.write(chunk, 0, deflater.deflate(chunk));
+                }
+                return out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+}
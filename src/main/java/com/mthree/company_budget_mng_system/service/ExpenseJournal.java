@@ -0,0 +1,377 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.dto.ExpenseDTO;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.JournalSyncMode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of expense creates, kept in memory-mapped segment files named after their first sequence.
+ * A record is {@code [int payload length][long sequence][int crc32 of sequence and payload][payload]}; a zero length
+ * marks the end of the written part of a segment. On opening, every segment is scanned and the first torn or
+ * corrupt record ends the journal, so a crash in the middle of an append loses nothing that was acknowledged.
+ * Appends are serialized; {@link #read} is meant for a single reader.
+ */
+@Slf4j
+public class ExpenseJournal implements Closeable {
+    private static final String SUFFIX = ".journal";
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final JournalSyncMode syncMode;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    private final Object appendLock = new Object();
+    private Segment active;
+    private volatile long lastSequence;
+
+    private final Object syncLock = new Object();
+    private volatile long durableSequence;
+    private boolean syncing;
+
+    // Where the single reader stopped, so consecutive reads do not rescan the segment
+    private Segment readSegment;
+    private int readPosition;
+    private long readSequence = -1;
+
+    public ExpenseJournal(Path directory, int segmentSize, JournalSyncMode syncMode) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncMode = syncMode;
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    public record JournalRecord(long sequence, ExpenseDTO expense, Long userId) {
+    }
+
+    /**
+     * Appends an expense with the id of the user who sent it, or null, and returns its sequence once the record is on disk.
+     */
+    public long append(ExpenseDTO expense, Long userId) {
+        byte[] payload = encode(expense, userId);
+        if (HEADER_SIZE + payload.length > segmentSize) {
+            throw new IllegalArgumentException("The expense is too large for the journal.");
+        }
+        long sequence;
+        Segment segment;
+        int position;
+        synchronized (appendLock) {
+            if (active.writePosition + HEADER_SIZE + payload.length > active.capacity()) {
+                roll();
+            }
+            segment = active;
+            position = segment.writePosition;
+            sequence = lastSequence + 1;
+            ByteBuffer buffer = segment.buffer.duplicate();
+            buffer.position(position + Integer.BYTES);
+            buffer.putLong(sequence);
+            buffer.putInt(checksum(sequence, payload));
+            buffer.put(payload);
+            // The length goes last, so a reader or a recovery never sees a record whose body is not written yet
+            buffer.putInt(position, payload.length);
+            segment.writePosition = buffer.position();
+            segment.lastSequence = sequence;
+            lastSequence = sequence;
+            if (syncMode == JournalSyncMode.RECORD) {
+                segment.buffer.force(position, HEADER_SIZE + payload.length);
+                durableSequence = sequence;
+            }
+        }
+        if (syncMode == JournalSyncMode.BATCH) {
+            awaitDurable(sequence);
+        }
+        return sequence;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+
+    /**
+     * Returns up to {@code max} durable records with a sequence above {@code afterSequence}, in order.
+     */
+    public List<JournalRecord> read(long afterSequence, int max) {
+        List<JournalRecord> records = new ArrayList<>();
+        long upTo = durableSequence;
+        if (afterSequence >= upTo) {
+            return records;
+        }
+        if (readSegment == null || readSequence != afterSequence || !segments.containsValue(readSegment)) {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(afterSequence + 1);
+            readSegment = entry == null ? segments.firstEntry().getValue() : entry.getValue();
+            readPosition = 0;
+            readSequence = readSegment.firstSequence - 1;
+        }
+        while (records.size() < max && readSequence < upTo) {
+            ByteBuffer buffer = readSegment.buffer.duplicate();
+            int length = readPosition + HEADER_SIZE <= buffer.capacity() ? buffer.getInt(readPosition) : 0;
+            if (length == 0) {
+                Map.Entry<Long, Segment> next = segments.higherEntry(readSegment.firstSequence);
+                if (next == null) {
+                    break;
+                }
+                readSegment = next.getValue();
+                readPosition = 0;
+                continue;
+            }
+            long sequence = buffer.getLong(readPosition + Integer.BYTES);
+            if (sequence > afterSequence) {
+                byte[] payload = new byte[length];
+                buffer.get(readPosition + HEADER_SIZE, payload);
+                records.add(decode(sequence, payload));
+            }
+            readPosition += HEADER_SIZE + length;
+            readSequence = sequence;
+        }
+        return records;
+    }
+
+    /**
+     * Deletes the segments whose records are all applied. The active segment is always kept,
+     * as its name and records carry the sequence to continue from after a restart.
+     */
+    public void compact(long appliedSequence) {
+        for (Segment segment : segments.values()) {
+            Map.Entry<Long, Segment> next = segments.higherEntry(segment.firstSequence);
+            if (next == null || next.getKey() - 1 > appliedSequence) {
+                break;
+            }
+            segments.remove(segment.firstSequence);
+            try {
+                Files.deleteIfExists(segment.path);
+                log.info("Deleted applied journal segment '{}'.", segment.path.getFileName());
+            } catch (IOException e) {
+                log.error("Could not delete journal segment '{}'.", segment.path, e);
+            }
+        }
+    }
+
+    int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() {
+        synchronized (appendLock) {
+            active.buffer.force();
+            durableSequence = lastSequence;
+        }
+    }
+
+    private void awaitDurable(long sequence) {
+        synchronized (syncLock) {
+            while (durableSequence < sequence && syncing) {
+                try {
+                    syncLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the journal to be synced.", e);
+                }
+            }
+            if (durableSequence >= sequence) {
+                return;
+            }
+            syncing = true;
+        }
+        // This thread leads the next group: one force covers every record appended until now
+        long target;
+        Segment segment;
+        synchronized (appendLock) {
+            target = lastSequence;
+            segment = active;
+        }
+        try {
+            segment.buffer.force();
+        } finally {
+            synchronized (syncLock) {
+                durableSequence = Math.max(durableSequence, target);
+                syncing = false;
+                syncLock.notifyAll();
+            }
+        }
+    }
+
+    private void roll() {
+        // Records of the previous segment must be on disk before appends continue in a new file
+        active.buffer.force();
+        try {
+            active = openSegment(lastSequence + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create a new journal segment.", e);
+        }
+        segments.put(active.firstSequence, active);
+        log.info("Rolled the expense journal to segment '{}'.", active.path.getFileName());
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+        }
+        long expected = -1;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            Segment segment = openSegment(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+            if (expected >= 0 && segment.firstSequence != expected) {
+                log.warn("Journal segment '{}' does not continue the previous one, later segments are ignored.", name);
+                break;
+            }
+            boolean complete = scan(segment);
+            segments.put(segment.firstSequence, segment);
+            expected = segment.lastSequence + 1;
+            if (!complete) {
+                log.warn("Journal segment '{}' ends with a torn record, it is discarded.", name);
+                break;
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(1L, openSegment(1L));
+        }
+        active = segments.lastEntry().getValue();
+        // Segments after a torn one were never acknowledged as continuing the journal
+        for (Path file : files) {
+            if (segments.values().stream().noneMatch(segment -> segment.path.equals(file))) {
+                Files.delete(file);
+            }
+        }
+        lastSequence = active.lastSequence;
+        durableSequence = lastSequence;
+        log.info("Expense journal opened with {} segment(s), last sequence {}.", segments.size(), lastSequence);
+    }
+
+    /**
+     * Finds the end of the valid records of a segment and clears anything after it. Returns false when
+     * the segment ended with a torn or corrupt record rather than with unused space.
+     */
+    private boolean scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int position = 0;
+        long sequence = segment.firstSequence - 1;
+        boolean complete = true;
+        while (position + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || position + HEADER_SIZE + length > buffer.capacity()
+                    || buffer.getLong(position + Integer.BYTES) != sequence + 1) {
+                complete = false;
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(position + HEADER_SIZE, payload);
+            if (buffer.getInt(position + Integer.BYTES + Long.BYTES) != checksum(sequence + 1, payload)) {
+                complete = false;
+                break;
+            }
+            sequence++;
+            position += HEADER_SIZE + length;
+        }
+        if (!complete) {
+            for (int i = position; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+            segment.buffer.force();
+        }
+        segment.writePosition = position;
+        segment.lastSequence = sequence;
+        return complete;
+    }
+
+    private Segment openSegment(long firstSequence) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", firstSequence, SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // An existing segment keeps its size even if the configured size changed since it was created
+            long size = channel.size() > 0 ? channel.size() : segmentSize;
+            return new Segment(firstSequence, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    private static int checksum(long sequence, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, sequence));
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    static byte[] encode(ExpenseDTO expense, Long userId) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(expense.getAmount().toPlainString());
+            out.writeLong(expense.getDate().toEpochDay());
+            out.writeUTF(expense.getCategoryType().name());
+            out.writeBoolean(expense.getDescription() != null);
+            if (expense.getDescription() != null) {
+                out.writeUTF(expense.getDescription());
+            }
+            out.writeBoolean(userId != null);
+            if (userId != null) {
+                out.writeLong(userId);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static JournalRecord decode(long sequence, byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            BigDecimal amount = new BigDecimal(in.readUTF());
+            LocalDate date = LocalDate.ofEpochDay(in.readLong());
+            CategoryType categoryType = CategoryType.valueOf(in.readUTF());
+            String description = in.readBoolean() ? in.readUTF() : null;
+            // Records written before users were journaled end here
+            Long userId = in.available() > 0 && in.readBoolean() ? in.readLong() : null;
+            ExpenseDTO expense = ExpenseDTO.builder()
+                    .amount(amount)
+                    .date(date)
+                    .categoryType(categoryType)
+                    .description(description)
+                    .build();
+            return new JournalRecord(sequence, expense, userId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class Segment {
+        private final long firstSequence;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private long lastSequence;
+
+        Segment(long firstSequence, Path path, MappedByteBuffer buffer) {
+            this.firstSequence = firstSequence;
+            this.path = path;
+            this.buffer = buffer;
+            this.lastSequence = firstSequence - 1;
+        }
+
+        int capacity() {
+            return buffer.capacity();
+        }
+    }
+}
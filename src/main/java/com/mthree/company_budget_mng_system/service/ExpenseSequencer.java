@@ -0,0 +1,385 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.SequencerProperties;
+import com.mthree.company_budget_mng_system.dto.ExpenseDTO;
+import com.mthree.company_budget_mng_system.event.BudgetChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseSnapshot;
+import com.mthree.company_budget_mng_system.exception.ExpenseNotFoundException;
+import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
+import com.mthree.company_budget_mng_system.exception.ServiceUnavailableException;
+import com.mthree.company_budget_mng_system.mapper.ExpenseMapper;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.Expense;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.CategoryTotal;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import com.mthree.company_budget_mng_system.security.UserPrincipal;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opt-in posting mode for budgets with many concurrent expense writes. Every budget gets a single writer that owns
+ * the spend of its categories in memory: expense creates and updates are queued to it, validated against the planned
+ * amounts without reading other expenses, and committed in groups with one budget row lock per group.
+ * Totals are loaded from the database when a writer starts (e.g. after a restart) and again after expenses
+ * of the budget were changed by anything else than the writer itself, which the writer sees from the budget version
+ * while it holds the budget lock.
+ */
+@Slf4j
+@Service
+public class ExpenseSequencer {
+    private static final int CATEGORIES = CategoryType.MAX_CATEGORIES;
+
+    private final BudgetRepository budgetRepository;
+    private final ExpenseRepository expenseRepository;
+    private final ExpenseMapper expenseMapper;
+    private final ThresholdService thresholdService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final SequencerProperties properties;
+    private final UserSpendService userSpendService;
+    private final CategoryRegistry categoryRegistry;
+    private final ExecutorService executor;
+
+    private final Map<Long, BudgetWriter> writers = new ConcurrentHashMap<>();
+    private final Map<BudgetKey, Optional<Long>> budgetIds = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ExpenseSequencer(BudgetRepository budgetRepository, ExpenseRepository expenseRepository, ExpenseMapper expenseMapper,
+                            ThresholdService thresholdService, ApplicationEventPublisher eventPublisher,
+                            PlatformTransactionManager transactionManager, SequencerProperties properties,
+                            UserSpendService userSpendService, CategoryRegistry categoryRegistry) {
+        this.budgetRepository = budgetRepository;
+        this.expenseRepository = expenseRepository;
+        this.expenseMapper = expenseMapper;
+        this.thresholdService = thresholdService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.userSpendService = userSpendService;
+        this.categoryRegistry = categoryRegistry;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, properties.getThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "expense-sequencer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!isEnabled()) {
+            return;
+        }
+        // The current year's budget takes most of the writes, so its totals are recovered before the first expense arrives
+        budgetRepository.findIdByYear(LocalDate.now().getYear())
+                .ifPresent(budgetId -> writers.computeIfAbsent(budgetId, BudgetWriter::new).schedule());
+    }
+
+    @EventListener
+    public void onBudgetChanged(BudgetChangedEvent event) {
+        // The year of a budget may have changed or the budget is gone; planned amounts are re-read with every commit
+        budgetIds.clear();
+        if (event.isDeleted()) {
+            writers.remove(event.getBudgetId());
+        }
+    }
+
+    public ExpenseDTO createExpense(ExpenseDTO expenseDTO) {
+        log.info("Queueing an expense.");
+        categoryRegistry.requireActive(expenseDTO.getCategoryType());
+        // The user is resolved here, the writer threads don't see the security context of the request
+        UserPrincipal user = userSpendService.currentUser().orElse(null);
+        ExpenseDTO createdExpense = await(submit(null, expenseDTO, user));
+        log.info("Expense created.");
+        return createdExpense;
+    }
+
+    public ExpenseDTO updateExpense(Long id, ExpenseDTO expenseDTO) {
+        log.info("Queueing update of expense with id '{}'.", id);
+        ExpenseDTO updatedExpense = await(submit(id, expenseDTO, null));
+        log.info("Update completed.");
+        return updatedExpense;
+    }
+
+    private CompletableFuture<ExpenseDTO> submit(Long expenseId, ExpenseDTO expenseDTO, UserPrincipal user) {
+        BudgetKey key = new BudgetKey(expenseDTO.getCostCenterId(), expenseDTO.getDate().getYear());
+        Long budgetId = budgetIds.computeIfAbsent(key, k -> k.costCenterId() == null
+                        ? budgetRepository.findIdByYear(k.year())
+                        : budgetRepository.findIdByCostCenterIdAndYear(k.costCenterId(), k.year()))
+                .orElseThrow(() -> {
+                    String message = key.costCenterId() == null
+                            ? "No budget found for the year: " + key.year()
+                            : "No budget found for the cost center " + key.costCenterId() + " and the year: " + key.year();
+                    log.error(message);
+                    throw new ResourceNotFoundException(message);
+                });
+        Command command = new Command(expenseId, expenseDTO, user, new CompletableFuture<>());
+        writers.computeIfAbsent(budgetId, BudgetWriter::new).submit(command);
+        return command.result();
+    }
+
+    private ExpenseDTO await(CompletableFuture<ExpenseDTO> result) {
+        try {
+            return result.get(properties.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            String message = "The expense was not committed in time, it may still be applied.";
+            log.error(message);
+            throw new ServiceUnavailableException(message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while waiting for the expense to be committed.");
+        }
+    }
+
+    private BigDecimal[] loadTotals(Long budgetId) {
+        BigDecimal[] totals = new BigDecimal[CATEGORIES];
+        Arrays.fill(totals, BigDecimal.ZERO);
+        for (CategoryTotal total : expenseRepository.sumByCategory(budgetId)) {
+            totals[total.getCategoryType().ordinal()] = total.getAmount();
+        }
+        return totals;
+    }
+
+    private static BigDecimal sum(BigDecimal[] totals) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal amount : totals) {
+            total = total.add(amount);
+        }
+        return total;
+    }
+
+    private static void handleIllegalArgument(String message) {
+        log.error(message);
+        throw new IllegalArgumentException(message);
+    }
+
+    private record BudgetKey(Long costCenterId, int year) {
+    }
+
+    private record Command(Long expenseId, ExpenseDTO expenseDTO, UserPrincipal user, CompletableFuture<ExpenseDTO> result) {
+    }
+
+    /**
+     * Single writer of one budget. At most one drain of a writer is scheduled at a time, so the totals
+     * are only ever touched by one thread; the scheduled flag hands them over between pool threads.
+     */
+    private class BudgetWriter {
+        private final Long budgetId;
+        private final BlockingQueue<Command> queue;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // Committed spend per category ordinal, null until loaded from the database
+        private BigDecimal[] totals;
+        // Budget version the totals belong to; any other writer of the budget's expenses bumps it under the lock
+        private long version;
+
+        BudgetWriter(Long budgetId) {
+            this.budgetId = budgetId;
+            this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        }
+
+        void submit(Command command) {
+            if (!queue.offer(command)) {
+                String message = "Too many expenses are waiting for this budget, try again later.";
+                log.error(message);
+                throw new ServiceUnavailableException(message);
+            }
+            schedule();
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                List<Command> batch = new ArrayList<>(Math.min(queue.size(), properties.getBatchSize()));
+                queue.drainTo(batch, properties.getBatchSize());
+                if (batch.isEmpty()) {
+                    if (totals == null) {
+                        totals = transactionTemplate.execute(status -> {
+                            // Read before the totals: a write in between makes the next commit reload, never miss it
+                            budgetRepository.findById(budgetId).ifPresent(budget -> version = budget.getVersion());
+                            return loadTotals(budgetId);
+                        });
+                        log.info("Recovered expense totals of budget with id '{}'.", budgetId);
+                    }
+                } else if (!commit(batch) && batch.size() > 1) {
+                    // A failure rolled back the whole group, so every command is retried alone to isolate the failing one
+                    for (Command command : batch) {
+                        commit(List.of(command));
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.error("Expense writer of budget with id '{}' failed.", budgetId, e);
+            } finally {
+                scheduled.set(false);
+                // Commands that arrived after the batch was taken, the next drain takes them (other budgets get their turn first)
+                if (!queue.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+
+        /**
+         * Applies the commands in order in one transaction. Commands rejected by validation fail on their own without
+         * writing anything; any other failure rolls back the group and is reported by returning false.
+         * Callers are only answered once the outcome is committed.
+         */
+        private boolean commit(List<Command> batch) {
+            Map<Command, ExpenseDTO> applied = new LinkedHashMap<>();
+            Map<Command, RuntimeException> rejected = new LinkedHashMap<>();
+            try {
+                BigDecimal[] committed = transactionTemplate.execute(status -> {
+                    Budget budget = budgetRepository.findByIdForUpdate(budgetId)
+                            .orElseThrow(() -> {
+                                String message = "Budget with given id doesn't exist";
+                                log.error(message);
+                                throw new ResourceNotFoundException(message);
+                            });
+                    // The lock bumps the version by one, so anything more means expenses were changed by another writer.
+                    // The lock keeps those writers out until the commit, so the totals can't go stale after this check.
+                    if (totals == null || budget.getVersion() != version + 1) {
+                        totals = loadTotals(budgetId);
+                    }
+                    version = budget.getVersion();
+                    BigDecimal[] working = totals.clone();
+                    for (Command command : batch) {
+                        try {
+                            applied.put(command, command.expenseId() == null
+                                    ? create(budget, working, command.expenseDTO(), command.user())
+                                    : update(budget, working, command.expenseId(), command.expenseDTO()));
+                        } catch (IllegalArgumentException | ResourceNotFoundException | ExpenseNotFoundException e) {
+                            rejected.put(command, e);
+                        }
+                    }
+                    return working;
+                });
+                totals = committed;
+                applied.forEach((command, expenseDTO) -> command.result().complete(expenseDTO));
+                rejected.forEach((command, e) -> command.result().completeExceptionally(e));
+                log.info("Committed {} expense command(s) of budget with id '{}'.", applied.size(), budgetId);
+                return true;
+            } catch (RuntimeException e) {
+                totals = null;
+                if (batch.size() == 1) {
+                    batch.get(0).result().completeExceptionally(e);
+                }
+                return false;
+            }
+        }
+
+        private ExpenseDTO create(Budget budget, BigDecimal[] working, ExpenseDTO expenseDTO, UserPrincipal user) {
+            YearArchiveService.requireNotArchived(budget);
+            CategoryType categoryType = expenseDTO.getCategoryType();
+            BigDecimal planned = budget.getBudgetPlanned().get(categoryType);
+            BigDecimal previousTotal = working[categoryType.ordinal()];
+            BigDecimal newTotal = previousTotal.add(expenseDTO.getAmount());
+            if (planned == null) {
+                handleIllegalArgument("No planned budget found for the category: " + categoryType);
+            } else if (newTotal.compareTo(planned) > 0) {
+                handleIllegalArgument("Adding this expense will exceed the budget for the category " + categoryType);
+            }
+
+            Expense expense = expenseMapper.map(expenseDTO);
+            expense.setId(null);
+            expense.setBudget(budget);
+            userSpendService.attribute(expense, user);
+            Expense savedExpense = expenseRepository.save(expense);
+            working[categoryType.ordinal()] = newTotal;
+
+            thresholdService.evaluate(budget, categoryType, previousTotal, newTotal);
+            BigDecimal budgetTotal = sum(working);
+            thresholdService.evaluate(budget, null, budgetTotal.subtract(expenseDTO.getAmount()), budgetTotal);
+            eventPublisher.publishEvent(new ExpenseChangedEvent(savedExpense.getId(), null, ExpenseSnapshot.of(savedExpense)));
+            return expenseMapper.map(savedExpense);
+        }
+
+        private ExpenseDTO update(Budget budget, BigDecimal[] working, Long id, ExpenseDTO expenseDTO) {
+            YearArchiveService.requireNotArchived(budget);
+            Expense expense = expenseRepository.findById(id)
+                    .orElseThrow(() -> {
+                        String message = "Expense not found with id " + id;
+                        log.error(message);
+                        throw new ExpenseNotFoundException(message);
+                    });
+            ExpenseSnapshot previous = ExpenseSnapshot.of(expense);
+            // An expense moved here from another budget only adds to this budget
+            boolean sameBudget = budgetId.equals(previous.getBudgetId());
+            CategoryType oldCategoryType = expense.getCategoryType();
+            CategoryType categoryType = expenseDTO.getCategoryType();
+            if (oldCategoryType != categoryType) {
+                categoryRegistry.requireActive(categoryType);
+            }
+            BigDecimal planned = budget.getBudgetPlanned().get(categoryType);
+            BigDecimal currentTotal = working[categoryType.ordinal()];
+            BigDecimal previousTotal = sameBudget && oldCategoryType == categoryType
+                    ? currentTotal.subtract(expense.getAmount()) : currentTotal;
+            BigDecimal newTotal = previousTotal.add(expenseDTO.getAmount());
+            if (planned == null) {
+                handleIllegalArgument("No planned budget found for the category: " + categoryType);
+            } else if (newTotal.compareTo(planned) > 0 && newTotal.compareTo(currentTotal) > 0) {
+                // Reductions stay possible for categories that are already over their planned amount
+                handleIllegalArgument("Updating this expense will exceed the budget for the category " + categoryType);
+            }
+
+            if (!sameBudget && previous.getBudgetId() != null) {
+                // The budget the expense leaves gets a new version too; its writer reloads its totals after the commit
+                budgetRepository.findByIdForUpdate(previous.getBudgetId());
+            }
+            expense.setDescription(expenseDTO.getDescription());
+            expense.setAmount(expenseDTO.getAmount());
+            expense.setDate(expenseDTO.getDate());
+            expense.setCategoryType(categoryType);
+            expense.setBudget(budget);
+            Expense updatedExpense = expenseRepository.save(expense);
+
+            BigDecimal budgetTotalBefore = sum(working);
+            if (sameBudget) {
+                working[oldCategoryType.ordinal()] = working[oldCategoryType.ordinal()].subtract(previous.getAmount());
+                if (oldCategoryType != categoryType) {
+                    BigDecimal oldCategoryTotal = working[oldCategoryType.ordinal()];
+                    thresholdService.evaluate(budget, oldCategoryType, oldCategoryTotal.add(previous.getAmount()), oldCategoryTotal);
+                }
+            }
+            working[categoryType.ordinal()] = working[categoryType.ordinal()].add(expenseDTO.getAmount());
+            thresholdService.evaluate(budget, categoryType, currentTotal, working[categoryType.ordinal()]);
+            thresholdService.evaluate(budget, null, budgetTotalBefore, sum(working));
+            eventPublisher.publishEvent(new ExpenseChangedEvent(id, previous, ExpenseSnapshot.of(updatedExpense)));
+            return expenseMapper.map(updatedExpense);
+        }
+    }
+}
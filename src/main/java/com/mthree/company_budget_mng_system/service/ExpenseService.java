@@ -1,22 +1,30 @@
 package com.mthree.company_budget_mng_system.service;
 
 import com.mthree.company_budget_mng_system.dto.ExpenseDTO;
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseSnapshot;
 import com.mthree.company_budget_mng_system.exception.*;
 import com.mthree.company_budget_mng_system.mapper.ExpenseMapper;
 import com.mthree.company_budget_mng_system.model.Budget;
 import com.mthree.company_budget_mng_system.model.CategoryType;
 import com.mthree.company_budget_mng_system.model.Expense;
 import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.CategoryTotal;
 import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
 import jakarta.persistence.PersistenceContext;
 import org.springframework.transaction.annotation.Transactional;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.function.Supplier;
 
 @Slf4j
@@ -25,24 +33,39 @@ public class ExpenseService {
     private final ExpenseRepository expenseRepository;
     private final ExpenseMapper expenseMapper;
     private BudgetRepository budgetRepository;
+    private final ThresholdService thresholdService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UserSpendService userSpendService;
+    private final CategoryRegistry categoryRegistry;
+    private final YearArchiveService yearArchiveService;
 
     @PersistenceContext
     private EntityManager entityManager;
 
     @Autowired
-    public ExpenseService(ExpenseRepository expenseRepository, ExpenseMapper expenseMapper, BudgetRepository budgetRepository) {
+    public ExpenseService(ExpenseRepository expenseRepository, ExpenseMapper expenseMapper, BudgetRepository budgetRepository,
+                          ThresholdService thresholdService, ApplicationEventPublisher eventPublisher,
+                          UserSpendService userSpendService, CategoryRegistry categoryRegistry,
+                          YearArchiveService yearArchiveService) {
         this.expenseRepository = expenseRepository;
         this.expenseMapper = expenseMapper;
         this.budgetRepository = budgetRepository;
+        this.thresholdService = thresholdService;
+        this.eventPublisher = eventPublisher;
+        this.userSpendService = userSpendService;
+        this.categoryRegistry = categoryRegistry;
+        this.yearArchiveService = yearArchiveService;
     }
 
     @Transactional
     public ExpenseDTO createExpense(ExpenseDTO expenseDTO) {
         log.info("Creating an expense.");
-        //1. Find the matching budget by Year
+        categoryRegistry.requireActive(expenseDTO.getCategoryType());
+        //1. Find the matching budget by Year (and cost center)
         int year = expenseDTO.getDate().getYear();
-        Budget budget = budgetRepository.findByYear(year)
-                .orElseThrow(handleResourceNotFound(year));
+        Budget budget = findBudget(expenseDTO.getCostCenterId(), year);
+        lockBudget(budget);
+        YearArchiveService.requireNotArchived(budget);
         Expense expense = expenseMapper.map(expenseDTO);
         expense.setBudget(budget);
         if (!entityManager.contains(expense)) {
@@ -50,7 +73,9 @@ public class ExpenseService {
         }
 
         validateExpenseAgainstBudgetPlanned(expenseDTO, budget, expense, year);
+        userSpendService.attribute(expense, userSpendService.currentUser().orElse(null));
         Expense savedExpense = saveExpenseAndUpdateBudget(budget, expense);
+        eventPublisher.publishEvent(new ExpenseChangedEvent(savedExpense.getId(), null, ExpenseSnapshot.of(savedExpense)));
         // Return response with both the expense and warning message (if any)
         ExpenseDTO savedExpenseDTO = expenseMapper.map(savedExpense);
         log.info("Expense created.");
@@ -65,27 +90,48 @@ public class ExpenseService {
 
         var newTotalForCategory = getNewTotalForCategoryOrThrowException(expenseDTO, totalExpensesForCategory, plannedAmountPerCategory);
 
-        // Check if the total expenses for the category exceeded 90% of the planned budget
-        var thresholdForCategory = calculateThreshold(plannedAmountPerCategory);
-        isThresholdForCategoryExceeded(expenseDTO, newTotalForCategory, thresholdForCategory);
-
-        //Check if the total expenses for the entire budget exceeded 90% of the total planned budget
+        // Warn once when the category or the entire budget crosses one of its alert levels
+        thresholdService.evaluate(budget, expenseDTO.getCategoryType(), totalExpensesForCategory, newTotalForCategory);
         var totalActualExpenses = getTotalActualExpenses(budget);
-        var thresholdForBudget = calculateThreshold(budget.getTotalAmount());
-        isThresholdForBudgetExceeded(totalActualExpenses, thresholdForBudget, year);
+        thresholdService.evaluate(budget, null, totalActualExpenses, totalActualExpenses.add(expenseDTO.getAmount()));
+    }
+
+    /**
+     * Locks the budget row for the rest of the transaction and bumps its version, so ETags of the budget change
+     * with every expense change and concurrent expense changes of the same budget validate against fresh totals.
+     */
+    private void lockBudget(Budget budget) {
+        if (budget != null && entityManager.contains(budget)) {
+            entityManager.refresh(budget, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+        }
     }
 
-    private static void isThresholdForBudgetExceeded(BigDecimal totalActualExpenses, BigDecimal thresholdForBudget, int year) {
-        if (totalActualExpenses.compareTo(thresholdForBudget) > 0) {
-            String message = "You exceeded 90% of the total budget for the year " + year;
-            log.warn(message);
-//            throw new BudgetThresholdExceededException(message);
+    // Budgets are locked in the order of their ids, so two updates moving expenses between the same budgets in
+    // opposite directions wait for each other instead of deadlocking
+    private void lockBudgets(Budget budget, Budget other) {
+        if (other == null || other == budget) {
+            lockBudget(budget);
+        } else if (budget.getId() < other.getId()) {
+            lockBudget(budget);
+            lockBudget(other);
+        } else {
+            lockBudget(other);
+            lockBudget(budget);
         }
     }
 
-    private static Supplier<ResourceNotFoundException> handleResourceNotFound(int year) {
+    private Budget findBudget(Long costCenterId, int year) {
+        Optional<Budget> budget = costCenterId == null
+                ? budgetRepository.findByYear(year)
+                : budgetRepository.findByCostCenterIdAndYear(costCenterId, year);
+        return budget.orElseThrow(handleResourceNotFound(costCenterId, year));
+    }
+
+    private static Supplier<ResourceNotFoundException> handleResourceNotFound(Long costCenterId, int year) {
         return () -> {
-            String message = "No budget found for the year: " + year;
+            String message = costCenterId == null
+                    ? "No budget found for the year: " + year
+                    : "No budget found for the cost center " + costCenterId + " and the year: " + year;
             log.error(message);
             throw new ResourceNotFoundException(message);
         };
@@ -116,29 +162,19 @@ public class ExpenseService {
         throw new IllegalArgumentException(message);
     }
 
-    private static BigDecimal calculateThreshold(BigDecimal toCalculateThreshold) {
-        return toCalculateThreshold.multiply(BigDecimal.valueOf(0.9));
-    }
-
-
     private static BigDecimal getTotalActualExpenses(Budget budget) {
         return budget.getActualExpenses().stream()
                 .map(Expense::getAmount)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
 
-    private static void isThresholdForCategoryExceeded(ExpenseDTO expenseDTO, BigDecimal newTotalForCategory, BigDecimal thresholdForCategory) {
-        if (newTotalForCategory.compareTo(thresholdForCategory) > 0) {
-            // Throw exception with warning message
-            String message = "You exceeded 90% of the budget for category " + expenseDTO.getCategoryType() + ".";
-            log.warn(message);
-//            throw new CategoryThresholdExceededException(message);
-        }
+    private static BigDecimal getTotalExpensesForCategory(ExpenseDTO expenseDTO, Budget budget) {
+        return getTotalExpensesForCategory(budget, expenseDTO.getCategoryType());
     }
 
-    private static BigDecimal getTotalExpensesForCategory(ExpenseDTO expenseDTO, Budget budget) {
+    private static BigDecimal getTotalExpensesForCategory(Budget budget, CategoryType categoryType) {
         return budget.getActualExpenses().stream()
-                .filter(exp -> exp.getCategoryType().equals(expenseDTO.getCategoryType())) // Filter by category type
+                .filter(exp -> exp.getCategoryType().equals(categoryType)) // Filter by category type
                 .map(Expense::getAmount)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
@@ -146,20 +182,23 @@ public class ExpenseService {
     public List<ExpenseDTO> getAllExpenses() {
         log.info("Fetching all expenses...");
         List<Expense> allExpenses = expenseRepository.findAll();
-        List<ExpenseDTO> expenseDTOS = expenseMapper.mapToDtoList(allExpenses);
+        // Expenses moved to archive files are listed before those still in the expense table
+        List<ExpenseDTO> expenseDTOS = new ArrayList<>(yearArchiveService.getAllExpenses());
+        expenseDTOS.addAll(expenseMapper.mapToDtoList(allExpenses));
         log.info("Fetch completed.");
         return expenseDTOS;
     }
 
     public ExpenseDTO getExpenseById(Long id) {
         log.info("Getting expenses for id '{}'.", id);
-        Expense expense = expenseRepository.findById(id)
-                .orElseThrow(handleExpenseNotFound(id));
-        ExpenseDTO expenseDTO = expenseMapper.map(expense);
+        Optional<Expense> expense = expenseRepository.findById(id);
+        ExpenseDTO expenseDTO = expense.isPresent() ? expenseMapper.map(expense.get())
+                : yearArchiveService.findExpense(id).orElseThrow(handleExpenseNotFound(id));
         log.info("Fetch completed");
         return expenseDTO;
     }
 
+    @Transactional
     public ExpenseDTO updateExpense(Long id, ExpenseDTO expenseDTO) {
         log.info("Updating expense with id '{}'.", id);
         Expense expense = expenseRepository.findById(id)
@@ -167,17 +206,32 @@ public class ExpenseService {
 
         // Store the old categoryType and amount to validate reductions
         var oldAmount = expense.getAmount();
+        var oldCategoryType = expense.getCategoryType();
         var newAmount = expenseDTO.getAmount();
+        var previous = ExpenseSnapshot.of(expense);
+        // Expenses may keep a category that was deactivated, but not move to one
+        if (oldCategoryType != expenseDTO.getCategoryType()) {
+            categoryRegistry.requireActive(expenseDTO.getCategoryType());
+        }
 
         expense.setDescription(expenseDTO.getDescription());
         expense.setAmount(newAmount);
         expense.setDate(expenseDTO.getDate());
         expense.setCategoryType(expenseDTO.getCategoryType());
 
-        Budget budget = budgetRepository.findByYear(expense.getDate().getYear())
-                .orElseThrow(handleResourceNotFound(expense.getDate().getYear()));
+        Budget budget = findBudget(expenseDTO.getCostCenterId(), expense.getDate().getYear());
+        // The date or cost center may have moved the expense to another budget, which is locked as well
+        lockBudgets(budget, expense.getBudget());
+        YearArchiveService.requireNotArchived(budget);
+        expense.setBudget(budget);
 
         Expense updatedExpense = validateUpdatedExpenseAgainstBudgetPlanned(expenseDTO, budget, newAmount, oldAmount, expense);
+        if (oldCategoryType != null && !oldCategoryType.equals(expenseDTO.getCategoryType())) {
+            // The old category lost the whole old amount, which may un-cross its alert levels
+            var oldCategoryTotal = getTotalExpensesForCategory(budget, oldCategoryType);
+            thresholdService.evaluate(budget, oldCategoryType, oldCategoryTotal.add(oldAmount), oldCategoryTotal);
+        }
+        eventPublisher.publishEvent(new ExpenseChangedEvent(id, previous, ExpenseSnapshot.of(updatedExpense)));
         ExpenseDTO updatedExpenseDTO = expenseMapper.map(updatedExpense);
         log.info("Update completed.");
         return updatedExpenseDTO;
@@ -198,13 +252,11 @@ public class ExpenseService {
             }
         }
         Expense updatedExpense = expenseRepository.save(expense);
-        // Check if the total expenses for the category exceeded 90% of the planned budget
-        var thresholdForCategory = calculateThreshold(plannedAmountPerCategory);
-        isThresholdForCategoryExceeded(expenseDTO, newTotalForCategory, thresholdForCategory);
-        // Check if the total expenses exceed 90% of the total budget after updating the expense
+        // Emit alert level transitions caused by the change of the amount
+        var difference = newAmount.subtract(oldAmount);
+        thresholdService.evaluate(budget, expenseDTO.getCategoryType(), newTotalForCategory.subtract(difference), newTotalForCategory);
         var totalActualExpenses = getTotalActualExpenses(budget);
-        var thresholdForBudget = calculateThreshold(budget.getTotalAmount());
-        isThresholdForBudgetExceeded(totalActualExpenses, thresholdForBudget, budget.getYear());
+        thresholdService.evaluate(budget, null, totalActualExpenses.subtract(difference), totalActualExpenses);
 
         return updatedExpense;
     }
@@ -222,7 +274,27 @@ public class ExpenseService {
         log.info("Removing expense with id '{}'.", id);
         Expense expense = expenseRepository.findById(id)
                 .orElseThrow(handleExpenseNotFound(id));
+        Budget budget = expense.getBudget();
+        lockBudget(budget);
         expenseRepository.delete(expense);
+        eventPublisher.publishEvent(new ExpenseChangedEvent(id, ExpenseSnapshot.of(expense), null));
+        if (budget != null) {
+            if (Hibernate.isInitialized(budget.getActualExpenses())) {
+                budget.getActualExpenses().removeIf(exp -> exp.getId() != null && exp.getId().equals(id));
+            }
+            // Deleting an expense may un-cross alert levels of its category and of the budget. The remaining totals
+            // are summed by the database, so the other expenses of the budget are not loaded
+            var categoryTotal = BigDecimal.ZERO;
+            var totalActualExpenses = BigDecimal.ZERO;
+            for (CategoryTotal total : expenseRepository.sumByCategory(budget.getId())) {
+                if (total.getCategoryType() == expense.getCategoryType()) {
+                    categoryTotal = total.getAmount();
+                }
+                totalActualExpenses = totalActualExpenses.add(total.getAmount());
+            }
+            thresholdService.evaluate(budget, expense.getCategoryType(), categoryTotal.add(expense.getAmount()), categoryTotal);
+            thresholdService.evaluate(budget, null, totalActualExpenses.add(expense.getAmount()), totalActualExpenses);
+        }
         log.info("Removing expense completed.");
     }
 }
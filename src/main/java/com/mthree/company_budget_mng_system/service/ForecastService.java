@@ -0,0 +1,186 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.dto.CategoryForecastDTO;
+import com.mthree.company_budget_mng_system.dto.ForecastDTO;
+import com.mthree.company_budget_mng_system.event.BudgetChangedEvent;
+import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Projects the year-end spend of every category of a budget with three models: linear run-rate,
+ * the seasonal profile of the previous years and an exponentially weighted monthly average.
+ * Monthly spend comes from {@link MonthlySpendCache}, so posting an expense never triggers a recomputation.
+ */
+@Slf4j
+@Service
+public class ForecastService {
+    private static final int MONTHS = MonthlySpendCache.MONTHS;
+    private static final MathContext MATH_CONTEXT = MathContext.DECIMAL64;
+
+    private final BudgetRepository budgetRepository;
+    private final MonthlySpendCache monthlySpendCache;
+    private final BigDecimal ewmaAlpha;
+    private final int historyYears;
+
+    private final Map<BudgetKey, Optional<Long>> budgetIds = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ForecastService(BudgetRepository budgetRepository, MonthlySpendCache monthlySpendCache,
+                           @Value("${budget.forecast.ewma-alpha:0.5}") BigDecimal ewmaAlpha,
+                           @Value("${budget.forecast.history-years:3}") int historyYears) {
+        this.budgetRepository = budgetRepository;
+        this.monthlySpendCache = monthlySpendCache;
+        this.ewmaAlpha = ewmaAlpha;
+        this.historyYears = historyYears;
+    }
+
+    @EventListener
+    public void onBudgetChanged(BudgetChangedEvent event) {
+        // The year of a budget may have changed or the budget is gone
+        budgetIds.clear();
+    }
+
+    @Transactional(readOnly = true)
+    public ForecastDTO getForecast(Long budgetId) {
+        log.info("Forecasting year-end spend for budget with id '{}'.", budgetId);
+        Budget budget = budgetRepository.findById(budgetId)
+                .orElseThrow(() -> {
+                    String message = "Budget with given id doesn't exist";
+                    log.error(message);
+                    throw new ResourceNotFoundException(message);
+                });
+        ForecastDTO forecast = forecast(budget, MonthlySpendCache.clampToYear(LocalDate.now(), budget.getYear()));
+        log.info("Forecast completed.");
+        return forecast;
+    }
+
+    ForecastDTO forecast(Budget budget, LocalDate asOf) {
+        BigDecimal[][] spent = monthlySpendCache.getMonthlySpend(budget.getId());
+        BigDecimal[][] history = getHistory(budget.getCostCenter() == null ? null : budget.getCostCenter().getId(), budget.getYear());
+
+        int month = asOf.getMonthValue() - 1;
+        BigDecimal monthFraction = BigDecimal.valueOf(asOf.getDayOfMonth())
+                .divide(BigDecimal.valueOf(asOf.lengthOfMonth()), MATH_CONTEXT);
+        BigDecimal dayOfYear = BigDecimal.valueOf(asOf.getDayOfYear());
+        BigDecimal daysInYear = BigDecimal.valueOf(asOf.lengthOfYear());
+
+        List<CategoryForecastDTO> categories = new ArrayList<>();
+        for (Map.Entry<CategoryType, BigDecimal> entry : budget.getBudgetPlanned().entrySet()) {
+            int category = entry.getKey().ordinal();
+            BigDecimal planned = entry.getValue();
+            BigDecimal spentToDate = sum(spent[category], month + 1);
+
+            BigDecimal dailyRate = spentToDate.divide(dayOfYear, MATH_CONTEXT);
+            BigDecimal linear = dailyRate.multiply(daysInYear);
+            BigDecimal seasonal = seasonalForecast(spentToDate, history[category], month, monthFraction);
+            BigDecimal ewma = ewmaForecast(spentToDate, spent[category], month, monthFraction);
+
+            boolean overrun = linear.compareTo(planned) > 0
+                    || (seasonal != null && seasonal.compareTo(planned) > 0)
+                    || ewma.compareTo(planned) > 0;
+            categories.add(CategoryForecastDTO.builder()
+                    .categoryType(entry.getKey())
+                    .planned(planned)
+                    .spentToDate(spentToDate)
+                    .linearForecast(scale(linear))
+                    .seasonalForecast(seasonal == null ? null : scale(seasonal))
+                    .ewmaForecast(scale(ewma))
+                    .overrunPredicted(overrun)
+                    .predictedOverrunDate(predictOverrunDate(asOf, planned, spentToDate, dailyRate))
+                    .build());
+        }
+        categories.sort(Comparator.comparing(CategoryForecastDTO::getCategoryType));
+        return ForecastDTO.builder()
+                .budgetId(budget.getId())
+                .year(budget.getYear())
+                .asOf(asOf)
+                .categories(categories)
+                .build();
+    }
+
+    private BigDecimal seasonalForecast(BigDecimal spentToDate, BigDecimal[] history, int month, BigDecimal monthFraction) {
+        BigDecimal historyTotal = sum(history, MONTHS);
+        if (historyTotal.signum() <= 0) {
+            return null;
+        }
+        // Share of the yearly spend that previous years had reached by the same day
+        BigDecimal historyToDate = sum(history, month).add(history[month].multiply(monthFraction));
+        BigDecimal share = historyToDate.divide(historyTotal, MATH_CONTEXT);
+        return share.signum() <= 0 ? null : spentToDate.divide(share, MATH_CONTEXT);
+    }
+
+    private BigDecimal ewmaForecast(BigDecimal spentToDate, BigDecimal[] spent, int month, BigDecimal monthFraction) {
+        BigDecimal average = null;
+        for (int m = 0; m <= month; m++) {
+            // The running month only counts for the part that has passed, so it is scaled to a full month
+            BigDecimal value = m < month ? spent[m] : spent[m].divide(monthFraction, MATH_CONTEXT);
+            average = average == null ? value
+                    : ewmaAlpha.multiply(value).add(BigDecimal.ONE.subtract(ewmaAlpha).multiply(average));
+        }
+        BigDecimal remainingMonths = BigDecimal.valueOf(MONTHS - month).subtract(monthFraction);
+        return spentToDate.add(average.multiply(remainingMonths));
+    }
+
+    private static LocalDate predictOverrunDate(LocalDate asOf, BigDecimal planned, BigDecimal spentToDate, BigDecimal dailyRate) {
+        if (spentToDate.compareTo(planned) >= 0) {
+            return asOf;
+        }
+        if (dailyRate.signum() <= 0) {
+            return null;
+        }
+        long days = planned.subtract(spentToDate).divide(dailyRate, 0, RoundingMode.CEILING).longValue();
+        LocalDate overrunDate = asOf.plusDays(days);
+        return overrunDate.getYear() == asOf.getYear() ? overrunDate : null;
+    }
+
+    // Spend of the budgets of the same cost center (or of the whole company) in the previous years
+    private BigDecimal[][] getHistory(Long costCenterId, int year) {
+        BigDecimal[][] history = MonthlySpendCache.emptyArrays();
+        for (int previousYear = year - historyYears; previousYear < year; previousYear++) {
+            Optional<Long> budgetId = budgetIds.computeIfAbsent(new BudgetKey(costCenterId, previousYear),
+                    key -> key.costCenterId() == null
+                            ? budgetRepository.findByYear(key.year()).map(Budget::getId)
+                            : budgetRepository.findIdByCostCenterIdAndYear(key.costCenterId(), key.year()));
+            if (budgetId.isEmpty()) {
+                continue;
+            }
+            BigDecimal[][] spent = monthlySpendCache.getMonthlySpend(budgetId.get());
+            for (int category = 0; category < history.length; category++) {
+                for (int m = 0; m < MONTHS; m++) {
+                    history[category][m] = history[category][m].add(spent[category][m]);
+                }
+            }
+        }
+        return history;
+    }
+
+    private static BigDecimal sum(BigDecimal[] values, int months) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int m = 0; m < months; m++) {
+            total = total.add(values[m]);
+        }
+        return total;
+    }
+
+    private static BigDecimal scale(BigDecimal value) {
+        return value.setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private record BudgetKey(Long costCenterId, int year) {
+    }
+}
@@ -0,0 +1,182 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mthree.company_budget_mng_system.config.IdempotencyProperties;
+import com.mthree.company_budget_mng_system.exception.ConflictException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Makes write endpoints safe to retry. The first request with an Idempotency-Key runs the write and its response is
+ * remembered for a limited time; repeats of that request get the same response back, and repeats that arrive while the
+ * first one is still running wait for it instead of writing again. Failed writes are not remembered, so they can be retried.
+ * Keys belong to the authenticated caller, so two callers using the same key never see each other's responses.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyProperties properties;
+    // Writes the request with sorted properties and map keys, so equal requests always give the same fingerprint
+    private final ObjectMapper canonicalMapper;
+    private final Clock clock;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @Autowired
+    public IdempotencyService(IdempotencyProperties properties, ObjectMapper objectMapper) {
+        this(properties, objectMapper, Clock.systemUTC());
+    }
+
+    IdempotencyService(IdempotencyProperties properties, ObjectMapper objectMapper, Clock clock) {
+        this.properties = properties;
+        ObjectMapper canonicalMapper = objectMapper.copy().enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+        this.canonicalMapper = canonicalMapper.setConfig(canonicalMapper.getSerializationConfig().with(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY));
+        this.clock = clock;
+    }
+
+    /**
+     * Runs the write once per caller, key and scope. Without a key the write simply runs. Must be called on the request
+     * thread, where the caller is known.
+     *
+     * @param key     value of the Idempotency-Key header, may be null
+     * @param scope   the endpoint, e.g. "POST /api/expenses", so a key can't replay the response of another endpoint
+     * @param request the request body or path values; a key reused with a different request is rejected
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ResponseEntity<T> execute(String key, String scope, Object request, Supplier<ResponseEntity<T>> write) {
+        if (key == null) {
+            return write.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            String message = "Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters.";
+            log.error(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        String storeKey = currentCaller() + "|" + scope + "|" + key;
+        long now = clock.millis();
+        // The fingerprint is taken up front because services may fill in fields of the request object
+        Entry entry = new Entry(fingerprint(request), now + properties.getTtl().toMillis());
+        Entry existing = entries.compute(storeKey, (k, current) -> current == null || current.isExpired(now) ? entry : current);
+        if (existing != entry) {
+            if (!MessageDigest.isEqual(existing.fingerprint, entry.fingerprint)) {
+                String message = "Idempotency-Key '" + key + "' was already used for a different request.";
+                log.error(message);
+                throw new IllegalArgumentException(message);
+            }
+            log.info("Replaying response for Idempotency-Key '{}'.", key);
+            return (ResponseEntity<T>) replay(awaitResponse(existing));
+        }
+
+        evictIfFull();
+        try {
+            ResponseEntity<T> response = write.get();
+            entry.response.complete(response);
+            return response;
+        } catch (RuntimeException | Error e) {
+            // Nothing was written, so a retry has to run the write again
+            entries.remove(storeKey, entry);
+            entry.response.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private static String currentCaller() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? "" : authentication.getName();
+    }
+
+    private byte[] fingerprint(Object request) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(canonicalMapper.writeValueAsBytes(request));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not fingerprint the request.", e);
+        }
+    }
+
+    private ResponseEntity<?> awaitResponse(Entry entry) {
+        try {
+            return entry.response.get(properties.getWaitTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            String message = "The original request with this Idempotency-Key is still in progress.";
+            log.error(message);
+            throw new ConflictException(message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ResponseEntity<?> replay(ResponseEntity<?> response) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        headers.set(REPLAYED_HEADER, "true");
+        return new ResponseEntity<>(response.getBody(), headers, response.getStatusCode());
+    }
+
+    private void evictIfFull() {
+        if (entries.size() <= properties.getMaxEntries()) {
+            return;
+        }
+        long now = clock.millis();
+        entries.values().removeIf(entry -> entry.isExpired(now));
+        int excess = entries.size() - properties.getMaxEntries();
+        if (excess > 0) {
+            // In-flight entries are kept, duplicates may be waiting on them
+            entries.entrySet().stream()
+                    .filter(e -> e.getValue().response.isDone())
+                    .sorted(Comparator.comparingLong(e -> e.getValue().expiresAt))
+                    .limit(excess)
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(entries::remove);
+        }
+    }
+
+    private static class Entry {
+        private final byte[] fingerprint;
+        private final long expiresAt;
+        private final CompletableFuture<ResponseEntity<?>> response = new CompletableFuture<>();
+
+        private Entry(byte[] fingerprint, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt && response.isDone();
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.JournalProperties;
+import com.mthree.company_budget_mng_system.dto.ExpenseDTO;
+import com.mthree.company_budget_mng_system.dto.JournalEntryDTO;
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseSnapshot;
+import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
+import com.mthree.company_budget_mng_system.exception.ServiceUnavailableException;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.Expense;
+import com.mthree.company_budget_mng_system.model.JournalCheckpoint;
+import com.mthree.company_budget_mng_system.model.JournalEntryStatus;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.CategoryTotal;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import com.mthree.company_budget_mng_system.repository.JournalCheckpointRepository;
+import com.mthree.company_budget_mng_system.security.UserPrincipal;
+import com.mthree.company_budget_mng_system.service.ExpenseJournal.JournalRecord;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Accepts expenses for bursty ingestion: an expense is acknowledged as soon as it is appended to the
+ * {@link ExpenseJournal}, and a background applier writes the journal to the database in large batches.
+ * Limits are checked when a record is applied, so a record can still be rejected after it was accepted;
+ * its outcome is available by sequence. Records not applied before a shutdown or crash are replayed on startup.
+ */
+@Slf4j
+@Service
+public class JournalService {
+    private static final String JOURNAL_NAME = "expenses";
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final BudgetRepository budgetRepository;
+    private final ExpenseRepository expenseRepository;
+    private final JournalCheckpointRepository checkpointRepository;
+    private final ThresholdService thresholdService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final JournalProperties properties;
+    private final CategoryRegistry categoryRegistry;
+    private final UserSpendService userSpendService;
+    private final ExpenseJournal journal;
+
+    private final Map<Long, JournalEntryDTO> outcomes;
+    private final Object signal = new Object();
+    private volatile long appliedSequence = -1;
+    private Thread applier;
+
+    @Autowired
+    public JournalService(BudgetRepository budgetRepository, ExpenseRepository expenseRepository,
+                          JournalCheckpointRepository checkpointRepository, ThresholdService thresholdService,
+                          ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager,
+                          JournalProperties properties, CategoryRegistry categoryRegistry,
+                          UserSpendService userSpendService) throws IOException {
+        this.budgetRepository = budgetRepository;
+        this.expenseRepository = expenseRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.thresholdService = thresholdService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.categoryRegistry = categoryRegistry;
+        this.userSpendService = userSpendService;
+        this.journal = properties.isEnabled()
+                ? new ExpenseJournal(Paths.get(properties.getDirectory()), (int) properties.getSegmentSize().toBytes(), properties.getSync())
+                : null;
+        this.outcomes = Collections.synchronizedMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, JournalEntryDTO> eldest) {
+                return size() > properties.getMaxOutcomes();
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (journal == null) {
+            return;
+        }
+        applier = new Thread(this::applyLoop, "expense-journal-applier");
+        applier.setDaemon(true);
+        applier.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (applier != null) {
+            applier.interrupt();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    public JournalEntryDTO append(ExpenseDTO expenseDTO) {
+        if (journal == null) {
+            String message = "The expense journal is disabled.";
+            log.error(message);
+            throw new ServiceUnavailableException(message);
+        }
+        validate(expenseDTO);
+        // The author is checked against the spending limits when the record is applied, like the budget limits
+        Long userId = userSpendService.currentUser().map(UserPrincipal::getId).orElse(null);
+        long sequence = journal.append(expenseDTO, userId);
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+        return JournalEntryDTO.builder()
+                .sequence(sequence)
+                .status(JournalEntryStatus.PENDING)
+                .build();
+    }
+
+    public JournalEntryDTO getEntry(long sequence) {
+        JournalEntryDTO outcome = outcomes.get(sequence);
+        if (outcome != null) {
+            return outcome;
+        }
+        if (journal == null || sequence < 1 || sequence > journal.getLastSequence()) {
+            String message = "Journal entry with given sequence doesn't exist";
+            log.error(message);
+            throw new ResourceNotFoundException(message);
+        }
+        // The outcome of an old record may have been dropped, only its state is known then
+        JournalEntryStatus status = sequence <= appliedSequence ? JournalEntryStatus.APPLIED : JournalEntryStatus.PENDING;
+        return JournalEntryDTO.builder()
+                .sequence(sequence)
+                .status(status)
+                .build();
+    }
+
+    private void validate(ExpenseDTO expenseDTO) {
+        // Only checks that need no database are done before acknowledging, the rest happens when the record is applied
+        if (expenseDTO.getAmount() == null || expenseDTO.getAmount().signum() <= 0) {
+            handleIllegalArgument("The total amount must be positive!");
+        }
+        if (expenseDTO.getDate() == null) {
+            handleIllegalArgument("You need to provide the date of expense!");
+        }
+        if (expenseDTO.getCategoryType() == null) {
+            handleIllegalArgument("Provide category of your expense.");
+        }
+        categoryRegistry.requireActive(expenseDTO.getCategoryType());
+        // Journal records carry no cost center, they are always booked on the budget of the whole company
+        if (expenseDTO.getCostCenterId() != null) {
+            handleIllegalArgument("Expenses of cost centers can't be journaled.");
+        }
+    }
+
+    private void applyLoop() {
+        try {
+            appliedSequence = loadCheckpoint();
+            log.info("Replaying the expense journal after sequence {}.", appliedSequence);
+            while (!Thread.currentThread().isInterrupted()) {
+                List<JournalRecord> batch = journal.read(appliedSequence, properties.getBatchSize());
+                if (batch.isEmpty()) {
+                    synchronized (signal) {
+                        if (journal.getDurableSequence() <= appliedSequence) {
+                            signal.wait(RETRY_DELAY_MILLIS);
+                        }
+                    }
+                    continue;
+                }
+                try {
+                    applyOrIsolate(batch);
+                    journal.compact(appliedSequence);
+                } catch (RuntimeException e) {
+                    log.error("Applying journal records failed, retrying.", e);
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Expense journal applier stopped at sequence {}.", appliedSequence);
+    }
+
+    private long loadCheckpoint() throws InterruptedException {
+        while (true) {
+            try {
+                long checkpoint = transactionTemplate.execute(status -> checkpointRepository.findById(JOURNAL_NAME)
+                        .map(JournalCheckpoint::getAppliedSequence)
+                        .orElse(0L));
+                if (checkpoint > journal.getLastSequence()) {
+                    // The journal directory was replaced, its sequences start over
+                    log.warn("Journal checkpoint {} is ahead of the journal ({}), starting from the journal.", checkpoint, journal.getLastSequence());
+                    checkpoint = 0;
+                }
+                return checkpoint;
+            } catch (RuntimeException e) {
+                log.error("Could not read the journal checkpoint, retrying.", e);
+                Thread.sleep(RETRY_DELAY_MILLIS);
+            }
+        }
+    }
+
+    private void applyOrIsolate(List<JournalRecord> batch) throws InterruptedException {
+        while (true) {
+            try {
+                apply(batch);
+                return;
+            } catch (TransientDataAccessException | DataAccessResourceFailureException | CannotCreateTransactionException e) {
+                // The database is unavailable; nothing is lost, the same records are applied once it is back
+                log.error("Applying journal records failed, retrying.", e);
+                Thread.sleep(RETRY_DELAY_MILLIS);
+            } catch (RuntimeException e) {
+                if (batch.size() == 1) {
+                    JournalRecord record = batch.get(0);
+                    log.error("Journal record {} cannot be applied and is skipped.", record.sequence(), e);
+                    saveCheckpoint(record.sequence());
+                    reject(record.sequence(), "The expense could not be stored: " + e.getMessage());
+                    appliedSequence = record.sequence();
+                    return;
+                }
+                // A record the database refuses rolls back the whole batch, so each record is applied alone to find it
+                for (JournalRecord record : batch) {
+                    applyOrIsolate(List.of(record));
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Applies the records in one transaction with the checkpoint. Every touched budget is locked once, and
+     * its category totals are read once and then kept up to date in memory for the rest of the batch.
+     */
+    private void apply(List<JournalRecord> batch) {
+        Map<Long, JournalEntryDTO> results = new LinkedHashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Integer, Optional<BudgetTotals>> budgetsByYear = new HashMap<>();
+            Map<Long, Optional<UserPrincipal>> users = new HashMap<>();
+            // Spend of accepted expenses per user and budget, which the user spend totals only get once they are saved
+            Map<String, BigDecimal> pendingByUser = new HashMap<>();
+            List<Expense> accepted = new ArrayList<>();
+            List<Long> acceptedSequences = new ArrayList<>();
+            for (JournalRecord record : batch) {
+                ExpenseDTO expenseDTO = record.expense();
+                int year = expenseDTO.getDate().getYear();
+                Optional<BudgetTotals> budgetTotals = budgetsByYear.computeIfAbsent(year, this::lockBudget);
+                String rejection = budgetTotals.isEmpty() ? "No budget found for the year: " + year
+                        : budgetTotals.get().budget.getArchivedAt() != null ? "The budget of the year " + year + " is archived."
+                        : null;
+                Expense expense = null;
+                String userKey = null;
+                if (rejection == null) {
+                    expense = Expense.builder()
+                            .amount(expenseDTO.getAmount())
+                            .description(expenseDTO.getDescription())
+                            .date(expenseDTO.getDate())
+                            .categoryType(expenseDTO.getCategoryType())
+                            .budget(budgetTotals.get().budget)
+                            .build();
+                    // A user deleted since the record was accepted leaves the expense without author
+                    UserPrincipal user = record.userId() == null ? null
+                            : users.computeIfAbsent(record.userId(), userSpendService::findUser).orElse(null);
+                    userKey = user == null ? null : user.getId() + "|" + budgetTotals.get().budget.getId();
+                    try {
+                        userSpendService.attribute(expense, user, pendingByUser.getOrDefault(userKey, BigDecimal.ZERO));
+                    } catch (IllegalArgumentException e) {
+                        rejection = e.getMessage();
+                    }
+                }
+                if (rejection == null) {
+                    rejection = budgetTotals.get().add(expenseDTO.getCategoryType(), expenseDTO.getAmount());
+                }
+                if (rejection != null) {
+                    results.put(record.sequence(), rejected(record.sequence(), rejection));
+                    continue;
+                }
+                if (userKey != null) {
+                    pendingByUser.merge(userKey, expenseDTO.getAmount(), BigDecimal::add);
+                }
+                accepted.add(expense);
+                acceptedSequences.add(record.sequence());
+            }
+
+            List<Expense> saved = expenseRepository.saveAll(accepted);
+            for (int i = 0; i < saved.size(); i++) {
+                Expense expense = saved.get(i);
+                eventPublisher.publishEvent(new ExpenseChangedEvent(expense.getId(), null, ExpenseSnapshot.of(expense)));
+                results.put(acceptedSequences.get(i), JournalEntryDTO.builder()
+                        .sequence(acceptedSequences.get(i))
+                        .status(JournalEntryStatus.APPLIED)
+                        .expenseId(expense.getId())
+                        .build());
+            }
+            budgetsByYear.values().forEach(budgetTotals -> budgetTotals.ifPresent(BudgetTotals::evaluateThresholds));
+            saveCheckpoint(batch.get(batch.size() - 1).sequence());
+        });
+        outcomes.putAll(results);
+        appliedSequence = batch.get(batch.size() - 1).sequence();
+        log.info("Applied {} journal record(s) up to sequence {}.", batch.size(), appliedSequence);
+    }
+
+    private Optional<BudgetTotals> lockBudget(int year) {
+        return budgetRepository.findIdByYear(year)
+                .flatMap(budgetRepository::findByIdForUpdate)
+                .map(budget -> new BudgetTotals(budget, expenseRepository.sumByCategory(budget.getId())));
+    }
+
+    private void saveCheckpoint(long sequence) {
+        transactionTemplate.executeWithoutResult(status ->
+                checkpointRepository.save(new JournalCheckpoint(JOURNAL_NAME, sequence)));
+    }
+
+    private void reject(long sequence, String message) {
+        outcomes.put(sequence, rejected(sequence, message));
+    }
+
+    private static JournalEntryDTO rejected(long sequence, String message) {
+        log.error("Journal record {} rejected: {}", sequence, message);
+        return JournalEntryDTO.builder()
+                .sequence(sequence)
+                .status(JournalEntryStatus.REJECTED)
+                .message(message)
+                .build();
+    }
+
+    private static void handleIllegalArgument(String message) {
+        log.error(message);
+        throw new IllegalArgumentException(message);
+    }
+
+    /**
+     * Spend of a locked budget per category ordinal, before and while the batch is applied.
+     */
+    private class BudgetTotals {
+        private final Budget budget;
+        private final BigDecimal[] before = new BigDecimal[CategoryType.MAX_CATEGORIES];
+        private final BigDecimal[] current;
+
+        BudgetTotals(Budget budget, List<CategoryTotal> totals) {
+            this.budget = budget;
+            Arrays.fill(before, BigDecimal.ZERO);
+            for (CategoryTotal total : totals) {
+                before[total.getCategoryType().ordinal()] = total.getAmount();
+            }
+            this.current = before.clone();
+        }
+
+        /**
+         * Adds the amount to its category, or returns why it cannot be added.
+         */
+        String add(CategoryType categoryType, BigDecimal amount) {
+            BigDecimal planned = budget.getBudgetPlanned().get(categoryType);
+            BigDecimal newTotal = current[categoryType.ordinal()].add(amount);
+            if (planned == null) {
+                return "No planned budget found for the category: " + categoryType;
+            }
+            if (newTotal.compareTo(planned) > 0) {
+                return "Adding this expense will exceed the budget for the category " + categoryType;
+            }
+            current[categoryType.ordinal()] = newTotal;
+            return null;
+        }
+
+        void evaluateThresholds() {
+            BigDecimal totalBefore = BigDecimal.ZERO;
+            BigDecimal totalAfter = BigDecimal.ZERO;
+            for (CategoryType categoryType : CategoryType.values()) {
+                int category = categoryType.ordinal();
+                if (current[category].compareTo(before[category]) != 0) {
+                    thresholdService.evaluate(budget, categoryType, before[category], current[category]);
+                }
+                totalBefore = totalBefore.add(before[category]);
+                totalAfter = totalAfter.add(current[category]);
+            }
+            thresholdService.evaluate(budget, null, totalBefore, totalAfter);
+        }
+    }
+}
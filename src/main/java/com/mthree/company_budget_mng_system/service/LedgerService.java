@@ -0,0 +1,473 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.dto.LedgerCategoryDTO;
+import com.mthree.company_budget_mng_system.dto.LedgerEventDTO;
+import com.mthree.company_budget_mng_system.dto.LedgerViewDTO;
+import com.mthree.company_budget_mng_system.event.BudgetChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseSnapshot;
+import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.LedgerEvent;
+import com.mthree.company_budget_mng_system.model.LedgerEventType;
+import com.mthree.company_budget_mng_system.model.LedgerSnapshot;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.CategoryTotal;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import com.mthree.company_budget_mng_system.repository.LedgerEventRepository;
+import com.mthree.company_budget_mng_system.repository.LedgerSnapshotRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Event-sourced history of every budget. Budget and expense changes are appended as ledger events in the
+ * transaction of the change, and every {@code snapshot-interval} events the folded state of the budget is stored
+ * as a snapshot. The state at any point in time is the latest snapshot before it plus the few events after it.
+ * Budgets that existed before the ledger are started once from their current state.
+ */
+@Slf4j
+@Service
+public class LedgerService {
+    private static final int CATEGORIES = CategoryType.MAX_CATEGORIES;
+
+    private final LedgerEventRepository ledgerEventRepository;
+    private final LedgerSnapshotRepository ledgerSnapshotRepository;
+    private final BudgetRepository budgetRepository;
+    private final ExpenseRepository expenseRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int snapshotInterval;
+    private final Clock clock;
+
+    // Budgets whose ledger is known to be committed, so the existence check is skipped
+    private final Set<Long> startedBudgets = ConcurrentHashMap.newKeySet();
+    private final Map<Long, AtomicInteger> eventsSinceSnapshot = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LedgerService(LedgerEventRepository ledgerEventRepository, LedgerSnapshotRepository ledgerSnapshotRepository,
+                         BudgetRepository budgetRepository, ExpenseRepository expenseRepository,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${budget.ledger.snapshot-interval:100}") int snapshotInterval) {
+        this(ledgerEventRepository, ledgerSnapshotRepository, budgetRepository, expenseRepository, transactionManager,
+                snapshotInterval, Clock.systemUTC());
+    }
+
+    LedgerService(LedgerEventRepository ledgerEventRepository, LedgerSnapshotRepository ledgerSnapshotRepository,
+                  BudgetRepository budgetRepository, ExpenseRepository expenseRepository,
+                  PlatformTransactionManager transactionManager, int snapshotInterval, Clock clock) {
+        this.ledgerEventRepository = ledgerEventRepository;
+        this.ledgerSnapshotRepository = ledgerSnapshotRepository;
+        this.budgetRepository = budgetRepository;
+        this.expenseRepository = expenseRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotInterval = snapshotInterval;
+        this.clock = clock;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startMissingLedgers() {
+        try {
+            List<Long> budgetIds = transactionTemplate.execute(status -> ledgerEventRepository.findBudgetIdsWithoutLedger());
+            for (Long budgetId : budgetIds) {
+                // The budget lock keeps expense writes out, so the opening spend is exact
+                transactionTemplate.executeWithoutResult(status -> budgetRepository.findByIdForRebuild(budgetId)
+                        .filter(budget -> !ledgerEventRepository.existsByBudgetId(budgetId))
+                        .ifPresent(budget -> start(budget, loadSpent(budgetId))));
+            }
+            if (!budgetIds.isEmpty()) {
+                log.info("Started the ledger of {} existing budget(s).", budgetIds.size());
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not start the ledger of existing budgets, they are started on their next change.", e);
+        }
+    }
+
+    @EventListener
+    @Transactional
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        ExpenseSnapshot previous = event.getPrevious();
+        ExpenseSnapshot current = event.getCurrent();
+        Long previousBudgetId = budgetOf(previous);
+        Long currentBudgetId = budgetOf(current);
+        if (previousBudgetId != null && previousBudgetId.equals(currentBudgetId)) {
+            if (previous.getCategoryType() == current.getCategoryType() && previous.getAmount().compareTo(current.getAmount()) == 0) {
+                return;
+            }
+            ensureStarted(currentBudgetId, event);
+            append(expenseEvent(LedgerEventType.EXPENSE_AMENDED, currentBudgetId, event.getExpenseId(), current)
+                    .previousCategoryType(previous.getCategoryType())
+                    .previousAmount(previous.getAmount())
+                    .build());
+            return;
+        }
+        // An expense moved to another year leaves one budget and joins the other
+        if (previousBudgetId != null) {
+            ensureStarted(previousBudgetId, event);
+            append(expenseEvent(LedgerEventType.EXPENSE_DELETED, previousBudgetId, event.getExpenseId(), previous).build());
+        }
+        if (currentBudgetId != null) {
+            ensureStarted(currentBudgetId, event);
+            append(expenseEvent(LedgerEventType.EXPENSE_POSTED, currentBudgetId, event.getExpenseId(), current).build());
+        }
+    }
+
+    @EventListener
+    @Transactional
+    public void onBudgetChanged(BudgetChangedEvent event) {
+        // The history of a deleted budget is kept
+        if (event.isDeleted()) {
+            return;
+        }
+        Budget budget = budgetRepository.findById(event.getBudgetId()).orElse(null);
+        if (budget == null) {
+            return;
+        }
+        if (!isStarted(budget.getId())) {
+            start(budget, loadSpent(budget.getId()));
+            return;
+        }
+        LedgerState state = fold(budget.getId(), ledgerEventRepository.findLastEventId(budget.getId()));
+        if (!sameAmount(state.totalAmount, budget.getTotalAmount()) || !Objects.equals(state.year, budget.getYear())) {
+            append(budgetEvent(LedgerEventType.CATEGORY_REALLOCATED, budget, null, budget.getTotalAmount())
+                    .previousAmount(state.totalAmount)
+                    .build());
+        }
+        for (CategoryType categoryType : CategoryType.values()) {
+            BigDecimal planned = budget.getBudgetPlanned().get(categoryType);
+            BigDecimal previous = state.planned[categoryType.ordinal()];
+            if (!sameAmount(previous, planned)) {
+                append(budgetEvent(LedgerEventType.CATEGORY_REALLOCATED, budget, categoryType, planned)
+                        .previousAmount(previous)
+                        .build());
+            }
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public LedgerViewDTO getView(Long budgetId, Instant asOf) {
+        log.info("Fetching ledger view of budget with id '{}' as of {}.", budgetId, asOf == null ? "now" : asOf);
+        Long lastEventId = asOf == null
+                ? ledgerEventRepository.findLastEventId(budgetId)
+                : ledgerEventRepository.findLastEventIdAt(budgetId, asOf);
+        if (lastEventId == null) {
+            String message = "No ledger entries found for the budget at the given time";
+            log.error(message);
+            throw new ResourceNotFoundException(message);
+        }
+        LedgerState state = fold(budgetId, lastEventId);
+
+        List<LedgerCategoryDTO> categories = new ArrayList<>();
+        BigDecimal totalSpent = BigDecimal.ZERO;
+        for (CategoryType categoryType : CategoryType.values()) {
+            int category = categoryType.ordinal();
+            totalSpent = totalSpent.add(state.spent[category]);
+            if (state.planned[category] != null || state.spent[category].signum() != 0) {
+                categories.add(LedgerCategoryDTO.builder()
+                        .categoryType(categoryType)
+                        .planned(state.planned[category])
+                        .spent(state.spent[category])
+                        .build());
+            }
+        }
+        log.info("Ledger view built from {} event(s).", state.replayedEvents);
+        return LedgerViewDTO.builder()
+                .budgetId(budgetId)
+                .year(state.year)
+                .asOf(asOf == null ? clock.instant() : asOf)
+                .lastEventId(lastEventId)
+                .snapshotEventId(state.snapshotEventId)
+                .replayedEvents(state.replayedEvents)
+                .totalAmount(state.totalAmount)
+                .totalSpent(totalSpent)
+                .categories(categories)
+                .build();
+    }
+
+    @Transactional(readOnly = true)
+    public List<LedgerEventDTO> getEvents(Long budgetId, long afterId, int limit) {
+        log.info("Fetching ledger events of budget with id '{}' after '{}'.", budgetId, afterId);
+        if (limit < 1 || limit > 1000) {
+            String message = "The limit must be between 1 and 1000.";
+            log.error(message);
+            throw new IllegalArgumentException(message);
+        }
+        List<LedgerEventDTO> events = ledgerEventRepository.findByBudgetIdAndIdGreaterThanOrderById(budgetId, afterId, PageRequest.of(0, limit))
+                .stream()
+                .map(event -> LedgerEventDTO.builder()
+                        .id(event.getId())
+                        .type(event.getType())
+                        .occurredAt(event.getOccurredAt())
+                        .year(event.getYear())
+                        .expenseId(event.getExpenseId())
+                        .categoryType(event.getCategoryType())
+                        .amount(event.getAmount())
+                        .previousCategoryType(event.getPreviousCategoryType())
+                        .previousAmount(event.getPreviousAmount())
+                        .build())
+                .toList();
+        log.info("Fetch completed.");
+        return events;
+    }
+
+    /**
+     * Rebuilds the state of a budget after the event {@code upToEventId} from the latest snapshot before it.
+     */
+    LedgerState fold(Long budgetId, Long upToEventId) {
+        LedgerState state = new LedgerState();
+        Long snapshotEventId = ledgerSnapshotRepository.findLastSnapshotEventId(budgetId, upToEventId);
+        if (snapshotEventId != null) {
+            state.restore(snapshotEventId, ledgerSnapshotRepository.findByBudgetIdAndEventId(budgetId, snapshotEventId));
+        }
+        List<LedgerEvent> tail = ledgerEventRepository.findByBudgetIdAndIdGreaterThanAndIdLessThanEqualOrderById(
+                budgetId, snapshotEventId == null ? 0L : snapshotEventId, upToEventId);
+        tail.forEach(state::apply);
+        state.replayedEvents = tail.size();
+        return state;
+    }
+
+    /**
+     * Current state of the ledger of a budget, or null if the ledger of the budget was not started yet.
+     */
+    LedgerState currentState(Long budgetId) {
+        Long lastEventId = ledgerEventRepository.findLastEventId(budgetId);
+        return lastEventId == null ? null : fold(budgetId, lastEventId);
+    }
+
+    /**
+     * Appends a posting without expense that corrects the spend of a category, the history itself is never rewritten.
+     */
+    void appendAdjustment(Long budgetId, CategoryType categoryType, BigDecimal amount) {
+        append(LedgerEvent.builder()
+                .budgetId(budgetId)
+                .type(LedgerEventType.EXPENSE_POSTED)
+                .occurredAt(clock.instant())
+                .categoryType(categoryType)
+                .amount(amount)
+                .build());
+        log.warn("Adjusted the ledger spend of category {} of budget with id '{}' by {}.", categoryType, budgetId, amount);
+    }
+
+    private boolean isStarted(Long budgetId) {
+        if (startedBudgets.contains(budgetId)) {
+            return true;
+        }
+        if (!ledgerEventRepository.existsByBudgetId(budgetId)) {
+            return false;
+        }
+        // The ledger may have been started by this transaction, so it is only remembered once that is committed
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    startedBudgets.add(budgetId);
+                }
+            });
+        } else {
+            startedBudgets.add(budgetId);
+        }
+        return true;
+    }
+
+    /**
+     * Starts the ledger of a budget changed before it had one. Spend is read after the change was flushed,
+     * so the change itself is taken out of the opening spend and recorded as its own event.
+     */
+    private void ensureStarted(Long budgetId, ExpenseChangedEvent event) {
+        if (isStarted(budgetId)) {
+            return;
+        }
+        budgetRepository.findById(budgetId).ifPresent(budget -> {
+            BigDecimal[] opening = loadSpent(budgetId);
+            if (budgetId.equals(budgetOf(event.getCurrent()))) {
+                int category = event.getCurrent().getCategoryType().ordinal();
+                opening[category] = opening[category].subtract(event.getCurrent().getAmount());
+            }
+            if (budgetId.equals(budgetOf(event.getPrevious()))) {
+                int category = event.getPrevious().getCategoryType().ordinal();
+                opening[category] = opening[category].add(event.getPrevious().getAmount());
+            }
+            start(budget, opening);
+        });
+    }
+
+    private void start(Budget budget, BigDecimal[] openingSpent) {
+        append(budgetEvent(LedgerEventType.BUDGET_CREATED, budget, null, budget.getTotalAmount()).build());
+        budget.getBudgetPlanned().entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(planned -> append(budgetEvent(LedgerEventType.CATEGORY_REALLOCATED, budget, planned.getKey(), planned.getValue()).build()));
+        for (CategoryType categoryType : CategoryType.values()) {
+            if (openingSpent[categoryType.ordinal()].signum() != 0) {
+                append(LedgerEvent.builder()
+                        .budgetId(budget.getId())
+                        .type(LedgerEventType.EXPENSE_POSTED)
+                        .occurredAt(clock.instant())
+                        .categoryType(categoryType)
+                        .amount(openingSpent[categoryType.ordinal()])
+                        .build());
+            }
+        }
+        log.info("Ledger of budget with id '{}' started.", budget.getId());
+    }
+
+    private void append(LedgerEvent event) {
+        LedgerEvent saved = ledgerEventRepository.save(event);
+        AtomicInteger count = eventsSinceSnapshot.computeIfAbsent(saved.getBudgetId(), id -> new AtomicInteger());
+        if (count.incrementAndGet() >= snapshotInterval) {
+            count.set(0);
+            takeSnapshot(saved.getBudgetId(), saved.getId());
+        }
+    }
+
+    private void takeSnapshot(Long budgetId, Long eventId) {
+        LedgerState state = fold(budgetId, eventId);
+        Instant takenAt = clock.instant();
+        List<LedgerSnapshot> rows = new ArrayList<>();
+        rows.add(LedgerSnapshot.builder()
+                .budgetId(budgetId)
+                .eventId(eventId)
+                .takenAt(takenAt)
+                .year(state.year)
+                .planned(state.totalAmount)
+                .build());
+        for (CategoryType categoryType : CategoryType.values()) {
+            int category = categoryType.ordinal();
+            if (state.planned[category] != null || state.spent[category].signum() != 0) {
+                rows.add(LedgerSnapshot.builder()
+                        .budgetId(budgetId)
+                        .eventId(eventId)
+                        .takenAt(takenAt)
+                        .categoryType(categoryType)
+                        .planned(state.planned[category])
+                        .spent(state.spent[category])
+                        .build());
+            }
+        }
+        ledgerSnapshotRepository.saveAll(rows);
+        log.info("Ledger snapshot of budget with id '{}' taken at event '{}'.", budgetId, eventId);
+    }
+
+    private LedgerEvent.LedgerEventBuilder budgetEvent(LedgerEventType type, Budget budget, CategoryType categoryType, BigDecimal amount) {
+        return LedgerEvent.builder()
+                .budgetId(budget.getId())
+                .type(type)
+                .occurredAt(clock.instant())
+                .year(budget.getYear())
+                .categoryType(categoryType)
+                .amount(amount);
+    }
+
+    private LedgerEvent.LedgerEventBuilder expenseEvent(LedgerEventType type, Long budgetId, Long expenseId, ExpenseSnapshot expense) {
+        return LedgerEvent.builder()
+                .budgetId(budgetId)
+                .type(type)
+                .occurredAt(clock.instant())
+                .expenseId(expenseId)
+                .categoryType(expense.getCategoryType())
+                .amount(expense.getAmount());
+    }
+
+    private BigDecimal[] loadSpent(Long budgetId) {
+        BigDecimal[] spent = new BigDecimal[CATEGORIES];
+        Arrays.fill(spent, BigDecimal.ZERO);
+        for (CategoryTotal total : expenseRepository.sumByCategory(budgetId)) {
+            spent[total.getCategoryType().ordinal()] = total.getAmount();
+        }
+        return spent;
+    }
+
+    private static Long budgetOf(ExpenseSnapshot expense) {
+        if (expense == null || expense.getCategoryType() == null || expense.getAmount() == null) {
+            return null;
+        }
+        return expense.getBudgetId();
+    }
+
+    private static boolean sameAmount(BigDecimal first, BigDecimal second) {
+        return first == null ? second == null : second != null && first.compareTo(second) == 0;
+    }
+
+    /**
+     * State of a budget folded from its events, categories indexed by ordinal; a null planned amount is not planned.
+     */
+    static class LedgerState {
+        private Integer year;
+        private BigDecimal totalAmount;
+        private final BigDecimal[] planned = new BigDecimal[CATEGORIES];
+        private final BigDecimal[] spent = new BigDecimal[CATEGORIES];
+        private Long snapshotEventId;
+        private int replayedEvents;
+
+        LedgerState() {
+            Arrays.fill(spent, BigDecimal.ZERO);
+        }
+
+        void restore(Long eventId, List<LedgerSnapshot> rows) {
+            snapshotEventId = eventId;
+            for (LedgerSnapshot row : rows) {
+                if (row.getCategoryType() == null) {
+                    year = row.getYear();
+                    totalAmount = row.getPlanned();
+                } else {
+                    planned[row.getCategoryType().ordinal()] = row.getPlanned();
+                    spent[row.getCategoryType().ordinal()] = row.getSpent();
+                }
+            }
+        }
+
+        void apply(LedgerEvent event) {
+            switch (event.getType()) {
+                case BUDGET_CREATED -> {
+                    year = event.getYear();
+                    totalAmount = event.getAmount();
+                }
+                case CATEGORY_REALLOCATED -> {
+                    if (event.getCategoryType() == null) {
+                        year = event.getYear();
+                        totalAmount = event.getAmount();
+                    } else {
+                        planned[event.getCategoryType().ordinal()] = event.getAmount();
+                    }
+                }
+                case EXPENSE_POSTED -> add(event.getCategoryType(), event.getAmount());
+                case EXPENSE_AMENDED -> {
+                    add(event.getPreviousCategoryType(), event.getPreviousAmount().negate());
+                    add(event.getCategoryType(), event.getAmount());
+                }
+                case EXPENSE_DELETED -> add(event.getCategoryType(), event.getAmount().negate());
+            }
+        }
+
+        private void add(CategoryType categoryType, BigDecimal amount) {
+            spent[categoryType.ordinal()] = spent[categoryType.ordinal()].add(amount);
+        }
+
+        BigDecimal getTotalAmount() {
+            return totalAmount;
+        }
+
+        BigDecimal getSpent(CategoryType categoryType) {
+            return spent[categoryType.ordinal()];
+        }
+
+        BigDecimal getPlanned(CategoryType categoryType) {
+            return planned[categoryType.ordinal()];
+        }
+    }
+}
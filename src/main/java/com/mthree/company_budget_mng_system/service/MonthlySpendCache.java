@@ -0,0 +1,237 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.event.BudgetChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseSnapshot;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.RollupGranularity;
+import com.mthree.company_budget_mng_system.model.SpendRollup;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.SpendRollupRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory spend per category (indexed by ordinal) and month of the budgets that were read recently.
+ * A budget is loaded once from the monthly rollups and then kept up to date from committed expense events,
+ * so posting an expense only adds one amount to one cell. At most {@code budget.spend-cache.max-budgets} budgets
+ * are kept; the least recently read one is dropped first.
+ * <p>
+ * Every expense write bumps the version of its budget, and a change remembers that version. A load remembers the
+ * version its rollups belong to, so a change committed before the load is not added a second time. Loads read
+ * committed data in a transaction of their own: a snapshot of the caller's transaction could miss a change whose
+ * commit callback already ran, which would then be lost for as long as the budget stays cached.
+ */
+@Component
+public class MonthlySpendCache {
+    public static final int MONTHS = 12;
+
+    private final SpendRollupRepository spendRollupRepository;
+    private final BudgetRepository budgetRepository;
+    private final TransactionTemplate loadTransaction;
+    private final int maxBudgets;
+    private final Map<Long, MonthlySpend> spendByBudget = new ConcurrentHashMap<>();
+    private final AtomicLong reads = new AtomicLong();
+
+    @Autowired
+    public MonthlySpendCache(SpendRollupRepository spendRollupRepository, BudgetRepository budgetRepository,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${budget.spend-cache.max-budgets:1000}") int maxBudgets) {
+        this.spendRollupRepository = spendRollupRepository;
+        this.budgetRepository = budgetRepository;
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        this.loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.loadTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.loadTransaction.setReadOnly(true);
+        this.maxBudgets = maxBudgets;
+    }
+
+    /**
+     * Collects the change while the budgets are still locked by the writer, and applies it once it is committed.
+     */
+    @EventListener
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        List<Change> changes = new ArrayList<>(2);
+        addChange(changes, event.getPrevious(), true);
+        addChange(changes, event.getCurrent(), false);
+        if (changes.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            changes.forEach(this::apply);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                changes.forEach(MonthlySpendCache.this::apply);
+            }
+        });
+    }
+
+    @EventListener
+    public void onBudgetChanged(BudgetChangedEvent event) {
+        if (event.isDeleted()) {
+            spendByBudget.remove(event.getBudgetId());
+        }
+    }
+
+    /**
+     * Returns a copy of the spend of a budget, {@code [category ordinal][month - 1]}.
+     */
+    public BigDecimal[][] getMonthlySpend(Long budgetId) {
+        MonthlySpend monthlySpend = spendByBudget.get(budgetId);
+        if (monthlySpend == null) {
+            monthlySpend = spendByBudget.computeIfAbsent(budgetId, id -> new MonthlySpend());
+            evictIfFull();
+        }
+        monthlySpend.lastRead = reads.incrementAndGet();
+        return monthlySpend.load(budgetId);
+    }
+
+    /**
+     * Returns a copy of the spend of a budget if it is cached, without loading it; null otherwise.
+     */
+    public BigDecimal[][] peek(Long budgetId) {
+        MonthlySpend monthlySpend = spendByBudget.get(budgetId);
+        return monthlySpend == null ? null : monthlySpend.copyIfLoaded();
+    }
+
+    public void evict(Long budgetId) {
+        spendByBudget.remove(budgetId);
+    }
+
+    int size() {
+        return spendByBudget.size();
+    }
+
+    public static BigDecimal[][] emptyArrays() {
+        BigDecimal[][] arrays = new BigDecimal[CategoryType.MAX_CATEGORIES][MONTHS];
+        for (BigDecimal[] array : arrays) {
+            Arrays.fill(array, BigDecimal.ZERO);
+        }
+        return arrays;
+    }
+
+    /**
+     * Returns the date if it lies in the year, otherwise the first or last day of the year.
+     */
+    public static LocalDate clampToYear(LocalDate date, int year) {
+        if (date.getYear() < year) {
+            return LocalDate.of(year, 1, 1);
+        }
+        if (date.getYear() > year) {
+            return LocalDate.of(year, 12, 31);
+        }
+        return date;
+    }
+
+    private void addChange(List<Change> changes, ExpenseSnapshot snapshot, boolean removed) {
+        if (snapshot == null || snapshot.getBudgetId() == null || snapshot.getDate() == null
+                || snapshot.getCategoryType() == null || snapshot.getAmount() == null) {
+            return;
+        }
+        // The writer holds the budget, so this is the locked entity with the version the change commits with
+        Long version = budgetRepository.findById(snapshot.getBudgetId()).map(Budget::getVersion).orElse(null);
+        changes.add(new Change(snapshot.getBudgetId(), snapshot.getCategoryType(), snapshot.getDate().getMonthValue() - 1,
+                removed ? snapshot.getAmount().negate() : snapshot.getAmount(), version));
+    }
+
+    private void apply(Change change) {
+        // Budgets that were never read are loaded from the rollups on first use
+        MonthlySpend monthlySpend = spendByBudget.get(change.budgetId());
+        if (monthlySpend != null) {
+            monthlySpend.addIfLoaded(change);
+        }
+    }
+
+    private void evictIfFull() {
+        int excess = spendByBudget.size() - maxBudgets;
+        if (excess > 0) {
+            spendByBudget.entrySet().stream()
+                    .sorted(Comparator.comparingLong(e -> e.getValue().lastRead))
+                    .limit(excess)
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(spendByBudget::remove);
+        }
+    }
+
+    private record Change(Long budgetId, CategoryType categoryType, int month, BigDecimal amount, Long version) {
+    }
+
+    private class MonthlySpend {
+        private BigDecimal[][] spent = emptyArrays();
+        private boolean loaded;
+        // Version of the budget the loaded rollups belong to, null if unknown
+        private Long version;
+        private volatile long lastRead = reads.incrementAndGet();
+
+        synchronized BigDecimal[][] load(Long budgetId) {
+            if (loaded) {
+                return copy();
+            }
+            return loadTransaction.execute(status -> read(budgetId));
+        }
+
+        private BigDecimal[][] read(Long budgetId) {
+            Optional<Long> before = budgetRepository.findVersionById(budgetId);
+            BigDecimal[][] read = emptyArrays();
+            for (SpendRollup rollup : spendRollupRepository.findByBudgetIdAndGranularityOrderByBucketStart(budgetId, RollupGranularity.MONTH)) {
+                int category = rollup.getCategoryType().ordinal();
+                int month = rollup.getBucketStart().getMonthValue() - 1;
+                read[category][month] = read[category][month].add(rollup.getAmount());
+            }
+            // A write committed in between can't be told apart from the rollups; the result is used once and not kept
+            if (before.equals(budgetRepository.findVersionById(budgetId))) {
+                spent = read;
+                version = before.orElse(null);
+                loaded = true;
+                return copy();
+            }
+            return read;
+        }
+
+        synchronized void addIfLoaded(Change change) {
+            // Before loading, the change is already part of the rollups that will be read
+            if (!loaded) {
+                return;
+            }
+            if (change.version() != null && version != null && change.version() <= version) {
+                return;
+            }
+            spent[change.categoryType().ordinal()][change.month()] = spent[change.categoryType().ordinal()][change.month()].add(change.amount());
+        }
+
+        synchronized BigDecimal[][] copyIfLoaded() {
+            return loaded ? copy() : null;
+        }
+
+        private BigDecimal[][] copy() {
+            BigDecimal[][] copy = new BigDecimal[spent.length][];
+            for (int category = 0; category < spent.length; category++) {
+                copy[category] = spent[category].clone();
+            }
+            return copy;
+        }
+    }
+}
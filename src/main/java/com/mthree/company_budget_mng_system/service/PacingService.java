@@ -0,0 +1,143 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.PacingProperties;
+import com.mthree.company_budget_mng_system.dto.CategoryPacingDTO;
+import com.mthree.company_budget_mng_system.dto.PacingDTO;
+import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the spend of every category with the share of its planned amount expected by the current day of the year.
+ * Spend is read from {@link MonthlySpendCache}, which expense events keep up to date, so the expense posting path does no extra work.
+ */
+@Slf4j
+@Service
+public class PacingService {
+    private static final int MONTHS = MonthlySpendCache.MONTHS;
+    private static final MathContext MATH_CONTEXT = MathContext.DECIMAL64;
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    private final BudgetRepository budgetRepository;
+    private final MonthlySpendCache monthlySpendCache;
+    private final CategoryRegistry categoryRegistry;
+    private final BigDecimal tolerance;
+    // Cumulative share of the year reached at the end of each month, per category code
+    private final Map<String, BigDecimal[]> cumulativeCurves = new HashMap<>();
+
+    @Autowired
+    public PacingService(BudgetRepository budgetRepository, MonthlySpendCache monthlySpendCache,
+                         CategoryRegistry categoryRegistry, PacingProperties pacingProperties) {
+        this.budgetRepository = budgetRepository;
+        this.monthlySpendCache = monthlySpendCache;
+        this.categoryRegistry = categoryRegistry;
+        this.tolerance = pacingProperties.getTolerance();
+        for (Map.Entry<String, List<Integer>> curve : pacingProperties.getCurves().entrySet()) {
+            cumulativeCurves.put(curve.getKey(), toCumulativeCurve(curve.getKey(), curve.getValue()));
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public PacingDTO getPacing(Long budgetId) {
+        log.info("Calculating spend pacing for budget with id '{}'.", budgetId);
+        Budget budget = budgetRepository.findById(budgetId)
+                .orElseThrow(() -> {
+                    String message = "Budget with given id doesn't exist";
+                    log.error(message);
+                    throw new ResourceNotFoundException(message);
+                });
+        PacingDTO pacing = pacing(budget, MonthlySpendCache.clampToYear(LocalDate.now(), budget.getYear()));
+        log.info("Pacing calculated.");
+        return pacing;
+    }
+
+    PacingDTO pacing(Budget budget, LocalDate asOf) {
+        BigDecimal[][] spent = monthlySpendCache.getMonthlySpend(budget.getId());
+        int month = asOf.getMonthValue() - 1;
+        BigDecimal monthFraction = BigDecimal.valueOf(asOf.getDayOfMonth())
+                .divide(BigDecimal.valueOf(asOf.lengthOfMonth()), MATH_CONTEXT);
+        BigDecimal evenShare = BigDecimal.valueOf(asOf.getDayOfYear())
+                .divide(BigDecimal.valueOf(asOf.lengthOfYear()), MATH_CONTEXT);
+        BigDecimal allowedPace = HUNDRED.add(tolerance);
+        BigDecimal[][] curves = curvesByCategory();
+
+        List<CategoryPacingDTO> categories = new ArrayList<>();
+        for (Map.Entry<CategoryType, BigDecimal> entry : budget.getBudgetPlanned().entrySet()) {
+            CategoryType categoryType = entry.getKey();
+            BigDecimal planned = entry.getValue();
+            BigDecimal spentToDate = BigDecimal.ZERO;
+            for (int m = 0; m <= month; m++) {
+                spentToDate = spentToDate.add(spent[categoryType.ordinal()][m]);
+            }
+
+            BigDecimal[] curve = curves[categoryType.ordinal()];
+            BigDecimal share = curve == null ? evenShare : curveShare(curve, month, monthFraction);
+            BigDecimal expected = planned.multiply(share);
+            BigDecimal pacePercentage = expected.signum() > 0
+                    ? spentToDate.multiply(HUNDRED).divide(expected, 2, RoundingMode.HALF_UP)
+                    : null;
+            // Nothing is expected yet (e.g. seasonal curve with an empty start), so any spend is ahead of pace
+            boolean ahead = pacePercentage == null ? spentToDate.signum() > 0 : pacePercentage.compareTo(allowedPace) > 0;
+            categories.add(CategoryPacingDTO.builder()
+                    .categoryType(categoryType)
+                    .planned(planned)
+                    .spent(spentToDate)
+                    .expected(expected.setScale(2, RoundingMode.HALF_UP))
+                    .pacePercentage(pacePercentage)
+                    .aheadOfPace(ahead)
+                    .build());
+        }
+        categories.sort(Comparator.comparing(CategoryPacingDTO::getCategoryType));
+        return PacingDTO.builder()
+                .budgetId(budget.getId())
+                .year(budget.getYear())
+                .asOf(asOf)
+                .categories(categories)
+                .build();
+    }
+
+    // The curves per category ordinal, null means an even spread; codes without a category yet are left out
+    private BigDecimal[][] curvesByCategory() {
+        BigDecimal[][] curves = new BigDecimal[CategoryType.MAX_CATEGORIES][];
+        cumulativeCurves.forEach((code, curve) -> categoryRegistry.findByCode(code)
+                .ifPresent(categoryType -> curves[categoryType.ordinal()] = curve));
+        return curves;
+    }
+
+    private static BigDecimal curveShare(BigDecimal[] cumulativeCurve, int month, BigDecimal monthFraction) {
+        BigDecimal before = month == 0 ? BigDecimal.ZERO : cumulativeCurve[month - 1];
+        return before.add(cumulativeCurve[month].subtract(before).multiply(monthFraction));
+    }
+
+    private static BigDecimal[] toCumulativeCurve(String code, List<Integer> weights) {
+        if (weights == null || weights.size() != MONTHS || weights.stream().anyMatch(w -> w == null || w < 0)) {
+            throw new IllegalArgumentException("The pacing curve of " + code + " needs 12 non-negative monthly weights.");
+        }
+        BigDecimal total = BigDecimal.valueOf(weights.stream().mapToLong(Integer::longValue).sum());
+        if (total.signum() == 0) {
+            throw new IllegalArgumentException("The pacing curve of " + code + " needs at least one positive weight.");
+        }
+        BigDecimal[] cumulative = new BigDecimal[MONTHS];
+        long running = 0;
+        for (int m = 0; m < MONTHS; m++) {
+            running += weights.get(m);
+            cumulative[m] = BigDecimal.valueOf(running).divide(total, MATH_CONTEXT);
+        }
+        return cumulative;
+    }
+}
@@ -0,0 +1,151 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.RateLimitProperties;
+import com.mthree.company_budget_mng_system.dto.RateLimitStatsDTO;
+import com.mthree.company_budget_mng_system.model.BulkheadType;
+import com.mthree.company_budget_mng_system.model.Role;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Token-bucket rate limits per caller and concurrency bulkheads for reads and writes.
+ * <p>
+ * Each bucket is a single {@link AtomicLong} holding the time at which the bucket would be full again (the
+ * generic cell rate algorithm): a request moves that time one emission interval ahead with a compare-and-set and
+ * is allowed while it stays within the burst. No locks are taken, and a bucket whose time has passed is full, so
+ * it can be dropped and recreated without changing any decision.
+ */
+@Slf4j
+@Service
+public class RateLimiter {
+
+    private final RateLimitProperties properties;
+    private final LongSupplier nanoTime;
+    private final Map<Role, Rate> userRates = new EnumMap<>(Role.class);
+    private final Rate anonymousRate;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final Map<BulkheadType, Bulkhead> bulkheads = new EnumMap<>(BulkheadType.class);
+    private final LongAdder rateLimited = new LongAdder();
+
+    @Autowired
+    public RateLimiter(RateLimitProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    RateLimiter(RateLimitProperties properties, LongSupplier nanoTime) {
+        this.properties = properties;
+        this.nanoTime = nanoTime;
+        properties.getUsers().forEach((role, limit) -> userRates.put(role, Rate.of(limit)));
+        this.anonymousRate = Rate.of(properties.getAnonymous());
+        bulkheads.put(BulkheadType.READ, new Bulkhead(properties.getMaxConcurrentReads()));
+        bulkheads.put(BulkheadType.WRITE, new Bulkhead(properties.getMaxConcurrentWrites()));
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Takes a token from the caller's bucket.
+     *
+     * @param caller username, or client address for requests without a token
+     * @param role   role of the user, null for requests without a token
+     * @return 0 when the request may run, otherwise the nanoseconds until a token is available
+     */
+    public long tryAcquire(String caller, Role role) {
+        Rate rate = role == null ? anonymousRate : userRates.get(role);
+        if (rate == null) {
+            return 0;
+        }
+        // The role is part of the key, so a user whose role changed starts with the new limit
+        String key = (role == null ? "anonymous" : role.name()) + ":" + caller;
+        long now = nanoTime.getAsLong();
+        AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        while (true) {
+            long fullAt = bucket.get();
+            long next = Math.max(fullAt, now) + rate.interval();
+            long wait = next - now - rate.capacity();
+            if (wait > 0) {
+                rateLimited.increment();
+                return wait;
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    public boolean tryEnter(BulkheadType type) {
+        Bulkhead bulkhead = bulkheads.get(type);
+        try {
+            if (bulkhead.permits.tryAcquire(properties.getBulkheadMaxWait().toNanos(), TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        bulkhead.rejected.increment();
+        return false;
+    }
+
+    public void exit(BulkheadType type) {
+        bulkheads.get(type).permits.release();
+    }
+
+    public RateLimitStatsDTO getStats() {
+        Bulkhead reads = bulkheads.get(BulkheadType.READ);
+        Bulkhead writes = bulkheads.get(BulkheadType.WRITE);
+        return RateLimitStatsDTO.builder()
+                .trackedCallers(buckets.size())
+                .rateLimited(rateLimited.sum())
+                .activeReads(reads.size - reads.permits.availablePermits())
+                .activeWrites(writes.size - writes.permits.availablePermits())
+                .rejectedReads(reads.rejected.sum())
+                .rejectedWrites(writes.rejected.sum())
+                .build();
+    }
+
+    // Full buckets behave exactly like new ones, so they are dropped to keep the map small
+    @Scheduled(fixedDelay = 60_000)
+    public void purgeIdleBuckets() {
+        long now = nanoTime.getAsLong();
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+
+    int bucketCount() {
+        return buckets.size();
+    }
+
+    // Nanoseconds between two tokens, and the burst expressed in nanoseconds
+    private record Rate(long interval, long capacity) {
+        private static Rate of(RateLimitProperties.Limit limit) {
+            if (limit == null || limit.getRequestsPerSecond() <= 0) {
+                return null;
+            }
+            long interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / limit.getRequestsPerSecond()));
+            return new Rate(interval, interval * Math.max(1, limit.getBurst()));
+        }
+    }
+
+    private static class Bulkhead {
+        private final int size;
+        private final Semaphore permits;
+        private final LongAdder rejected = new LongAdder();
+
+        private Bulkhead(int size) {
+            this.size = size;
+            this.permits = new Semaphore(size);
+        }
+    }
+}
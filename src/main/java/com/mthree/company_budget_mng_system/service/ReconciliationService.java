@@ -0,0 +1,417 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.ReconciliationProperties;
+import com.mthree.company_budget_mng_system.dto.ReconciliationDiscrepancyDTO;
+import com.mthree.company_budget_mng_system.dto.ReconciliationStatsDTO;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.BudgetSummary;
+import com.mthree.company_budget_mng_system.model.CategorySummary;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.ReconciledStore;
+import com.mthree.company_budget_mng_system.model.RollupGranularity;
+import com.mthree.company_budget_mng_system.repository.BudgetCategoryTotal;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.BudgetSummaryRepository;
+import com.mthree.company_budget_mng_system.repository.CategorySummaryRepository;
+import com.mthree.company_budget_mng_system.repository.CategoryTotal;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import com.mthree.company_budget_mng_system.repository.RollupTotal;
+import com.mthree.company_budget_mng_system.repository.SpendRollupRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Verifies that every store of totals derived from the expense table still matches it. Budgets are checked in
+ * chunks on a few threads, with one grouped query per store and chunk, at a bounded rate. A budget that looks
+ * inconsistent is checked again while holding its lock, so changes in flight are not reported, and its confirmed
+ * discrepancies are repaired or only reported.
+ */
+@Slf4j
+@Service
+public class ReconciliationService {
+    private static final int CATEGORIES = CategoryType.MAX_CATEGORIES;
+
+    private final BudgetRepository budgetRepository;
+    private final ExpenseRepository expenseRepository;
+    private final BudgetSummaryRepository budgetSummaryRepository;
+    private final CategorySummaryRepository categorySummaryRepository;
+    private final SpendRollupRepository spendRollupRepository;
+    private final BudgetSummaryService budgetSummaryService;
+    private final RollupService rollupService;
+    private final LedgerService ledgerService;
+    private final MonthlySpendCache monthlySpendCache;
+    private final YearArchiveService yearArchiveService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ReconciliationProperties properties;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    // Earliest time the next chunk may start, shared by all workers
+    private final AtomicLong nextChunkNanos = new AtomicLong(System.nanoTime());
+
+    // Guarded by this
+    private long runs;
+    private Instant lastStartedAt;
+    private long lastDurationMillis;
+    private int lastBudgetsChecked;
+    private int lastSuspected;
+    private int lastDiscrepancies;
+    private int lastRepaired;
+    private long totalDiscrepancies;
+    private long totalRepaired;
+    private final Deque<ReconciliationDiscrepancyDTO> recentDiscrepancies = new ArrayDeque<>();
+
+    @Autowired
+    public ReconciliationService(BudgetRepository budgetRepository, ExpenseRepository expenseRepository,
+                                 BudgetSummaryRepository budgetSummaryRepository, CategorySummaryRepository categorySummaryRepository,
+                                 SpendRollupRepository spendRollupRepository, BudgetSummaryService budgetSummaryService,
+                                 RollupService rollupService, LedgerService ledgerService, MonthlySpendCache monthlySpendCache,
+                                 YearArchiveService yearArchiveService, PlatformTransactionManager transactionManager,
+                                 ReconciliationProperties properties) {
+        this.budgetRepository = budgetRepository;
+        this.expenseRepository = expenseRepository;
+        this.budgetSummaryRepository = budgetSummaryRepository;
+        this.categorySummaryRepository = categorySummaryRepository;
+        this.spendRollupRepository = spendRollupRepository;
+        this.budgetSummaryService = budgetSummaryService;
+        this.rollupService = rollupService;
+        this.ledgerService = ledgerService;
+        this.monthlySpendCache = monthlySpendCache;
+        this.yearArchiveService = yearArchiveService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.properties = properties;
+    }
+
+    @Scheduled(initialDelayString = "#{@reconciliationProperties.initialDelay.toMillis()}",
+            fixedDelayString = "#{@reconciliationProperties.interval.toMillis()}")
+    public void scheduledRun() {
+        if (properties.isEnabled()) {
+            reconcile();
+        }
+    }
+
+    /**
+     * Verifies all budgets once. Returns right away with the stats of the previous run if a run is in progress.
+     */
+    public ReconciliationStatsDTO reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Reconciliation is already running.");
+            return getStats();
+        }
+        try {
+            Instant startedAt = Instant.now();
+            long start = System.nanoTime();
+            log.info("Reconciling derived totals with the expenses.");
+            List<Long> budgetIds = readOnlyTransaction.execute(status -> budgetRepository.findAllIds());
+            int chunkSize = Math.max(1, properties.getChunkSize());
+            List<List<Long>> chunks = new ArrayList<>();
+            for (int from = 0; from < budgetIds.size(); from += chunkSize) {
+                chunks.add(budgetIds.subList(from, Math.min(from + chunkSize, budgetIds.size())));
+            }
+
+            int suspected = 0;
+            List<ReconciliationDiscrepancyDTO> discrepancies = new ArrayList<>();
+            for (ChunkResult result : reconcileChunks(chunks)) {
+                suspected += result.suspected();
+                discrepancies.addAll(result.discrepancies());
+            }
+            long durationMillis = (System.nanoTime() - start) / 1_000_000;
+            record(startedAt, durationMillis, budgetIds.size(), suspected, discrepancies);
+            log.info("Reconciliation of {} budget(s) completed in {} ms with {} discrepancies.",
+                    budgetIds.size(), durationMillis, discrepancies.size());
+        } finally {
+            running.set(false);
+        }
+        return getStats();
+    }
+
+    public synchronized ReconciliationStatsDTO getStats() {
+        return ReconciliationStatsDTO.builder()
+                .running(running.get())
+                .runs(runs)
+                .lastStartedAt(lastStartedAt)
+                .lastDurationMillis(lastDurationMillis)
+                .lastBudgetsChecked(lastBudgetsChecked)
+                .lastSuspected(lastSuspected)
+                .lastDiscrepancies(lastDiscrepancies)
+                .lastRepaired(lastRepaired)
+                .totalDiscrepancies(totalDiscrepancies)
+                .totalRepaired(totalRepaired)
+                .recentDiscrepancies(new ArrayList<>(recentDiscrepancies))
+                .build();
+    }
+
+    private List<ChunkResult> reconcileChunks(List<List<Long>> chunks) {
+        int threads = Math.max(1, Math.min(properties.getThreads(), chunks.size()));
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "reconciliation-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        try {
+            List<Future<ChunkResult>> futures = new ArrayList<>(chunks.size());
+            for (List<Long> chunk : chunks) {
+                futures.add(executor.submit(() -> reconcileChunk(chunk)));
+            }
+            List<ChunkResult> results = new ArrayList<>(chunks.size());
+            for (Future<ChunkResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reconciling the derived totals.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Reconciling the derived totals failed.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private ChunkResult reconcileChunk(List<Long> budgetIds) throws InterruptedException {
+        pace(budgetIds.size());
+        try {
+            Set<Long> suspects = new LinkedHashSet<>();
+            readOnlyTransaction.execute(status -> check(budgetIds))
+                    .forEach(discrepancy -> suspects.add(discrepancy.getBudgetId()));
+            List<ReconciliationDiscrepancyDTO> discrepancies = new ArrayList<>();
+            for (Long budgetId : suspects) {
+                discrepancies.addAll(confirmAndRepair(budgetId));
+            }
+            return new ChunkResult(suspects.size(), discrepancies);
+        } catch (RuntimeException e) {
+            log.error("Reconciliation of budgets {} failed, they are verified again in the next run.", budgetIds, e);
+            return new ChunkResult(0, List.of());
+        }
+    }
+
+    /**
+     * Waits until the chunk fits within the configured rate; chunks reserve their time slot without locking.
+     */
+    private void pace(int budgets) throws InterruptedException {
+        long slotNanos = TimeUnit.SECONDS.toNanos(budgets) / Math.max(1, properties.getMaxBudgetsPerSecond());
+        long now = System.nanoTime();
+        long start = nextChunkNanos.getAndUpdate(next -> Math.max(next, now) + slotNanos);
+        long waitNanos = start - now;
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Checks the budget again holding its row lock, so no expense change is in flight, and repairs what still differs.
+     * Only a repair raises the version of the budget, which makes clients drop responses cached before it.
+     */
+    private List<ReconciliationDiscrepancyDTO> confirmAndRepair(Long budgetId) {
+        List<ReconciliationDiscrepancyDTO> discrepancies = transactionTemplate.execute(status -> {
+            if (budgetRepository.findByIdForRebuild(budgetId).isEmpty()) {
+                return List.<ReconciliationDiscrepancyDTO>of();
+            }
+            List<ReconciliationDiscrepancyDTO> confirmed = check(List.of(budgetId));
+            if (properties.isAutoRepair() && !confirmed.isEmpty()) {
+                repair(budgetId, confirmed);
+                budgetRepository.incrementVersion(budgetId);
+                budgetSummaryRepository.copyBudgetVersions(List.of(budgetId));
+            }
+            return confirmed;
+        });
+        boolean evictCache = discrepancies.stream().anyMatch(discrepancy -> discrepancy.isRepaired()
+                && (discrepancy.getStore() == ReconciledStore.MONTHLY_SPEND_CACHE || discrepancy.getStore() == ReconciledStore.SPEND_ROLLUP));
+        if (evictCache) {
+            // Reloaded from the repaired rollups on the next read
+            monthlySpendCache.evict(budgetId);
+        }
+        for (ReconciliationDiscrepancyDTO discrepancy : discrepancies) {
+            if (discrepancy.isRepaired()) {
+                log.warn("Repaired {}", describe(discrepancy));
+            } else {
+                log.error("Found {}", describe(discrepancy));
+            }
+        }
+        return discrepancies;
+    }
+
+    private void repair(Long budgetId, List<ReconciliationDiscrepancyDTO> discrepancies) {
+        Set<ReconciledStore> stores = EnumSet.noneOf(ReconciledStore.class);
+        discrepancies.forEach(discrepancy -> stores.add(discrepancy.getStore()));
+        if (stores.contains(ReconciledStore.BUDGET_SUMMARY) || stores.contains(ReconciledStore.CATEGORY_SUMMARY)) {
+            budgetSummaryService.rebuild(budgetId);
+        }
+        if (stores.contains(ReconciledStore.SPEND_ROLLUP)) {
+            rollupService.rebuild(budgetId);
+        }
+        for (ReconciliationDiscrepancyDTO discrepancy : discrepancies) {
+            if (discrepancy.getStore() == ReconciledStore.LEDGER) {
+                ledgerService.appendAdjustment(budgetId, discrepancy.getCategoryType(),
+                        discrepancy.getExpected().subtract(discrepancy.getActual()));
+            }
+            discrepancy.setRepaired(true);
+        }
+    }
+
+    /**
+     * Compares every derived store of the budgets with the sums grouped from their expenses, which are read from the
+     * archive file for archived budgets.
+     */
+    private List<ReconciliationDiscrepancyDTO> check(List<Long> budgetIds) {
+        List<Budget> budgets = budgetRepository.findByIdIn(budgetIds);
+        Map<Long, BigDecimal[]> expected = new HashMap<>();
+        for (BudgetCategoryTotal total : expenseRepository.sumByBudgetAndCategory(budgetIds)) {
+            amounts(expected, total.getBudgetId())[total.getCategoryType().ordinal()] = total.getAmount();
+        }
+        for (Budget budget : budgets) {
+            if (budget.getArchivedAt() != null) {
+                BigDecimal[] spent = zeros();
+                for (CategoryTotal total : yearArchiveService.sumByCategory(budget.getId())) {
+                    spent[total.getCategoryType().ordinal()] = total.getAmount();
+                }
+                expected.put(budget.getId(), spent);
+            }
+        }
+        Map<Long, BudgetSummary> summaries = new HashMap<>();
+        budgetSummaryRepository.findAllById(budgetIds).forEach(summary -> summaries.put(summary.getBudgetId(), summary));
+        Map<Long, CategorySummary[]> categorySummaries = new HashMap<>();
+        for (CategorySummary row : categorySummaryRepository.findByBudgetIdIn(budgetIds)) {
+            categorySummaries.computeIfAbsent(row.getBudgetId(), id -> new CategorySummary[CATEGORIES])[row.getCategoryType().ordinal()] = row;
+        }
+        Map<Long, Map<RollupGranularity, BigDecimal[]>> rollups = new HashMap<>();
+        for (RollupTotal total : spendRollupRepository.sumByBudgetGranularityAndCategory(budgetIds)) {
+            Map<RollupGranularity, BigDecimal[]> granularities = rollups.computeIfAbsent(total.getBudgetId(),
+                    id -> new EnumMap<>(RollupGranularity.class));
+            amounts(granularities, total.getGranularity())[total.getCategoryType().ordinal()] = total.getAmount();
+        }
+
+        Instant detectedAt = Instant.now();
+        List<ReconciliationDiscrepancyDTO> found = new ArrayList<>();
+        for (Budget budget : budgets) {
+            Discrepancies discrepancies = new Discrepancies(found, budget.getId(), detectedAt);
+            BigDecimal[] spent = amounts(expected, budget.getId());
+            BigDecimal totalSpent = Arrays.stream(spent).reduce(BigDecimal.ZERO, BigDecimal::add);
+
+            BudgetSummary summary = summaries.get(budget.getId());
+            if (summary == null) {
+                discrepancies.compare(ReconciledStore.BUDGET_SUMMARY, null, "totalSpent", totalSpent, null);
+            } else {
+                discrepancies.compare(ReconciledStore.BUDGET_SUMMARY, null, "totalSpent", totalSpent, summary.getTotalSpent());
+                discrepancies.compare(ReconciledStore.BUDGET_SUMMARY, null, "totalAmount", budget.getTotalAmount(), summary.getTotalAmount());
+                discrepancies.compare(ReconciledStore.BUDGET_SUMMARY, null, "restOfBudget",
+                        budget.getTotalAmount().subtract(totalSpent), summary.getRestOfBudget());
+                CategorySummary[] rows = categorySummaries.getOrDefault(budget.getId(), new CategorySummary[CATEGORIES]);
+                for (CategoryType categoryType : CategoryType.values()) {
+                    CategorySummary row = rows[categoryType.ordinal()];
+                    discrepancies.compare(ReconciledStore.CATEGORY_SUMMARY, categoryType, "spent",
+                            spent[categoryType.ordinal()], row == null ? BigDecimal.ZERO : row.getSpent());
+                    BigDecimal planned = budget.getBudgetPlanned().get(categoryType);
+                    if (planned != null || (row != null && row.getPlanned() != null)) {
+                        discrepancies.compare(ReconciledStore.CATEGORY_SUMMARY, categoryType, "planned",
+                                planned, row == null ? null : row.getPlanned());
+                    }
+                }
+            }
+
+            Map<RollupGranularity, BigDecimal[]> budgetRollups = rollups.getOrDefault(budget.getId(), Map.of());
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                BigDecimal[] rolledUp = budgetRollups.getOrDefault(granularity, zeros());
+                for (CategoryType categoryType : CategoryType.values()) {
+                    discrepancies.compare(ReconciledStore.SPEND_ROLLUP, categoryType, granularity.name(),
+                            spent[categoryType.ordinal()], rolledUp[categoryType.ordinal()]);
+                }
+            }
+
+            // Ledgers that were not started yet are started from the expenses on the next change
+            LedgerService.LedgerState ledger = ledgerService.currentState(budget.getId());
+            if (ledger != null) {
+                for (CategoryType categoryType : CategoryType.values()) {
+                    discrepancies.compare(ReconciledStore.LEDGER, categoryType, "spent",
+                            spent[categoryType.ordinal()], ledger.getSpent(categoryType));
+                }
+            }
+
+            BigDecimal[][] cached = monthlySpendCache.peek(budget.getId());
+            if (cached != null) {
+                for (CategoryType categoryType : CategoryType.values()) {
+                    BigDecimal cachedSpent = Arrays.stream(cached[categoryType.ordinal()]).reduce(BigDecimal.ZERO, BigDecimal::add);
+                    discrepancies.compare(ReconciledStore.MONTHLY_SPEND_CACHE, categoryType, "spent",
+                            spent[categoryType.ordinal()], cachedSpent);
+                }
+            }
+        }
+        return found;
+    }
+
+    private synchronized void record(Instant startedAt, long durationMillis, int budgetsChecked, int suspected,
+                                     List<ReconciliationDiscrepancyDTO> discrepancies) {
+        int repaired = (int) discrepancies.stream().filter(ReconciliationDiscrepancyDTO::isRepaired).count();
+        runs++;
+        lastStartedAt = startedAt;
+        lastDurationMillis = durationMillis;
+        lastBudgetsChecked = budgetsChecked;
+        lastSuspected = suspected;
+        lastDiscrepancies = discrepancies.size();
+        lastRepaired = repaired;
+        totalDiscrepancies += discrepancies.size();
+        totalRepaired += repaired;
+        for (ReconciliationDiscrepancyDTO discrepancy : discrepancies) {
+            recentDiscrepancies.addFirst(discrepancy);
+            if (recentDiscrepancies.size() > Math.max(0, properties.getMaxReportedDiscrepancies())) {
+                recentDiscrepancies.removeLast();
+            }
+        }
+    }
+
+    private static String describe(ReconciliationDiscrepancyDTO discrepancy) {
+        return "discrepancy in " + discrepancy.getStore() + " of budget with id '" + discrepancy.getBudgetId() + "'"
+                + (discrepancy.getCategoryType() == null ? "" : ", category " + discrepancy.getCategoryType())
+                + ", " + discrepancy.getFigure() + ": expected " + discrepancy.getExpected() + " but was " + discrepancy.getActual() + ".";
+    }
+
+    private static <K> BigDecimal[] amounts(Map<K, BigDecimal[]> amounts, K key) {
+        return amounts.computeIfAbsent(key, k -> zeros());
+    }
+
+    private static BigDecimal[] zeros() {
+        BigDecimal[] amounts = new BigDecimal[CATEGORIES];
+        Arrays.fill(amounts, BigDecimal.ZERO);
+        return amounts;
+    }
+
+    private record ChunkResult(int suspected, List<ReconciliationDiscrepancyDTO> discrepancies) {
+    }
+
+    private record Discrepancies(List<ReconciliationDiscrepancyDTO> found, Long budgetId, Instant detectedAt) {
+        void compare(ReconciledStore store, CategoryType categoryType, String figure, BigDecimal expected, BigDecimal actual) {
+            boolean equal = expected == null || actual == null ? expected == actual : expected.compareTo(actual) == 0;
+            if (!equal) {
+                found.add(ReconciliationDiscrepancyDTO.builder()
+                        .store(store)
+                        .budgetId(budgetId)
+                        .categoryType(categoryType)
+                        .figure(figure)
+                        .expected(expected)
+                        .actual(actual)
+                        .detectedAt(detectedAt)
+                        .build());
+            }
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mthree.company_budget_mng_system.config.ReportJobProperties;
+import com.mthree.company_budget_mng_system.dto.ReportJobDTO;
+import com.mthree.company_budget_mng_system.dto.ReportRequestDTO;
+import com.mthree.company_budget_mng_system.event.BudgetChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
+import com.mthree.company_budget_mng_system.exception.ServiceUnavailableException;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.ReportJobStatus;
+import com.mthree.company_budget_mng_system.model.ReportPriority;
+import com.mthree.company_budget_mng_system.model.ReportType;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.ExpenseExportRow;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Runs heavy reports in the background on a bounded pool of workers. Waiting jobs are picked by priority, then in
+ * submission order. Results are written to local files, and a request identical to an existing job is answered with
+ * that job as long as no budget or expense has changed since it was submitted.
+ */
+@Slf4j
+@Service
+public class ReportJobService {
+    private static final String CSV_CONTENT_TYPE = "text/csv";
+    private static final String JSON_CONTENT_TYPE = "application/json";
+    // Names of the files written for a job: its id, then the extension of a partial or finished result
+    private static final Pattern JOB_FILE_NAME = Pattern.compile("[0-9a-f]{8}(-[0-9a-f]{4}){3}-[0-9a-f]{12}\\.(part|json|csv)");
+
+    private final ReportService reportService;
+    private final BudgetRepository budgetRepository;
+    private final ExpenseRepository expenseRepository;
+    private final YearArchiveService yearArchiveService;
+    private final MonthlySpendCache monthlySpendCache;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+    private final ReportJobProperties properties;
+    private final Path directory;
+    private final ThreadPoolExecutor executor;
+
+    private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, ReportJob> jobsByFingerprint = new ConcurrentHashMap<>();
+    // Bumped on every committed data change, part of the fingerprint so stale results are never reused
+    private final AtomicLong dataVersion = new AtomicLong();
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Autowired
+    public ReportJobService(ReportService reportService, BudgetRepository budgetRepository, ExpenseRepository expenseRepository,
+                            YearArchiveService yearArchiveService, MonthlySpendCache monthlySpendCache, PlatformTransactionManager transactionManager,
+                            ObjectMapper objectMapper, ReportJobProperties properties) throws IOException {
+        this.reportService = reportService;
+        this.budgetRepository = budgetRepository;
+        this.expenseRepository = expenseRepository;
+        this.yearArchiveService = yearArchiveService;
+        this.monthlySpendCache = monthlySpendCache;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.directory = Paths.get(properties.getDirectory());
+        prepareDirectory();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(properties.getWorkers(), properties.getWorkers(), 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "report-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        dataVersion.incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBudgetChanged(BudgetChangedEvent event) {
+        dataVersion.incrementAndGet();
+    }
+
+    public ReportJobDTO submit(ReportRequestDTO request) {
+        List<Integer> years = reportService.normalizeYears(request.getYears());
+        ReportPriority priority = request.getPriority() == null ? ReportPriority.NORMAL : request.getPriority();
+        String fingerprint = request.getType() + ":" + years + "@" + dataVersion.get();
+        log.info("Submitting {} report for the years {}.", request.getType(), years);
+
+        ReportJob job;
+        synchronized (this) {
+            ReportJob existing = jobsByFingerprint.get(fingerprint);
+            if (existing != null && existing.isReusable()) {
+                log.info("Identical report job '{}' reused.", existing.id);
+                return existing.toDTO();
+            }
+            if (executor.getQueue().size() >= properties.getQueueCapacity()) {
+                String message = "Too many reports are waiting, try again later.";
+                log.error(message);
+                throw new ServiceUnavailableException(message);
+            }
+            job = new ReportJob(UUID.randomUUID().toString(), request.getType(), years, priority, fingerprint);
+            jobs.put(job.id, job);
+            jobsByFingerprint.put(fingerprint, job);
+        }
+        executor.execute(job);
+        log.info("Report job '{}' queued.", job.id);
+        return job.toDTO();
+    }
+
+    public ReportJobDTO getJob(String id) {
+        return findJob(id).toDTO();
+    }
+
+    /**
+     * Returns the result file of a completed job.
+     */
+    public Path getResultFile(String id) {
+        ReportJob job = findJob(id);
+        Path result = job.result;
+        if (job.status != ReportJobStatus.COMPLETED || result == null || !Files.exists(result)) {
+            String message = "Report with given id has no result";
+            log.error(message);
+            throw new ResourceNotFoundException(message);
+        }
+        return result;
+    }
+
+    public ReportJobDTO cancel(String id) {
+        log.info("Cancelling report job '{}'.", id);
+        ReportJob job = findJob(id);
+        synchronized (job) {
+            if (job.status.isFinished()) {
+                return job.toDTO();
+            }
+            job.completedAt = Instant.now();
+            job.status = ReportJobStatus.CANCELLED;
+            if (job.worker != null) {
+                job.worker.interrupt();
+            }
+        }
+        executor.remove(job);
+        evictFinishedJobs();
+        log.info("Report job '{}' cancelled.", id);
+        return job.toDTO();
+    }
+
+    private ReportJob findJob(String id) {
+        ReportJob job = jobs.get(id);
+        if (job == null) {
+            String message = "Report with given id doesn't exist";
+            log.error(message);
+            throw new ResourceNotFoundException(message);
+        }
+        return job;
+    }
+
+    private void generate(ReportJob job, Path target) throws IOException {
+        try (OutputStream out = Files.newOutputStream(target)) {
+            switch (job.type) {
+                case COMPARISON -> objectMapper.writeValue(out, reportService.compareYears(job.years));
+                case PIVOT -> writePivot(job.years, out);
+                case EXPORT -> writeExport(job.years, out);
+            }
+        }
+    }
+
+    private void writePivot(List<Integer> years, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("year,category,jan,feb,mar,apr,may,jun,jul,aug,sep,oct,nov,dec,total\n");
+        for (Integer year : years) {
+            checkCancelled();
+            Optional<Long> budgetId = budgetRepository.findByYear(year).map(Budget::getId);
+            if (budgetId.isEmpty()) {
+                continue;
+            }
+            BigDecimal[][] spent = monthlySpendCache.getMonthlySpend(budgetId.get());
+            for (CategoryType categoryType : CategoryType.values()) {
+                BigDecimal[] months = spent[categoryType.ordinal()];
+                BigDecimal total = BigDecimal.ZERO;
+                StringBuilder row = new StringBuilder().append(year).append(',').append(categoryType);
+                for (BigDecimal month : months) {
+                    row.append(',').append(month.toPlainString());
+                    total = total.add(month);
+                }
+                if (total.signum() != 0) {
+                    writer.write(row.append(',').append(total.toPlainString()).append('\n').toString());
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    private void writeExport(List<Integer> years, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("id,year,date,category,amount,description,username\n");
+        // Expenses of archived budgets come first, ordered the same way as the rows of the expense table
+        for (ExpenseExportRow row : yearArchiveService.getExportRows(years)) {
+            checkCancelled();
+            writeExportRow(writer, row);
+        }
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<ExpenseExportRow> rows = expenseRepository.streamExportRows(years)) {
+                rows.forEach(row -> {
+                    checkCancelled();
+                    try {
+                        writeExportRow(writer, row);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        });
+        writer.flush();
+    }
+
+    private static void writeExportRow(Writer writer, ExpenseExportRow row) throws IOException {
+        writer.write(row.getId() + "," + row.getYear() + "," + row.getDate() + "," + row.getCategoryType() + ","
+                + row.getAmount().toPlainString() + "," + csv(row.getDescription()) + "," + csv(row.getUsername()) + "\n");
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+
+    private synchronized void evictFinishedJobs() {
+        List<ReportJob> finished = jobs.values().stream()
+                .filter(job -> job.status.isFinished())
+                .sorted(Comparator.comparing(job -> job.completedAt))
+                .toList();
+        for (int i = 0; i < finished.size() - properties.getMaxRetained(); i++) {
+            ReportJob job = finished.get(i);
+            jobs.remove(job.id);
+            jobsByFingerprint.remove(job.fingerprint, job);
+            deleteQuietly(job.result);
+        }
+    }
+
+    private void prepareDirectory() throws IOException {
+        Files.createDirectories(directory);
+        // Jobs are kept in memory only, so files of a previous run can no longer be reached. Any other file in the
+        // directory is left alone.
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> Files.isRegularFile(file) && JOB_FILE_NAME.matcher(file.getFileName().toString()).matches())
+                    .forEach(ReportJobService::deleteQuietly);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete report file {}.", file, e);
+        }
+    }
+
+    private class ReportJob implements Runnable, Comparable<ReportJob> {
+        private final String id;
+        private final ReportType type;
+        private final List<Integer> years;
+        private final ReportPriority priority;
+        private final String fingerprint;
+        private final long sequenceNumber = sequence.incrementAndGet();
+        private final Instant submittedAt = Instant.now();
+
+        private volatile ReportJobStatus status = ReportJobStatus.QUEUED;
+        private volatile Instant completedAt;
+        private volatile Path result;
+        private volatile Long size;
+        private volatile String error;
+        private Thread worker;
+
+        private ReportJob(String id, ReportType type, List<Integer> years, ReportPriority priority, String fingerprint) {
+            this.id = id;
+            this.type = type;
+            this.years = years;
+            this.priority = priority;
+            this.fingerprint = fingerprint;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (status != ReportJobStatus.QUEUED) {
+                    return;
+                }
+                status = ReportJobStatus.RUNNING;
+                worker = Thread.currentThread();
+            }
+            log.info("Generating report job '{}'.", id);
+            Path partial = directory.resolve(id + ".part");
+            Path target = directory.resolve(id + (type == ReportType.COMPARISON ? ".json" : ".csv"));
+            ReportJobStatus outcome;
+            String failure = null;
+            try {
+                generate(this, partial);
+                Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                outcome = ReportJobStatus.COMPLETED;
+            } catch (CancellationException e) {
+                outcome = ReportJobStatus.CANCELLED;
+            } catch (Exception e) {
+                log.error("Report job '{}' failed.", id, e);
+                outcome = ReportJobStatus.FAILED;
+                failure = e.getMessage();
+            } finally {
+                deleteQuietly(partial);
+            }
+            finish(outcome, target, failure);
+            evictFinishedJobs();
+        }
+
+        private void finish(ReportJobStatus outcome, Path target, String failure) {
+            synchronized (this) {
+                worker = null;
+                // Clears an interrupt from a cancellation that arrived after the report was written
+                Thread.interrupted();
+                if (status == ReportJobStatus.CANCELLED || outcome != ReportJobStatus.COMPLETED) {
+                    deleteQuietly(target);
+                }
+                if (status == ReportJobStatus.CANCELLED) {
+                    return;
+                }
+                if (outcome == ReportJobStatus.COMPLETED) {
+                    result = target;
+                    try {
+                        size = Files.size(target);
+                    } catch (IOException e) {
+                        size = null;
+                    }
+                }
+                error = failure;
+                completedAt = Instant.now();
+                status = outcome;
+            }
+            log.info("Report job '{}' finished with status {}.", id, outcome);
+        }
+
+        private boolean isReusable() {
+            return status != ReportJobStatus.FAILED && status != ReportJobStatus.CANCELLED;
+        }
+
+        private ReportJobDTO toDTO() {
+            return ReportJobDTO.builder()
+                    .id(id)
+                    .type(type)
+                    .years(years)
+                    .priority(priority)
+                    .status(status)
+                    .submittedAt(submittedAt)
+                    .completedAt(completedAt)
+                    .contentType(type == ReportType.COMPARISON ? JSON_CONTENT_TYPE : CSV_CONTENT_TYPE)
+                    .size(size)
+                    .error(error)
+                    .build();
+        }
+
+        @Override
+        public int compareTo(ReportJob other) {
+            int byPriority = other.priority.compareTo(priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequenceNumber, other.sequenceNumber);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.dto.BudgetComparisonDTO;
+import com.mthree.company_budget_mng_system.dto.CategoryComparisonDTO;
+import com.mthree.company_budget_mng_system.dto.YearComparisonDTO;
+import com.mthree.company_budget_mng_system.event.BudgetChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import com.mthree.company_budget_mng_system.repository.YearCategoryTotal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Builds reports over several budgets on the server. Actual spend of all requested years is aggregated
+ * by one grouped query, plus the archive files of archived years, and results are cached until one of the budgets they cover changes.
+ */
+@Slf4j
+@Service
+public class ReportService {
+    private final BudgetRepository budgetRepository;
+    private final ExpenseRepository expenseRepository;
+    private final YearArchiveService yearArchiveService;
+    private final int maxYears;
+    private final int cacheSize;
+
+    private final Map<List<Integer>, CachedComparison> comparisons = new ConcurrentHashMap<>();
+    // Bumped on every invalidation so a report computed while data changed is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    @Autowired
+    public ReportService(BudgetRepository budgetRepository, ExpenseRepository expenseRepository,
+                         YearArchiveService yearArchiveService,
+                         @Value("${budget.reports.comparison.max-years:20}") int maxYears,
+                         @Value("${budget.reports.comparison.cache-size:100}") int cacheSize) {
+        this.budgetRepository = budgetRepository;
+        this.expenseRepository = expenseRepository;
+        this.yearArchiveService = yearArchiveService;
+        this.maxYears = maxYears;
+        this.cacheSize = cacheSize;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        Set<Long> budgetIds = new HashSet<>();
+        if (event.getPrevious() != null) {
+            budgetIds.add(event.getPrevious().getBudgetId());
+        }
+        if (event.getCurrent() != null) {
+            budgetIds.add(event.getCurrent().getBudgetId());
+        }
+        generation.incrementAndGet();
+        comparisons.values().removeIf(cached -> !Collections.disjoint(cached.budgetIds(), budgetIds));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBudgetChanged(BudgetChangedEvent event) {
+        // A new budget or a changed year can add a budget to reports that did not cover it before
+        generation.incrementAndGet();
+        comparisons.clear();
+    }
+
+    @Transactional(readOnly = true)
+    public BudgetComparisonDTO compareYears(List<Integer> requestedYears) {
+        List<Integer> years = normalizeYears(requestedYears);
+        log.info("Comparing budgets of the years {}.", years);
+        CachedComparison cached = comparisons.get(years);
+        if (cached != null) {
+            log.info("Comparison served from cache.");
+            return cached.report();
+        }
+
+        long startGeneration = generation.get();
+        List<Budget> budgets = budgetRepository.findByYearIn(years);
+        List<YearCategoryTotal> actualTotals = new ArrayList<>(expenseRepository.sumByYearAndCategory(years));
+        actualTotals.addAll(yearArchiveService.sumByYearAndCategory(years));
+        BudgetComparisonDTO report = buildComparison(years, budgets, actualTotals);
+
+        if (generation.get() == startGeneration) {
+            if (comparisons.size() >= cacheSize) {
+                comparisons.clear();
+            }
+            Set<Long> budgetIds = budgets.stream().map(Budget::getId).collect(Collectors.toSet());
+            comparisons.put(years, new CachedComparison(budgetIds, report));
+        }
+        log.info("Comparison completed.");
+        return report;
+    }
+
+    private static BudgetComparisonDTO buildComparison(List<Integer> years, List<Budget> budgets, List<YearCategoryTotal> actualTotals) {
+        Map<Integer, Budget> budgetByYear = budgets.stream()
+                .collect(Collectors.toMap(Budget::getYear, budget -> budget));
+        Map<Integer, Map<CategoryType, BigDecimal>> actualByYear = new HashMap<>();
+        for (YearCategoryTotal total : actualTotals) {
+            // Archived budgets of a year add to those still in the expense table
+            actualByYear.computeIfAbsent(total.getYear(), y -> new TreeMap<>())
+                    .merge(total.getCategoryType(), total.getAmount(), BigDecimal::add);
+        }
+
+        List<CategoryComparisonDTO> categories = new ArrayList<>();
+        categories.add(compareCategory(null, years, budgetByYear, actualByYear));
+        for (CategoryType categoryType : CategoryType.values()) {
+            boolean used = budgets.stream().anyMatch(budget -> budget.getBudgetPlanned().containsKey(categoryType))
+                    || actualByYear.values().stream().anyMatch(actual -> actual.containsKey(categoryType));
+            if (used) {
+                categories.add(compareCategory(categoryType, years, budgetByYear, actualByYear));
+            }
+        }
+        return BudgetComparisonDTO.builder()
+                .years(years)
+                .categories(categories)
+                .build();
+    }
+
+    private static CategoryComparisonDTO compareCategory(CategoryType categoryType, List<Integer> years, Map<Integer, Budget> budgetByYear,
+                                                         Map<Integer, Map<CategoryType, BigDecimal>> actualByYear) {
+        List<YearComparisonDTO> yearComparisons = new ArrayList<>();
+        BigDecimal previousActual = null;
+        for (Integer year : years) {
+            Budget budget = budgetByYear.get(year);
+            Map<CategoryType, BigDecimal> actual = actualByYear.getOrDefault(year, Collections.emptyMap());
+            BigDecimal plannedAmount;
+            BigDecimal actualAmount;
+            if (categoryType == null) {
+                plannedAmount = budget == null ? BigDecimal.ZERO : budget.getTotalAmount();
+                actualAmount = actual.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+            } else {
+                plannedAmount = budget == null ? BigDecimal.ZERO : budget.getBudgetPlanned().getOrDefault(categoryType, BigDecimal.ZERO);
+                actualAmount = actual.getOrDefault(categoryType, BigDecimal.ZERO);
+            }
+            yearComparisons.add(YearComparisonDTO.builder()
+                    .year(year)
+                    .planned(plannedAmount)
+                    .actual(actualAmount)
+                    .variance(plannedAmount.subtract(actualAmount))
+                    .yoyGrowth(growth(previousActual, actualAmount))
+                    .build());
+            previousActual = actualAmount;
+        }
+        return CategoryComparisonDTO.builder()
+                .categoryType(categoryType)
+                .years(yearComparisons)
+                .build();
+    }
+
+    private static BigDecimal growth(BigDecimal previous, BigDecimal current) {
+        if (previous == null || previous.signum() == 0) {
+            return null;
+        }
+        return current.subtract(previous)
+                .multiply(BigDecimal.valueOf(100))
+                .divide(previous, 2, RoundingMode.HALF_UP);
+    }
+
+    List<Integer> normalizeYears(List<Integer> years) {
+        if (years == null || years.isEmpty()) {
+            String message = "Provide at least one year to compare.";
+            log.error(message);
+            throw new IllegalArgumentException(message);
+        }
+        List<Integer> normalized = years.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
+        if (normalized.size() > maxYears) {
+            String message = "Too many years to compare (max = " + maxYears + ").";
+            log.error(message);
+            throw new IllegalArgumentException(message);
+        }
+        return List.copyOf(normalized);
+    }
+
+    private record CachedComparison(Set<Long> budgetIds, BudgetComparisonDTO report) {
+    }
+}
@@ -0,0 +1,177 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.CoalescingProperties;
+import com.mthree.company_budget_mng_system.dto.CoalescingStatsDTO;
+import com.mthree.company_budget_mng_system.event.BudgetChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight execution of reads: while a read for a key is running, identical calls wait for it and share its
+ * result instead of querying again. A finished result is also reused for a very short freshness window, which is
+ * cut short by any committed budget or expense change. A call never joins or reuses a read that started before the
+ * last change, and reads made {@link #atVersion at a version} are only shared between callers that saw that version.
+ */
+@Slf4j
+@Component
+public class RequestCoalescer {
+    private final long freshnessNanos;
+    private final int maxResults;
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, FreshResult> results = new ConcurrentHashMap<>();
+    private final Map<String, Stats> statsByName = new ConcurrentHashMap<>();
+    // Bumped on every data change so a read that started before it is not reused afterwards
+    private final AtomicLong generation = new AtomicLong();
+    // Version of the data that the caller on this thread has already checked, see atVersion
+    private static final ThreadLocal<String> VERSION = new ThreadLocal<>();
+
+    @Autowired
+    public RequestCoalescer(CoalescingProperties properties) {
+        this.freshnessNanos = properties.getFreshness().toNanos();
+        this.maxResults = properties.getMaxResults();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        invalidate();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBudgetChanged(BudgetChangedEvent event) {
+        invalidate();
+    }
+
+    /**
+     * Runs the reads of a response that is sent with the given version, usually an ETag read before the data. Calls
+     * the reads coalesce with were started after that version was committed, so the data is never older than it.
+     */
+    public static <T> T atVersion(String version, Supplier<T> reads) {
+        String previous = VERSION.get();
+        VERSION.set(version);
+        try {
+            return reads.get();
+        } finally {
+            VERSION.set(previous);
+        }
+    }
+
+    /**
+     * @param name   the operation, used for the statistics
+     * @param key    identifies equal calls, normally the operation and its arguments
+     * @param loader runs the read
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String name, String key, Supplier<T> loader) {
+        Stats stats = statsByName.computeIfAbsent(name, n -> new Stats());
+        stats.calls.increment();
+        String version = VERSION.get();
+        long startGeneration = generation.get();
+        String scopedKey = (version == null ? key : key + "@" + version) + "#" + startGeneration;
+
+        FreshResult fresh = results.get(scopedKey);
+        if (fresh != null && fresh.isFresh(System.nanoTime(), freshnessNanos)) {
+            stats.fresh.increment();
+            return (T) fresh.value;
+        }
+
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(scopedKey, flight);
+        if (running != null) {
+            stats.joined.increment();
+            return (T) await(running);
+        }
+
+        stats.executions.increment();
+        try {
+            T value = loader.get();
+            if (freshnessNanos > 0 && generation.get() == startGeneration) {
+                remember(scopedKey, value);
+            }
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(scopedKey, flight);
+        }
+    }
+
+    public List<CoalescingStatsDTO> getStats() {
+        return statsByName.entrySet().stream()
+                .map(entry -> entry.getValue().toDTO(entry.getKey()))
+                .sorted(Comparator.comparing(CoalescingStatsDTO::getMethod))
+                .toList();
+    }
+
+    private void invalidate() {
+        generation.incrementAndGet();
+        results.clear();
+    }
+
+    private void remember(String key, Object value) {
+        long now = System.nanoTime();
+        if (results.size() >= maxResults) {
+            results.values().removeIf(result -> !result.isFresh(now, freshnessNanos));
+            if (results.size() >= maxResults) {
+                return;
+            }
+        }
+        results.put(key, new FreshResult(value, now));
+    }
+
+    private static Object await(CompletableFuture<Object> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            // The followers fail the same way as the call that ran the read
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record FreshResult(Object value, long completedAt) {
+        private boolean isFresh(long now, long freshnessNanos) {
+            return now - completedAt < freshnessNanos;
+        }
+    }
+
+    private static class Stats {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder joined = new LongAdder();
+        private final LongAdder fresh = new LongAdder();
+
+        private CoalescingStatsDTO toDTO(String name) {
+            long callCount = calls.sum();
+            long executionCount = executions.sum();
+            return CoalescingStatsDTO.builder()
+                    .method(name)
+                    .calls(callCount)
+                    .executions(executionCount)
+                    .joined(joined.sum())
+                    .fresh(fresh.sum())
+                    .collapseRatio(callCount == 0 ? 0 : 1 - (double) executionCount / callCount)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.dto.BurnPointDTO;
+import com.mthree.company_budget_mng_system.dto.BurnRateDTO;
+import com.mthree.company_budget_mng_system.event.BudgetChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseSnapshot;
+import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.RollupGranularity;
+import com.mthree.company_budget_mng_system.model.SpendRollup;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.CategoryDayTotal;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import com.mthree.company_budget_mng_system.repository.SpendRollupRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Maintains daily, monthly and quarterly spend totals per budget and category.
+ * Totals are adjusted by the delta of every expense change, so time series never scan the expense table.
+ */
+@Slf4j
+@Service
+public class RollupService {
+    private final SpendRollupRepository spendRollupRepository;
+    private final ExpenseRepository expenseRepository;
+    private final BudgetRepository budgetRepository;
+    private final YearArchiveService yearArchiveService;
+
+    @Autowired
+    public RollupService(SpendRollupRepository spendRollupRepository, ExpenseRepository expenseRepository,
+                         BudgetRepository budgetRepository, YearArchiveService yearArchiveService) {
+        this.spendRollupRepository = spendRollupRepository;
+        this.expenseRepository = expenseRepository;
+        this.budgetRepository = budgetRepository;
+        this.yearArchiveService = yearArchiveService;
+    }
+
+    @EventListener
+    @Transactional
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        if (isComplete(event.getPrevious())) {
+            addToBuckets(event.getPrevious(), event.getPrevious().getAmount().negate(), -event.getPrevious().getExpenseCount());
+        }
+        if (isComplete(event.getCurrent())) {
+            addToBuckets(event.getCurrent(), event.getCurrent().getAmount(), event.getCurrent().getExpenseCount());
+        }
+    }
+
+    @EventListener
+    @Transactional
+    public void onBudgetChanged(BudgetChangedEvent event) {
+        if (event.isDeleted()) {
+            spendRollupRepository.deleteByBudgetId(event.getBudgetId());
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public BurnRateDTO getBurnRate(Long budgetId, String granularity, CategoryType categoryType) {
+        log.info("Fetching burn rate for budget with id '{}'.", budgetId);
+        RollupGranularity rollupGranularity = RollupGranularity.fromString(granularity);
+        Budget budget = findBudget(budgetId);
+        BigDecimal planned = categoryType == null ? budget.getTotalAmount() : budget.getBudgetPlanned().get(categoryType);
+        if (planned == null) {
+            String message = "No planned budget found for the category: " + categoryType;
+            log.error(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        List<SpendRollup> rollups = categoryType == null
+                ? spendRollupRepository.findByBudgetIdAndGranularityOrderByBucketStart(budgetId, rollupGranularity)
+                : spendRollupRepository.findByBudgetIdAndGranularityAndCategoryTypeOrderByBucketStart(budgetId, rollupGranularity, categoryType);
+        // Rows are ordered by bucket, categories of the same bucket are merged
+        Map<LocalDate, BigDecimal> spentPerBucket = new TreeMap<>();
+        for (SpendRollup rollup : rollups) {
+            spentPerBucket.merge(rollup.getBucketStart(), rollup.getAmount(), BigDecimal::add);
+        }
+
+        List<BurnPointDTO> points = new ArrayList<>(spentPerBucket.size());
+        BigDecimal cumulative = BigDecimal.ZERO;
+        for (Map.Entry<LocalDate, BigDecimal> entry : spentPerBucket.entrySet()) {
+            cumulative = cumulative.add(entry.getValue());
+            points.add(BurnPointDTO.builder()
+                    .bucketStart(entry.getKey())
+                    .spent(entry.getValue())
+                    .cumulativeSpent(cumulative)
+                    .remaining(planned.subtract(cumulative))
+                    .build());
+        }
+        log.info("Fetch completed.");
+        return BurnRateDTO.builder()
+                .budgetId(budgetId)
+                .granularity(rollupGranularity)
+                .categoryType(categoryType)
+                .planned(planned)
+                .points(points)
+                .build();
+    }
+
+    @Transactional(readOnly = true)
+    public List<SpendRollup> getRollups(Long budgetId, RollupGranularity granularity) {
+        return spendRollupRepository.findByBudgetIdAndGranularityOrderByBucketStart(budgetId, granularity);
+    }
+
+    /**
+     * Regenerates the rollups of a budget from its expenses with a single grouped query, or from its archive file.
+     * Holds the budget row lock, so no change is lost between reading the expenses and replacing the rollups.
+     */
+    @Transactional
+    public void rebuild(Long budgetId) {
+        log.info("Rebuilding rollups for budget with id '{}'.", budgetId);
+        Budget budget = budgetRepository.findByIdForRebuild(budgetId)
+                .orElseThrow(() -> {
+                    String message = "Budget with given id doesn't exist";
+                    log.error(message);
+                    throw new ResourceNotFoundException(message);
+                });
+        spendRollupRepository.deleteByBudgetId(budgetId);
+
+        List<CategoryDayTotal> dayTotals = budget.getArchivedAt() == null
+                ? expenseRepository.sumByCategoryAndDate(budgetId) : yearArchiveService.sumByCategoryAndDate(budgetId);
+        Map<String, SpendRollup> rollups = new HashMap<>();
+        for (CategoryDayTotal dayTotal : dayTotals) {
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                LocalDate bucketStart = granularity.bucketStart(dayTotal.getDate());
+                String key = granularity + "|" + bucketStart + "|" + dayTotal.getCategoryType();
+                SpendRollup rollup = rollups.computeIfAbsent(key, k -> SpendRollup.builder()
+                        .budgetId(budgetId)
+                        .granularity(granularity)
+                        .bucketStart(bucketStart)
+                        .categoryType(dayTotal.getCategoryType())
+                        .amount(BigDecimal.ZERO)
+                        .expenseCount(0L)
+                        .build());
+                rollup.setAmount(rollup.getAmount().add(dayTotal.getAmount()));
+                rollup.setExpenseCount(rollup.getExpenseCount() + dayTotal.getExpenseCount());
+            }
+        }
+        spendRollupRepository.saveAll(rollups.values());
+        log.info("Rebuilding rollups completed.");
+    }
+
+    private static boolean isComplete(ExpenseSnapshot snapshot) {
+        return snapshot != null && snapshot.getBudgetId() != null && snapshot.getDate() != null
+                && snapshot.getCategoryType() != null && snapshot.getAmount() != null;
+    }
+
+    private void addToBuckets(ExpenseSnapshot snapshot, BigDecimal amount, long count) {
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            LocalDate bucketStart = granularity.bucketStart(snapshot.getDate());
+            int updated = spendRollupRepository.addToBucket(snapshot.getBudgetId(), granularity, bucketStart,
+                    snapshot.getCategoryType(), amount, count);
+            if (updated == 0) {
+                spendRollupRepository.save(SpendRollup.builder()
+                        .budgetId(snapshot.getBudgetId())
+                        .granularity(granularity)
+                        .bucketStart(bucketStart)
+                        .categoryType(snapshot.getCategoryType())
+                        .amount(amount)
+                        .expenseCount(count)
+                        .build());
+            }
+        }
+    }
+
+    private Budget findBudget(Long budgetId) {
+        return budgetRepository.findById(budgetId)
+                .orElseThrow(() -> {
+                    String message = "Budget with given id doesn't exist";
+                    log.error(message);
+                    throw new ResourceNotFoundException(message);
+                });
+    }
+}
@@ -0,0 +1,255 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.dto.AlertLevelsDTO;
+import com.mthree.company_budget_mng_system.dto.ThresholdStateDTO;
+import com.mthree.company_budget_mng_system.event.BudgetChangedEvent;
+import com.mthree.company_budget_mng_system.event.ThresholdTransitionEvent;
+import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
+import com.mthree.company_budget_mng_system.model.AlertLevelConfig;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.Expense;
+import com.mthree.company_budget_mng_system.repository.AlertLevelConfigRepository;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps, per budget and category, a bitset of the alert levels that are currently crossed,
+ * so a warning is emitted once when a level is crossed (or un-crossed) instead of on every expense.
+ * Bit {@code i} of the mask is set when spending reached {@code levels[i]} percent of the planned amount.
+ */
+@Slf4j
+@Service
+public class ThresholdService {
+    private static final int MAX_LEVELS = Long.SIZE;
+
+    private final AlertLevelConfigRepository alertLevelConfigRepository;
+    private final BudgetRepository budgetRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int[] defaultLevels;
+
+    private final Map<ThresholdKey, ThresholdState> states = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ThresholdService(AlertLevelConfigRepository alertLevelConfigRepository, BudgetRepository budgetRepository,
+                            ApplicationEventPublisher eventPublisher,
+                            @Value("${budget.thresholds.levels:50,75,90,100}") int[] defaultLevels) {
+        this.alertLevelConfigRepository = alertLevelConfigRepository;
+        this.budgetRepository = budgetRepository;
+        this.eventPublisher = eventPublisher;
+        this.defaultLevels = normalizeLevels(defaultLevels);
+    }
+
+    /**
+     * Records that the spending of a category (or of the whole budget when {@code categoryType} is null)
+     * moved from {@code previousTotal} to {@code newTotal} and emits the level transitions it caused.
+     */
+    public void evaluate(Budget budget, CategoryType categoryType, BigDecimal previousTotal, BigDecimal newTotal) {
+        if (budget == null || budget.getId() == null) {
+            return;
+        }
+        BigDecimal planned = getPlannedAmount(budget, categoryType);
+        if (planned == null || planned.signum() <= 0) {
+            return;
+        }
+        ThresholdKey key = new ThresholdKey(budget.getId(), categoryType);
+        // Levels are resolved outside of compute() so no query runs while the map entry is locked
+        int[] seedLevels = states.containsKey(key) ? null : resolveLevels(budget.getId(), categoryType);
+        long[] transition = new long[2];
+        int[][] levels = new int[1][];
+        states.compute(key, (k, state) -> {
+            // State is kept in memory only, so after a restart it is seeded from the total before this change
+            ThresholdState current = state != null ? state
+                    : seedState(seedLevels != null ? seedLevels : defaultLevels, planned, previousTotal);
+            long crossed = crossedMask(current.levels(), planned, newTotal);
+            transition[0] = current.crossed();
+            transition[1] = crossed;
+            levels[0] = current.levels();
+            return new ThresholdState(current.levels(), crossed);
+        });
+        long changed = transition[0] ^ transition[1];
+        if (changed != 0) {
+            publishTransitions(budget, categoryType, levels[0], changed, transition[1]);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<ThresholdStateDTO> getThresholdStates(Long budgetId) {
+        log.info("Fetching threshold states for budget with id '{}'.", budgetId);
+        Budget budget = budgetRepository.findById(budgetId)
+                .orElseThrow(() -> {
+                    String message = "Budget with given id doesn't exist";
+                    log.error(message);
+                    throw new ResourceNotFoundException(message);
+                });
+
+        Map<CategoryType, BigDecimal> totalsPerCategory = budget.getActualExpenses().stream()
+                .collect(Collectors.groupingBy(Expense::getCategoryType,
+                        Collectors.reducing(BigDecimal.ZERO, Expense::getAmount, BigDecimal::add)));
+        BigDecimal totalExpenses = totalsPerCategory.values().stream()
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        List<ThresholdStateDTO> result = new ArrayList<>();
+        result.add(toDto(budget, null, totalExpenses));
+        for (CategoryType categoryType : budget.getBudgetPlanned().keySet()) {
+            result.add(toDto(budget, categoryType, totalsPerCategory.getOrDefault(categoryType, BigDecimal.ZERO)));
+        }
+        log.info("Fetch completed.");
+        return result;
+    }
+
+    @Transactional
+    public AlertLevelsDTO updateAlertLevels(Long budgetId, AlertLevelsDTO alertLevelsDTO) {
+        log.info("Updating alert levels for budget with id '{}'.", budgetId);
+        if (!budgetRepository.existsById(budgetId)) {
+            String message = "Budget with given id doesn't exist";
+            log.error(message);
+            throw new ResourceNotFoundException(message);
+        }
+        int[] levels = validateLevels(alertLevelsDTO.getLevels());
+        AlertLevelConfig config = alertLevelConfigRepository
+                .findByBudgetIdAndCategoryType(budgetId, alertLevelsDTO.getCategoryType())
+                .orElseGet(() -> AlertLevelConfig.builder()
+                        .budgetId(budgetId)
+                        .categoryType(alertLevelsDTO.getCategoryType())
+                        .build());
+        config.setLevels(Arrays.stream(levels).mapToObj(String::valueOf).collect(Collectors.joining(",")));
+        alertLevelConfigRepository.save(config);
+        // Crossed levels depend on the configured levels, so they are re-seeded on next use
+        evict(budgetId);
+        log.info("Update completed.");
+        return AlertLevelsDTO.builder()
+                .categoryType(alertLevelsDTO.getCategoryType())
+                .levels(Arrays.stream(levels).boxed().collect(Collectors.toList()))
+                .build();
+    }
+
+    @EventListener
+    public void onBudgetChanged(BudgetChangedEvent event) {
+        // Planned amounts may have changed, so crossed levels are re-seeded on next use
+        evict(event.getBudgetId());
+    }
+
+    public void evict(Long budgetId) {
+        states.keySet().removeIf(key -> key.budgetId().equals(budgetId));
+    }
+
+    private ThresholdStateDTO toDto(Budget budget, CategoryType categoryType, BigDecimal total) {
+        BigDecimal planned = getPlannedAmount(budget, categoryType);
+        ThresholdKey key = new ThresholdKey(budget.getId(), categoryType);
+        ThresholdState state = states.get(key);
+        if (state == null) {
+            int[] levels = resolveLevels(budget.getId(), categoryType);
+            state = planned == null || planned.signum() <= 0
+                    ? new ThresholdState(levels, 0L)
+                    : states.computeIfAbsent(key, k -> seedState(levels, planned, total));
+        }
+        return ThresholdStateDTO.builder()
+                .categoryType(categoryType)
+                .levels(Arrays.stream(state.levels()).boxed().collect(Collectors.toList()))
+                .crossedLevels(levelsOf(state.levels(), state.crossed()))
+                .build();
+    }
+
+    private static ThresholdState seedState(int[] levels, BigDecimal planned, BigDecimal total) {
+        return new ThresholdState(levels, crossedMask(levels, planned, total));
+    }
+
+    private int[] resolveLevels(Long budgetId, CategoryType categoryType) {
+        Map<CategoryType, String> configured = new HashMap<>();
+        for (AlertLevelConfig config : alertLevelConfigRepository.findByBudgetId(budgetId)) {
+            configured.put(config.getCategoryType(), config.getLevels());
+        }
+        String levels = configured.containsKey(categoryType) ? configured.get(categoryType) : configured.get(null);
+        if (levels == null || levels.isBlank()) {
+            return defaultLevels;
+        }
+        return normalizeLevels(Arrays.stream(levels.split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray());
+    }
+
+    private void publishTransitions(Budget budget, CategoryType categoryType, int[] levels, long changed, long crossed) {
+        String scope = categoryType == null ? "the total budget" : "the budget for category " + categoryType;
+        for (int i = 0; i < levels.length; i++) {
+            long bit = 1L << i;
+            if ((changed & bit) == 0) {
+                continue;
+            }
+            boolean isCrossed = (crossed & bit) != 0;
+            if (isCrossed) {
+                log.warn("You exceeded {}% of {} for the year {}.", levels[i], scope, budget.getYear());
+            } else {
+                log.info("Spending dropped below {}% of {} for the year {}.", levels[i], scope, budget.getYear());
+            }
+            eventPublisher.publishEvent(new ThresholdTransitionEvent(budget.getId(), budget.getYear(), categoryType, levels[i], isCrossed));
+        }
+    }
+
+    private static BigDecimal getPlannedAmount(Budget budget, CategoryType categoryType) {
+        if (categoryType == null) {
+            return budget.getTotalAmount();
+        }
+        return budget.getBudgetPlanned() == null ? null : budget.getBudgetPlanned().get(categoryType);
+    }
+
+    private static long crossedMask(int[] levels, BigDecimal planned, BigDecimal total) {
+        if (total == null) {
+            return 0L;
+        }
+        // total / planned >= level / 100  <=>  total * 100 >= planned * level
+        BigDecimal scaledTotal = total.multiply(BigDecimal.valueOf(100));
+        long mask = 0L;
+        for (int i = 0; i < levels.length; i++) {
+            if (scaledTotal.compareTo(planned.multiply(BigDecimal.valueOf(levels[i]))) >= 0) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    private static List<Integer> levelsOf(int[] levels, long mask) {
+        List<Integer> result = new ArrayList<>();
+        for (int i = 0; i < levels.length; i++) {
+            if ((mask & (1L << i)) != 0) {
+                result.add(levels[i]);
+            }
+        }
+        return result;
+    }
+
+    private static int[] validateLevels(List<Integer> levels) {
+        if (levels == null || levels.isEmpty() || levels.size() > MAX_LEVELS) {
+            throw new IllegalArgumentException("Provide between 1 and " + MAX_LEVELS + " alert levels.");
+        }
+        for (Integer level : levels) {
+            if (level == null || level <= 0) {
+                throw new IllegalArgumentException("Alert levels must be positive percentages.");
+            }
+        }
+        return normalizeLevels(levels.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static int[] normalizeLevels(int[] levels) {
+        int[] normalized = Arrays.stream(levels).filter(level -> level > 0).distinct().sorted().toArray();
+        return normalized.length > MAX_LEVELS ? Arrays.copyOf(normalized, MAX_LEVELS) : normalized;
+    }
+
+    private record ThresholdKey(Long budgetId, CategoryType categoryType) {
+    }
+
+    private record ThresholdState(int[] levels, long crossed) {
+    }
+}
@@ -0,0 +1,302 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mthree.company_budget_mng_system.config.TokenProperties;
+import com.mthree.company_budget_mng_system.dto.LoginRequestDTO;
+import com.mthree.company_budget_mng_system.dto.TokenDTO;
+import com.mthree.company_budget_mng_system.event.UserChangedEvent;
+import com.mthree.company_budget_mng_system.exception.UnauthorizedException;
+import com.mthree.company_budget_mng_system.model.Role;
+import com.mthree.company_budget_mng_system.repository.UserCredentials;
+import com.mthree.company_budget_mng_system.repository.UserRepository;
+import com.mthree.company_budget_mng_system.security.TokenClaims;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Issues and verifies HMAC-SHA256 signed tokens in the compact JWT format. The password is checked once per
+ * login; afterwards a request is authorized from the signature and claims of its access token alone.
+ * Signing keys and revocations are held in memory, so tokens are only valid on the instance that issued them
+ * and a restart signs everybody out.
+ */
+@Slf4j
+@Service
+public class TokenService {
+    public static final String TOKEN_TYPE = "Bearer";
+    static final String ACCESS = "access";
+    static final String REFRESH = "refresh";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int KEY_BYTES = 32;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final UserRepository userRepository;
+    private final BCryptPasswordEncoder passwordEncoder;
+    private final TokenProperties properties;
+    private final Clock clock;
+    private final SecureRandom random = new SecureRandom();
+
+    // Key used for new tokens, and every key whose tokens may still be valid by encoded token header,
+    // so verifying a token needs a single lookup instead of parsing its header
+    private volatile SigningKey currentKey;
+    private volatile Map<String, SigningKey> keys;
+
+    // Revoked token ids until the expiry of the token, and per user the last revocation of all of the user's tokens.
+    // Tokens carry the generation current when they were issued, and a revocation rejects every lower one. Unlike
+    // issue times, generations tell apart tokens issued in the same second as the revocation. The counter is shared
+    // by all users and never goes back, so a revocation can be purged once the tokens it covers have expired.
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    private final Map<String, Revocation> revocations = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    @Autowired
+    public TokenService(UserRepository userRepository, BCryptPasswordEncoder passwordEncoder, TokenProperties properties) {
+        this(userRepository, passwordEncoder, properties, Clock.systemUTC());
+    }
+
+    TokenService(UserRepository userRepository, BCryptPasswordEncoder passwordEncoder, TokenProperties properties, Clock clock) {
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.properties = properties;
+        this.clock = clock;
+        this.currentKey = newKey();
+        this.keys = Map.of(currentKey.header(), currentKey);
+    }
+
+    public TokenDTO login(LoginRequestDTO loginRequest) {
+        String username = loginRequest.getUsername();
+        log.info("Logging in user with username '{}'.", username);
+        UserCredentials credentials = userRepository.findCredentialsByUsername(username)
+                .filter(user -> passwordEncoder.matches(loginRequest.getPassword(), user.getPassword()))
+                .orElseThrow(() -> {
+                    String message = "Invalid username or password!";
+                    log.error(message);
+                    return new UnauthorizedException(message);
+                });
+        TokenDTO tokens = issueTokens(credentials.getUsername(), credentials.getRole());
+        log.info("Login completed.");
+        return tokens;
+    }
+
+    /**
+     * Exchanges a refresh token for a new token pair. Every refresh token can be used once; presenting a used
+     * one again means it was copied, so all tokens of the user are revoked.
+     */
+    public TokenDTO refresh(String refreshToken) {
+        TokenClaims claims = decode(refreshToken, REFRESH);
+        String username = claims.sub();
+        log.info("Refreshing tokens of user with username '{}'.", username);
+        if (revokedTokens.putIfAbsent(claims.jti(), claims.exp()) != null) {
+            revokeAll(username);
+            String message = "Refresh token was already used!";
+            log.error("{} Revoked all tokens of user '{}'.", message, username);
+            throw new UnauthorizedException(message);
+        }
+        // The role is read again so a change is picked up at the latest with the next refresh
+        UserCredentials credentials = userRepository.findCredentialsByUsername(username)
+                .orElseThrow(() -> {
+                    String message = "User with given username does not exists!";
+                    log.error(message);
+                    return new UnauthorizedException(message);
+                });
+        TokenDTO tokens = issueTokens(credentials.getUsername(), credentials.getRole());
+        log.info("Refresh completed.");
+        return tokens;
+    }
+
+    /**
+     * Revokes the refresh token and, when it belongs to the same user, the access token.
+     */
+    public void logout(String refreshToken, String accessToken) {
+        TokenClaims refreshClaims = decode(refreshToken, REFRESH);
+        log.info("Logging out user with username '{}'.", refreshClaims.sub());
+        revokedTokens.put(refreshClaims.jti(), refreshClaims.exp());
+        if (accessToken != null) {
+            try {
+                TokenClaims accessClaims = decode(accessToken, ACCESS);
+                if (accessClaims.sub().equals(refreshClaims.sub())) {
+                    revokedTokens.put(accessClaims.jti(), accessClaims.exp());
+                }
+            } catch (UnauthorizedException e) {
+                log.debug("Ignoring access token on logout: {}", e.getMessage());
+            }
+        }
+        log.info("Logout completed.");
+    }
+
+    /**
+     * Validates an access token without touching the database.
+     */
+    public TokenClaims verifyAccessToken(String accessToken) {
+        TokenClaims claims = decode(accessToken, ACCESS);
+        if (revokedTokens.containsKey(claims.jti())) {
+            throw new UnauthorizedException("Token was revoked!");
+        }
+        return claims;
+    }
+
+    public void revokeAll(String username) {
+        revocations.put(username, new Revocation(generation.incrementAndGet(), clock.instant().getEpochSecond()));
+    }
+
+    // Tokens carry the role and stay valid without a database read, so they must not outlive a changed
+    // password or role, or a deleted user
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        log.info("Revoking all tokens of user with username '{}'.", event.getUsername());
+        revokeAll(event.getUsername());
+    }
+
+    @Scheduled(initialDelayString = "#{@tokenProperties.keyRotation.toMillis()}",
+            fixedDelayString = "#{@tokenProperties.keyRotation.toMillis()}")
+    public synchronized void rotateKeys() {
+        Instant now = clock.instant();
+        SigningKey previous = currentKey;
+        SigningKey next = newKey();
+        Map<String, SigningKey> retained = new HashMap<>();
+        for (SigningKey key : keys.values()) {
+            if (key == previous) {
+                // Refresh tokens live longest, so the key has to verify them until the last one expires
+                retained.put(key.header(), key.retireAt(now.plus(properties.getRefreshTokenTtl())));
+            } else if (key.retiresAt().isAfter(now)) {
+                retained.put(key.header(), key);
+            }
+        }
+        // The newest keys are kept; tokens of a dropped key fail verification and their users log in again
+        List<SigningKey> byRetirement = new ArrayList<>(retained.values());
+        byRetirement.sort(Comparator.comparing(SigningKey::retiresAt));
+        for (int i = 0; i < byRetirement.size() - (properties.getMaxSigningKeys() - 1); i++) {
+            retained.remove(byRetirement.get(i).header());
+            log.warn("Dropped token signing key '{}' before its tokens expired.", byRetirement.get(i).id());
+        }
+        retained.put(next.header(), next);
+        keys = Map.copyOf(retained);
+        currentKey = next;
+        log.info("Rotated token signing key to '{}', {} key(s) still accepted.", next.id(), retained.size());
+    }
+
+    @Scheduled(fixedDelayString = "#{@tokenProperties.accessTokenTtl.toMillis()}")
+    public void purgeRevocations() {
+        long now = clock.instant().getEpochSecond();
+        long oldestLiveToken = now - properties.getRefreshTokenTtl().toSeconds();
+        revokedTokens.values().removeIf(expiry -> expiry <= now);
+        revocations.values().removeIf(revocation -> revocation.revokedAt() < oldestLiveToken);
+    }
+
+    private TokenDTO issueTokens(String username, Role role) {
+        return TokenDTO.builder()
+                .accessToken(sign(username, role, ACCESS, properties.getAccessTokenTtl().toSeconds()))
+                .refreshToken(sign(username, role, REFRESH, properties.getRefreshTokenTtl().toSeconds()))
+                .tokenType(TOKEN_TYPE)
+                .expiresIn(properties.getAccessTokenTtl().toSeconds())
+                .refreshExpiresIn(properties.getRefreshTokenTtl().toSeconds())
+                .build();
+    }
+
+    private String sign(String username, Role role, String type, long ttlSeconds) {
+        // Read before the token exists, so a concurrent revocation always covers it
+        long tokenGeneration = generation.get();
+        long issuedAt = clock.instant().getEpochSecond();
+        TokenClaims claims = new TokenClaims(properties.getIssuer(), username, role, type,
+                UUID.randomUUID().toString(), issuedAt, issuedAt + ttlSeconds, tokenGeneration);
+        SigningKey key = currentKey;
+        try {
+            String content = key.header() + "." + ENCODER.encodeToString(MAPPER.writeValueAsBytes(claims));
+            return content + "." + ENCODER.encodeToString(key.sign(content));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write token claims", e);
+        }
+    }
+
+    private TokenClaims decode(String token, String expectedType) {
+        int payloadStart = token.indexOf('.') + 1;
+        int signatureStart = token.indexOf('.', payloadStart) + 1;
+        if (payloadStart == 0 || signatureStart == 0 || token.indexOf('.', signatureStart) >= 0) {
+            throw new UnauthorizedException("Malformed token!");
+        }
+        SigningKey key = keys.get(token.substring(0, payloadStart - 1));
+        if (key == null) {
+            throw new UnauthorizedException("Token was signed with an unknown or retired key!");
+        }
+        TokenClaims claims;
+        try {
+            byte[] signature = DECODER.decode(token.substring(signatureStart));
+            if (!MessageDigest.isEqual(signature, key.sign(token.substring(0, signatureStart - 1)))) {
+                throw new UnauthorizedException("Invalid token signature!");
+            }
+            claims = MAPPER.readValue(DECODER.decode(token.substring(payloadStart, signatureStart - 1)), TokenClaims.class);
+        } catch (IllegalArgumentException | IOException e) {
+            throw new UnauthorizedException("Malformed token!");
+        }
+        long now = clock.instant().getEpochSecond();
+        if (!properties.getIssuer().equals(claims.iss()) || !expectedType.equals(claims.typ())
+                || claims.sub() == null || claims.jti() == null) {
+            throw new UnauthorizedException("Invalid token claims!");
+        }
+        if (claims.exp() <= now) {
+            throw new UnauthorizedException("Token expired!");
+        }
+        Revocation revocation = revocations.get(claims.sub());
+        if (revocation != null && claims.gen() < revocation.generation()) {
+            throw new UnauthorizedException("Token was revoked!");
+        }
+        return claims;
+    }
+
+    private SigningKey newKey() {
+        byte[] secret = new byte[KEY_BYTES];
+        random.nextBytes(secret);
+        String id = UUID.randomUUID().toString();
+        String header = ENCODER.encodeToString(("{\"alg\":\"HS256\",\"typ\":\"JWT\",\"kid\":\"" + id + "\"}")
+                .getBytes(StandardCharsets.UTF_8));
+        SecretKeySpec key = new SecretKeySpec(secret, ALGORITHM);
+        return new SigningKey(id, header, key, Instant.MAX, ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 is not available", e);
+            }
+        }));
+    }
+
+    private record Revocation(long generation, long revokedAt) {
+    }
+
+    // Mac instances are not thread-safe, so each thread keeps an initialized one per key
+    private record SigningKey(String id, String header, SecretKeySpec secret, Instant retiresAt, ThreadLocal<Mac> macs) {
+        byte[] sign(String content) {
+            return macs.get().doFinal(content.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        SigningKey retireAt(Instant instant) {
+            return new SigningKey(id, header, secret, instant, macs);
+        }
+    }
+}
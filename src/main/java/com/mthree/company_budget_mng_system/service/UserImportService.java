@@ -0,0 +1,306 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.UserImportProperties;
+import com.mthree.company_budget_mng_system.dto.BulkUserResultDTO;
+import com.mthree.company_budget_mng_system.dto.BulkUserRowDTO;
+import com.mthree.company_budget_mng_system.dto.UserDTO;
+import com.mthree.company_budget_mng_system.exception.ConflictException;
+import com.mthree.company_budget_mng_system.model.BulkRowStatus;
+import com.mthree.company_budget_mng_system.model.Role;
+import com.mthree.company_budget_mng_system.repository.UserCredentials;
+import com.mthree.company_budget_mng_system.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Creates many users in one request. Usernames are checked against the database with IN-queries, passwords are
+ * hashed in parallel on a bounded pool outside of any transaction, and the users are inserted with JDBC batches.
+ * Every row gets its own result, so one bad row doesn't reject the others. Usernames are compared case-insensitively,
+ * like the unique index on the user table.
+ */
+@Slf4j
+@Service
+public class UserImportService {
+    private static final String INSERT_SQL = "insert into user (username, password, role) values (?, ?, ?)";
+    // Bound of the IN-lists sent to the database
+    private static final int QUERY_CHUNK_SIZE = 1000;
+    private static final List<String> DEFAULT_COLUMNS = List.of("username", "password", "role");
+
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BCryptPasswordEncoder passwordEncoder;
+    private final Validator validator;
+    private final UserImportProperties properties;
+    private final ExecutorService hashExecutor;
+
+    @Autowired
+    public UserImportService(UserRepository userRepository, JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                             BCryptPasswordEncoder passwordEncoder, Validator validator, UserImportProperties properties) {
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.passwordEncoder = passwordEncoder;
+        this.validator = validator;
+        this.properties = properties;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.hashExecutor = Executors.newFixedThreadPool(Math.max(1, properties.getHashThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "password-hash-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashExecutor.shutdownNow();
+    }
+
+    public BulkUserResultDTO importUsers(List<UserDTO> users) {
+        List<Row> rows = new ArrayList<>(users.size());
+        for (UserDTO user : users) {
+            rows.add(new Row(rows.size() + 1, user));
+        }
+        return importRows(rows);
+    }
+
+    /**
+     * Reads users from CSV with the columns username, password and role. A header line naming the columns is
+     * optional and allows any column order; fields may be quoted with double quotes.
+     */
+    public BulkUserResultDTO importCsv(String csv) {
+        List<String> lines = csv.lines().filter(line -> !line.isBlank()).toList();
+        List<String> columns = DEFAULT_COLUMNS;
+        int first = 0;
+        if (!lines.isEmpty()) {
+            List<String> header = parseCsvLine(lines.get(0)).stream().map(column -> column.trim().toLowerCase(Locale.ROOT)).toList();
+            if (header.contains("username")) {
+                columns = header;
+                first = 1;
+            }
+        }
+        List<Row> rows = new ArrayList<>(lines.size());
+        for (int i = first; i < lines.size(); i++) {
+            Row row = new Row(rows.size() + 1, null);
+            rows.add(row);
+            try {
+                row.user = toUser(columns, parseCsvLine(lines.get(i)));
+            } catch (IllegalArgumentException e) {
+                row.fail(BulkRowStatus.INVALID, e.getMessage());
+            }
+        }
+        return importRows(rows);
+    }
+
+    private BulkUserResultDTO importRows(List<Row> rows) {
+        if (rows.size() > properties.getMaxRows()) {
+            String message = "At most " + properties.getMaxRows() + " users can be created in one request.";
+            log.error(message);
+            throw new IllegalArgumentException(message);
+        }
+        log.info("Creating {} users in bulk.", rows.size());
+        long start = System.nanoTime();
+
+        List<Row> pending = validate(rows);
+        rejectExisting(pending);
+        pending = pending.stream().filter(row -> row.result.getStatus() == null).collect(Collectors.toList());
+        hashPasswords(pending);
+        insert(pending);
+
+        int created = (int) rows.stream().filter(row -> row.result.getStatus() == BulkRowStatus.CREATED).count();
+        BulkUserResultDTO result = BulkUserResultDTO.builder()
+                .total(rows.size())
+                .created(created)
+                .failed(rows.size() - created)
+                .elapsedMillis((System.nanoTime() - start) / 1_000_000)
+                .rows(rows.stream().map(row -> row.result).toList())
+                .build();
+        log.info("Creating users completed: {} created, {} failed.", result.getCreated(), result.getFailed());
+        return result;
+    }
+
+    private List<Row> validate(List<Row> rows) {
+        List<Row> valid = new ArrayList<>(rows.size());
+        // First row of every folded username
+        Map<String, Integer> firstRows = new HashMap<>();
+        for (Row row : rows) {
+            if (row.result.getStatus() != null) {
+                continue;
+            }
+            if (row.user == null) {
+                row.fail(BulkRowStatus.INVALID, "Row is empty.");
+                continue;
+            }
+            row.result.setUsername(row.user.getUsername());
+            Set<ConstraintViolation<UserDTO>> violations = validator.validate(row.user);
+            if (!violations.isEmpty()) {
+                row.fail(BulkRowStatus.INVALID, violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining(" ")));
+            } else if (firstRows.putIfAbsent(fold(row.user.getUsername()), row.result.getRow()) != null) {
+                row.fail(BulkRowStatus.DUPLICATE, "Username already appears in row " + firstRows.get(fold(row.user.getUsername()))
+                        + " of the request.");
+            } else {
+                valid.add(row);
+            }
+        }
+        return valid;
+    }
+
+    private void rejectExisting(List<Row> rows) {
+        Set<String> existing = new HashSet<>();
+        List<String> usernames = rows.stream().map(row -> fold(row.user.getUsername())).toList();
+        for (int i = 0; i < usernames.size(); i += QUERY_CHUNK_SIZE) {
+            for (String username : userRepository.findExistingUsernames(usernames.subList(i, Math.min(i + QUERY_CHUNK_SIZE, usernames.size())))) {
+                existing.add(fold(username));
+            }
+        }
+        for (Row row : rows) {
+            if (existing.contains(fold(row.user.getUsername()))) {
+                row.fail(BulkRowStatus.CONFLICT, "User with given username already exists!");
+            }
+        }
+    }
+
+    private void hashPasswords(List<Row> rows) {
+        CompletableFuture.allOf(rows.stream()
+                .map(row -> CompletableFuture.runAsync(() -> row.hash = passwordEncoder.encode(row.user.getPassword()), hashExecutor))
+                .toArray(CompletableFuture[]::new)).join();
+    }
+
+    private void insert(List<Row> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            batchInsert(rows);
+        } catch (DataIntegrityViolationException e) {
+            // Another request created some of the usernames after the check; mark them and insert the rest once more
+            log.warn("Bulk insert hit existing usernames, checking again.");
+            rejectExisting(rows);
+            rows = rows.stream().filter(row -> row.result.getStatus() == null).toList();
+            try {
+                batchInsert(rows);
+            } catch (DataIntegrityViolationException retryFailure) {
+                String message = "Usernames are being created concurrently, please retry.";
+                log.error(message);
+                throw new ConflictException(message);
+            }
+        }
+        Map<String, Long> ids = new HashMap<>();
+        List<String> usernames = rows.stream().map(row -> row.user.getUsername()).toList();
+        for (int i = 0; i < usernames.size(); i += QUERY_CHUNK_SIZE) {
+            for (UserCredentials user : userRepository.findCredentialsByUsernameIn(usernames.subList(i, Math.min(i + QUERY_CHUNK_SIZE, usernames.size())))) {
+                ids.put(fold(user.getUsername()), user.getId());
+            }
+        }
+        for (Row row : rows) {
+            row.result.setId(ids.get(fold(row.user.getUsername())));
+            row.result.setStatus(BulkRowStatus.CREATED);
+        }
+    }
+
+    private void batchInsert(List<Row> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, rows, properties.getBatchSize(), (statement, row) -> {
+            statement.setString(1, row.user.getUsername());
+            statement.setString(2, row.hash);
+            statement.setString(3, row.user.getRole().name());
+        }));
+    }
+
+    private static String fold(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    private static UserDTO toUser(List<String> columns, List<String> fields) {
+        if (fields.size() != columns.size()) {
+            throw new IllegalArgumentException("Expected " + columns.size() + " fields but found " + fields.size() + ".");
+        }
+        UserDTO user = new UserDTO();
+        for (int i = 0; i < columns.size(); i++) {
+            String value = fields.get(i).isEmpty() ? null : fields.get(i);
+            switch (columns.get(i)) {
+                case "username" -> user.setUsername(value == null ? null : value.trim());
+                case "password" -> user.setPassword(value);
+                case "role" -> user.setRole(value == null ? null : toRole(value.trim()));
+                default -> {
+                    // Unknown columns are ignored
+                }
+            }
+        }
+        return user;
+    }
+
+    private static Role toRole(String value) {
+        try {
+            return Role.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown role '" + value + "'.");
+        }
+    }
+
+    // Splits one CSV line; quoted fields may contain commas and doubled quotes
+    private static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field.");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static class Row {
+        private UserDTO user;
+        private String hash;
+        private final BulkUserRowDTO result;
+
+        private Row(int number, UserDTO user) {
+            this.user = user;
+            this.result = BulkUserRowDTO.builder().row(number).build();
+        }
+
+        private void fail(BulkRowStatus status, String message) {
+            result.setStatus(status);
+            result.setMessage(message);
+        }
+    }
+}
@@ -1,14 +1,17 @@
 package com.mthree.company_budget_mng_system.service;
 
 import com.mthree.company_budget_mng_system.dto.UserDTO;
+import com.mthree.company_budget_mng_system.event.UserChangedEvent;
 import com.mthree.company_budget_mng_system.exception.ConflictException;
 import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
 import com.mthree.company_budget_mng_system.mapper.UserMapper;
 import com.mthree.company_budget_mng_system.model.User;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
 import com.mthree.company_budget_mng_system.repository.UserRepository;
 import org.springframework.transaction.annotation.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -21,14 +24,19 @@ import java.util.stream.Collectors;
 public class UserService {
 
     private final UserRepository userRepository;
+    private final ExpenseRepository expenseRepository;
     private final UserMapper userMapper;
     private final BCryptPasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public UserService(UserRepository userRepository, UserMapper userMapper, BCryptPasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, ExpenseRepository expenseRepository, UserMapper userMapper,
+                       BCryptPasswordEncoder passwordEncoder, ApplicationEventPublisher eventPublisher) {
         this.userRepository = userRepository;
+        this.expenseRepository = expenseRepository;
         this.userMapper = userMapper;
         this.passwordEncoder = passwordEncoder;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -62,7 +70,11 @@ public class UserService {
         log.info("Removing user with username '{}'.", username);
         checkIfUserExists(username);
         Optional<User> user = userRepository.findByUsername(username);
+        // The expenses stay with their budgets, so spend and the derived totals don't change
+        int detached = expenseRepository.detachUser(user.get().getId());
+        log.info("Detached {} expense(s) from user '{}'.", detached, username);
         userRepository.deleteById(user.get().getId());
+        eventPublisher.publishEvent(new UserChangedEvent(user.get().getId(), username, true));
         log.info("Removing user completed.");
     }
 
@@ -93,6 +105,7 @@ public class UserService {
         User user = userMapper.toEntity(userDTO);
         user.setPassword(passwordEncoder.encode(user.getPassword()));
         User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangedEvent(savedUser.getId(), username, false));
         log.info("Updating user completed.");
         return userMapper.toDto(savedUser);
     }
@@ -0,0 +1,196 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.SpendLimitProperties;
+import com.mthree.company_budget_mng_system.dto.CategoryTypeAmountDTO;
+import com.mthree.company_budget_mng_system.dto.UserBudgetSpendDTO;
+import com.mthree.company_budget_mng_system.dto.UserSpendDTO;
+import com.mthree.company_budget_mng_system.event.BudgetChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseSnapshot;
+import com.mthree.company_budget_mng_system.event.UserChangedEvent;
+import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
+import com.mthree.company_budget_mng_system.model.BudgetSummary;
+import com.mthree.company_budget_mng_system.model.Expense;
+import com.mthree.company_budget_mng_system.model.UserSpend;
+import com.mthree.company_budget_mng_system.repository.BudgetSummaryRepository;
+import com.mthree.company_budget_mng_system.repository.UserRepository;
+import com.mthree.company_budget_mng_system.repository.UserSpendRepository;
+import com.mthree.company_budget_mng_system.security.UserPrincipal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Maintains the spend of every user per budget and category, and enforces the optional spending limits of users
+ * and roles. Totals are adjusted by the delta of every expense change, so neither the limit check nor the spend
+ * endpoint scans the expenses of a user.
+ */
+@Slf4j
+@Service
+public class UserSpendService {
+    private final UserSpendRepository userSpendRepository;
+    private final BudgetSummaryRepository budgetSummaryRepository;
+    private final UserRepository userRepository;
+    private final CachedUserDetailsService userDetailsService;
+    private final SpendLimitProperties properties;
+
+    @Autowired
+    public UserSpendService(UserSpendRepository userSpendRepository, BudgetSummaryRepository budgetSummaryRepository,
+                            UserRepository userRepository, CachedUserDetailsService userDetailsService,
+                            SpendLimitProperties properties) {
+        this.userSpendRepository = userSpendRepository;
+        this.budgetSummaryRepository = budgetSummaryRepository;
+        this.userRepository = userRepository;
+        this.userDetailsService = userDetailsService;
+        this.properties = properties;
+    }
+
+    /**
+     * The user authenticated for the current request, if any. Must be called on the request thread.
+     */
+    public Optional<UserPrincipal> currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken) {
+            return Optional.empty();
+        }
+        if (authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return Optional.of(principal);
+        }
+        try {
+            return Optional.of(userDetailsService.loadUserByUsername(authentication.getName()));
+        } catch (UsernameNotFoundException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * The user with the given id, for work that runs after the request the user was taken from.
+     */
+    public Optional<UserPrincipal> findUser(Long userId) {
+        return userRepository.findCredentialsById(userId).map(UserPrincipal::of);
+    }
+
+    /**
+     * Checks the spending limit of the user in the budget of the new expense and records the user as its author.
+     * Callers hold the budget lock, so the spend read here can't change before the expense is saved.
+     */
+    public void attribute(Expense expense, UserPrincipal user) {
+        attribute(expense, user, BigDecimal.ZERO);
+    }
+
+    /**
+     * Same as {@link #attribute(Expense, UserPrincipal)} for callers that save several expenses at once;
+     * {@code pending} is what the user already spends in the budget through expenses not saved yet.
+     */
+    public void attribute(Expense expense, UserPrincipal user, BigDecimal pending) {
+        if (user == null) {
+            return;
+        }
+        BigDecimal limit = getSpendingLimit(user);
+        if (limit != null) {
+            BigDecimal spent = userSpendRepository.sumByUserIdAndBudgetId(user.getId(), expense.getBudget().getId()).add(pending);
+            if (spent.add(expense.getAmount()).compareTo(limit) > 0) {
+                String message = "Adding this expense will exceed the spending limit of user " + user.getUsername();
+                log.error(message);
+                throw new IllegalArgumentException(message);
+            }
+        }
+        expense.setUser(userRepository.getReferenceById(user.getId()));
+    }
+
+    @EventListener
+    @Transactional
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        if (isAttributed(event.getPrevious())) {
+            addToTotal(event.getPrevious(), event.getPrevious().getAmount().negate(), -event.getPrevious().getExpenseCount());
+        }
+        if (isAttributed(event.getCurrent())) {
+            addToTotal(event.getCurrent(), event.getCurrent().getAmount(), event.getCurrent().getExpenseCount());
+        }
+    }
+
+    @EventListener
+    @Transactional
+    public void onBudgetChanged(BudgetChangedEvent event) {
+        if (event.isDeleted()) {
+            userSpendRepository.deleteByBudgetId(event.getBudgetId());
+        }
+    }
+
+    @EventListener
+    @Transactional
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.isDeleted() && event.getUserId() != null) {
+            userSpendRepository.deleteByUserId(event.getUserId());
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public UserSpendDTO getUserSpend(String username) {
+        log.info("Fetching spend of user with username '{}'.", username);
+        UserPrincipal user;
+        try {
+            user = userDetailsService.loadUserByUsername(username);
+        } catch (UsernameNotFoundException e) {
+            String message = "User with given username does not exists!";
+            log.error(message);
+            throw new ResourceNotFoundException(message);
+        }
+        BigDecimal limit = getSpendingLimit(user);
+
+        // Rows are ordered by budget, so the categories of one budget are adjacent
+        Map<Long, UserBudgetSpendDTO> budgets = new LinkedHashMap<>();
+        for (UserSpend row : userSpendRepository.findByUserIdOrderByBudgetIdAscCategoryTypeAsc(user.getId())) {
+            UserBudgetSpendDTO budget = budgets.computeIfAbsent(row.getBudgetId(), budgetId -> UserBudgetSpendDTO.builder()
+                    .budgetId(budgetId)
+                    .spent(BigDecimal.ZERO)
+                    .spendingLimit(limit)
+                    .categories(new ArrayList<>())
+                    .build());
+            budget.setSpent(budget.getSpent().add(row.getAmount()));
+            budget.setExpenseCount(budget.getExpenseCount() + row.getExpenseCount());
+            budget.getCategories().add(new CategoryTypeAmountDTO(row.getCategoryType(), row.getAmount()));
+        }
+        for (BudgetSummary summary : budgetSummaryRepository.findAllById(budgets.keySet())) {
+            budgets.get(summary.getBudgetId()).setYear(summary.getYear());
+        }
+        log.info("Fetch completed.");
+        return UserSpendDTO.builder()
+                .username(user.getUsername())
+                .role(user.getRole())
+                .budgets(new ArrayList<>(budgets.values()))
+                .build();
+    }
+
+    public BigDecimal getSpendingLimit(UserPrincipal user) {
+        BigDecimal userLimit = properties.getUsers().get(user.getUsername());
+        return userLimit != null ? userLimit : properties.getRoles().get(user.getRole());
+    }
+
+    private static boolean isAttributed(ExpenseSnapshot snapshot) {
+        return snapshot != null && snapshot.getUserId() != null && snapshot.getBudgetId() != null
+                && snapshot.getCategoryType() != null && snapshot.getAmount() != null;
+    }
+
+    private void addToTotal(ExpenseSnapshot snapshot, BigDecimal amount, long count) {
+        int updated = userSpendRepository.addToTotal(snapshot.getUserId(), snapshot.getBudgetId(), snapshot.getCategoryType(), amount, count);
+        if (updated == 0) {
+            userSpendRepository.save(UserSpend.builder()
+                    .userId(snapshot.getUserId())
+                    .budgetId(snapshot.getBudgetId())
+                    .categoryType(snapshot.getCategoryType())
+                    .amount(amount)
+                    .expenseCount(count)
+                    .build());
+        }
+    }
+}
@@ -0,0 +1,468 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.ArchiveProperties;
+import com.mthree.company_budget_mng_system.dto.ArchiveColumnDTO;
+import com.mthree.company_budget_mng_system.dto.ExpenseDTO;
+import com.mthree.company_budget_mng_system.dto.YearArchiveDTO;
+import com.mthree.company_budget_mng_system.event.BudgetChangedEvent;
+import com.mthree.company_budget_mng_system.exception.ConflictException;
+import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
+import com.mthree.company_budget_mng_system.exception.ServiceUnavailableException;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.BudgetSummaryRepository;
+import com.mthree.company_budget_mng_system.repository.CategoryDayTotal;
+import com.mthree.company_budget_mng_system.repository.CategoryTotal;
+import com.mthree.company_budget_mng_system.repository.ExpenseColumnRow;
+import com.mthree.company_budget_mng_system.repository.ExpenseExportRow;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import com.mthree.company_budget_mng_system.repository.UserRepository;
+import com.mthree.company_budget_mng_system.repository.YearCategoryTotal;
+import com.mthree.company_budget_mng_system.service.ExpenseColumnFile.Column;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Moves the expenses of closed budget years out of the expense table into one {@link ExpenseColumnFile} per budget,
+ * and answers the expense queries of those budgets from the files. Archiving writes the file, then deletes the
+ * expenses and marks the budget archived in one transaction holding the budget lock; the file is removed again if
+ * that transaction rolls back. Summaries, rollups and the ledger are left as they are, as archiving doesn't change
+ * what was spent, and archived budgets take no further changes. The budget keeps the range of expense ids in its file,
+ * so a lookup by expense id only opens the files whose range contains it.
+ */
+@Slf4j
+@Service
+public class YearArchiveService {
+    private final BudgetRepository budgetRepository;
+    private final ExpenseRepository expenseRepository;
+    private final BudgetSummaryRepository budgetSummaryRepository;
+    private final UserRepository userRepository;
+    private final ArchiveProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Clock clock;
+    private final Path directory;
+    // Opened on first use; a mapping stays valid until its file is deleted
+    private final Map<Long, ExpenseColumnFile> files = new ConcurrentHashMap<>();
+
+    @Autowired
+    public YearArchiveService(BudgetRepository budgetRepository, ExpenseRepository expenseRepository,
+                              BudgetSummaryRepository budgetSummaryRepository, UserRepository userRepository,
+                              PlatformTransactionManager transactionManager, ArchiveProperties properties) throws IOException {
+        this(budgetRepository, expenseRepository, budgetSummaryRepository, userRepository, transactionManager, properties,
+                Clock.systemUTC());
+    }
+
+    YearArchiveService(BudgetRepository budgetRepository, ExpenseRepository expenseRepository,
+                       BudgetSummaryRepository budgetSummaryRepository, UserRepository userRepository,
+                       PlatformTransactionManager transactionManager, ArchiveProperties properties, Clock clock) throws IOException {
+        this.budgetRepository = budgetRepository;
+        this.expenseRepository = expenseRepository;
+        this.budgetSummaryRepository = budgetSummaryRepository;
+        this.userRepository = userRepository;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.clock = clock;
+        this.directory = Paths.get(properties.getDirectory());
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Records the expense id range of archives written before budgets kept it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexArchives() {
+        for (Long budgetId : readOnlyTransaction.execute(status -> budgetRepository.findArchivedIdsWithoutExpenseRange())) {
+            try {
+                ExpenseColumnFile file = file(budgetId);
+                if (file.getRows() > 0) {
+                    transactionTemplate.executeWithoutResult(status -> budgetRepository.setArchivedExpenseRange(budgetId,
+                            file.getStats(Column.ID).min(), file.getStats(Column.ID).max()));
+                }
+            } catch (RuntimeException e) {
+                log.error("Indexing the archive of budget with id '{}' failed.", budgetId, e);
+            }
+        }
+    }
+
+    @Scheduled(initialDelayString = "#{@archiveProperties.initialDelay.toMillis()}",
+            fixedDelayString = "#{@archiveProperties.interval.toMillis()}")
+    public void scheduledRun() {
+        if (properties.isEnabled()) {
+            archiveClosedYears();
+        }
+    }
+
+    /**
+     * Archives every budget of a closed year beyond the years kept in the expense table. A budget that fails is
+     * left as it was and tried again in the next run.
+     */
+    public int archiveClosedYears() {
+        int lastYear = Year.now(clock).getValue() - 1 - Math.max(0, properties.getKeepClosedYears());
+        List<Long> budgetIds = readOnlyTransaction.execute(status -> budgetRepository.findIdsToArchive(lastYear));
+        int archived = 0;
+        for (Long budgetId : budgetIds) {
+            try {
+                archive(budgetId);
+                archived++;
+            } catch (RuntimeException e) {
+                log.error("Archiving budget with id '{}' failed, it is tried again in the next run.", budgetId, e);
+            }
+        }
+        if (!budgetIds.isEmpty()) {
+            log.info("Archived {} of {} budget(s) up to the year {}.", archived, budgetIds.size(), lastYear);
+        }
+        return archived;
+    }
+
+    public YearArchiveDTO archive(Long budgetId) {
+        log.info("Archiving the expenses of budget with id '{}'.", budgetId);
+        YearArchiveDTO archive = transactionTemplate.execute(status -> {
+            Budget budget = budgetRepository.findByIdForUpdate(budgetId)
+                    .orElseThrow(handleBudgetNotFound());
+            if (budget.getArchivedAt() != null) {
+                String message = "The budget of the year " + budget.getYear() + " is already archived.";
+                log.error(message);
+                throw new ConflictException(message);
+            }
+            if (budget.getYear() >= Year.now(clock).getValue()) {
+                String message = "Only budgets of closed years can be archived.";
+                log.error(message);
+                throw new IllegalArgumentException(message);
+            }
+            Path path = path(budgetId);
+            files.remove(budgetId);
+            ExpenseColumnFile file = write(budget, path);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    // The expenses are still in the table, so the file must not be served or kept
+                    if (status != STATUS_COMMITTED) {
+                        files.remove(budgetId);
+                        deleteFile(path);
+                    }
+                }
+            });
+            int deleted = expenseRepository.deleteByBudgetId(budgetId);
+            if (deleted != file.getRows()) {
+                throw new IllegalStateException("Archived " + file.getRows() + " expenses but deleted " + deleted + ".");
+            }
+            budget.setArchivedAt(clock.instant());
+            if (file.getRows() > 0) {
+                budget.setArchivedMinExpenseId(file.getStats(Column.ID).min());
+                budget.setArchivedMaxExpenseId(file.getStats(Column.ID).max());
+            }
+            budgetSummaryRepository.copyBudgetVersions(List.of(budgetId));
+            files.put(budgetId, file);
+            return toDto(budget, file);
+        });
+        log.info("Archiving {} expense(s) into {} bytes completed.", archive.getExpenses(), archive.getFileBytes());
+        return archive;
+    }
+
+    public YearArchiveDTO getArchive(Long budgetId) {
+        log.info("Fetching the archive of budget with id '{}'.", budgetId);
+        Budget budget = budgetRepository.findById(budgetId)
+                .orElseThrow(handleBudgetNotFound());
+        if (budget.getArchivedAt() == null) {
+            String message = "The budget of the year " + budget.getYear() + " is not archived.";
+            log.error(message);
+            throw new ResourceNotFoundException(message);
+        }
+        YearArchiveDTO archive = toDto(budget, file(budgetId));
+        log.info("Fetch completed.");
+        return archive;
+    }
+
+    /**
+     * Rejects changes of the expenses or the plan of an archived budget.
+     */
+    public static void requireNotArchived(Budget budget) {
+        if (budget != null && budget.getArchivedAt() != null) {
+            String message = "The budget of the year " + budget.getYear() + " is archived and can't be changed.";
+            log.error(message);
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBudgetChanged(BudgetChangedEvent event) {
+        if (event.isDeleted()) {
+            files.remove(event.getBudgetId());
+            deleteFile(path(event.getBudgetId()));
+        }
+    }
+
+    public List<ExpenseDTO> getExpenses(Long budgetId) {
+        ExpenseColumnFile file = file(budgetId);
+        List<ExpenseDTO> expenses = new ArrayList<>(file.getRows());
+        long[] ids = file.readIds();
+        LocalDate[] dates = file.readDates();
+        CategoryType[] categories = file.readCategories();
+        long[] cents = file.readAmountCents();
+        String[] descriptions = file.readDescriptions();
+        for (int row = 0; row < file.getRows(); row++) {
+            expenses.add(ExpenseDTO.builder()
+                    .id(ids[row])
+                    .description(descriptions[row])
+                    .amount(ExpenseColumnFile.toAmount(cents[row]))
+                    .date(dates[row])
+                    .categoryType(categories[row])
+                    .costCenterId(file.getCostCenterId())
+                    .build());
+        }
+        return expenses;
+    }
+
+    /**
+     * Expenses of every archive that has any; empty archives are not opened.
+     */
+    public List<ExpenseDTO> getAllExpenses() {
+        List<ExpenseDTO> expenses = new ArrayList<>();
+        for (Long budgetId : readOnlyTransaction.execute(status -> budgetRepository.findArchivedIdsWithExpenses())) {
+            expenses.addAll(getExpenses(budgetId));
+        }
+        return expenses;
+    }
+
+    /**
+     * Looks the expense up in the archive files whose id range, kept on their budgets, contains it; no other file is opened.
+     */
+    public Optional<ExpenseDTO> findExpense(Long id) {
+        for (Long budgetId : readOnlyTransaction.execute(status -> budgetRepository.findArchivedIdsByExpenseId(id))) {
+            ExpenseColumnFile file = file(budgetId);
+            int row = Arrays.binarySearch(file.readIds(), id);
+            if (row >= 0) {
+                return Optional.of(ExpenseDTO.builder()
+                        .id(id)
+                        .description(file.readDescriptions()[row])
+                        .amount(ExpenseColumnFile.toAmount(file.readAmountCents()[row]))
+                        .date(file.readDates()[row])
+                        .categoryType(file.readCategories()[row])
+                        .costCenterId(file.getCostCenterId())
+                        .build());
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Spend of an archived budget per category, read from the category and amount columns only.
+     */
+    public List<CategoryTotal> sumByCategory(Long budgetId) {
+        ExpenseColumnFile file = file(budgetId);
+        CategoryType[] categories = file.readCategories();
+        long[] cents = file.readAmountCents();
+        long[] totals = new long[CategoryType.MAX_CATEGORIES];
+        boolean[] present = new boolean[CategoryType.MAX_CATEGORIES];
+        for (int row = 0; row < file.getRows(); row++) {
+            totals[categories[row].ordinal()] += cents[row];
+            present[categories[row].ordinal()] = true;
+        }
+        List<CategoryTotal> sums = new ArrayList<>();
+        for (int id = 0; id < totals.length; id++) {
+            if (present[id]) {
+                sums.add(new ArchivedCategoryTotal(CategoryType.fromId(id), ExpenseColumnFile.toAmount(totals[id])));
+            }
+        }
+        return sums;
+    }
+
+    public List<CategoryDayTotal> sumByCategoryAndDate(Long budgetId) {
+        ExpenseColumnFile file = file(budgetId);
+        CategoryType[] categories = file.readCategories();
+        LocalDate[] dates = file.readDates();
+        long[] cents = file.readAmountCents();
+        Map<CategoryType, Map<LocalDate, long[]>> totals = new TreeMap<>();
+        for (int row = 0; row < file.getRows(); row++) {
+            long[] total = totals.computeIfAbsent(categories[row], categoryType -> new TreeMap<>())
+                    .computeIfAbsent(dates[row], date -> new long[2]);
+            total[0] += cents[row];
+            total[1]++;
+        }
+        List<CategoryDayTotal> sums = new ArrayList<>();
+        totals.forEach((categoryType, days) -> days.forEach((date, total) ->
+                sums.add(new ArchivedDayTotal(categoryType, date, ExpenseColumnFile.toAmount(total[0]), total[1]))));
+        return sums;
+    }
+
+    /**
+     * Spend per year and category of the archived budgets of the years, like the grouped query over the expenses.
+     */
+    public List<YearCategoryTotal> sumByYearAndCategory(Collection<Integer> years) {
+        List<YearCategoryTotal> sums = new ArrayList<>();
+        for (Long budgetId : readOnlyTransaction.execute(status -> budgetRepository.findArchivedIdsByYearIn(years))) {
+            int year = file(budgetId).getYear();
+            for (CategoryTotal total : sumByCategory(budgetId)) {
+                sums.add(new ArchivedYearTotal(year, total.getCategoryType(), total.getAmount()));
+            }
+        }
+        return sums;
+    }
+
+    public List<ExpenseExportRow> getExportRows(Collection<Integer> years) {
+        List<ExpenseExportRow> rows = new ArrayList<>();
+        for (Long budgetId : readOnlyTransaction.execute(status -> budgetRepository.findArchivedIdsByYearIn(years))) {
+            ExpenseColumnFile file = file(budgetId);
+            long[] ids = file.readIds();
+            LocalDate[] dates = file.readDates();
+            CategoryType[] categories = file.readCategories();
+            long[] cents = file.readAmountCents();
+            String[] descriptions = file.readDescriptions();
+            Long[] userIds = file.readUserIds();
+            Map<Long, String> usernames = new HashMap<>();
+            userRepository.findAllById(Arrays.stream(userIds).filter(Objects::nonNull).distinct().toList())
+                    .forEach(user -> usernames.put(user.getId(), user.getUsername()));
+            for (int row = 0; row < file.getRows(); row++) {
+                rows.add(new ArchivedExportRow(ids[row], file.getYear(), dates[row], categories[row],
+                        ExpenseColumnFile.toAmount(cents[row]), descriptions[row], usernames.get(userIds[row])));
+            }
+        }
+        rows.sort(Comparator.comparing(ExpenseExportRow::getYear)
+                .thenComparing(ExpenseExportRow::getDate)
+                .thenComparing(ExpenseExportRow::getId));
+        return rows;
+    }
+
+    private ExpenseColumnFile write(Budget budget, Path path) {
+        ExpenseColumnFile.Writer writer = new ExpenseColumnFile.Writer(budget.getId(),
+                budget.getCostCenter() == null ? null : budget.getCostCenter().getId(), budget.getYear());
+        try (Stream<ExpenseColumnRow> rows = expenseRepository.streamColumnRows(budget.getId())) {
+            rows.forEach(row -> writer.add(row.getId(), row.getDate(), row.getCategoryType(), row.getAmount(),
+                    row.getDescription(), row.getUserId()));
+        }
+        try {
+            return writer.write(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the archive file '" + path + "'.", e);
+        }
+    }
+
+    private ExpenseColumnFile file(Long budgetId) {
+        return files.computeIfAbsent(budgetId, id -> {
+            Path path = path(id);
+            try {
+                return ExpenseColumnFile.open(path);
+            } catch (NoSuchFileException e) {
+                String message = "The archive file of budget with id " + id + " is missing.";
+                log.error(message);
+                throw new ServiceUnavailableException(message);
+            } catch (IOException e) {
+                String message = "The archive file of budget with id " + id + " can't be read.";
+                log.error(message, e);
+                throw new ServiceUnavailableException(message);
+            }
+        });
+    }
+
+    private Path path(Long budgetId) {
+        return directory.resolve("budget-" + budgetId + ExpenseColumnFile.SUFFIX);
+    }
+
+    private static void deleteFile(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.error("Could not delete the archive file '{}'.", path, e);
+        }
+    }
+
+    private static YearArchiveDTO toDto(Budget budget, ExpenseColumnFile file) {
+        List<ArchiveColumnDTO> columns = new ArrayList<>();
+        for (Column column : Column.values()) {
+            ExpenseColumnFile.ColumnStats stats = file.getStats(column);
+            columns.add(ArchiveColumnDTO.builder()
+                    .column(column.name())
+                    .min(file.getRows() == 0 ? null : format(column, stats.min()))
+                    .max(file.getRows() == 0 ? null : format(column, stats.max()))
+                    .compressedBytes(stats.compressedLength())
+                    .rawBytes(stats.rawLength())
+                    .build());
+        }
+        return YearArchiveDTO.builder()
+                .budgetId(budget.getId())
+                .year(budget.getYear())
+                .archivedAt(budget.getArchivedAt())
+                .expenses(file.getRows())
+                .fileBytes(file.getSize())
+                .columns(columns)
+                .build();
+    }
+
+    private static String format(Column column, long value) {
+        return switch (column) {
+            case DATE -> LocalDate.ofEpochDay(value).toString();
+            case CATEGORY -> CategoryType.fromId((int) value).name();
+            case AMOUNT -> ExpenseColumnFile.toAmount(value).toPlainString();
+            default -> Long.toString(value);
+        };
+    }
+
+    private static Supplier<ResourceNotFoundException> handleBudgetNotFound() {
+        return () -> {
+            String message = "Budget with given id doesn't exist";
+            log.error(message);
+            throw new ResourceNotFoundException(message);
+        };
+    }
+
+    @Value
+    private static class ArchivedCategoryTotal implements CategoryTotal {
+        CategoryType categoryType;
+        BigDecimal amount;
+    }
+
+    @Value
+    private static class ArchivedDayTotal implements CategoryDayTotal {
+        CategoryType categoryType;
+        LocalDate date;
+        BigDecimal amount;
+        Long expenseCount;
+    }
+
+    @Value
+    private static class ArchivedYearTotal implements YearCategoryTotal {
+        Integer year;
+        CategoryType categoryType;
+        BigDecimal amount;
+    }
+
+    @Value
+    private static class ArchivedExportRow implements ExpenseExportRow {
+        Long id;
+        Integer year;
+        LocalDate date;
+        CategoryType categoryType;
+        BigDecimal amount;
+        String description;
+        String username;
+    }
+}
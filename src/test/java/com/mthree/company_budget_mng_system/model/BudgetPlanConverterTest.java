@@ -0,0 +1,72 @@
+package com.mthree.company_budget_mng_system.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BudgetPlanConverterTest {
+    private final BudgetPlanConverter converter = new BudgetPlanConverter();
+
+    @Test
+    void convert_ShouldRoundTripAmounts_WithScaleOfAmountColumn() {
+        // Given
+        Map<CategoryType, BigDecimal> plan = Map.of(
+                CategoryType.IT, new BigDecimal("1200.5"),
+                CategoryType.HR, BigDecimal.ZERO,
+                CategoryType.OPERATIONS, new BigDecimal("-3.456"),
+                CategoryType.SALES, new BigDecimal("12345678901234567890123456789012345.99"));
+
+        // When
+        Map<CategoryType, BigDecimal> decoded = converter.convertToEntityAttribute(converter.convertToDatabaseColumn(plan));
+
+        // Then
+        assertEquals(4, decoded.size());
+        assertEquals(new BigDecimal("1200.50"), decoded.get(CategoryType.IT));
+        assertEquals(new BigDecimal("0.00"), decoded.get(CategoryType.HR));
+        assertEquals(new BigDecimal("-3.46"), decoded.get(CategoryType.OPERATIONS));
+        assertEquals(new BigDecimal("12345678901234567890123456789012345.99"), decoded.get(CategoryType.SALES));
+        // Loaded plans are changed in place by the services
+        decoded.put(CategoryType.TRAVEL, BigDecimal.ONE);
+    }
+
+    @Test
+    void convertToDatabaseColumn_ShouldEncodeSamePlan_ToSameBytes_RegardlessOfMapOrder() {
+        // Given
+        Map<CategoryType, BigDecimal> first = new LinkedHashMap<>();
+        first.put(CategoryType.IT, BigDecimal.TEN);
+        first.put(CategoryType.HR, BigDecimal.ONE);
+        Map<CategoryType, BigDecimal> second = new LinkedHashMap<>();
+        second.put(CategoryType.HR, BigDecimal.ONE);
+        second.put(CategoryType.IT, BigDecimal.TEN);
+
+        // When & Then
+        assertArrayEquals(converter.convertToDatabaseColumn(first), converter.convertToDatabaseColumn(second));
+        // Format byte, then id, scale, length and unscaled amount (1000 and 100) per entry
+        assertEquals(1 + 5 + 4, converter.convertToDatabaseColumn(first).length);
+    }
+
+    @Test
+    void convertToDatabaseColumn_ShouldRejectAmount_BeyondThirtyEightDigits() {
+        // Given
+        Map<CategoryType, BigDecimal> largest = Map.of(CategoryType.IT, new BigDecimal("999999999999999999999999999999999999.99"));
+        Map<CategoryType, BigDecimal> tooLarge = Map.of(CategoryType.IT, new BigDecimal("1e300"));
+
+        // When & Then
+        assertEquals(largest, converter.convertToEntityAttribute(converter.convertToDatabaseColumn(largest)));
+        assertThrows(IllegalArgumentException.class, () -> converter.convertToDatabaseColumn(tooLarge));
+    }
+
+    @Test
+    void convert_ShouldHandleEmptyPlans_AndBudgetsNotMigratedYet() {
+        // When & Then
+        assertEquals(Map.of(), converter.convertToEntityAttribute(converter.convertToDatabaseColumn(new HashMap<>())));
+        assertEquals(Map.of(), converter.convertToEntityAttribute(converter.convertToDatabaseColumn(null)));
+        assertEquals(Map.of(), converter.convertToEntityAttribute(null));
+        assertThrows(IllegalStateException.class, () -> converter.convertToEntityAttribute(new byte[]{9}));
+    }
+}
@@ -0,0 +1,79 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.BudgetPlanProperties;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class BudgetPlanMigrationTest {
+    @Autowired
+    private BudgetPlanMigration budgetPlanMigration;
+
+    @Autowired
+    private BudgetPlanProperties properties;
+
+    @Autowired
+    private BudgetRepository budgetRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("drop table if exists budget_category_amounts");
+        properties.setMigrationChunkSize(500);
+    }
+
+    @Test
+    void migrate_ShouldMovePlansOfLegacyRows_IntoThePlanColumn() {
+        // Given budgets saved before the plan column existed, in more than one chunk
+        properties.setMigrationChunkSize(1);
+        jdbcTemplate.execute("create table budget_category_amounts (budget_id bigint not null, category_type integer not null, "
+                + "amount decimal(38, 2), primary key (budget_id, category_type))");
+        Long first = legacyBudget(2097);
+        Long second = legacyBudget(2098);
+        legacyAmount(first, CategoryType.IT, "1200.50");
+        legacyAmount(first, CategoryType.MARKETING, "0.00");
+        legacyAmount(second, CategoryType.HR, "12345678901234567890123456789012345.99");
+        // A budget whose plan was already written keeps it
+        Long migrated = budgetRepository.save(Budget.builder()
+                .year(2099)
+                .totalAmount(new BigDecimal("100.00"))
+                .budgetPlanned(Map.of(CategoryType.SALES, new BigDecimal("100.00")))
+                .build()).getId();
+        legacyAmount(migrated, CategoryType.SALES, "5.00");
+
+        // When
+        budgetPlanMigration.migrate();
+
+        // Then
+        assertEquals(Map.of(CategoryType.IT, new BigDecimal("1200.50"), CategoryType.MARKETING, new BigDecimal("0.00")),
+                budgetRepository.findById(first).orElseThrow().getBudgetPlanned());
+        assertEquals(Map.of(CategoryType.HR, new BigDecimal("12345678901234567890123456789012345.99")),
+                budgetRepository.findById(second).orElseThrow().getBudgetPlanned());
+        assertEquals(Map.of(CategoryType.SALES, new BigDecimal("100.00")),
+                budgetRepository.findById(migrated).orElseThrow().getBudgetPlanned());
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from budget_category_amounts", Long.class));
+    }
+
+    private Long legacyBudget(int year) {
+        jdbcTemplate.update("insert into budget (total_amount, year, version) values (1000.00, ?, 0)", year);
+        return jdbcTemplate.queryForObject("select id from budget where year = ? and cost_center_id is null", Long.class, year);
+    }
+
+    private void legacyAmount(Long budgetId, CategoryType categoryType, String amount) {
+        jdbcTemplate.update("insert into budget_category_amounts (budget_id, category_type, amount) values (?, ?, ?)",
+                budgetId, categoryType.ordinal(), new BigDecimal(amount));
+    }
+}
@@ -3,10 +3,12 @@ package com.mthree.company_budget_mng_system.service;
 import com.mthree.company_budget_mng_system.dto.BudgetDTO;
 import com.mthree.company_budget_mng_system.dto.CategoryTypeAmountDTO;
 import com.mthree.company_budget_mng_system.exception.BudgetAlreadyExistsException;
+import com.mthree.company_budget_mng_system.exception.BudgetConflictException;
 import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
 import com.mthree.company_budget_mng_system.mapper.BudgetMapper;
 import com.mthree.company_budget_mng_system.mapper.ExpenseMapper;
 import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.BudgetFieldChange;
 import com.mthree.company_budget_mng_system.model.CategoryType;
 import com.mthree.company_budget_mng_system.model.Expense;
 import com.mthree.company_budget_mng_system.repository.BudgetRepository;
@@ -16,6 +18,7 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -25,7 +28,8 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
-@SpringBootTest
+// Every test stubs the repository differently, so finished reads must not be reused across tests
+@SpringBootTest(properties = "budget.coalescing.freshness=0ms")
 class BudgetServiceTest {
 
     @MockBean
@@ -148,6 +152,30 @@ class BudgetServiceTest {
         assertEquals("Budget with given id doesn't exist", exception.getMessage());
     }
 
+    @Test
+    void getBudgetETag_ShouldChange_WhenVersionChanges() {
+        // Given
+        when(budgetRepository.findVersionById(1L)).thenReturn(Optional.of(3L), Optional.of(4L));
+
+        // When
+        String before = budgetService.getBudgetETag(1L);
+        String after = budgetService.getBudgetETag(1L);
+
+        // Then
+        assertEquals("\"budget-1-3\"", before);
+        assertNotEquals(before, after);
+        verify(budgetRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void getBudgetETag_ShouldThrowException_WhenNotFound() {
+        // Given
+        when(budgetRepository.findVersionById(anyLong())).thenReturn(Optional.empty());
+
+        // When & Then
+        assertThrows(ResourceNotFoundException.class, () -> budgetService.getBudgetETag(1L));
+    }
+
     @Test
     void updateBudget_ShouldUpdateBudget_WhenValid() {
         // Given
@@ -167,6 +195,112 @@ class BudgetServiceTest {
         verify(budgetRepository).save(any(Budget.class));
     }
 
+    @Test
+    void updateBudget_ShouldMergeStaleRequest_WhenOtherCategoryChanged() {
+        // Given: IT was changed in version 5, the request is based on version 4 and only changes HR
+        Budget current = budgetWithCategoryChange(5L);
+        when(budgetRepository.findById(anyLong())).thenReturn(Optional.of(current));
+        when(budgetRepository.save(any(Budget.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(budgetMapper.toDto(any(Budget.class))).thenReturn(budgetDTO);
+        BudgetDTO request = staleRequest(BigDecimal.valueOf(100), BigDecimal.valueOf(300));
+
+        // When
+        budgetService.updateBudget(1L, request);
+
+        // Then
+        assertEquals(0, BigDecimal.valueOf(200).compareTo(current.getBudgetPlanned().get(CategoryType.IT)));
+        assertEquals(0, BigDecimal.valueOf(300).compareTo(current.getBudgetPlanned().get(CategoryType.HR)));
+        assertEquals(List.of(new BudgetFieldChange("HR", 6L, "200")), current.getFieldChanges().stream()
+                .filter(change -> change.getField().equals("HR")).toList());
+    }
+
+    @Test
+    void updateBudget_ShouldReportConflict_WhenSameCategoryChanged() {
+        // Given
+        Budget current = budgetWithCategoryChange(5L);
+        when(budgetRepository.findById(anyLong())).thenReturn(Optional.of(current));
+        BudgetDTO request = staleRequest(BigDecimal.valueOf(150), BigDecimal.valueOf(300));
+
+        // When
+        BudgetConflictException exception = assertThrows(BudgetConflictException.class,
+                () -> budgetService.updateBudget(1L, request));
+
+        // Then
+        assertEquals(1, exception.getConflict().getConflicts().size());
+        assertEquals("IT", exception.getConflict().getConflicts().get(0).getField());
+        assertEquals(5L, exception.getConflict().getCurrentVersion());
+        verify(budgetRepository, never()).save(any(Budget.class));
+    }
+
+    @Test
+    void updateBudget_ShouldCompareStaleRequest_WithTheValueAtItsBaseVersion() {
+        // Given: IT was changed from 50 to 100 in version 3 and from 100 to 200 in version 5
+        Budget current = budgetWithCategoryChange(5L);
+        current.getFieldChanges().add(new BudgetFieldChange("IT", 3L, "50"));
+        when(budgetRepository.findById(anyLong())).thenReturn(Optional.of(current));
+        when(budgetRepository.save(any(Budget.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(budgetMapper.toDto(any(Budget.class))).thenReturn(budgetDTO);
+        BudgetDTO basedOnVersion2 = staleRequest(BigDecimal.valueOf(50), BigDecimal.valueOf(300));
+        basedOnVersion2.setVersion(2L);
+        BudgetDTO repeatsAnOlderValue = staleRequest(BigDecimal.valueOf(50), BigDecimal.valueOf(300));
+
+        // When & Then the request based on version 2 only repeats the IT amount it read, so its HR change is merged
+        budgetService.updateBudget(1L, basedOnVersion2);
+        assertEquals(0, BigDecimal.valueOf(200).compareTo(current.getBudgetPlanned().get(CategoryType.IT)));
+        assertEquals(0, BigDecimal.valueOf(300).compareTo(current.getBudgetPlanned().get(CategoryType.HR)));
+
+        // and a request based on version 4 read 100, so asking for 50 conflicts with the change of version 5
+        BudgetConflictException exception = assertThrows(BudgetConflictException.class,
+                () -> budgetService.updateBudget(1L, repeatsAnOlderValue));
+        assertEquals("IT", exception.getConflict().getConflicts().get(0).getField());
+    }
+
+    @Test
+    void updateBudget_ShouldRetry_WhenConcurrentWriteWins() {
+        // Given
+        when(budgetRepository.findById(anyLong())).thenAnswer(invocation -> Optional.of(budgetWithCategoryChange(5L)));
+        when(budgetRepository.save(any(Budget.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Budget.class, 1L))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(budgetMapper.toDto(any(Budget.class))).thenReturn(budgetDTO);
+        BudgetDTO request = staleRequest(BigDecimal.valueOf(100), BigDecimal.valueOf(300));
+
+        // When
+        budgetService.updateBudget(1L, request);
+
+        // Then
+        verify(budgetRepository, times(2)).save(any(Budget.class));
+    }
+
+    private static Budget budgetWithCategoryChange(long version) {
+        Map<CategoryType, BigDecimal> planned = new HashMap<>();
+        planned.put(CategoryType.IT, BigDecimal.valueOf(200));
+        planned.put(CategoryType.HR, BigDecimal.valueOf(200));
+        List<BudgetFieldChange> changes = new ArrayList<>();
+        changes.add(new BudgetFieldChange("IT", version, "100"));
+        return Budget.builder()
+                .id(1L)
+                .totalAmount(BigDecimal.valueOf(1000))
+                .year(2024)
+                .budgetPlanned(planned)
+                .actualExpenses(new ArrayList<>())
+                .fieldChanges(changes)
+                .version(version)
+                .build();
+    }
+
+    private static BudgetDTO staleRequest(BigDecimal itAmount, BigDecimal hrAmount) {
+        return BudgetDTO.builder()
+                .id(1L)
+                .totalAmount(BigDecimal.valueOf(1000))
+                .year(2024)
+                .version(4L)
+                .categoryTypeAmountDTOS(List.of(
+                        new CategoryTypeAmountDTO(CategoryType.IT, itAmount),
+                        new CategoryTypeAmountDTO(CategoryType.HR, hrAmount)))
+                .build();
+    }
+
     @Test
     void deleteBudget_ShouldDeleteBudget_WhenExists() {
         // Given
@@ -0,0 +1,159 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.dto.SummaryRebuildDTO;
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseSnapshot;
+import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.BudgetSummary;
+import com.mthree.company_budget_mng_system.model.CategorySummary;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.BudgetSummaryRepository;
+import com.mthree.company_budget_mng_system.repository.CategorySummaryRepository;
+import com.mthree.company_budget_mng_system.repository.CategoryTotal;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class BudgetSummaryServiceTest {
+    private static final Long BUDGET_ID = 1L;
+
+    private BudgetSummaryRepository budgetSummaryRepository;
+    private CategorySummaryRepository categorySummaryRepository;
+    private BudgetRepository budgetRepository;
+    private ExpenseRepository expenseRepository;
+    private BudgetSummaryService budgetSummaryService;
+
+    @BeforeEach
+    void setUp() {
+        budgetSummaryRepository = mock(BudgetSummaryRepository.class);
+        categorySummaryRepository = mock(CategorySummaryRepository.class);
+        budgetRepository = mock(BudgetRepository.class);
+        expenseRepository = mock(ExpenseRepository.class);
+        budgetSummaryService = new BudgetSummaryService(budgetSummaryRepository, categorySummaryRepository,
+                budgetRepository, expenseRepository, mock(YearArchiveService.class), mock(PlatformTransactionManager.class), 2);
+    }
+
+    @Test
+    void onExpenseChanged_ShouldApplyTheDeltaToTheSummaries_WhenAnExpenseIsAmended() {
+        // Given
+        BudgetSummary summary = BudgetSummary.builder()
+                .budgetId(BUDGET_ID)
+                .year(2024)
+                .totalAmount(BigDecimal.valueOf(1000))
+                .totalSpent(BigDecimal.valueOf(300))
+                .build();
+        CategorySummary it = CategorySummary.builder().budgetId(BUDGET_ID).categoryType(CategoryType.IT)
+                .planned(BigDecimal.valueOf(600)).spent(BigDecimal.valueOf(200)).build();
+        CategorySummary hr = CategorySummary.builder().budgetId(BUDGET_ID).categoryType(CategoryType.HR)
+                .planned(BigDecimal.valueOf(400)).spent(BigDecimal.valueOf(100)).build();
+        when(budgetSummaryRepository.findById(BUDGET_ID)).thenReturn(Optional.of(summary));
+        when(categorySummaryRepository.findByBudgetIdAndCategoryType(BUDGET_ID, CategoryType.IT)).thenReturn(Optional.of(it));
+        when(categorySummaryRepository.findByBudgetIdAndCategoryType(BUDGET_ID, CategoryType.HR)).thenReturn(Optional.of(hr));
+
+        // When
+        budgetSummaryService.onExpenseChanged(new ExpenseChangedEvent(5L,
+                snapshot(CategoryType.IT, 50), snapshot(CategoryType.HR, 80)));
+
+        // Then
+        assertEquals(BigDecimal.valueOf(150), it.getSpent());
+        assertEquals(BigDecimal.valueOf(180), hr.getSpent());
+        assertEquals(BigDecimal.valueOf(330), summary.getTotalSpent());
+        assertEquals(BigDecimal.valueOf(670), summary.getRestOfBudget());
+        assertEquals(new BigDecimal("33.00"), budgetSummaryService.getPercentageOfBudgetUsed(BUDGET_ID));
+        verify(expenseRepository, never()).sumByCategory(any());
+        verify(budgetSummaryRepository).copyBudgetVersions(List.of(BUDGET_ID));
+    }
+
+    @Test
+    void onExpenseChanged_ShouldBuildTheSummaryFromTheSourceTables_WhenItIsMissing() {
+        // Given
+        when(budgetSummaryRepository.findById(BUDGET_ID)).thenReturn(Optional.empty());
+        when(budgetRepository.findById(BUDGET_ID)).thenReturn(Optional.of(budget()));
+        // Already contains the new expense of 80
+        when(expenseRepository.sumByCategory(BUDGET_ID)).thenReturn(List.of(total(CategoryType.IT, 280)));
+
+        // When
+        budgetSummaryService.onExpenseChanged(new ExpenseChangedEvent(5L, null, snapshot(CategoryType.IT, 80)));
+
+        // Then
+        ArgumentCaptor<BudgetSummary> summary = ArgumentCaptor.forClass(BudgetSummary.class);
+        verify(budgetSummaryRepository).save(summary.capture());
+        assertEquals(BigDecimal.valueOf(280), summary.getValue().getTotalSpent());
+        assertEquals(new BigDecimal("28.00"), summary.getValue().getPercentageUsed());
+        verify(categorySummaryRepository).deleteByBudgetId(BUDGET_ID);
+        verify(categorySummaryRepository, never()).findByBudgetIdAndCategoryType(any(), any());
+    }
+
+    @Test
+    void rebuildAll_ShouldRebuildEveryBudget_UnderTheBudgetLock() {
+        // Given
+        when(budgetRepository.findAllIds()).thenReturn(List.of(BUDGET_ID, 2L, 3L));
+        when(budgetRepository.findByIdForRebuild(any())).thenReturn(Optional.of(budget()));
+        when(budgetSummaryRepository.findById(any())).thenReturn(Optional.empty());
+        when(expenseRepository.sumByCategory(any())).thenReturn(List.of());
+
+        // When
+        SummaryRebuildDTO result = budgetSummaryService.rebuildAll();
+
+        // Then
+        assertEquals(3, result.getBudgets());
+        assertEquals(2, result.getThreads());
+        verify(budgetSummaryRepository).deleteOrphans();
+        verify(categorySummaryRepository).deleteOrphans();
+        verify(budgetRepository, times(3)).findByIdForRebuild(any());
+        verify(budgetRepository, never()).findByIdForUpdate(any());
+        verify(budgetSummaryRepository, times(3)).save(any(BudgetSummary.class));
+    }
+
+    @Test
+    void getBudgetById_ShouldThrowException_WhenSummaryDoesNotExist() {
+        when(budgetSummaryRepository.findById(BUDGET_ID)).thenReturn(Optional.empty());
+
+        ResourceNotFoundException exception = assertThrows(ResourceNotFoundException.class,
+                () -> budgetSummaryService.getBudgetById(BUDGET_ID));
+
+        assertEquals("Budget with given id doesn't exist", exception.getMessage());
+    }
+
+    private static Budget budget() {
+        Budget budget = new Budget();
+        budget.setId(BUDGET_ID);
+        budget.setYear(2024);
+        budget.setTotalAmount(BigDecimal.valueOf(1000));
+        budget.setBudgetPlanned(new HashMap<>(Map.of(CategoryType.IT, BigDecimal.valueOf(1000))));
+        return budget;
+    }
+
+    private static ExpenseSnapshot snapshot(CategoryType categoryType, int amount) {
+        return new ExpenseSnapshot(BUDGET_ID, categoryType, LocalDate.of(2024, 5, 10), BigDecimal.valueOf(amount), null);
+    }
+
+    private static CategoryTotal total(CategoryType categoryType, int amount) {
+        return new CategoryTotal() {
+            @Override
+            public CategoryType getCategoryType() {
+                return categoryType;
+            }
+
+            @Override
+            public BigDecimal getAmount() {
+                return BigDecimal.valueOf(amount);
+            }
+        };
+    }
+}
@@ -0,0 +1,149 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.dto.BulkDeleteResultDTO;
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.CategoryTotal;
+import com.mthree.company_budget_mng_system.repository.ExpenseGroupTotal;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BulkExpenseServiceTest {
+    private static final Long BUDGET_ID = 1L;
+    private static final Instant NOW = Instant.parse("2024-06-01T12:00:00Z");
+
+    private BudgetRepository budgetRepository;
+    private ExpenseRepository expenseRepository;
+    private ThresholdService thresholdService;
+    private ApplicationEventPublisher eventPublisher;
+    private BulkExpenseService bulkExpenseService;
+    private Budget budget;
+
+    @BeforeEach
+    void setUp() {
+        budgetRepository = mock(BudgetRepository.class);
+        expenseRepository = mock(ExpenseRepository.class);
+        thresholdService = mock(ThresholdService.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        bulkExpenseService = new BulkExpenseService(budgetRepository, expenseRepository, thresholdService, eventPublisher,
+                mock(PlatformTransactionManager.class), 2, Clock.fixed(NOW, ZoneOffset.UTC));
+        budget = Budget.builder().id(BUDGET_ID).build();
+        when(budgetRepository.existsById(BUDGET_ID)).thenReturn(true);
+        when(budgetRepository.findByIdForUpdate(BUDGET_ID)).thenReturn(Optional.of(budget));
+    }
+
+    @Test
+    void deleteExpenses_ShouldDeleteInChunks_AndPublishOneChangePerGroup() {
+        // Given
+        when(expenseRepository.findIdsByBudgetId(eq(BUDGET_ID), any(), any(), eq(CategoryType.IT), any()))
+                .thenReturn(List.of(1L, 2L), List.of(3L));
+        when(expenseRepository.sumByGroupIdIn(List.of(1L, 2L))).thenReturn(List.of(group(CategoryType.IT, 30, 2)));
+        when(expenseRepository.sumByGroupIdIn(List.of(3L))).thenReturn(List.of(group(CategoryType.IT, 5, 1)));
+
+        // When
+        BulkDeleteResultDTO result = bulkExpenseService.deleteExpenses(BUDGET_ID, null, null, CategoryType.IT, false);
+
+        // Then
+        assertEquals(3, result.getDeleted());
+        assertEquals(2, result.getChunks());
+        verify(expenseRepository).deleteByIdIn(List.of(1L, 2L));
+        verify(expenseRepository).deleteByIdIn(List.of(3L));
+        verify(budgetRepository, times(2)).findByIdForUpdate(BUDGET_ID);
+        verify(expenseRepository, never()).archiveByIdIn(any(), any());
+        ArgumentCaptor<ExpenseChangedEvent> events = ArgumentCaptor.forClass(ExpenseChangedEvent.class);
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        assertNull(events.getAllValues().get(0).getCurrent());
+        assertEquals(BigDecimal.valueOf(30), events.getAllValues().get(0).getPrevious().getAmount());
+        assertEquals(2, events.getAllValues().get(0).getPrevious().getExpenseCount());
+    }
+
+    @Test
+    void deleteExpenses_ShouldArchiveBeforeDeleting_AndEvaluateThresholdsOnce() {
+        // Given
+        when(expenseRepository.findIdsByBudgetId(eq(BUDGET_ID), any(), any(), any(), any())).thenReturn(List.of(4L));
+        when(expenseRepository.sumByGroupIdIn(List.of(4L))).thenReturn(List.of(group(CategoryType.HR, 40, 1)));
+        when(expenseRepository.sumByCategory(BUDGET_ID)).thenReturn(List.of(total(CategoryType.HR, 60), total(CategoryType.IT, 100)));
+
+        // When
+        bulkExpenseService.deleteExpenses(BUDGET_ID, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 31), null, true);
+
+        // Then
+        InOrder inOrder = inOrder(expenseRepository);
+        inOrder.verify(expenseRepository).archiveByIdIn(List.of(4L), NOW);
+        inOrder.verify(expenseRepository).deleteByIdIn(List.of(4L));
+        verify(thresholdService).evaluate(budget, CategoryType.HR, BigDecimal.valueOf(100), BigDecimal.valueOf(60));
+        verify(thresholdService).evaluate(budget, null, BigDecimal.valueOf(200), BigDecimal.valueOf(160));
+    }
+
+    @Test
+    void deleteExpenses_ShouldRejectMissingBudget_AndReversedDateRange() {
+        // When & Then
+        assertThrows(ResourceNotFoundException.class, () -> bulkExpenseService.deleteExpenses(2L, null, null, null, false));
+        assertThrows(IllegalArgumentException.class, () -> bulkExpenseService.deleteExpenses(BUDGET_ID,
+                LocalDate.of(2024, 5, 1), LocalDate.of(2024, 4, 1), null, false));
+        verify(expenseRepository, never()).deleteByIdIn(any());
+    }
+
+    private static ExpenseGroupTotal group(CategoryType categoryType, int amount, long count) {
+        return new ExpenseGroupTotal() {
+            @Override
+            public CategoryType getCategoryType() {
+                return categoryType;
+            }
+
+            @Override
+            public LocalDate getDate() {
+                return LocalDate.of(2024, 2, 1);
+            }
+
+            @Override
+            public Long getUserId() {
+                return null;
+            }
+
+            @Override
+            public BigDecimal getAmount() {
+                return BigDecimal.valueOf(amount);
+            }
+
+            @Override
+            public Long getExpenseCount() {
+                return count;
+            }
+        };
+    }
+
+    private static CategoryTotal total(CategoryType categoryType, int amount) {
+        return new CategoryTotal() {
+            @Override
+            public CategoryType getCategoryType() {
+                return categoryType;
+            }
+
+            @Override
+            public BigDecimal getAmount() {
+                return BigDecimal.valueOf(amount);
+            }
+        };
+    }
+}
@@ -0,0 +1,138 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.UserCacheProperties;
+import com.mthree.company_budget_mng_system.event.UserChangedEvent;
+import com.mthree.company_budget_mng_system.model.Role;
+import com.mthree.company_budget_mng_system.repository.UserCredentials;
+import com.mthree.company_budget_mng_system.repository.UserRepository;
+import com.mthree.company_budget_mng_system.security.UserPrincipal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CachedUserDetailsServiceTest {
+    private UserRepository userRepository;
+    private UserCacheProperties properties;
+    private MutableClock clock;
+    private CachedUserDetailsService userDetailsService;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        properties = new UserCacheProperties();
+        clock = new MutableClock(Instant.parse("2024-06-01T12:00:00Z"));
+        userDetailsService = new CachedUserDetailsService(userRepository, properties, clock);
+        when(userRepository.findCredentialsByUsername(anyString())).thenAnswer(invocation ->
+                Optional.of(credentials(invocation.getArgument(0), Role.MANAGER)));
+    }
+
+    @Test
+    void loadUserByUsername_ShouldReadUserOnce_UntilTtlExpires() {
+        // When
+        UserPrincipal first = userDetailsService.loadUserByUsername("john_doe");
+        UserPrincipal second = userDetailsService.loadUserByUsername("john_doe");
+
+        // Then
+        assertSame(first, second);
+        assertEquals(List.of("ROLE_MANAGER"), first.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+        verify(userRepository, times(1)).findCredentialsByUsername("john_doe");
+        clock.instant = clock.instant.plus(Duration.ofMinutes(5));
+        userDetailsService.loadUserByUsername("john_doe");
+        verify(userRepository, times(2)).findCredentialsByUsername("john_doe");
+    }
+
+    @Test
+    void onUserChanged_ShouldEvictUser_SoTheNewRoleIsLoaded() {
+        // Given
+        userDetailsService.loadUserByUsername("john_doe");
+        when(userRepository.findCredentialsByUsername("john_doe")).thenReturn(Optional.of(credentials("john_doe", Role.ADMIN)));
+
+        // When
+        userDetailsService.onUserChanged(new UserChangedEvent(1L, "john_doe", false));
+
+        // Then
+        assertEquals(Role.ADMIN, userDetailsService.loadUserByUsername("john_doe").getRole());
+        when(userRepository.findCredentialsByUsername("john_doe")).thenReturn(Optional.empty());
+        userDetailsService.onUserChanged(new UserChangedEvent(1L, "john_doe", true));
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("john_doe"));
+    }
+
+    @Test
+    void loadUserByUsername_ShouldDropOldestUsers_WhenCacheIsFull() {
+        // Given
+        properties.setMaxEntries(2);
+
+        // When
+        userDetailsService.loadUserByUsername("a");
+        clock.instant = clock.instant.plusSeconds(1);
+        userDetailsService.loadUserByUsername("b");
+        clock.instant = clock.instant.plusSeconds(1);
+        userDetailsService.loadUserByUsername("c");
+
+        // Then
+        assertEquals(2, userDetailsService.size());
+        userDetailsService.loadUserByUsername("c");
+        userDetailsService.loadUserByUsername("a");
+        verify(userRepository, times(1)).findCredentialsByUsername("c");
+        verify(userRepository, times(2)).findCredentialsByUsername("a");
+    }
+
+    private static UserCredentials credentials(String username, Role role) {
+        return new UserCredentials() {
+            @Override
+            public Long getId() {
+                return 1L;
+            }
+
+            @Override
+            public String getUsername() {
+                return username;
+            }
+
+            @Override
+            public String getPassword() {
+                return "hash";
+            }
+
+            @Override
+            public Role getRole() {
+                return role;
+            }
+        };
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.dto.CategoryDTO;
+import com.mthree.company_budget_mng_system.event.CategoryChangedEvent;
+import com.mthree.company_budget_mng_system.model.Category;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.repository.CategoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CategoryRegistryTest {
+    private CategoryRepository categoryRepository;
+    private ApplicationEventPublisher eventPublisher;
+    private CategoryRegistry categoryRegistry;
+    private final List<Category> rows = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        categoryRepository = mock(CategoryRepository.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        categoryRegistry = new CategoryRegistry(categoryRepository, eventPublisher, mock(PlatformTransactionManager.class));
+        Arrays.stream(CategoryType.values())
+                .filter(categoryType -> categoryType.ordinal() <= CategoryType.OPERATIONS.ordinal())
+                .forEach(categoryType -> rows.add(category(categoryType.ordinal(), categoryType.name(), null, true)));
+        // Facilities (7) > Cleaning (8)
+        rows.add(category(7, "FACILITIES", null, true));
+        rows.add(category(8, "CLEANING", 7, true));
+        when(categoryRepository.findAllByOrderByIdAsc()).thenReturn(rows);
+        when(categoryRepository.findByCode(anyString())).thenAnswer(invocation -> rows.stream()
+                .filter(row -> row.getCode().equals(invocation.getArgument(0)))
+                .findFirst());
+    }
+
+    @Test
+    void load_ShouldAddBuiltInCategories_ToEmptyTable_AndRegisterAllRows() {
+        // Given
+        when(categoryRepository.count()).thenReturn(0L);
+
+        // When
+        categoryRegistry.load();
+
+        // Then
+        verify(categoryRepository).saveAll(argThat(categories -> ((List<Category>) categories).size() == 7));
+        CategoryType cleaning = CategoryType.valueOf("CLEANING");
+        assertEquals(8, cleaning.ordinal());
+        assertTrue(categoryRegistry.isActive(cleaning));
+        assertEquals("FACILITIES", categoryRegistry.getAllCategories().get(8).getParentCode());
+        assertEquals(Optional.of(cleaning), categoryRegistry.findByCode("CLEANING"));
+        assertEquals(Optional.empty(), categoryRegistry.findByCode("EVENTS"));
+    }
+
+    @Test
+    void refresh_ShouldDeactivateChildren_WhenParentIsInactive() {
+        // Given
+        rows.get(7).setActive(false);
+
+        // When
+        categoryRegistry.refresh();
+
+        // Then
+        CategoryType cleaning = CategoryType.valueOf("CLEANING");
+        assertFalse(categoryRegistry.isActive(cleaning));
+        assertTrue(categoryRegistry.isActive(CategoryType.IT));
+        assertThrows(IllegalArgumentException.class, () -> categoryRegistry.requireActive(cleaning));
+        assertFalse(categoryRegistry.getAllCategories().get(8).getEffectiveActive());
+        assertTrue(categoryRegistry.getAllCategories().get(8).getActive());
+    }
+
+    @Test
+    void createCategory_ShouldAssignNextId_AndRejectCategoriesBeyondLimit() {
+        // Given
+        categoryRegistry.refresh();
+        when(categoryRepository.findMaxId()).thenReturn(8);
+
+        // When
+        CategoryDTO created = categoryRegistry.createCategory(CategoryDTO.builder().code("WINDOWS").name("Windows").parentCode("CLEANING").build());
+
+        // Then
+        ArgumentCaptor<Category> saved = ArgumentCaptor.forClass(Category.class);
+        verify(categoryRepository).saveAndFlush(saved.capture());
+        assertEquals(9, saved.getValue().getId());
+        assertEquals(8, saved.getValue().getParentId());
+        assertTrue(created.getActive());
+        verify(eventPublisher).publishEvent(any(CategoryChangedEvent.class));
+        when(categoryRepository.findMaxId()).thenReturn(CategoryType.MAX_CATEGORIES - 1);
+        assertThrows(IllegalArgumentException.class,
+                () -> categoryRegistry.createCategory(CategoryDTO.builder().code("ROOF").name("Roof").build()));
+    }
+
+    @Test
+    void updateCategory_ShouldRejectParent_BelowTheCategory() {
+        // Given
+        categoryRegistry.refresh();
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> categoryRegistry.updateCategory("FACILITIES",
+                CategoryDTO.builder().name("Facilities").parentCode("CLEANING").build()));
+        assertNull(rows.get(7).getParentId());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    private static Category category(int id, String code, Integer parentId, boolean active) {
+        return Category.builder().id(id).code(code).name(code).parentId(parentId).active(active).build();
+    }
+}
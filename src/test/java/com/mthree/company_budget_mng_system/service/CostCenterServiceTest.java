@@ -0,0 +1,141 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.event.BudgetChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseSnapshot;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.CostCenter;
+import com.mthree.company_budget_mng_system.model.CostCenterRollup;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.CostCenterBudgetTotals;
+import com.mthree.company_budget_mng_system.repository.CostCenterRepository;
+import com.mthree.company_budget_mng_system.repository.CostCenterRollupRepository;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CostCenterServiceTest {
+    private CostCenterRepository costCenterRepository;
+    private CostCenterRollupRepository rollupRepository;
+    private BudgetRepository budgetRepository;
+    private ExpenseRepository expenseRepository;
+    private CostCenterService costCenterService;
+
+    @BeforeEach
+    void setUp() {
+        costCenterRepository = mock(CostCenterRepository.class);
+        rollupRepository = mock(CostCenterRollupRepository.class);
+        budgetRepository = mock(BudgetRepository.class);
+        expenseRepository = mock(ExpenseRepository.class);
+        costCenterService = new CostCenterService(costCenterRepository, rollupRepository, budgetRepository, expenseRepository);
+        // Company (1) > Engineering (2) > Platform (3), and Sales (4) below the company
+        when(costCenterRepository.findPathById(3L)).thenReturn(Optional.of("/1/2/3/"));
+        when(costCenterRepository.findPathById(4L)).thenReturn(Optional.of("/1/4/"));
+    }
+
+    @Test
+    void onExpenseChanged_ShouldAddDeltaToEveryLevel_OfBothBudgets() {
+        // Given
+        when(rollupRepository.findTotalsByBudgetId(30L)).thenReturn(Optional.of(totals(3L, 2024, 500, 100)));
+        when(rollupRepository.findTotalsByBudgetId(40L)).thenReturn(Optional.of(totals(4L, 2024, 800, 0)));
+
+        // When
+        costCenterService.onExpenseChanged(new ExpenseChangedEvent(1L, snapshot(30L, 60), snapshot(30L, 80)));
+        costCenterService.onExpenseChanged(new ExpenseChangedEvent(1L, snapshot(30L, 80), snapshot(40L, 80)));
+        // Budgets of the whole company have no rollup
+        costCenterService.onExpenseChanged(new ExpenseChangedEvent(2L, null, snapshot(99L, 10)));
+
+        // Then
+        verify(rollupRepository).addToSubtree(List.of(1L, 2L, 3L), 2024, BigDecimal.ZERO, BigDecimal.valueOf(20));
+        verify(rollupRepository).addToSubtree(List.of(1L, 2L, 3L), 2024, BigDecimal.ZERO, BigDecimal.valueOf(-80));
+        verify(rollupRepository).addToSubtree(List.of(1L, 4L), 2024, BigDecimal.ZERO, BigDecimal.valueOf(80));
+        verify(rollupRepository).addToBudget(30L, BigDecimal.ZERO, BigDecimal.valueOf(20));
+        verify(rollupRepository, times(3)).addToSubtree(anyCollection(), anyInt(), any(), any());
+    }
+
+    @Test
+    void onBudgetChanged_ShouldCreateMissingRollups_AndAddNewBudgetToEveryLevel() {
+        // Given
+        when(budgetRepository.findById(30L)).thenReturn(Optional.of(budget(30L, 3L, 2024, 500)));
+        when(rollupRepository.findTotalsByBudgetId(30L)).thenReturn(Optional.empty());
+        when(rollupRepository.findCostCenterIdsByYear(List.of(1L, 2L, 3L), 2024)).thenReturn(List.of(1L));
+
+        // When
+        costCenterService.onBudgetChanged(new BudgetChangedEvent(30L, false));
+
+        // Then
+        ArgumentCaptor<CostCenterRollup> created = ArgumentCaptor.forClass(CostCenterRollup.class);
+        verify(rollupRepository, times(2)).save(created.capture());
+        assertEquals(List.of(2L, 3L), created.getAllValues().stream().map(CostCenterRollup::getCostCenterId).sorted().toList());
+        verify(costCenterRepository).lockByIdIn(List.of(1L, 2L, 3L));
+        verify(rollupRepository).setBudget(3L, 2024, 30L, BigDecimal.valueOf(500), BigDecimal.ZERO);
+        verify(rollupRepository).addToSubtree(List.of(1L, 2L, 3L), 2024, BigDecimal.valueOf(500), BigDecimal.ZERO);
+    }
+
+    @Test
+    void onBudgetChanged_ShouldMoveAmounts_WhenYearChanges_AndRemoveThem_WhenBudgetIsDeleted() {
+        // Given
+        when(budgetRepository.findById(30L)).thenReturn(Optional.of(budget(30L, 3L, 2025, 500)));
+        when(rollupRepository.findTotalsByBudgetId(30L)).thenReturn(Optional.of(totals(3L, 2024, 500, 120)));
+        when(rollupRepository.findCostCenterIdsByYear(anyCollection(), eq(2025))).thenReturn(List.of(1L, 2L, 3L));
+        when(expenseRepository.sumByCategory(30L)).thenReturn(List.of());
+
+        // When
+        costCenterService.onBudgetChanged(new BudgetChangedEvent(30L, false));
+        costCenterService.onBudgetChanged(new BudgetChangedEvent(30L, true));
+
+        // Then
+        verify(rollupRepository, times(2)).addToSubtree(List.of(1L, 2L, 3L), 2024, BigDecimal.valueOf(-500), BigDecimal.valueOf(-120));
+        verify(rollupRepository, times(2)).setBudget(3L, 2024, null, BigDecimal.ZERO, BigDecimal.ZERO);
+        verify(rollupRepository).addToSubtree(List.of(1L, 2L, 3L), 2025, BigDecimal.valueOf(500), BigDecimal.ZERO);
+        verify(rollupRepository, never()).save(any());
+    }
+
+    private static ExpenseSnapshot snapshot(Long budgetId, int amount) {
+        return new ExpenseSnapshot(budgetId, CategoryType.IT, LocalDate.of(2024, 3, 1), BigDecimal.valueOf(amount), null);
+    }
+
+    private static Budget budget(Long id, Long costCenterId, int year, int amount) {
+        Budget budget = new Budget();
+        budget.setId(id);
+        budget.setYear(year);
+        budget.setTotalAmount(BigDecimal.valueOf(amount));
+        budget.setCostCenter(CostCenter.builder().id(costCenterId).build());
+        return budget;
+    }
+
+    private static CostCenterBudgetTotals totals(Long costCenterId, int year, int planned, int spent) {
+        return new CostCenterBudgetTotals() {
+            @Override
+            public Long getCostCenterId() {
+                return costCenterId;
+            }
+
+            @Override
+            public Integer getYear() {
+                return year;
+            }
+
+            @Override
+            public BigDecimal getPlannedAmount() {
+                return BigDecimal.valueOf(planned);
+            }
+
+            @Override
+            public BigDecimal getSpent() {
+                return BigDecimal.valueOf(spent);
+            }
+        };
+    }
+}
@@ -0,0 +1,104 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.service.ExpenseColumnFile.Column;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseColumnFileTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void write_ShouldRoundTripAllColumns_IncludingMissingValues() throws Exception {
+        // Given
+        ExpenseColumnFile.Writer writer = new ExpenseColumnFile.Writer(7, null, 2024);
+        writer.add(3, LocalDate.of(2024, 3, 1), CategoryType.IT, new BigDecimal("120.50"), "Laptop", 11L);
+        writer.add(9, LocalDate.of(2024, 1, 15), CategoryType.MARKETING, new BigDecimal("-4.1"), null, null);
+        writer.add(10, LocalDate.of(2024, 12, 31), CategoryType.IT, new BigDecimal("1000"), "Café", 2L);
+
+        // When
+        ExpenseColumnFile file = writer.write(directory.resolve("budget-7" + ExpenseColumnFile.SUFFIX));
+
+        // Then
+        assertEquals(7, file.getBudgetId());
+        assertNull(file.getCostCenterId());
+        assertEquals(2024, file.getYear());
+        assertEquals(3, file.getRows());
+        assertArrayEquals(new long[]{3, 9, 10}, file.readIds());
+        assertArrayEquals(new LocalDate[]{LocalDate.of(2024, 3, 1), LocalDate.of(2024, 1, 15), LocalDate.of(2024, 12, 31)},
+                file.readDates());
+        assertArrayEquals(new CategoryType[]{CategoryType.IT, CategoryType.MARKETING, CategoryType.IT}, file.readCategories());
+        assertArrayEquals(new long[]{12050, -410, 100000}, file.readAmountCents());
+        assertEquals(new BigDecimal("-4.10"), ExpenseColumnFile.toAmount(-410));
+        assertArrayEquals(new Long[]{11L, null, 2L}, file.readUserIds());
+        assertArrayEquals(new String[]{"Laptop", null, "Café"}, file.readDescriptions());
+        assertFalse(Files.exists(directory.resolve("budget-7" + ExpenseColumnFile.SUFFIX + ".tmp")));
+    }
+
+    @Test
+    void mayContain_ShouldUseColumnStatistics_WithoutReadingTheColumn() throws Exception {
+        // Given
+        ExpenseColumnFile.Writer writer = new ExpenseColumnFile.Writer(7, 4L, 2024);
+        for (long id = 100; id < 200; id++) {
+            writer.add(id, LocalDate.of(2024, 6, 1), CategoryType.OPERATIONS, BigDecimal.TEN, null, null);
+        }
+
+        // When
+        ExpenseColumnFile file = writer.write(directory.resolve("budget-7" + ExpenseColumnFile.SUFFIX));
+
+        // Then
+        assertEquals(4L, file.getCostCenterId());
+        assertEquals(100, file.getStats(Column.ID).min());
+        assertEquals(199, file.getStats(Column.ID).max());
+        assertTrue(file.getStats(Column.ID).compressedLength() < file.getStats(Column.ID).rawLength());
+        assertTrue(file.mayContain(Column.ID, 150));
+        assertFalse(file.mayContain(Column.ID, 99));
+        assertFalse(file.mayContain(Column.ID, 200));
+        assertFalse(file.mayContain(Column.USER, 1));
+    }
+
+    @Test
+    void read_ShouldRejectColumn_WhenItsDataIsCorrupted() throws Exception {
+        // Given
+        ExpenseColumnFile.Writer writer = new ExpenseColumnFile.Writer(7, null, 2024);
+        writer.add(1, LocalDate.of(2024, 2, 2), CategoryType.IT, BigDecimal.ONE, "A description long enough", null);
+        Path path = directory.resolve("budget-7" + ExpenseColumnFile.SUFFIX);
+        writer.write(path);
+        try (RandomAccessFile raw = new RandomAccessFile(path.toFile(), "rw")) {
+            // The description column is written last
+            raw.seek(raw.length() - 3);
+            int b = raw.read();
+            raw.seek(raw.length() - 3);
+            raw.write(b ^ 0xFF);
+        }
+
+        // When
+        ExpenseColumnFile file = ExpenseColumnFile.open(path);
+
+        // Then
+        assertArrayEquals(new long[]{1}, file.readIds());
+        assertThrows(IllegalStateException.class, file::readDescriptions);
+    }
+
+    @Test
+    void add_ShouldRejectExpenses_OutOfIdOrder() {
+        // Given
+        ExpenseColumnFile.Writer writer = new ExpenseColumnFile.Writer(7, null, 2024);
+        writer.add(5, LocalDate.of(2024, 2, 2), CategoryType.IT, BigDecimal.ONE, null, null);
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class,
+                () -> writer.add(5, LocalDate.of(2024, 2, 3), CategoryType.IT, BigDecimal.ONE, null, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> writer.add(2, LocalDate.of(2024, 2, 3), CategoryType.IT, BigDecimal.ONE, null, null));
+    }
+}
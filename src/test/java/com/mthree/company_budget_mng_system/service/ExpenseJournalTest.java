@@ -0,0 +1,106 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.dto.ExpenseDTO;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.JournalSyncMode;
+import com.mthree.company_budget_mng_system.service.ExpenseJournal.JournalRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseJournalTest {
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void open_ShouldReplayAcknowledgedRecords_AndContinueTheirSequence() throws Exception {
+        // Given
+        ExpenseJournal journal = new ExpenseJournal(directory, SEGMENT_SIZE, JournalSyncMode.RECORD);
+        journal.append(expense(10, "Laptop"), 7L);
+        journal.append(expense(20, null), null);
+
+        // When
+        ExpenseJournal reopened = new ExpenseJournal(directory, SEGMENT_SIZE, JournalSyncMode.RECORD);
+        List<JournalRecord> records = reopened.read(0, 10);
+        long next = reopened.append(expense(30, null), null);
+
+        // Then
+        assertEquals(2, records.size());
+        assertEquals(expense(10, "Laptop"), records.get(0).expense());
+        assertEquals(expense(20, null), records.get(1).expense());
+        assertEquals(7L, records.get(0).userId());
+        assertNull(records.get(1).userId());
+        assertEquals(3, next);
+        assertEquals(List.of(3L), reopened.read(2, 10).stream().map(JournalRecord::sequence).toList());
+    }
+
+    @Test
+    void open_ShouldDropTornRecord_AtTheEndOfTheJournal() throws Exception {
+        // Given
+        ExpenseJournal journal = new ExpenseJournal(directory, SEGMENT_SIZE, JournalSyncMode.BATCH);
+        journal.append(expense(10, null), null);
+        journal.append(expense(20, null), null);
+        journal.close();
+        try (RandomAccessFile file = new RandomAccessFile(segmentFiles().get(0).toFile(), "rw")) {
+            // Flip one byte of the last payload, as if the crash happened while it was written
+            long position = file.length() - SEGMENT_SIZE + ExpenseJournal.encode(expense(10, null), null).length + 16 + 20;
+            file.seek(position);
+            file.write(file.read() ^ 0xFF);
+        }
+
+        // When
+        ExpenseJournal reopened = new ExpenseJournal(directory, SEGMENT_SIZE, JournalSyncMode.BATCH);
+        long next = reopened.append(expense(30, null), null);
+
+        // Then
+        assertEquals(2, next);
+        List<JournalRecord> records = reopened.read(0, 10);
+        assertEquals(List.of(1L, 2L), records.stream().map(JournalRecord::sequence).toList());
+        assertEquals(BigDecimal.valueOf(30), records.get(1).expense().getAmount());
+    }
+
+    @Test
+    void compact_ShouldDeleteAppliedSegments_ButKeepTheActiveOne() throws Exception {
+        // Given
+        ExpenseJournal journal = new ExpenseJournal(directory, 256, JournalSyncMode.BATCH);
+        for (int i = 1; i <= 30; i++) {
+            journal.append(expense(i, "Expense " + i), null);
+        }
+        assertTrue(journal.getSegmentCount() > 1);
+        assertEquals(30, journal.read(0, 100).size());
+
+        // When
+        journal.compact(30);
+
+        // Then
+        assertEquals(1, journal.getSegmentCount());
+        assertEquals(1, segmentFiles().size());
+        assertEquals(30, new ExpenseJournal(directory, 256, JournalSyncMode.BATCH).getLastSequence());
+    }
+
+    private List<Path> segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private static ExpenseDTO expense(int amount, String description) {
+        return ExpenseDTO.builder()
+                .amount(BigDecimal.valueOf(amount))
+                .date(LocalDate.of(2024, 6, 1))
+                .categoryType(CategoryType.IT)
+                .description(description)
+                .build();
+    }
+}
@@ -0,0 +1,160 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.SequencerProperties;
+import com.mthree.company_budget_mng_system.dto.ExpenseDTO;
+import com.mthree.company_budget_mng_system.mapper.ExpenseMapperImpl;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.Expense;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.CategoryTotal;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ExpenseSequencerTest {
+    private static final Long BUDGET_ID = 1L;
+
+    private BudgetRepository budgetRepository;
+    private ExpenseRepository expenseRepository;
+    private ExpenseSequencer expenseSequencer;
+    private Budget budget;
+    private final AtomicLong expenseIds = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        budgetRepository = mock(BudgetRepository.class);
+        expenseRepository = mock(ExpenseRepository.class);
+        budget = new Budget();
+        budget.setId(BUDGET_ID);
+        budget.setYear(2024);
+        budget.setBudgetPlanned(new HashMap<>(Map.of(CategoryType.IT, BigDecimal.valueOf(1000))));
+        when(budgetRepository.findIdByYear(2024)).thenReturn(Optional.of(BUDGET_ID));
+        // Like PESSIMISTIC_FORCE_INCREMENT, every lock bumps the version
+        when(budgetRepository.findByIdForUpdate(BUDGET_ID)).thenAnswer(invocation -> {
+            budget.setVersion(budget.getVersion() + 1);
+            return Optional.of(budget);
+        });
+        when(expenseRepository.save(any(Expense.class))).thenAnswer(invocation -> {
+            Expense expense = invocation.getArgument(0);
+            expense.setId(expenseIds.incrementAndGet());
+            return expense;
+        });
+
+        SequencerProperties properties = new SequencerProperties();
+        properties.setEnabled(true);
+        properties.setThreads(1);
+        expenseSequencer = new ExpenseSequencer(budgetRepository, expenseRepository, new ExpenseMapperImpl(),
+                mock(ThresholdService.class), mock(ApplicationEventPublisher.class),
+                mock(PlatformTransactionManager.class), properties, mock(UserSpendService.class), mock(CategoryRegistry.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        expenseSequencer.shutdown();
+    }
+
+    @Test
+    void createExpense_ShouldValidateAgainstTotalsInMemory_AfterLoadingThemOnce() {
+        // Given
+        when(expenseRepository.sumByCategory(BUDGET_ID)).thenReturn(List.of(total(CategoryType.IT, 600)));
+
+        // When
+        ExpenseDTO created = expenseSequencer.createExpense(expense(300));
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> expenseSequencer.createExpense(expense(200)));
+
+        // Then
+        assertNotNull(created.getId());
+        assertEquals("Adding this expense will exceed the budget for the category IT", exception.getMessage());
+        verify(expenseRepository, times(1)).sumByCategory(BUDGET_ID);
+        verify(expenseRepository, times(1)).save(any(Expense.class));
+    }
+
+    @Test
+    void createExpense_ShouldCommitConcurrentExpensesInOrder_WithoutExceedingPlannedAmount() throws Exception {
+        // Given
+        when(expenseRepository.sumByCategory(BUDGET_ID)).thenReturn(List.of());
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        List<Future<ExpenseDTO>> results = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 20; i++) {
+            results.add(clients.submit(() -> expenseSequencer.createExpense(expense(100))));
+        }
+        int created = 0;
+        int rejected = 0;
+        for (Future<ExpenseDTO> result : results) {
+            try {
+                result.get(10, TimeUnit.SECONDS);
+                created++;
+            } catch (ExecutionException e) {
+                assertInstanceOf(IllegalArgumentException.class, e.getCause());
+                rejected++;
+            }
+        }
+        clients.shutdown();
+
+        // Then
+        assertEquals(10, created);
+        assertEquals(10, rejected);
+        verify(expenseRepository, times(10)).save(any(Expense.class));
+    }
+
+    @Test
+    void createExpense_ShouldReloadTotals_AfterBudgetVersionChangedOutsideTheSequencer() {
+        // Given
+        when(expenseRepository.sumByCategory(BUDGET_ID))
+                .thenReturn(List.of(total(CategoryType.IT, 900)))
+                .thenReturn(List.of(total(CategoryType.IT, 100)));
+        assertThrows(IllegalArgumentException.class, () -> expenseSequencer.createExpense(expense(200)));
+
+        // When
+        // Another writer deleted an expense of 800 under the budget lock, which bumped the version
+        budget.setVersion(budget.getVersion() + 1);
+        ExpenseDTO created = expenseSequencer.createExpense(expense(200));
+
+        // Then
+        assertNotNull(created.getId());
+        verify(expenseRepository, times(2)).sumByCategory(BUDGET_ID);
+    }
+
+    private static ExpenseDTO expense(int amount) {
+        return ExpenseDTO.builder()
+                .amount(BigDecimal.valueOf(amount))
+                .date(LocalDate.of(2024, 5, 10))
+                .categoryType(CategoryType.IT)
+                .build();
+    }
+
+    private static CategoryTotal total(CategoryType categoryType, int amount) {
+        return new CategoryTotal() {
+            @Override
+            public CategoryType getCategoryType() {
+                return categoryType;
+            }
+
+            @Override
+            public BigDecimal getAmount() {
+                return BigDecimal.valueOf(amount);
+            }
+        };
+    }
+}
@@ -0,0 +1,91 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.dto.CategoryForecastDTO;
+import com.mthree.company_budget_mng_system.dto.ForecastDTO;
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseSnapshot;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.RollupGranularity;
+import com.mthree.company_budget_mng_system.model.SpendRollup;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.SpendRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class ForecastServiceTest {
+    private SpendRollupRepository spendRollupRepository;
+    private MonthlySpendCache monthlySpendCache;
+    private ForecastService forecastService;
+    private Budget budget;
+
+    @BeforeEach
+    void setUp() {
+        BudgetRepository budgetRepository = mock(BudgetRepository.class);
+        spendRollupRepository = mock(SpendRollupRepository.class);
+        when(budgetRepository.findByYear(anyInt())).thenReturn(Optional.empty());
+        monthlySpendCache = new MonthlySpendCache(spendRollupRepository, budgetRepository, mock(PlatformTransactionManager.class), 1000);
+        forecastService = new ForecastService(budgetRepository, monthlySpendCache, new BigDecimal("0.5"), 3);
+
+        budget = Budget.builder()
+                .id(1L)
+                .year(2023)
+                .totalAmount(BigDecimal.valueOf(1200))
+                .budgetPlanned(Map.of(CategoryType.IT, BigDecimal.valueOf(1200)))
+                .build();
+        when(spendRollupRepository.findByBudgetIdAndGranularityOrderByBucketStart(1L, RollupGranularity.MONTH))
+                .thenReturn(List.of(monthlyRollup(1, 200), monthlyRollup(2, 200), monthlyRollup(3, 200)));
+    }
+
+    @Test
+    void forecast_ShouldPredictOverrun_WhenRunRateExceedsPlanned() {
+        // When
+        ForecastDTO forecast = forecastService.forecast(budget, LocalDate.of(2023, 3, 31));
+
+        // Then
+        CategoryForecastDTO it = forecast.getCategories().get(0);
+        assertEquals(0, BigDecimal.valueOf(600).compareTo(it.getSpentToDate()));
+        assertTrue(it.getLinearForecast().compareTo(BigDecimal.valueOf(2400)) > 0);
+        assertEquals(0, BigDecimal.valueOf(2400).compareTo(it.getEwmaForecast()));
+        assertNull(it.getSeasonalForecast());
+        assertTrue(it.isOverrunPredicted());
+        assertEquals(LocalDate.of(2023, 6, 29), it.getPredictedOverrunDate());
+    }
+
+    @Test
+    void forecast_ShouldApplyExpenseEvents_WithoutReloadingRollups() {
+        // Given
+        forecastService.forecast(budget, LocalDate.of(2023, 3, 31));
+        ExpenseSnapshot snapshot = new ExpenseSnapshot(1L, CategoryType.IT, LocalDate.of(2023, 3, 10), BigDecimal.valueOf(100), null);
+
+        // When
+        monthlySpendCache.onExpenseChanged(new ExpenseChangedEvent(5L, null, snapshot));
+        ForecastDTO forecast = forecastService.forecast(budget, LocalDate.of(2023, 3, 31));
+
+        // Then
+        assertEquals(0, BigDecimal.valueOf(700).compareTo(forecast.getCategories().get(0).getSpentToDate()));
+        verify(spendRollupRepository, times(1)).findByBudgetIdAndGranularityOrderByBucketStart(1L, RollupGranularity.MONTH);
+    }
+
+    private static SpendRollup monthlyRollup(int month, int amount) {
+        return SpendRollup.builder()
+                .budgetId(1L)
+                .granularity(RollupGranularity.MONTH)
+                .bucketStart(LocalDate.of(2023, month, 1))
+                .categoryType(CategoryType.IT)
+                .amount(BigDecimal.valueOf(amount))
+                .expenseCount(1L)
+                .build();
+    }
+}
@@ -0,0 +1,189 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mthree.company_budget_mng_system.config.IdempotencyProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyServiceTest {
+    private IdempotencyProperties properties;
+    private IdempotencyService idempotencyService;
+    private AtomicInteger writes;
+
+    @BeforeEach
+    void setUp() {
+        properties = new IdempotencyProperties();
+        idempotencyService = new IdempotencyService(properties, new ObjectMapper());
+        writes = new AtomicInteger();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void execute_ShouldReplayOriginalResponse_WhenKeyIsRepeated() {
+        // When
+        ResponseEntity<Integer> first = idempotencyService.execute("key-1", "POST /api/expenses", "body", this::write);
+        ResponseEntity<Integer> second = idempotencyService.execute("key-1", "POST /api/expenses", "body", this::write);
+
+        // Then
+        assertEquals(1, writes.get());
+        assertEquals(first.getBody(), second.getBody());
+        assertEquals("true", second.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void execute_ShouldCoalesceConcurrentDuplicates() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<Integer>> original = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("key-1", "POST /api/expenses", "body", () -> {
+                    await(release);
+                    return write();
+                }));
+        while (idempotencyService.size() == 0) {
+            Thread.sleep(5);
+        }
+
+        // When
+        CompletableFuture<ResponseEntity<Integer>> duplicate = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("key-1", "POST /api/expenses", "body", this::write));
+        release.countDown();
+
+        // Then
+        assertEquals(original.get(5, TimeUnit.SECONDS).getBody(), duplicate.get(5, TimeUnit.SECONDS).getBody());
+        assertEquals(1, writes.get());
+    }
+
+    @Test
+    void execute_ShouldRejectKeyReusedWithDifferentRequest() {
+        // Given
+        idempotencyService.execute("key-1", "POST /api/expenses", "body", this::write);
+
+        // Then
+        assertThrows(IllegalArgumentException.class,
+                () -> idempotencyService.execute("key-1", "POST /api/expenses", "other body", this::write));
+    }
+
+    @Test
+    void execute_ShouldRejectKeyReusedWithDifferentRequest_WhenHashCodesCollide() {
+        // Given "Aa" and "BB" share a String hash code
+        idempotencyService.execute("key-1", "POST /api/expenses", "Aa", this::write);
+
+        // Then
+        assertThrows(IllegalArgumentException.class,
+                () -> idempotencyService.execute("key-1", "POST /api/expenses", "BB", this::write));
+    }
+
+    @Test
+    void execute_ShouldReplay_WhenRequestDiffersOnlyInMapOrder() {
+        // Given
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("amount", 10);
+        first.put("categoryType", "IT");
+        Map<String, Object> reordered = new LinkedHashMap<>();
+        reordered.put("categoryType", "IT");
+        reordered.put("amount", 10);
+        idempotencyService.execute("key-1", "POST /api/expenses", List.of(first), this::write);
+
+        // When
+        ResponseEntity<Integer> second = idempotencyService.execute("key-1", "POST /api/expenses", List.of(reordered), this::write);
+
+        // Then
+        assertEquals(1, writes.get());
+        assertEquals("true", second.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void execute_ShouldKeepKeysOfDifferentCallersApart() {
+        // Given
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("alice", null, List.of()));
+        idempotencyService.execute("key-1", "POST /api/expenses", "body", this::write);
+
+        // When
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("bob", null, List.of()));
+        ResponseEntity<Integer> other = idempotencyService.execute("key-1", "POST /api/expenses", "other body", this::write);
+
+        // Then
+        assertEquals(2, writes.get());
+        assertEquals(2, other.getBody());
+        assertNull(other.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void execute_ShouldRunAgain_WhenOriginalFailedOrExpired() {
+        // Given
+        Instant start = Instant.parse("2024-01-01T00:00:00Z");
+        properties.setTtl(Duration.ofMinutes(1));
+        MutableClock clock = new MutableClock(start);
+        idempotencyService = new IdempotencyService(properties, new ObjectMapper(), clock);
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute("key-1", "POST /api/expenses", "body",
+                () -> {
+                    throw new IllegalStateException("failed");
+                }));
+
+        // When
+        idempotencyService.execute("key-1", "POST /api/expenses", "body", this::write);
+        clock.instant = start.plus(Duration.ofMinutes(2));
+        idempotencyService.execute("key-1", "POST /api/expenses", "body", this::write);
+
+        // Then
+        assertEquals(2, writes.get());
+    }
+
+    private ResponseEntity<Integer> write() {
+        return ResponseEntity.ok(writes.incrementAndGet());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
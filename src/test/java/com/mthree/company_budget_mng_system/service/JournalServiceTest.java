@@ -0,0 +1,261 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.JournalProperties;
+import com.mthree.company_budget_mng_system.config.SpendLimitProperties;
+import com.mthree.company_budget_mng_system.dto.ExpenseDTO;
+import com.mthree.company_budget_mng_system.dto.JournalEntryDTO;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.Expense;
+import com.mthree.company_budget_mng_system.model.JournalCheckpoint;
+import com.mthree.company_budget_mng_system.model.JournalEntryStatus;
+import com.mthree.company_budget_mng_system.model.JournalSyncMode;
+import com.mthree.company_budget_mng_system.model.Role;
+import com.mthree.company_budget_mng_system.model.User;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.BudgetSummaryRepository;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import com.mthree.company_budget_mng_system.repository.JournalCheckpointRepository;
+import com.mthree.company_budget_mng_system.repository.UserCredentials;
+import com.mthree.company_budget_mng_system.repository.UserRepository;
+import com.mthree.company_budget_mng_system.repository.UserSpendRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class JournalServiceTest {
+    private static final int SEGMENT_SIZE = 4096;
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @TempDir
+    Path directory;
+
+    private BudgetRepository budgetRepository;
+    private ExpenseRepository expenseRepository;
+    private JournalCheckpointRepository checkpointRepository;
+    private UserRepository userRepository;
+    private UserSpendRepository userSpendRepository;
+    private SpendLimitProperties spendLimits;
+    private final List<Expense> saved = new CopyOnWriteArrayList<>();
+    private final List<JournalService> services = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        budgetRepository = mock(BudgetRepository.class);
+        expenseRepository = mock(ExpenseRepository.class);
+        checkpointRepository = mock(JournalCheckpointRepository.class);
+        userRepository = mock(UserRepository.class);
+        userSpendRepository = mock(UserSpendRepository.class);
+        spendLimits = new SpendLimitProperties();
+
+        Budget budget = Budget.builder()
+                .id(1L)
+                .year(2024)
+                .totalAmount(BigDecimal.valueOf(1_000_000))
+                .budgetPlanned(Map.of(CategoryType.IT, BigDecimal.valueOf(1_000_000)))
+                .build();
+        when(budgetRepository.findIdByYear(2024)).thenReturn(Optional.of(1L));
+        when(budgetRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(budget));
+        when(expenseRepository.sumByCategory(anyLong())).thenReturn(List.of());
+        AtomicLong ids = new AtomicLong();
+        when(expenseRepository.saveAll(any())).thenAnswer(invocation -> {
+            List<Expense> expenses = new ArrayList<>();
+            for (Expense expense : (Iterable<Expense>) invocation.getArgument(0)) {
+                expense.setId(ids.incrementAndGet());
+                expenses.add(expense);
+            }
+            saved.addAll(expenses);
+            return expenses;
+        });
+        when(checkpointRepository.findById("expenses")).thenReturn(Optional.empty());
+    }
+
+    @AfterEach
+    void tearDown() {
+        services.forEach(JournalService::shutdown);
+    }
+
+    @Test
+    void start_ShouldReplayOnlyRecordsAfterTheCheckpoint_AndSaveTheNewCheckpoint() throws Exception {
+        // Given three records of which the first two were applied before a restart
+        try (ExpenseJournal journal = new ExpenseJournal(directory, SEGMENT_SIZE, JournalSyncMode.BATCH)) {
+            journal.append(expense(10), null);
+            journal.append(expense(20), null);
+            journal.append(expense(30), null);
+        }
+        when(checkpointRepository.findById("expenses")).thenReturn(Optional.of(new JournalCheckpoint("expenses", 2)));
+
+        // When
+        JournalService journalService = startService(directory, JournalSyncMode.BATCH);
+        JournalEntryDTO entry = awaitOutcome(journalService, 3);
+
+        // Then
+        assertEquals(JournalEntryStatus.APPLIED, entry.getStatus());
+        assertEquals(List.of(BigDecimal.valueOf(30)), saved.stream().map(Expense::getAmount).toList());
+        verify(checkpointRepository).save(new JournalCheckpoint("expenses", 3));
+        assertEquals(JournalEntryStatus.APPLIED, journalService.getEntry(1).getStatus());
+    }
+
+    @Test
+    void append_ShouldApplyEveryConcurrentRecordOnce_InEverySyncMode() throws Exception {
+        for (JournalSyncMode syncMode : JournalSyncMode.values()) {
+            // Given
+            saved.clear();
+            clearInvocations(checkpointRepository);
+            JournalService journalService = startService(directory.resolve(syncMode.name()), syncMode);
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            List<Future<Long>> appends = new ArrayList<>();
+
+            // When appends race, BATCH lets them share a sync, RECORD syncs each on its own
+            for (int i = 1; i <= 200; i++) {
+                int amount = i;
+                appends.add(executor.submit(() -> {
+                    JournalEntryDTO entry = journalService.append(expense(amount));
+                    assertEquals(JournalEntryStatus.PENDING, entry.getStatus());
+                    return entry.getSequence();
+                }));
+            }
+            Set<Long> sequences = new HashSet<>();
+            for (Future<Long> append : appends) {
+                sequences.add(append.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+            }
+            executor.shutdown();
+            for (long sequence = 1; sequence <= 200; sequence++) {
+                assertEquals(JournalEntryStatus.APPLIED, awaitOutcome(journalService, sequence).getStatus(), syncMode.name());
+            }
+
+            // Then the applier only reads synced records, so all of them were acknowledged as durable
+            assertEquals(200, sequences.size(), syncMode.name());
+            assertEquals(200, saved.size(), syncMode.name());
+            assertEquals(0, BigDecimal.valueOf(200 * 201 / 2).compareTo(
+                    saved.stream().map(Expense::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add)), syncMode.name());
+            verify(checkpointRepository, atLeastOnce()).save(new JournalCheckpoint("expenses", 200));
+        }
+    }
+
+    @Test
+    void start_ShouldApplyRecordsBeforeATornTail_AndReuseItsSequence() throws Exception {
+        // Given a crash while the second record was written
+        try (ExpenseJournal journal = new ExpenseJournal(directory, SEGMENT_SIZE, JournalSyncMode.RECORD)) {
+            journal.append(expense(10), null);
+            journal.append(expense(20), null);
+        }
+        int first = ExpenseJournal.encode(expense(10), null).length;
+        int second = ExpenseJournal.encode(expense(20), null).length;
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve(String.format("%020d.journal", 1)).toFile(), "rw")) {
+            // Flip the last byte of the second payload, 16 is the size of a record header
+            long position = 16 + first + 16 + second - 1;
+            file.seek(position);
+            int flipped = file.read() ^ 0xFF;
+            file.seek(position);
+            file.write(flipped);
+        }
+
+        // When
+        JournalService journalService = startService(directory, JournalSyncMode.RECORD);
+        JournalEntryDTO appended = journalService.append(expense(30));
+        awaitOutcome(journalService, appended.getSequence());
+
+        // Then
+        assertEquals(2, appended.getSequence());
+        assertEquals(JournalEntryStatus.APPLIED, journalService.getEntry(1).getStatus());
+        assertEquals(List.of(BigDecimal.valueOf(10), BigDecimal.valueOf(30)), saved.stream().map(Expense::getAmount).toList());
+        verify(checkpointRepository, atLeastOnce()).save(new JournalCheckpoint("expenses", 2));
+    }
+
+    @Test
+    void start_ShouldAttributeRecordsToTheirUser_AndRejectThoseOverTheSpendingLimit() throws Exception {
+        // Given a user who already spent 70 of a limit of 100, and four records of which the third one exceeds it
+        try (ExpenseJournal journal = new ExpenseJournal(directory, SEGMENT_SIZE, JournalSyncMode.BATCH)) {
+            journal.append(expense(10), 7L);
+            journal.append(expense(20), 7L);
+            journal.append(expense(5), 7L);
+            journal.append(expense(40), null);
+        }
+        UserCredentials credentials = mock(UserCredentials.class);
+        when(credentials.getId()).thenReturn(7L);
+        when(credentials.getUsername()).thenReturn("john_doe");
+        when(credentials.getRole()).thenReturn(Role.USER);
+        when(userRepository.findCredentialsById(7L)).thenReturn(Optional.of(credentials));
+        when(userRepository.getReferenceById(7L)).thenReturn(User.builder().id(7L).build());
+        when(userSpendRepository.sumByUserIdAndBudgetId(7L, 1L)).thenReturn(BigDecimal.valueOf(70));
+        spendLimits.getUsers().put("john_doe", BigDecimal.valueOf(100));
+
+        // When
+        JournalService journalService = startService(directory, JournalSyncMode.BATCH);
+        awaitOutcome(journalService, 4);
+
+        // Then the expenses of the same batch count against the limit before any of them is saved
+        assertEquals(JournalEntryStatus.APPLIED, journalService.getEntry(1).getStatus());
+        assertEquals(JournalEntryStatus.APPLIED, journalService.getEntry(2).getStatus());
+        assertEquals(JournalEntryStatus.REJECTED, journalService.getEntry(3).getStatus());
+        assertEquals(JournalEntryStatus.APPLIED, journalService.getEntry(4).getStatus());
+        assertEquals(List.of(7L, 7L), saved.stream().filter(expense -> expense.getUser() != null)
+                .map(expense -> expense.getUser().getId()).toList());
+        assertNull(saved.get(2).getUser());
+        verify(userRepository, times(1)).findCredentialsById(7L);
+    }
+
+    private JournalService startService(Path journalDirectory, JournalSyncMode syncMode) throws Exception {
+        JournalProperties properties = new JournalProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(journalDirectory.toString());
+        properties.setSegmentSize(DataSize.ofBytes(SEGMENT_SIZE));
+        properties.setSync(syncMode);
+        properties.setBatchSize(50);
+        JournalService journalService = new JournalService(budgetRepository, expenseRepository, checkpointRepository,
+                mock(ThresholdService.class), mock(ApplicationEventPublisher.class), mock(PlatformTransactionManager.class),
+                properties, mock(CategoryRegistry.class), new UserSpendService(userSpendRepository,
+                mock(BudgetSummaryRepository.class), userRepository, mock(CachedUserDetailsService.class), spendLimits));
+        services.add(journalService);
+        journalService.start();
+        return journalService;
+    }
+
+    // Waits for the applier to decide on the record
+    private static JournalEntryDTO awaitOutcome(JournalService journalService, long sequence) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            JournalEntryDTO entry = journalService.getEntry(sequence);
+            if (entry.getStatus() != JournalEntryStatus.PENDING) {
+                return entry;
+            }
+            Thread.sleep(10);
+        }
+        return fail("Journal record " + sequence + " was not applied in time.");
+    }
+
+    private static ExpenseDTO expense(int amount) {
+        return ExpenseDTO.builder()
+                .amount(BigDecimal.valueOf(amount))
+                .date(LocalDate.of(2024, 6, 1))
+                .categoryType(CategoryType.IT)
+                .build();
+    }
+}
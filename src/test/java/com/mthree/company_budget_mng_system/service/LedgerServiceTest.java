@@ -0,0 +1,197 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.dto.LedgerViewDTO;
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseSnapshot;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.LedgerEvent;
+import com.mthree.company_budget_mng_system.model.LedgerEventType;
+import com.mthree.company_budget_mng_system.model.LedgerSnapshot;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.CategoryTotal;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import com.mthree.company_budget_mng_system.repository.LedgerEventRepository;
+import com.mthree.company_budget_mng_system.repository.LedgerSnapshotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class LedgerServiceTest {
+    private static final Long BUDGET_ID = 1L;
+    private static final Instant NOW = Instant.parse("2024-06-01T12:00:00Z");
+
+    private LedgerEventRepository ledgerEventRepository;
+    private LedgerSnapshotRepository ledgerSnapshotRepository;
+    private BudgetRepository budgetRepository;
+    private ExpenseRepository expenseRepository;
+    private final AtomicLong eventIds = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        ledgerEventRepository = mock(LedgerEventRepository.class);
+        ledgerSnapshotRepository = mock(LedgerSnapshotRepository.class);
+        budgetRepository = mock(BudgetRepository.class);
+        expenseRepository = mock(ExpenseRepository.class);
+        when(ledgerEventRepository.save(any(LedgerEvent.class))).thenAnswer(invocation -> {
+            LedgerEvent event = invocation.getArgument(0);
+            event.setId(eventIds.incrementAndGet());
+            return event;
+        });
+    }
+
+    @Test
+    void getView_ShouldFoldEventsAfterTheLatestSnapshot() {
+        // Given
+        Instant asOf = Instant.parse("2024-05-01T00:00:00Z");
+        when(ledgerEventRepository.findLastEventIdAt(BUDGET_ID, asOf)).thenReturn(13L);
+        when(ledgerSnapshotRepository.findLastSnapshotEventId(BUDGET_ID, 13L)).thenReturn(10L);
+        when(ledgerSnapshotRepository.findByBudgetIdAndEventId(BUDGET_ID, 10L)).thenReturn(List.of(
+                LedgerSnapshot.builder().year(2024).planned(BigDecimal.valueOf(1000)).build(),
+                LedgerSnapshot.builder().categoryType(CategoryType.IT).planned(BigDecimal.valueOf(600)).spent(BigDecimal.valueOf(40)).build()));
+        when(ledgerEventRepository.findByBudgetIdAndIdGreaterThanAndIdLessThanEqualOrderById(BUDGET_ID, 10L, 13L)).thenReturn(List.of(
+                expenseEvent(11L, LedgerEventType.EXPENSE_POSTED, CategoryType.IT, 10, null, null),
+                expenseEvent(12L, LedgerEventType.EXPENSE_AMENDED, CategoryType.HR, 25, CategoryType.IT, 10),
+                expenseEvent(13L, LedgerEventType.EXPENSE_DELETED, CategoryType.IT, 5, null, null)));
+
+        // When
+        LedgerViewDTO view = ledgerService(100).getView(BUDGET_ID, asOf);
+
+        // Then
+        assertEquals(2024, view.getYear());
+        assertEquals(10L, view.getSnapshotEventId());
+        assertEquals(3, view.getReplayedEvents());
+        assertEquals(CategoryType.HR, view.getCategories().get(0).getCategoryType());
+        assertEquals(BigDecimal.valueOf(25), view.getCategories().get(0).getSpent());
+        assertEquals(CategoryType.IT, view.getCategories().get(1).getCategoryType());
+        assertEquals(BigDecimal.valueOf(35), view.getCategories().get(1).getSpent());
+        assertEquals(BigDecimal.valueOf(60), view.getTotalSpent());
+        verify(ledgerEventRepository, never()).findByBudgetIdAndIdGreaterThanAndIdLessThanEqualOrderById(eq(BUDGET_ID), eq(0L), anyLong());
+    }
+
+    @Test
+    void onExpenseChanged_ShouldStartLedgerWithOpeningSpend_WhenBudgetHasNoEventsYet() {
+        // Given
+        Budget budget = Budget.builder()
+                .id(BUDGET_ID)
+                .year(2024)
+                .totalAmount(BigDecimal.valueOf(1000))
+                .budgetPlanned(new HashMap<>(Map.of(CategoryType.IT, BigDecimal.valueOf(1000))))
+                .build();
+        when(budgetRepository.findById(BUDGET_ID)).thenReturn(Optional.of(budget));
+        // Spend is read after the new expense of 20 was flushed
+        when(expenseRepository.sumByCategory(BUDGET_ID)).thenReturn(List.of(total(CategoryType.IT, 50)));
+
+        // When
+        ledgerService(100).onExpenseChanged(new ExpenseChangedEvent(7L, null, snapshot(20)));
+
+        // Then
+        ArgumentCaptor<LedgerEvent> events = ArgumentCaptor.forClass(LedgerEvent.class);
+        verify(ledgerEventRepository, times(4)).save(events.capture());
+        List<LedgerEvent> saved = events.getAllValues();
+        assertEquals(List.of(LedgerEventType.BUDGET_CREATED, LedgerEventType.CATEGORY_REALLOCATED,
+                LedgerEventType.EXPENSE_POSTED, LedgerEventType.EXPENSE_POSTED), saved.stream().map(LedgerEvent::getType).toList());
+        assertNull(saved.get(2).getExpenseId());
+        assertEquals(BigDecimal.valueOf(30), saved.get(2).getAmount());
+        assertEquals(7L, saved.get(3).getExpenseId());
+        assertEquals(NOW, saved.get(3).getOccurredAt());
+    }
+
+    @Test
+    void onExpenseChanged_ShouldTakeSnapshot_EverySnapshotInterval() {
+        // Given
+        when(ledgerEventRepository.existsByBudgetId(BUDGET_ID)).thenReturn(true);
+        when(ledgerEventRepository.findByBudgetIdAndIdGreaterThanAndIdLessThanEqualOrderById(eq(BUDGET_ID), anyLong(), anyLong()))
+                .thenReturn(List.of(expenseEvent(1L, LedgerEventType.EXPENSE_POSTED, CategoryType.IT, 20, null, null),
+                        expenseEvent(2L, LedgerEventType.EXPENSE_POSTED, CategoryType.IT, 20, null, null)));
+        LedgerService ledgerService = ledgerService(2);
+
+        // When
+        ledgerService.onExpenseChanged(new ExpenseChangedEvent(7L, null, snapshot(20)));
+        verify(ledgerSnapshotRepository, never()).saveAll(anyList());
+        ledgerService.onExpenseChanged(new ExpenseChangedEvent(8L, null, snapshot(20)));
+
+        // Then
+        ArgumentCaptor<List<LedgerSnapshot>> rows = ArgumentCaptor.forClass(List.class);
+        verify(ledgerSnapshotRepository).saveAll(rows.capture());
+        LedgerSnapshot itRow = rows.getValue().get(1);
+        assertEquals(2L, itRow.getEventId());
+        assertEquals(CategoryType.IT, itRow.getCategoryType());
+        assertEquals(BigDecimal.valueOf(40), itRow.getSpent());
+    }
+
+    @Test
+    void startMissingLedgers_ShouldStartLedger_UnderALockThatKeepsTheBudgetVersion() {
+        // Given
+        Budget budget = Budget.builder()
+                .id(BUDGET_ID)
+                .year(2024)
+                .totalAmount(BigDecimal.valueOf(1000))
+                .budgetPlanned(new HashMap<>(Map.of(CategoryType.IT, BigDecimal.valueOf(1000))))
+                .build();
+        when(ledgerEventRepository.findBudgetIdsWithoutLedger()).thenReturn(List.of(BUDGET_ID));
+        when(budgetRepository.findByIdForRebuild(BUDGET_ID)).thenReturn(Optional.of(budget));
+        when(expenseRepository.sumByCategory(BUDGET_ID)).thenReturn(List.of(total(CategoryType.IT, 50)));
+
+        // When
+        ledgerService(100).startMissingLedgers();
+
+        // Then
+        ArgumentCaptor<LedgerEvent> events = ArgumentCaptor.forClass(LedgerEvent.class);
+        verify(ledgerEventRepository, times(3)).save(events.capture());
+        assertEquals(BigDecimal.valueOf(50), events.getAllValues().get(2).getAmount());
+        verify(budgetRepository, never()).findByIdForUpdate(any());
+    }
+
+    private LedgerService ledgerService(int snapshotInterval) {
+        return new LedgerService(ledgerEventRepository, ledgerSnapshotRepository, budgetRepository, expenseRepository,
+                mock(PlatformTransactionManager.class), snapshotInterval, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    private static ExpenseSnapshot snapshot(int amount) {
+        return new ExpenseSnapshot(BUDGET_ID, CategoryType.IT, LocalDate.of(2024, 5, 10), BigDecimal.valueOf(amount), null);
+    }
+
+    private static LedgerEvent expenseEvent(Long id, LedgerEventType type, CategoryType categoryType, int amount,
+                                            CategoryType previousCategoryType, Integer previousAmount) {
+        return LedgerEvent.builder()
+                .id(id)
+                .budgetId(BUDGET_ID)
+                .type(type)
+                .categoryType(categoryType)
+                .amount(BigDecimal.valueOf(amount))
+                .previousCategoryType(previousCategoryType)
+                .previousAmount(previousAmount == null ? null : BigDecimal.valueOf(previousAmount))
+                .build();
+    }
+
+    private static CategoryTotal total(CategoryType categoryType, int amount) {
+        return new CategoryTotal() {
+            @Override
+            public CategoryType getCategoryType() {
+                return categoryType;
+            }
+
+            @Override
+            public BigDecimal getAmount() {
+                return BigDecimal.valueOf(amount);
+            }
+        };
+    }
+}
@@ -0,0 +1,160 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseSnapshot;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.RollupGranularity;
+import com.mthree.company_budget_mng_system.model.SpendRollup;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.SpendRollupRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class MonthlySpendCacheTest {
+    private static final Long BUDGET_ID = 1L;
+
+    private SpendRollupRepository spendRollupRepository;
+    private BudgetRepository budgetRepository;
+    private PlatformTransactionManager transactionManager;
+    private MonthlySpendCache monthlySpendCache;
+
+    @BeforeEach
+    void setUp() {
+        spendRollupRepository = mock(SpendRollupRepository.class);
+        budgetRepository = mock(BudgetRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        monthlySpendCache = new MonthlySpendCache(spendRollupRepository, budgetRepository, transactionManager, 2);
+        when(spendRollupRepository.findByBudgetIdAndGranularityOrderByBucketStart(anyLong(), any()))
+                .thenReturn(List.of(rollup(3, 100)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void onExpenseChanged_ShouldNotAddChangeTwice_WhenLoadAlreadyReadIt() {
+        // Given a write holding version 8 of the budget
+        TransactionSynchronization commit = publishInTransaction(8L, 50);
+
+        // When the rollups are read after the write committed, then its commit callback runs
+        when(budgetRepository.findVersionById(BUDGET_ID)).thenReturn(Optional.of(8L));
+        when(spendRollupRepository.findByBudgetIdAndGranularityOrderByBucketStart(BUDGET_ID, RollupGranularity.MONTH))
+                .thenReturn(List.of(rollup(3, 150)));
+        monthlySpendCache.getMonthlySpend(BUDGET_ID);
+        commit.afterCommit();
+
+        // Then
+        assertEquals(0, BigDecimal.valueOf(150).compareTo(monthlySpendCache.getMonthlySpend(BUDGET_ID)[CategoryType.IT.ordinal()][2]));
+    }
+
+    @Test
+    void onExpenseChanged_ShouldAddChange_WhenLoadReadTheRollupsBeforeItWasCommitted() {
+        // Given
+        TransactionSynchronization commit = publishInTransaction(8L, 50);
+        when(budgetRepository.findVersionById(BUDGET_ID)).thenReturn(Optional.of(7L));
+        monthlySpendCache.getMonthlySpend(BUDGET_ID);
+
+        // When
+        commit.afterCommit();
+
+        // Then
+        assertEquals(0, BigDecimal.valueOf(150).compareTo(monthlySpendCache.getMonthlySpend(BUDGET_ID)[CategoryType.IT.ordinal()][2]));
+        verify(spendRollupRepository, times(1)).findByBudgetIdAndGranularityOrderByBucketStart(BUDGET_ID, RollupGranularity.MONTH);
+    }
+
+    @Test
+    void getMonthlySpend_ShouldNotKeepLoad_WhenBudgetChangedWhileReading() {
+        // Given
+        when(budgetRepository.findVersionById(BUDGET_ID)).thenReturn(Optional.of(7L), Optional.of(8L), Optional.of(8L));
+
+        // When
+        BigDecimal[][] first = monthlySpendCache.getMonthlySpend(BUDGET_ID);
+
+        // Then
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(first[CategoryType.IT.ordinal()][2]));
+        assertNull(monthlySpendCache.peek(BUDGET_ID));
+        monthlySpendCache.getMonthlySpend(BUDGET_ID);
+        assertNotNull(monthlySpendCache.peek(BUDGET_ID));
+        verify(spendRollupRepository, times(2)).findByBudgetIdAndGranularityOrderByBucketStart(BUDGET_ID, RollupGranularity.MONTH);
+    }
+
+    @Test
+    void getMonthlySpend_ShouldLoadCommittedData_InATransactionOfItsOwn() {
+        // When
+        monthlySpendCache.getMonthlySpend(BUDGET_ID);
+
+        // Then a snapshot of the caller's transaction could miss a change whose commit callback already ran
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager).getTransaction(definition.capture());
+        assertEquals(TransactionDefinition.PROPAGATION_REQUIRES_NEW, definition.getValue().getPropagationBehavior());
+        assertEquals(TransactionDefinition.ISOLATION_READ_COMMITTED, definition.getValue().getIsolationLevel());
+        assertTrue(definition.getValue().isReadOnly());
+    }
+
+    @Test
+    void getMonthlySpend_ShouldDropLeastRecentlyReadBudget_WhenFull() {
+        // Given
+        monthlySpendCache.getMonthlySpend(1L);
+        monthlySpendCache.getMonthlySpend(2L);
+        monthlySpendCache.getMonthlySpend(1L);
+
+        // When
+        monthlySpendCache.getMonthlySpend(3L);
+
+        // Then
+        assertEquals(2, monthlySpendCache.size());
+        assertNotNull(monthlySpendCache.peek(1L));
+        assertNull(monthlySpendCache.peek(2L));
+        assertNotNull(monthlySpendCache.peek(3L));
+    }
+
+    @Test
+    void clampToYear_ShouldKeepDateWithinTheYear() {
+        assertEquals(LocalDate.of(2024, 1, 1), MonthlySpendCache.clampToYear(LocalDate.of(2023, 6, 1), 2024));
+        assertEquals(LocalDate.of(2024, 12, 31), MonthlySpendCache.clampToYear(LocalDate.of(2025, 2, 1), 2024));
+        assertEquals(LocalDate.of(2024, 5, 9), MonthlySpendCache.clampToYear(LocalDate.of(2024, 5, 9), 2024));
+    }
+
+    // Publishes an IT expense of March inside a transaction and returns its commit callback
+    private TransactionSynchronization publishInTransaction(long lockedVersion, int amount) {
+        when(budgetRepository.findById(BUDGET_ID)).thenReturn(Optional.of(Budget.builder().id(BUDGET_ID).version(lockedVersion).build()));
+        TransactionSynchronizationManager.initSynchronization();
+        monthlySpendCache.onExpenseChanged(new ExpenseChangedEvent(5L, null,
+                new ExpenseSnapshot(BUDGET_ID, CategoryType.IT, LocalDate.of(2024, 3, 10), BigDecimal.valueOf(amount), null)));
+        TransactionSynchronization commit = TransactionSynchronizationManager.getSynchronizations().get(0);
+        TransactionSynchronizationManager.clearSynchronization();
+        return commit;
+    }
+
+    private static SpendRollup rollup(int month, int amount) {
+        return SpendRollup.builder()
+                .budgetId(BUDGET_ID)
+                .granularity(RollupGranularity.MONTH)
+                .bucketStart(LocalDate.of(2024, month, 1))
+                .categoryType(CategoryType.IT)
+                .amount(BigDecimal.valueOf(amount))
+                .expenseCount(1L)
+                .build();
+    }
+}
@@ -0,0 +1,98 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.PacingProperties;
+import com.mthree.company_budget_mng_system.dto.CategoryPacingDTO;
+import com.mthree.company_budget_mng_system.dto.PacingDTO;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.RollupGranularity;
+import com.mthree.company_budget_mng_system.model.SpendRollup;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.SpendRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PacingServiceTest {
+    private SpendRollupRepository spendRollupRepository;
+    private PacingProperties pacingProperties;
+    private CategoryRegistry categoryRegistry;
+    private Budget budget;
+
+    @BeforeEach
+    void setUp() {
+        spendRollupRepository = mock(SpendRollupRepository.class);
+        pacingProperties = new PacingProperties();
+        categoryRegistry = mock(CategoryRegistry.class);
+        when(categoryRegistry.findByCode("MARKETING")).thenReturn(Optional.of(CategoryType.MARKETING));
+
+        budget = Budget.builder()
+                .id(1L)
+                .year(2023)
+                .totalAmount(BigDecimal.valueOf(2400))
+                .budgetPlanned(Map.of(CategoryType.IT, BigDecimal.valueOf(1200), CategoryType.MARKETING, BigDecimal.valueOf(1200)))
+                .build();
+        when(spendRollupRepository.findByBudgetIdAndGranularityOrderByBucketStart(1L, RollupGranularity.MONTH))
+                .thenReturn(List.of(monthlyRollup(CategoryType.IT, 300), monthlyRollup(CategoryType.MARKETING, 300)));
+    }
+
+    @Test
+    void pacing_ShouldFlagCategory_WhenSpendRunsAheadOfCalendar() {
+        // Given
+        PacingService pacingService = new PacingService(mock(BudgetRepository.class),
+                new MonthlySpendCache(spendRollupRepository, mock(BudgetRepository.class), mock(PlatformTransactionManager.class), 1000), categoryRegistry, pacingProperties);
+
+        // When
+        PacingDTO pacing = pacingService.pacing(budget, LocalDate.of(2023, 1, 31));
+
+        // Then
+        CategoryPacingDTO it = findCategory(pacing, CategoryType.IT);
+        assertTrue(it.isAheadOfPace());
+    }
+
+    @Test
+    void pacing_ShouldUseSeasonalCurve_WhenConfigured() {
+        // Given a marketing curve that expects a quarter of the year's spend in January, and a curve of a category
+        // that does not exist yet
+        pacingProperties.getCurves().put("MARKETING", List.of(11, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3));
+        pacingProperties.getCurves().put("EVENTS", List.of(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 12));
+        PacingService pacingService = new PacingService(mock(BudgetRepository.class),
+                new MonthlySpendCache(spendRollupRepository, mock(BudgetRepository.class), mock(PlatformTransactionManager.class), 1000), categoryRegistry, pacingProperties);
+
+        // When
+        PacingDTO pacing = pacingService.pacing(budget, LocalDate.of(2023, 1, 31));
+
+        // Then
+        CategoryPacingDTO marketing = findCategory(pacing, CategoryType.MARKETING);
+        assertEquals(0, BigDecimal.valueOf(300).compareTo(marketing.getExpected()));
+        assertFalse(marketing.isAheadOfPace());
+    }
+
+    private static CategoryPacingDTO findCategory(PacingDTO pacing, CategoryType categoryType) {
+        return pacing.getCategories().stream()
+                .filter(category -> category.getCategoryType() == categoryType)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static SpendRollup monthlyRollup(CategoryType categoryType, int amount) {
+        return SpendRollup.builder()
+                .budgetId(1L)
+                .granularity(RollupGranularity.MONTH)
+                .bucketStart(LocalDate.of(2023, 1, 1))
+                .categoryType(categoryType)
+                .amount(BigDecimal.valueOf(amount))
+                .expenseCount(1L)
+                .build();
+    }
+}
@@ -0,0 +1,107 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.RateLimitProperties;
+import com.mthree.company_budget_mng_system.model.BulkheadType;
+import com.mthree.company_budget_mng_system.model.Role;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+    private final AtomicLong now = new AtomicLong(-TimeUnit.SECONDS.toNanos(100));
+    private RateLimitProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RateLimitProperties();
+        properties.getUsers().put(Role.USER, new RateLimitProperties.Limit(10, 5));
+        properties.setMaxConcurrentWrites(1);
+    }
+
+    @Test
+    void tryAcquire_ShouldAllowBurst_ThenOneRequestPerInterval() {
+        // Given
+        RateLimiter rateLimiter = new RateLimiter(properties, now::get);
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, rateLimiter.tryAcquire("john_doe", Role.USER));
+        }
+        long wait = rateLimiter.tryAcquire("john_doe", Role.USER);
+
+        // Then
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), wait);
+        // Other callers have their own bucket
+        assertEquals(0, rateLimiter.tryAcquire("jane_doe", Role.USER));
+        now.addAndGet(wait);
+        assertEquals(0, rateLimiter.tryAcquire("john_doe", Role.USER));
+        assertTrue(rateLimiter.tryAcquire("john_doe", Role.USER) > 0);
+        assertEquals(2, rateLimiter.getStats().getRateLimited());
+    }
+
+    @Test
+    void tryAcquire_ShouldKeepBucketsConsistent_UnderConcurrentCallers() throws InterruptedException {
+        // Given
+        properties.getUsers().put(Role.USER, new RateLimitProperties.Limit(1, 1000));
+        RateLimiter rateLimiter = new RateLimiter(properties, now::get);
+        AtomicLong allowed = new AtomicLong();
+        Thread[] threads = new Thread[8];
+
+        // When
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    if (rateLimiter.tryAcquire("john_doe", Role.USER) == 0) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Then
+        assertEquals(1000, allowed.get());
+        assertEquals(3000, rateLimiter.getStats().getRateLimited());
+    }
+
+    @Test
+    void tryEnter_ShouldRejectWrites_WhenBulkheadIsFull_WithoutAffectingReads() {
+        // Given
+        RateLimiter rateLimiter = new RateLimiter(properties, now::get);
+
+        // When
+        assertTrue(rateLimiter.tryEnter(BulkheadType.WRITE));
+
+        // Then
+        assertFalse(rateLimiter.tryEnter(BulkheadType.WRITE));
+        assertTrue(rateLimiter.tryEnter(BulkheadType.READ));
+        rateLimiter.exit(BulkheadType.WRITE);
+        assertTrue(rateLimiter.tryEnter(BulkheadType.WRITE));
+        assertEquals(1, rateLimiter.getStats().getRejectedWrites());
+        assertEquals(1, rateLimiter.getStats().getActiveReads());
+    }
+
+    @Test
+    void purgeIdleBuckets_ShouldDropOnlyFullBuckets() {
+        // Given
+        RateLimiter rateLimiter = new RateLimiter(properties, now::get);
+        rateLimiter.tryAcquire("john_doe", Role.USER);
+        rateLimiter.tryAcquire("jane_doe", Role.USER);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+        rateLimiter.tryAcquire("jane_doe", Role.USER);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(60));
+
+        // When
+        rateLimiter.purgeIdleBuckets();
+
+        // Then
+        assertEquals(1, rateLimiter.bucketCount());
+    }
+}
@@ -0,0 +1,221 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.ReconciliationProperties;
+import com.mthree.company_budget_mng_system.dto.ReconciliationDiscrepancyDTO;
+import com.mthree.company_budget_mng_system.dto.ReconciliationStatsDTO;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.BudgetSummary;
+import com.mthree.company_budget_mng_system.model.CategorySummary;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.LedgerEvent;
+import com.mthree.company_budget_mng_system.model.LedgerEventType;
+import com.mthree.company_budget_mng_system.model.ReconciledStore;
+import com.mthree.company_budget_mng_system.model.RollupGranularity;
+import com.mthree.company_budget_mng_system.repository.BudgetCategoryTotal;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.BudgetSummaryRepository;
+import com.mthree.company_budget_mng_system.repository.CategorySummaryRepository;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import com.mthree.company_budget_mng_system.repository.RollupTotal;
+import com.mthree.company_budget_mng_system.repository.SpendRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class ReconciliationServiceTest {
+    private static final Long BUDGET_ID = 1L;
+
+    private BudgetRepository budgetRepository;
+    private ExpenseRepository expenseRepository;
+    private BudgetSummaryRepository budgetSummaryRepository;
+    private CategorySummaryRepository categorySummaryRepository;
+    private SpendRollupRepository spendRollupRepository;
+    private BudgetSummaryService budgetSummaryService;
+    private RollupService rollupService;
+    private LedgerService ledgerService;
+    private MonthlySpendCache monthlySpendCache;
+    private ReconciliationProperties properties;
+    private ReconciliationService reconciliationService;
+
+    @BeforeEach
+    void setUp() {
+        budgetRepository = mock(BudgetRepository.class);
+        expenseRepository = mock(ExpenseRepository.class);
+        budgetSummaryRepository = mock(BudgetSummaryRepository.class);
+        categorySummaryRepository = mock(CategorySummaryRepository.class);
+        spendRollupRepository = mock(SpendRollupRepository.class);
+        budgetSummaryService = mock(BudgetSummaryService.class);
+        rollupService = mock(RollupService.class);
+        ledgerService = mock(LedgerService.class);
+        monthlySpendCache = mock(MonthlySpendCache.class);
+        properties = new ReconciliationProperties();
+        properties.setMaxBudgetsPerSecond(1000);
+        reconciliationService = new ReconciliationService(budgetRepository, expenseRepository, budgetSummaryRepository,
+                categorySummaryRepository, spendRollupRepository, budgetSummaryService, rollupService, ledgerService,
+                monthlySpendCache, mock(YearArchiveService.class), mock(PlatformTransactionManager.class), properties);
+
+        Budget budget = new Budget();
+        budget.setId(BUDGET_ID);
+        budget.setYear(2024);
+        budget.setTotalAmount(BigDecimal.valueOf(1000));
+        budget.setBudgetPlanned(new HashMap<>(Map.of(CategoryType.IT, BigDecimal.valueOf(1000))));
+        when(budgetRepository.findAllIds()).thenReturn(List.of(BUDGET_ID));
+        when(budgetRepository.findByIdIn(anyCollection())).thenReturn(List.of(budget));
+        when(budgetRepository.findByIdForRebuild(BUDGET_ID)).thenReturn(Optional.of(budget));
+        when(expenseRepository.sumByBudgetAndCategory(anyCollection())).thenReturn(List.of(expenseTotal(100)));
+        when(budgetSummaryRepository.findAllById(anyCollection())).thenReturn(List.of(BudgetSummary.builder()
+                .budgetId(BUDGET_ID)
+                .year(2024)
+                .totalAmount(BigDecimal.valueOf(1000))
+                .totalSpent(BigDecimal.valueOf(100))
+                .restOfBudget(BigDecimal.valueOf(900))
+                .build()));
+    }
+
+    @Test
+    void reconcile_ShouldReportNothing_WhenDerivedStoresMatchTheExpenses() {
+        // Given
+        when(categorySummaryRepository.findByBudgetIdIn(anyCollection())).thenReturn(List.of(categorySummary(100)));
+        when(spendRollupRepository.sumByBudgetGranularityAndCategory(anyCollection())).thenReturn(rollupTotals(100, 100));
+        when(monthlySpendCache.peek(BUDGET_ID)).thenReturn(cachedSpend(60, 40));
+
+        // When
+        ReconciliationStatsDTO stats = reconciliationService.reconcile();
+
+        // Then
+        assertEquals(1, stats.getRuns());
+        assertEquals(1, stats.getLastBudgetsChecked());
+        assertEquals(0, stats.getLastSuspected());
+        assertEquals(0, stats.getLastDiscrepancies());
+        verify(budgetRepository, never()).findByIdForRebuild(any());
+        verify(budgetRepository, never()).incrementVersion(any());
+    }
+
+    @Test
+    void reconcile_ShouldRepairSummariesAndRollups_WhenDriftIsConfirmedUnderTheBudgetLock() {
+        // Given
+        when(categorySummaryRepository.findByBudgetIdIn(anyCollection())).thenReturn(List.of(categorySummary(90)));
+        when(spendRollupRepository.sumByBudgetGranularityAndCategory(anyCollection())).thenReturn(rollupTotals(100, 80));
+
+        // When
+        ReconciliationStatsDTO stats = reconciliationService.reconcile();
+
+        // Then
+        assertEquals(1, stats.getLastSuspected());
+        assertEquals(2, stats.getLastDiscrepancies());
+        assertEquals(2, stats.getLastRepaired());
+        ReconciliationDiscrepancyDTO rollup = stats.getRecentDiscrepancies().stream()
+                .filter(discrepancy -> discrepancy.getStore() == ReconciledStore.SPEND_ROLLUP)
+                .findFirst()
+                .orElseThrow();
+        assertEquals("QUARTER", rollup.getFigure());
+        assertEquals(BigDecimal.valueOf(80), rollup.getActual());
+        verify(budgetRepository).findByIdForRebuild(BUDGET_ID);
+        verify(budgetRepository).incrementVersion(BUDGET_ID);
+        verify(budgetSummaryRepository).copyBudgetVersions(List.of(BUDGET_ID));
+        verify(budgetSummaryService).rebuild(BUDGET_ID);
+        verify(rollupService).rebuild(BUDGET_ID);
+        verify(monthlySpendCache).evict(BUDGET_ID);
+    }
+
+    @Test
+    void reconcile_ShouldOnlyReportLedgerDrift_WhenAutoRepairIsDisabled() {
+        // Given
+        properties.setAutoRepair(false);
+        when(categorySummaryRepository.findByBudgetIdIn(anyCollection())).thenReturn(List.of(categorySummary(100)));
+        when(spendRollupRepository.sumByBudgetGranularityAndCategory(anyCollection())).thenReturn(rollupTotals(100, 100));
+        LedgerService.LedgerState ledger = new LedgerService.LedgerState();
+        ledger.apply(LedgerEvent.builder().type(LedgerEventType.EXPENSE_POSTED).categoryType(CategoryType.IT).amount(BigDecimal.valueOf(120)).build());
+        when(ledgerService.currentState(BUDGET_ID)).thenReturn(ledger);
+
+        // When
+        ReconciliationStatsDTO stats = reconciliationService.reconcile();
+
+        // Then
+        assertEquals(1, stats.getLastDiscrepancies());
+        assertEquals(0, stats.getLastRepaired());
+        ReconciliationDiscrepancyDTO discrepancy = stats.getRecentDiscrepancies().get(0);
+        assertEquals(ReconciledStore.LEDGER, discrepancy.getStore());
+        assertEquals(CategoryType.IT, discrepancy.getCategoryType());
+        assertFalse(discrepancy.isRepaired());
+        verify(ledgerService, never()).appendAdjustment(any(), any(), any());
+        verify(budgetRepository, never()).incrementVersion(any());
+    }
+
+    private static CategorySummary categorySummary(int spent) {
+        return CategorySummary.builder()
+                .budgetId(BUDGET_ID)
+                .categoryType(CategoryType.IT)
+                .planned(BigDecimal.valueOf(1000))
+                .spent(BigDecimal.valueOf(spent))
+                .build();
+    }
+
+    private static BigDecimal[][] cachedSpend(int january, int february) {
+        BigDecimal[][] spend = MonthlySpendCache.emptyArrays();
+        spend[CategoryType.IT.ordinal()][0] = BigDecimal.valueOf(january);
+        spend[CategoryType.IT.ordinal()][1] = BigDecimal.valueOf(february);
+        return spend;
+    }
+
+    private static BudgetCategoryTotal expenseTotal(int amount) {
+        return new BudgetCategoryTotal() {
+            @Override
+            public Long getBudgetId() {
+                return BUDGET_ID;
+            }
+
+            @Override
+            public CategoryType getCategoryType() {
+                return CategoryType.IT;
+            }
+
+            @Override
+            public BigDecimal getAmount() {
+                return BigDecimal.valueOf(amount);
+            }
+        };
+    }
+
+    // Day and month rollups hold the first amount, quarter rollups the second
+    private static List<RollupTotal> rollupTotals(int amount, int quarterAmount) {
+        List<RollupTotal> totals = new ArrayList<>();
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            int total = granularity == RollupGranularity.QUARTER ? quarterAmount : amount;
+            totals.add(new RollupTotal() {
+                @Override
+                public Long getBudgetId() {
+                    return BUDGET_ID;
+                }
+
+                @Override
+                public RollupGranularity getGranularity() {
+                    return granularity;
+                }
+
+                @Override
+                public CategoryType getCategoryType() {
+                    return CategoryType.IT;
+                }
+
+                @Override
+                public BigDecimal getAmount() {
+                    return BigDecimal.valueOf(total);
+                }
+            });
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,153 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mthree.company_budget_mng_system.config.ReportJobProperties;
+import com.mthree.company_budget_mng_system.dto.ReportJobDTO;
+import com.mthree.company_budget_mng_system.dto.ReportRequestDTO;
+import com.mthree.company_budget_mng_system.event.BudgetChangedEvent;
+import com.mthree.company_budget_mng_system.model.ReportJobStatus;
+import com.mthree.company_budget_mng_system.model.ReportPriority;
+import com.mthree.company_budget_mng_system.model.ReportType;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import com.mthree.company_budget_mng_system.repository.SpendRollupRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class ReportJobServiceTest {
+    @TempDir
+    Path directory;
+
+    private BudgetRepository budgetRepository;
+    private ExpenseRepository expenseRepository;
+    private ReportJobService reportJobService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        budgetRepository = mock(BudgetRepository.class);
+        expenseRepository = mock(ExpenseRepository.class);
+        reportJobService = createService();
+    }
+
+    private ReportJobService createService() throws Exception {
+        ReportJobProperties properties = new ReportJobProperties();
+        properties.setWorkers(1);
+        properties.setDirectory(directory.toString());
+        return new ReportJobService(new ReportService(budgetRepository, expenseRepository, mock(YearArchiveService.class), 20, 100),
+                budgetRepository, expenseRepository, mock(YearArchiveService.class), new MonthlySpendCache(mock(SpendRollupRepository.class), budgetRepository, mock(PlatformTransactionManager.class), 1000),
+                mock(PlatformTransactionManager.class), new ObjectMapper(), properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reportJobService.shutdown();
+    }
+
+    @Test
+    void submit_ShouldWriteResultAndReuseJob_WhileDataIsUnchanged() throws Exception {
+        // Given
+        ReportRequestDTO request = new ReportRequestDTO(ReportType.COMPARISON, List.of(2024, 2023), null);
+
+        // When
+        ReportJobDTO job = awaitFinished(reportJobService.submit(request).getId());
+        ReportJobDTO again = reportJobService.submit(new ReportRequestDTO(ReportType.COMPARISON, List.of(2023, 2024), null));
+
+        // Then
+        assertEquals(ReportJobStatus.COMPLETED, job.getStatus());
+        assertEquals(job.getId(), again.getId());
+        assertTrue(Files.readString(reportJobService.getResultFile(job.getId())).contains("\"years\":[2023,2024]"));
+    }
+
+    @Test
+    void submit_ShouldStartNewJob_AfterDataChanged() throws Exception {
+        // Given
+        ReportRequestDTO request = new ReportRequestDTO(ReportType.COMPARISON, List.of(2024), null);
+        String first = awaitFinished(reportJobService.submit(request).getId()).getId();
+
+        // When
+        reportJobService.onBudgetChanged(new BudgetChangedEvent(1L, false));
+        String second = reportJobService.submit(request).getId();
+
+        // Then
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    void submit_ShouldRunHigherPriorityFirst_AndSkipCancelledJobs() throws Exception {
+        // Given a worker blocked by an export
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(expenseRepository.streamExportRows(anyCollection())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Stream.empty();
+        });
+        List<Integer> pivotOrder = new CopyOnWriteArrayList<>();
+        when(budgetRepository.findByYear(anyInt())).thenAnswer(invocation -> {
+            pivotOrder.add(invocation.getArgument(0));
+            return Optional.empty();
+        });
+        reportJobService.submit(new ReportRequestDTO(ReportType.EXPORT, List.of(2024), null));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // When
+        String low = reportJobService.submit(new ReportRequestDTO(ReportType.PIVOT, List.of(2020), ReportPriority.LOW)).getId();
+        String high = reportJobService.submit(new ReportRequestDTO(ReportType.PIVOT, List.of(2021), ReportPriority.HIGH)).getId();
+        String cancelled = reportJobService.submit(new ReportRequestDTO(ReportType.PIVOT, List.of(2022), ReportPriority.HIGH)).getId();
+        reportJobService.cancel(cancelled);
+        release.countDown();
+
+        // Then
+        awaitFinished(low);
+        awaitFinished(high);
+        assertEquals(List.of(2021, 2020), pivotOrder);
+        assertEquals(ReportJobStatus.CANCELLED, reportJobService.getJob(cancelled).getStatus());
+    }
+
+    @Test
+    void constructor_ShouldDeleteOnlyReportFiles_OfAPreviousRun() throws Exception {
+        // Given
+        String id = awaitFinished(reportJobService.submit(new ReportRequestDTO(ReportType.COMPARISON, List.of(2024), null)).getId()).getId();
+        Path leftover = directory.resolve("0b9e2c4a-7f1d-4c8e-9a3b-5d6e7f809a1b.part");
+        Path unrelated = Files.writeString(directory.resolve("notes.csv"), "keep me");
+        Files.writeString(leftover, "partial");
+        Files.createDirectory(directory.resolve("archive"));
+        reportJobService.shutdown();
+
+        // When
+        reportJobService = createService();
+
+        // Then
+        assertFalse(Files.exists(directory.resolve(id + ".json")));
+        assertFalse(Files.exists(leftover));
+        assertEquals("keep me", Files.readString(unrelated));
+        assertTrue(Files.isDirectory(directory.resolve("archive")));
+    }
+
+    private ReportJobDTO awaitFinished(String id) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        ReportJobDTO job = reportJobService.getJob(id);
+        while (!job.getStatus().isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            job = reportJobService.getJob(id);
+        }
+        return job;
+    }
+}
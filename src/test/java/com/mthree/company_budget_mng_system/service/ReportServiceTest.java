@@ -0,0 +1,110 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.dto.BudgetComparisonDTO;
+import com.mthree.company_budget_mng_system.dto.CategoryComparisonDTO;
+import com.mthree.company_budget_mng_system.dto.YearComparisonDTO;
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseSnapshot;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import com.mthree.company_budget_mng_system.repository.YearCategoryTotal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class ReportServiceTest {
+    private BudgetRepository budgetRepository;
+    private ExpenseRepository expenseRepository;
+    private ReportService reportService;
+
+    @BeforeEach
+    void setUp() {
+        budgetRepository = mock(BudgetRepository.class);
+        expenseRepository = mock(ExpenseRepository.class);
+        reportService = new ReportService(budgetRepository, expenseRepository, mock(YearArchiveService.class), 20, 100);
+
+        when(budgetRepository.findByYearIn(anyCollection())).thenReturn(List.of(
+                budget(1L, 2023, 1000),
+                budget(2L, 2024, 1200)));
+        when(expenseRepository.sumByYearAndCategory(anyCollection())).thenReturn(List.of(
+                total(2023, CategoryType.IT, 400),
+                total(2024, CategoryType.IT, 500)));
+    }
+
+    @Test
+    void compareYears_ShouldReportVarianceAndGrowthPerYear() {
+        // When
+        BudgetComparisonDTO comparison = reportService.compareYears(List.of(2024, 2023, 2024));
+
+        // Then
+        assertEquals(List.of(2023, 2024), comparison.getYears());
+        CategoryComparisonDTO it = comparison.getCategories().stream()
+                .filter(category -> category.getCategoryType() == CategoryType.IT)
+                .findFirst().orElseThrow();
+        YearComparisonDTO first = it.getYears().get(0);
+        YearComparisonDTO second = it.getYears().get(1);
+        assertEquals(0, BigDecimal.valueOf(600).compareTo(first.getVariance()));
+        assertNull(first.getYoyGrowth());
+        assertEquals(0, BigDecimal.valueOf(700).compareTo(second.getVariance()));
+        assertEquals(0, BigDecimal.valueOf(25).compareTo(second.getYoyGrowth()));
+    }
+
+    @Test
+    void compareYears_ShouldServeFromCache_UntilInvolvedBudgetChanges() {
+        // Given
+        reportService.compareYears(List.of(2023, 2024));
+        reportService.compareYears(List.of(2024, 2023));
+        verify(expenseRepository, times(1)).sumByYearAndCategory(anyCollection());
+
+        // When
+        ExpenseSnapshot snapshot = new ExpenseSnapshot(2L, CategoryType.IT, LocalDate.of(2024, 3, 1), BigDecimal.TEN, 1L);
+        reportService.onExpenseChanged(new ExpenseChangedEvent(5L, null, snapshot));
+        reportService.compareYears(List.of(2023, 2024));
+
+        // Then
+        verify(expenseRepository, times(2)).sumByYearAndCategory(anyCollection());
+    }
+
+    @Test
+    void compareYears_ShouldRejectEmptyYears() {
+        assertThrows(IllegalArgumentException.class, () -> reportService.compareYears(List.of()));
+    }
+
+    private static Budget budget(Long id, int year, long planned) {
+        return Budget.builder()
+                .id(id)
+                .year(year)
+                .totalAmount(BigDecimal.valueOf(planned))
+                .budgetPlanned(Map.of(CategoryType.IT, BigDecimal.valueOf(planned)))
+                .build();
+    }
+
+    private static YearCategoryTotal total(int year, CategoryType categoryType, long amount) {
+        return new YearCategoryTotal() {
+            @Override
+            public Integer getYear() {
+                return year;
+            }
+
+            @Override
+            public CategoryType getCategoryType() {
+                return categoryType;
+            }
+
+            @Override
+            public BigDecimal getAmount() {
+                return BigDecimal.valueOf(amount);
+            }
+        };
+    }
+}
@@ -0,0 +1,137 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.CoalescingProperties;
+import com.mthree.company_budget_mng_system.dto.CoalescingStatsDTO;
+import com.mthree.company_budget_mng_system.event.BudgetChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestCoalescerTest {
+    private RequestCoalescer requestCoalescer;
+    private AtomicInteger executions;
+
+    @BeforeEach
+    void setUp() {
+        CoalescingProperties properties = new CoalescingProperties();
+        properties.setFreshness(Duration.ofMinutes(1));
+        requestCoalescer = new RequestCoalescer(properties);
+        executions = new AtomicInteger();
+    }
+
+    @Test
+    void execute_ShouldShareRunningRead_WithConcurrentCalls() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() ->
+                requestCoalescer.execute("read", "read[1]", () -> {
+                    await(release);
+                    return executions.incrementAndGet();
+                }));
+        while (requestCoalescer.getStats().isEmpty() || requestCoalescer.getStats().get(0).getExecutions() == 0) {
+            Thread.sleep(5);
+        }
+
+        // When
+        CompletableFuture<Integer> second = CompletableFuture.supplyAsync(() ->
+                requestCoalescer.execute("read", "read[1]", executions::incrementAndGet));
+        while (requestCoalescer.getStats().get(0).getJoined() == 0) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        // Then
+        assertEquals(1, first.get(5, TimeUnit.SECONDS));
+        assertEquals(1, second.get(5, TimeUnit.SECONDS));
+        CoalescingStatsDTO stats = requestCoalescer.getStats().get(0);
+        assertEquals(2, stats.getCalls());
+        assertEquals(1, stats.getExecutions());
+        assertEquals(0.5, stats.getCollapseRatio());
+    }
+
+    @Test
+    void execute_ShouldReuseFreshResult_UntilDataChanges() {
+        // When
+        requestCoalescer.execute("read", "read[1]", executions::incrementAndGet);
+        requestCoalescer.execute("read", "read[1]", executions::incrementAndGet);
+        requestCoalescer.execute("read", "read[2]", executions::incrementAndGet);
+        requestCoalescer.onBudgetChanged(new BudgetChangedEvent(1L, false));
+        requestCoalescer.execute("read", "read[1]", executions::incrementAndGet);
+
+        // Then
+        assertEquals(3, executions.get());
+        assertEquals(1, requestCoalescer.getStats().get(0).getFresh());
+    }
+
+    @Test
+    void execute_ShouldNotRememberFailures() {
+        // Given
+        assertThrows(IllegalStateException.class, () -> requestCoalescer.execute("read", "read[1]", () -> {
+            throw new IllegalStateException("failed");
+        }));
+
+        // When
+        int value = requestCoalescer.execute("read", "read[1]", executions::incrementAndGet);
+
+        // Then
+        assertEquals(1, value);
+    }
+
+    @Test
+    void execute_ShouldNotJoinRunningRead_ThatStartedBeforeDataChanged() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() ->
+                requestCoalescer.execute("read", "read[1]", () -> {
+                    await(release);
+                    return executions.incrementAndGet();
+                }));
+        while (requestCoalescer.getStats().isEmpty() || requestCoalescer.getStats().get(0).getExecutions() == 0) {
+            Thread.sleep(5);
+        }
+
+        // When
+        requestCoalescer.onBudgetChanged(new BudgetChangedEvent(1L, false));
+        int second = requestCoalescer.execute("read", "read[1]", () -> 10 + executions.incrementAndGet());
+        release.countDown();
+
+        // Then
+        assertEquals(11, second);
+        assertEquals(2, first.get(5, TimeUnit.SECONDS));
+        assertEquals(0, requestCoalescer.getStats().get(0).getJoined());
+        // Only the result of the read that started after the change is reused
+        assertEquals(11, requestCoalescer.execute("read", "read[1]", () -> 10 + executions.incrementAndGet()));
+    }
+
+    @Test
+    void atVersion_ShouldOnlyShareResults_BetweenCallersOfTheSameVersion() {
+        // When
+        int first = RequestCoalescer.atVersion("\"budget-1-7\"", () ->
+                requestCoalescer.execute("read", "read[1]", executions::incrementAndGet));
+        int sameVersion = RequestCoalescer.atVersion("\"budget-1-7\"", () ->
+                requestCoalescer.execute("read", "read[1]", executions::incrementAndGet));
+        int newerVersion = RequestCoalescer.atVersion("\"budget-1-8\"", () ->
+                requestCoalescer.execute("read", "read[1]", executions::incrementAndGet));
+
+        // Then
+        assertEquals(1, first);
+        assertEquals(1, sameVersion);
+        assertEquals(2, newerVersion);
+        assertEquals(1, requestCoalescer.getStats().get(0).getFresh());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseSnapshot;
+import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.RollupGranularity;
+import com.mthree.company_budget_mng_system.model.SpendRollup;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.CategoryDayTotal;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import com.mthree.company_budget_mng_system.repository.SpendRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RollupServiceTest {
+    private static final Long BUDGET_ID = 1L;
+
+    private SpendRollupRepository spendRollupRepository;
+    private ExpenseRepository expenseRepository;
+    private BudgetRepository budgetRepository;
+    private RollupService rollupService;
+    // Rollup rows by budget, granularity, bucket and category, standing in for the spend_rollup table
+    private final Map<String, SpendRollup> rows = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        spendRollupRepository = mock(SpendRollupRepository.class);
+        expenseRepository = mock(ExpenseRepository.class);
+        budgetRepository = mock(BudgetRepository.class);
+        rollupService = new RollupService(spendRollupRepository, expenseRepository, budgetRepository,
+                mock(YearArchiveService.class));
+
+        when(spendRollupRepository.addToBucket(anyLong(), any(), any(), any(), any(), anyLong())).thenAnswer(invocation -> {
+            SpendRollup row = rows.get(key(invocation.getArgument(0), invocation.getArgument(1),
+                    invocation.getArgument(2), invocation.getArgument(3)));
+            if (row == null) {
+                return 0;
+            }
+            row.setAmount(row.getAmount().add(invocation.getArgument(4)));
+            row.setExpenseCount(row.getExpenseCount() + (long) invocation.getArgument(5));
+            return 1;
+        });
+        when(spendRollupRepository.save(any(SpendRollup.class))).thenAnswer(invocation -> {
+            SpendRollup row = invocation.getArgument(0);
+            rows.put(key(row.getBudgetId(), row.getGranularity(), row.getBucketStart(), row.getCategoryType()), row);
+            return row;
+        });
+    }
+
+    @Test
+    void onExpenseChanged_ShouldAddMoveAndRemoveAmounts_InEveryGranularity() {
+        // Given
+        ExpenseSnapshot march = snapshot(LocalDate.of(2024, 3, 10), 100);
+        ExpenseSnapshot april = snapshot(LocalDate.of(2024, 4, 2), 100);
+
+        // When
+        rollupService.onExpenseChanged(new ExpenseChangedEvent(1L, null, march));
+        rollupService.onExpenseChanged(new ExpenseChangedEvent(2L, null, snapshot(LocalDate.of(2024, 3, 20), 50)));
+        rollupService.onExpenseChanged(new ExpenseChangedEvent(1L, march, april));
+
+        // Then
+        assertRow(RollupGranularity.MONTH, LocalDate.of(2024, 3, 1), 50, 1);
+        assertRow(RollupGranularity.MONTH, LocalDate.of(2024, 4, 1), 100, 1);
+        assertRow(RollupGranularity.DAY, LocalDate.of(2024, 3, 10), 0, 0);
+        assertRow(RollupGranularity.QUARTER, LocalDate.of(2024, 1, 1), 50, 1);
+        assertRow(RollupGranularity.QUARTER, LocalDate.of(2024, 4, 1), 100, 1);
+
+        // When
+        rollupService.onExpenseChanged(new ExpenseChangedEvent(1L, april, null));
+
+        // Then
+        assertRow(RollupGranularity.MONTH, LocalDate.of(2024, 4, 1), 0, 0);
+        assertRow(RollupGranularity.QUARTER, LocalDate.of(2024, 1, 1), 50, 1);
+    }
+
+    @Test
+    void rebuild_ShouldReplaceRollups_WhileHoldingTheBudgetLock() {
+        // Given
+        Budget budget = Budget.builder().id(BUDGET_ID).year(2024).build();
+        when(budgetRepository.findByIdForRebuild(BUDGET_ID)).thenReturn(Optional.of(budget));
+        when(expenseRepository.sumByCategoryAndDate(BUDGET_ID)).thenReturn(List.of(
+                dayTotal(CategoryType.IT, LocalDate.of(2024, 5, 3), 30, 2),
+                dayTotal(CategoryType.IT, LocalDate.of(2024, 5, 20), 70, 1),
+                dayTotal(CategoryType.HR, LocalDate.of(2024, 5, 20), 10, 1)));
+
+        // When
+        rollupService.rebuild(BUDGET_ID);
+
+        // Then
+        InOrder inOrder = inOrder(budgetRepository, spendRollupRepository);
+        inOrder.verify(budgetRepository).findByIdForRebuild(BUDGET_ID);
+        inOrder.verify(spendRollupRepository).deleteByBudgetId(BUDGET_ID);
+        inOrder.verify(spendRollupRepository).saveAll(argThat(saved -> {
+            Map<String, SpendRollup> byKey = new HashMap<>();
+            saved.forEach(row -> byKey.put(key(row.getBudgetId(), row.getGranularity(), row.getBucketStart(), row.getCategoryType()), row));
+            SpendRollup may = byKey.get(key(BUDGET_ID, RollupGranularity.MONTH, LocalDate.of(2024, 5, 1), CategoryType.IT));
+            // 3 days, 2 months and 2 quarters, per category where it has spend
+            return byKey.size() == 7 && may.getAmount().compareTo(BigDecimal.valueOf(100)) == 0 && may.getExpenseCount() == 3;
+        }));
+        verify(budgetRepository, never()).findById(any());
+    }
+
+    @Test
+    void rebuild_ShouldThrowResourceNotFoundException_WhenBudgetDoesNotExist() {
+        // Given
+        when(budgetRepository.findByIdForRebuild(BUDGET_ID)).thenReturn(Optional.empty());
+
+        // When & Then
+        assertThrows(ResourceNotFoundException.class, () -> rollupService.rebuild(BUDGET_ID));
+        verify(spendRollupRepository, never()).deleteByBudgetId(any());
+    }
+
+    private void assertRow(RollupGranularity granularity, LocalDate bucketStart, int amount, long count) {
+        SpendRollup row = rows.get(key(BUDGET_ID, granularity, bucketStart, CategoryType.IT));
+        assertNotNull(row, granularity + " " + bucketStart);
+        assertEquals(0, BigDecimal.valueOf(amount).compareTo(row.getAmount()), granularity + " " + bucketStart);
+        assertEquals(count, row.getExpenseCount(), granularity + " " + bucketStart);
+    }
+
+    private static String key(Long budgetId, RollupGranularity granularity, LocalDate bucketStart, CategoryType categoryType) {
+        return budgetId + "|" + granularity + "|" + bucketStart + "|" + categoryType;
+    }
+
+    private static ExpenseSnapshot snapshot(LocalDate date, int amount) {
+        return new ExpenseSnapshot(BUDGET_ID, CategoryType.IT, date, BigDecimal.valueOf(amount), null);
+    }
+
+    private static CategoryDayTotal dayTotal(CategoryType categoryType, LocalDate date, int amount, long count) {
+        return new CategoryDayTotal() {
+            @Override
+            public CategoryType getCategoryType() {
+                return categoryType;
+            }
+
+            @Override
+            public LocalDate getDate() {
+                return date;
+            }
+
+            @Override
+            public BigDecimal getAmount() {
+                return BigDecimal.valueOf(amount);
+            }
+
+            @Override
+            public Long getExpenseCount() {
+                return count;
+            }
+        };
+    }
+}
@@ -0,0 +1,100 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.event.ThresholdTransitionEvent;
+import com.mthree.company_budget_mng_system.model.AlertLevelConfig;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.repository.AlertLevelConfigRepository;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class ThresholdServiceTest {
+    private AlertLevelConfigRepository alertLevelConfigRepository;
+    private ApplicationEventPublisher eventPublisher;
+    private ThresholdService thresholdService;
+    private Budget budget;
+
+    @BeforeEach
+    void setUp() {
+        alertLevelConfigRepository = mock(AlertLevelConfigRepository.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        thresholdService = new ThresholdService(alertLevelConfigRepository, mock(BudgetRepository.class),
+                eventPublisher, new int[]{50, 75, 90, 100});
+
+        Map<CategoryType, BigDecimal> planned = new HashMap<>();
+        planned.put(CategoryType.IT, BigDecimal.valueOf(1000));
+        budget = Budget.builder()
+                .id(1L)
+                .year(2024)
+                .totalAmount(BigDecimal.valueOf(1000))
+                .budgetPlanned(planned)
+                .build();
+    }
+
+    @Test
+    void evaluate_ShouldEmitTransitionOnlyOnce_WhenLevelStaysCrossed() {
+        // When
+        thresholdService.evaluate(budget, CategoryType.IT, BigDecimal.valueOf(800), BigDecimal.valueOf(910));
+        thresholdService.evaluate(budget, CategoryType.IT, BigDecimal.valueOf(910), BigDecimal.valueOf(950));
+
+        // Then
+        ArgumentCaptor<ThresholdTransitionEvent> captor = ArgumentCaptor.forClass(ThresholdTransitionEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(captor.capture());
+        assertEquals(90, captor.getValue().getLevel());
+        assertTrue(captor.getValue().isCrossed());
+    }
+
+    @Test
+    void evaluate_ShouldEmitUncrossedTransition_WhenSpendingDropsBelowLevel() {
+        // Given
+        thresholdService.evaluate(budget, CategoryType.IT, BigDecimal.valueOf(700), BigDecimal.valueOf(760));
+        reset(eventPublisher);
+
+        // When
+        thresholdService.evaluate(budget, CategoryType.IT, BigDecimal.valueOf(760), BigDecimal.valueOf(400));
+
+        // Then
+        ArgumentCaptor<ThresholdTransitionEvent> captor = ArgumentCaptor.forClass(ThresholdTransitionEvent.class);
+        verify(eventPublisher, times(2)).publishEvent(captor.capture());
+        List<ThresholdTransitionEvent> events = captor.getAllValues();
+        assertEquals(List.of(50, 75), events.stream().map(ThresholdTransitionEvent::getLevel).toList());
+        assertTrue(events.stream().noneMatch(ThresholdTransitionEvent::isCrossed));
+    }
+
+    @Test
+    void evaluate_ShouldUseCategoryLevels_WhenConfigured() {
+        // Given
+        when(alertLevelConfigRepository.findByBudgetId(anyLong())).thenReturn(List.of(
+                AlertLevelConfig.builder().budgetId(1L).categoryType(CategoryType.IT).levels("30,60").build()));
+
+        // When
+        thresholdService.evaluate(budget, CategoryType.IT, BigDecimal.ZERO, BigDecimal.valueOf(300));
+
+        // Then
+        ArgumentCaptor<ThresholdTransitionEvent> captor = ArgumentCaptor.forClass(ThresholdTransitionEvent.class);
+        verify(eventPublisher).publishEvent(captor.capture());
+        assertEquals(30, captor.getValue().getLevel());
+    }
+
+    @Test
+    void evaluate_ShouldIgnoreCategoriesWithoutPlannedAmount() {
+        // When
+        thresholdService.evaluate(budget, CategoryType.HR, BigDecimal.ZERO, BigDecimal.valueOf(300));
+
+        // Then
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+}
@@ -0,0 +1,202 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.TokenProperties;
+import com.mthree.company_budget_mng_system.dto.LoginRequestDTO;
+import com.mthree.company_budget_mng_system.dto.TokenDTO;
+import com.mthree.company_budget_mng_system.event.UserChangedEvent;
+import com.mthree.company_budget_mng_system.exception.UnauthorizedException;
+import com.mthree.company_budget_mng_system.model.Role;
+import com.mthree.company_budget_mng_system.repository.UserCredentials;
+import com.mthree.company_budget_mng_system.repository.UserRepository;
+import com.mthree.company_budget_mng_system.security.TokenClaims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TokenServiceTest {
+    private static final String USERNAME = "john_doe";
+
+    private UserRepository userRepository;
+    private BCryptPasswordEncoder passwordEncoder;
+    private MutableClock clock;
+    private TokenService tokenService;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        passwordEncoder = mock(BCryptPasswordEncoder.class);
+        clock = new MutableClock(Instant.parse("2024-06-01T12:00:00Z"));
+        when(userRepository.findCredentialsByUsername(USERNAME)).thenReturn(Optional.of(credentials(Role.MANAGER)));
+        when(passwordEncoder.matches("password123", "hash")).thenReturn(true);
+        tokenService = new TokenService(userRepository, passwordEncoder, new TokenProperties(), clock);
+    }
+
+    @Test
+    void login_ShouldIssueAccessToken_ThatIsVerifiedWithoutTheDatabase() {
+        // When
+        TokenDTO tokens = tokenService.login(new LoginRequestDTO(USERNAME, "password123"));
+        TokenClaims claims = tokenService.verifyAccessToken(tokens.getAccessToken());
+
+        // Then
+        assertEquals(USERNAME, claims.sub());
+        assertEquals(Role.MANAGER, claims.role());
+        assertEquals(900, tokens.getExpiresIn());
+        verify(userRepository, times(1)).findCredentialsByUsername(USERNAME);
+        verify(passwordEncoder, times(1)).matches(anyString(), anyString());
+        // A refresh token is not accepted as an access token, and a tampered token is rejected
+        assertThrows(UnauthorizedException.class, () -> tokenService.verifyAccessToken(tokens.getRefreshToken()));
+        String tampered = tokens.getAccessToken().substring(0, tokens.getAccessToken().length() - 2) + "AA";
+        assertThrows(UnauthorizedException.class, () -> tokenService.verifyAccessToken(tampered));
+        assertThrows(UnauthorizedException.class, () -> tokenService.login(new LoginRequestDTO(USERNAME, "wrong")));
+    }
+
+    @Test
+    void refresh_ShouldRevokeAllTokensOfUser_WhenRefreshTokenIsReused() {
+        // Given
+        TokenDTO first = tokenService.login(new LoginRequestDTO(USERNAME, "password123"));
+        clock.advance(Duration.ofSeconds(1));
+        when(userRepository.findCredentialsByUsername(USERNAME)).thenReturn(Optional.of(credentials(Role.ADMIN)));
+
+        // When
+        TokenDTO second = tokenService.refresh(first.getRefreshToken());
+
+        // Then
+        assertEquals(Role.ADMIN, tokenService.verifyAccessToken(second.getAccessToken()).role());
+        clock.advance(Duration.ofSeconds(1));
+        assertThrows(UnauthorizedException.class, () -> tokenService.refresh(first.getRefreshToken()));
+        assertThrows(UnauthorizedException.class, () -> tokenService.verifyAccessToken(second.getAccessToken()));
+        assertThrows(UnauthorizedException.class, () -> tokenService.refresh(second.getRefreshToken()));
+    }
+
+    @Test
+    void refresh_ShouldRevokeTokensIssuedInTheSameSecond_WhenRefreshTokenIsReused() {
+        // Given
+        TokenDTO first = tokenService.login(new LoginRequestDTO(USERNAME, "password123"));
+        TokenDTO second = tokenService.refresh(first.getRefreshToken());
+
+        // When
+        assertThrows(UnauthorizedException.class, () -> tokenService.refresh(first.getRefreshToken()));
+
+        // Then
+        assertThrows(UnauthorizedException.class, () -> tokenService.verifyAccessToken(second.getAccessToken()));
+        assertThrows(UnauthorizedException.class, () -> tokenService.refresh(second.getRefreshToken()));
+        TokenDTO fresh = tokenService.login(new LoginRequestDTO(USERNAME, "password123"));
+        assertEquals(USERNAME, tokenService.verifyAccessToken(fresh.getAccessToken()).sub());
+    }
+
+    @Test
+    void rotateKeys_ShouldKeepVerifyingTokensOfPreviousKey_UntilTheyExpire() {
+        // Given
+        TokenDTO tokens = tokenService.login(new LoginRequestDTO(USERNAME, "password123"));
+
+        // When
+        tokenService.rotateKeys();
+
+        // Then
+        assertNotEquals(tokens.getAccessToken().substring(0, tokens.getAccessToken().indexOf('.')),
+                tokenService.login(new LoginRequestDTO(USERNAME, "password123")).getAccessToken().split("\\.")[0]);
+        assertEquals(USERNAME, tokenService.verifyAccessToken(tokens.getAccessToken()).sub());
+        clock.advance(Duration.ofMinutes(15));
+        assertThrows(UnauthorizedException.class, () -> tokenService.verifyAccessToken(tokens.getAccessToken()));
+        assertNotNull(tokenService.refresh(tokens.getRefreshToken()));
+    }
+
+    @Test
+    void rotateKeys_ShouldDropOldestKeys_BeyondTheLimit() {
+        // Given
+        TokenProperties properties = new TokenProperties();
+        properties.setMaxSigningKeys(3);
+        tokenService = new TokenService(userRepository, passwordEncoder, properties, clock);
+        TokenDTO oldest = tokenService.login(new LoginRequestDTO(USERNAME, "password123"));
+        clock.advance(Duration.ofSeconds(1));
+        tokenService.rotateKeys();
+        TokenDTO older = tokenService.login(new LoginRequestDTO(USERNAME, "password123"));
+        clock.advance(Duration.ofSeconds(1));
+        tokenService.rotateKeys();
+        assertEquals(USERNAME, tokenService.verifyAccessToken(oldest.getAccessToken()).sub());
+
+        // When
+        clock.advance(Duration.ofSeconds(1));
+        tokenService.rotateKeys();
+
+        // Then
+        assertThrows(UnauthorizedException.class, () -> tokenService.verifyAccessToken(oldest.getAccessToken()));
+        assertEquals(USERNAME, tokenService.verifyAccessToken(older.getAccessToken()).sub());
+    }
+
+    @Test
+    void onUserChanged_ShouldRevokeTokensIssuedBefore() {
+        // Given
+        TokenDTO tokens = tokenService.login(new LoginRequestDTO(USERNAME, "password123"));
+        clock.advance(Duration.ofSeconds(5));
+
+        // When
+        tokenService.onUserChanged(new UserChangedEvent(1L, USERNAME, false));
+
+        // Then
+        assertThrows(UnauthorizedException.class, () -> tokenService.verifyAccessToken(tokens.getAccessToken()));
+        TokenDTO fresh = tokenService.login(new LoginRequestDTO(USERNAME, "password123"));
+        assertEquals(USERNAME, tokenService.verifyAccessToken(fresh.getAccessToken()).sub());
+    }
+
+    private static UserCredentials credentials(Role role) {
+        return new UserCredentials() {
+            @Override
+            public Long getId() {
+                return 1L;
+            }
+
+            @Override
+            public String getUsername() {
+                return USERNAME;
+            }
+
+            @Override
+            public String getPassword() {
+                return "hash";
+            }
+
+            @Override
+            public Role getRole() {
+                return role;
+            }
+        };
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
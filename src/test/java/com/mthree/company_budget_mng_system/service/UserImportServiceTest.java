@@ -0,0 +1,171 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.UserImportProperties;
+import com.mthree.company_budget_mng_system.dto.BulkUserResultDTO;
+import com.mthree.company_budget_mng_system.dto.UserDTO;
+import com.mthree.company_budget_mng_system.model.BulkRowStatus;
+import com.mthree.company_budget_mng_system.model.Role;
+import com.mthree.company_budget_mng_system.repository.UserCredentials;
+import com.mthree.company_budget_mng_system.repository.UserRepository;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UserImportServiceTest {
+    private UserRepository userRepository;
+    private JdbcTemplate jdbcTemplate;
+    private BCryptPasswordEncoder passwordEncoder;
+    private UserImportProperties properties;
+    private UserImportService userImportService;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        passwordEncoder = new BCryptPasswordEncoder(4);
+        properties = new UserImportProperties();
+        properties.setHashThreads(2);
+        userImportService = new UserImportService(userRepository, jdbcTemplate, mock(PlatformTransactionManager.class), passwordEncoder,
+                Validation.buildDefaultValidatorFactory().getValidator(), properties);
+        when(userRepository.findCredentialsByUsernameIn(anyCollection())).thenAnswer(invocation -> {
+            List<UserCredentials> users = new ArrayList<>();
+            long id = 10;
+            for (Object username : invocation.<Collection<?>>getArgument(0)) {
+                users.add(credentials(id++, (String) username));
+            }
+            return users;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        userImportService.shutdown();
+    }
+
+    @Test
+    void importCsv_ShouldCreateValidRows_AndReportEveryOtherRow() throws Exception {
+        // Given
+        when(userRepository.findExistingUsernames(anyCollection())).thenReturn(List.of("taken"));
+        String csv = """
+                role,username,password
+                manager,anna,"pa,ss""word"
+                USER,bob,12
+                USER,anna,secret1
+                ADMIN,taken,secret1
+                OWNER,carl,secret1
+                USER,dave,secret1
+                """;
+
+        // When
+        BulkUserResultDTO result = userImportService.importCsv(csv);
+
+        // Then
+        assertEquals(6, result.getTotal());
+        assertEquals(2, result.getCreated());
+        assertEquals(List.of(BulkRowStatus.CREATED, BulkRowStatus.INVALID, BulkRowStatus.DUPLICATE, BulkRowStatus.CONFLICT,
+                BulkRowStatus.INVALID, BulkRowStatus.CREATED), result.getRows().stream().map(row -> row.getStatus()).toList());
+        assertEquals("Unknown role 'OWNER'.", result.getRows().get(4).getMessage());
+        assertNotNull(result.getRows().get(0).getId());
+        verify(userRepository, times(1)).findExistingUsernames(List.of("anna", "taken", "dave"));
+
+        ArgumentCaptor<List<Object>> inserted = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<ParameterizedPreparedStatementSetter<Object>> setter = ArgumentCaptor.forClass(ParameterizedPreparedStatementSetter.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), inserted.capture(), eq(500), setter.capture());
+        assertEquals(2, inserted.getValue().size());
+        PreparedStatement statement = mock(PreparedStatement.class);
+        setter.getValue().setValues(statement, inserted.getValue().get(0));
+        ArgumentCaptor<String> hash = ArgumentCaptor.forClass(String.class);
+        verify(statement).setString(1, "anna");
+        verify(statement).setString(eq(2), hash.capture());
+        verify(statement).setString(3, "MANAGER");
+        assertTrue(passwordEncoder.matches("pa,ss\"word", hash.getValue()));
+    }
+
+    @Test
+    void importUsers_ShouldCompareUsernamesIgnoringCase() {
+        // Given
+        when(userRepository.findExistingUsernames(anyCollection())).thenReturn(List.of("Carl"));
+
+        // When
+        BulkUserResultDTO result = userImportService.importUsers(List.of(user("Anna"), user("bob"), user("ANNA"), user("carl")));
+
+        // Then
+        assertEquals(List.of(BulkRowStatus.CREATED, BulkRowStatus.CREATED, BulkRowStatus.DUPLICATE, BulkRowStatus.CONFLICT),
+                result.getRows().stream().map(row -> row.getStatus()).toList());
+        assertEquals("Username already appears in row 1 of the request.", result.getRows().get(2).getMessage());
+        assertNotNull(result.getRows().get(0).getId());
+        verify(userRepository).findExistingUsernames(List.of("anna", "bob", "carl"));
+    }
+
+    @Test
+    void importUsers_ShouldMarkConflicts_WhenUsernamesAreCreatedConcurrently() {
+        // Given
+        when(userRepository.findExistingUsernames(anyCollection())).thenReturn(Collections.emptyList(), List.of("bob"));
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DuplicateKeyException("duplicate"))
+                .thenReturn(new int[][]{{1}});
+
+        // When
+        BulkUserResultDTO result = userImportService.importUsers(List.of(user("anna"), user("bob")));
+
+        // Then
+        assertEquals(BulkRowStatus.CREATED, result.getRows().get(0).getStatus());
+        assertEquals(BulkRowStatus.CONFLICT, result.getRows().get(1).getStatus());
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+    }
+
+    @Test
+    void importUsers_ShouldThrowException_WhenTooManyRows() {
+        // Given
+        properties.setMaxRows(1);
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> userImportService.importUsers(List.of(user("anna"), user("bob"))));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private static UserDTO user(String username) {
+        return UserDTO.builder().username(username).password("secret1").role(Role.USER).build();
+    }
+
+    private static UserCredentials credentials(Long id, String username) {
+        return new UserCredentials() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getUsername() {
+                return username;
+            }
+
+            @Override
+            public String getPassword() {
+                return "hash";
+            }
+
+            @Override
+            public Role getRole() {
+                return Role.USER;
+            }
+        };
+    }
+}
@@ -0,0 +1,62 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.Expense;
+import com.mthree.company_budget_mng_system.model.Role;
+import com.mthree.company_budget_mng_system.model.User;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import com.mthree.company_budget_mng_system.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class UserServiceIntegrationTest {
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BudgetRepository budgetRepository;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void delete_ShouldKeepExpensesOfTheUser() {
+        // Given
+        User user = userRepository.save(User.builder().username("leaving_user").password("secret").role(Role.USER).build());
+        Budget budget = budgetRepository.save(Budget.builder().year(2091).totalAmount(new BigDecimal("1000.00")).build());
+        Expense expense = new TransactionTemplate(transactionManager).execute(status -> expenseRepository.save(Expense.builder()
+                .amount(new BigDecimal("25.00"))
+                .date(LocalDate.of(2091, 5, 1))
+                .categoryType(CategoryType.IT)
+                .budget(budgetRepository.getReferenceById(budget.getId()))
+                .user(user)
+                .build()));
+
+        // When
+        userService.delete("leaving_user");
+
+        // Then
+        assertFalse(userRepository.existsByUsername("leaving_user"));
+        Expense kept = expenseRepository.findById(expense.getId()).orElseThrow();
+        assertNull(kept.getUser());
+        assertEquals(0, new BigDecimal("25.00").compareTo(kept.getAmount()));
+        assertEquals(budget.getId(), kept.getBudget().getId());
+    }
+}
@@ -5,9 +5,11 @@ import com.mthree.company_budget_mng_system.exception.ConflictException;
 import com.mthree.company_budget_mng_system.exception.ResourceNotFoundException;
 import com.mthree.company_budget_mng_system.mapper.UserMapper;
 import com.mthree.company_budget_mng_system.model.User;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
 import com.mthree.company_budget_mng_system.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -25,6 +27,9 @@ class UserServiceTest {
     @MockBean
     private UserRepository userRepository;
 
+    @MockBean
+    private ExpenseRepository expenseRepository;
+
     @MockBean
     private UserMapper userMapper;
 
@@ -146,6 +151,24 @@ class UserServiceTest {
         verify(userRepository, times(1)).deleteById(user.getId());
     }
 
+    @Test
+    void delete_ShouldDetachExpenses_BeforeDeletingUser() {
+        // Given
+        user.setId(5L);
+        when(userRepository.findByUsername(userDTO.getUsername())).thenReturn(Optional.of(user));
+        when(userRepository.existsByUsername(userDTO.getUsername())).thenReturn(true);
+
+        // When
+        userService.delete(userDTO.getUsername());
+
+        // Then
+        InOrder inOrder = inOrder(expenseRepository, userRepository);
+        inOrder.verify(expenseRepository).detachUser(5L);
+        inOrder.verify(userRepository).deleteById(5L);
+        verify(expenseRepository, never()).deleteByIdIn(any());
+        verify(expenseRepository, never()).deleteByBudgetId(any());
+    }
+
     @Test
     void delete_ShouldThrowResourceNotFoundException_WhenUserDoesNotExist() {
         // Given
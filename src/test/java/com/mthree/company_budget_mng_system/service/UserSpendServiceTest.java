@@ -0,0 +1,125 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.SpendLimitProperties;
+import com.mthree.company_budget_mng_system.dto.UserSpendDTO;
+import com.mthree.company_budget_mng_system.event.ExpenseChangedEvent;
+import com.mthree.company_budget_mng_system.event.ExpenseSnapshot;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.BudgetSummary;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.model.Expense;
+import com.mthree.company_budget_mng_system.model.Role;
+import com.mthree.company_budget_mng_system.model.User;
+import com.mthree.company_budget_mng_system.model.UserSpend;
+import com.mthree.company_budget_mng_system.repository.BudgetSummaryRepository;
+import com.mthree.company_budget_mng_system.repository.UserRepository;
+import com.mthree.company_budget_mng_system.repository.UserSpendRepository;
+import com.mthree.company_budget_mng_system.security.UserPrincipal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UserSpendServiceTest {
+    private static final Long BUDGET_ID = 1L;
+    private static final UserPrincipal USER = new UserPrincipal(7L, "john_doe", "hash", Role.USER, List.of());
+
+    private UserSpendRepository userSpendRepository;
+    private BudgetSummaryRepository budgetSummaryRepository;
+    private UserRepository userRepository;
+    private CachedUserDetailsService userDetailsService;
+    private SpendLimitProperties properties;
+    private UserSpendService userSpendService;
+
+    @BeforeEach
+    void setUp() {
+        userSpendRepository = mock(UserSpendRepository.class);
+        budgetSummaryRepository = mock(BudgetSummaryRepository.class);
+        userRepository = mock(UserRepository.class);
+        userDetailsService = mock(CachedUserDetailsService.class);
+        properties = new SpendLimitProperties();
+        userSpendService = new UserSpendService(userSpendRepository, budgetSummaryRepository, userRepository, userDetailsService, properties);
+    }
+
+    @Test
+    void onExpenseChanged_ShouldMoveAmountBetweenCategories_AndCreateMissingTotal() {
+        // Given
+        when(userSpendRepository.addToTotal(7L, BUDGET_ID, CategoryType.IT, BigDecimal.valueOf(-30), -1)).thenReturn(1);
+        when(userSpendRepository.addToTotal(7L, BUDGET_ID, CategoryType.HR, BigDecimal.valueOf(45), 1)).thenReturn(0);
+
+        // When
+        userSpendService.onExpenseChanged(new ExpenseChangedEvent(3L, snapshot(CategoryType.IT, 30, 7L), snapshot(CategoryType.HR, 45, 7L)));
+        userSpendService.onExpenseChanged(new ExpenseChangedEvent(4L, null, snapshot(CategoryType.HR, 10, null)));
+
+        // Then
+        ArgumentCaptor<UserSpend> created = ArgumentCaptor.forClass(UserSpend.class);
+        verify(userSpendRepository).save(created.capture());
+        assertEquals(CategoryType.HR, created.getValue().getCategoryType());
+        assertEquals(BigDecimal.valueOf(45), created.getValue().getAmount());
+        assertEquals(1L, created.getValue().getExpenseCount());
+        verify(userSpendRepository, times(2)).addToTotal(anyLong(), anyLong(), any(), any(), anyLong());
+    }
+
+    @Test
+    void attribute_ShouldThrowException_WhenSpendingLimitIsExceeded() {
+        // Given
+        properties.getRoles().put(Role.USER, BigDecimal.valueOf(100));
+        when(userSpendRepository.sumByUserIdAndBudgetId(7L, BUDGET_ID)).thenReturn(BigDecimal.valueOf(80));
+        User reference = new User();
+        when(userRepository.getReferenceById(7L)).thenReturn(reference);
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> userSpendService.attribute(expense(30), USER));
+        Expense withinLimit = expense(20);
+        userSpendService.attribute(withinLimit, USER);
+        assertSame(reference, withinLimit.getUser());
+        // A user limit takes precedence over the role limit
+        properties.getUsers().put("john_doe", BigDecimal.valueOf(200));
+        assertDoesNotThrow(() -> userSpendService.attribute(expense(100), USER));
+    }
+
+    @Test
+    void getUserSpend_ShouldGroupTotalsByBudget_WithoutReadingExpenses() {
+        // Given
+        when(userDetailsService.loadUserByUsername("john_doe")).thenReturn(USER);
+        when(userSpendRepository.findByUserIdOrderByBudgetIdAscCategoryTypeAsc(7L)).thenReturn(List.of(
+                spend(1L, CategoryType.HR, 10, 1), spend(1L, CategoryType.IT, 25, 2), spend(2L, CategoryType.IT, 5, 1)));
+        when(budgetSummaryRepository.findAllById(any())).thenReturn(List.of(
+                BudgetSummary.builder().budgetId(1L).year(2023).build(), BudgetSummary.builder().budgetId(2L).year(2024).build()));
+
+        // When
+        UserSpendDTO spend = userSpendService.getUserSpend("john_doe");
+
+        // Then
+        assertEquals(2, spend.getBudgets().size());
+        assertEquals(2023, spend.getBudgets().get(0).getYear());
+        assertEquals(BigDecimal.valueOf(35), spend.getBudgets().get(0).getSpent());
+        assertEquals(3, spend.getBudgets().get(0).getExpenseCount());
+        assertEquals(2, spend.getBudgets().get(0).getCategories().size());
+        assertEquals(BigDecimal.valueOf(5), spend.getBudgets().get(1).getSpent());
+        assertNull(spend.getBudgets().get(1).getSpendingLimit());
+    }
+
+    private static ExpenseSnapshot snapshot(CategoryType categoryType, int amount, Long userId) {
+        return new ExpenseSnapshot(BUDGET_ID, categoryType, LocalDate.of(2024, 5, 10), BigDecimal.valueOf(amount), userId);
+    }
+
+    private static Expense expense(int amount) {
+        Expense expense = new Expense();
+        expense.setBudget(Budget.builder().id(BUDGET_ID).build());
+        expense.setAmount(BigDecimal.valueOf(amount));
+        return expense;
+    }
+
+    private static UserSpend spend(Long budgetId, CategoryType categoryType, int amount, long count) {
+        return UserSpend.builder().userId(7L).budgetId(budgetId).categoryType(categoryType)
+                .amount(BigDecimal.valueOf(amount)).expenseCount(count).build();
+    }
+}
@@ -0,0 +1,204 @@
+package com.mthree.company_budget_mng_system.service;
+
+import com.mthree.company_budget_mng_system.config.ArchiveProperties;
+import com.mthree.company_budget_mng_system.dto.ExpenseDTO;
+import com.mthree.company_budget_mng_system.dto.YearArchiveDTO;
+import com.mthree.company_budget_mng_system.exception.ConflictException;
+import com.mthree.company_budget_mng_system.exception.ServiceUnavailableException;
+import com.mthree.company_budget_mng_system.model.Budget;
+import com.mthree.company_budget_mng_system.model.CategoryType;
+import com.mthree.company_budget_mng_system.repository.BudgetRepository;
+import com.mthree.company_budget_mng_system.repository.BudgetSummaryRepository;
+import com.mthree.company_budget_mng_system.repository.ExpenseColumnRow;
+import com.mthree.company_budget_mng_system.repository.ExpenseRepository;
+import com.mthree.company_budget_mng_system.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class YearArchiveServiceTest {
+    private static final Instant NOW = Instant.parse("2024-06-01T10:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    private BudgetRepository budgetRepository;
+    private ExpenseRepository expenseRepository;
+    private BudgetSummaryRepository budgetSummaryRepository;
+    private YearArchiveService yearArchiveService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        budgetRepository = mock(BudgetRepository.class);
+        expenseRepository = mock(ExpenseRepository.class);
+        budgetSummaryRepository = mock(BudgetSummaryRepository.class);
+        yearArchiveService = createService();
+    }
+
+    @Test
+    void archive_ShouldWriteFileAndDeleteExpenses_WhileHoldingTheBudgetLock() {
+        // Given
+        Budget budget = budget(1L, 2022);
+        givenExpenses(budget, row(11L, 100), row(15L, 250));
+
+        // When
+        YearArchiveDTO archive = yearArchiveService.archive(1L);
+
+        // Then
+        InOrder inOrder = inOrder(budgetRepository, expenseRepository, budgetSummaryRepository);
+        inOrder.verify(budgetRepository).findByIdForUpdate(1L);
+        inOrder.verify(expenseRepository).streamColumnRows(1L);
+        inOrder.verify(expenseRepository).deleteByBudgetId(1L);
+        inOrder.verify(budgetSummaryRepository).copyBudgetVersions(List.of(1L));
+        verify(budgetRepository, never()).findById(any());
+        assertEquals(2, archive.getExpenses());
+        assertEquals(NOW, budget.getArchivedAt());
+        assertEquals(11L, budget.getArchivedMinExpenseId());
+        assertEquals(15L, budget.getArchivedMaxExpenseId());
+        assertTrue(Files.exists(directory.resolve("budget-1" + ExpenseColumnFile.SUFFIX)));
+        assertEquals(List.of(11L, 15L), yearArchiveService.getExpenses(1L).stream().map(ExpenseDTO::getId).toList());
+    }
+
+    @Test
+    void archive_ShouldDeleteFileAndKeepBudgetOpen_WhenTransactionRollsBack() {
+        // Given an expense added after the file was written, so the delete doesn't match it
+        Budget budget = budget(1L, 2022);
+        givenExpenses(budget, row(11L, 100));
+        when(expenseRepository.deleteByBudgetId(1L)).thenReturn(2);
+
+        // When
+        assertThrows(IllegalStateException.class, () -> yearArchiveService.archive(1L));
+
+        // Then
+        assertFalse(Files.exists(directory.resolve("budget-1" + ExpenseColumnFile.SUFFIX)));
+        assertThrows(ServiceUnavailableException.class, () -> yearArchiveService.getExpenses(1L));
+        verify(budgetSummaryRepository, never()).copyBudgetVersions(any());
+    }
+
+    @Test
+    void archive_ShouldRejectBudget_WhenYearIsOpenOrAlreadyArchived() throws Exception {
+        // Given
+        when(budgetRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(budget(1L, 2024)));
+        Budget archived = budget(2L, 2020);
+        archived.setArchivedAt(NOW);
+        when(budgetRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(archived));
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> yearArchiveService.archive(1L));
+        assertThrows(ConflictException.class, () -> yearArchiveService.archive(2L));
+        verify(expenseRepository, never()).deleteByBudgetId(any());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void findExpense_ShouldOpenOnlyTheArchiveWhoseIdRangeContainsTheExpense() throws Exception {
+        // Given two archives, one of them no longer readable
+        givenExpenses(budget(1L, 2021), row(11L, 100), row(15L, 250));
+        yearArchiveService.archive(1L);
+        givenExpenses(budget(2L, 2022), row(20L, 75));
+        yearArchiveService.archive(2L);
+        Files.delete(directory.resolve("budget-2" + ExpenseColumnFile.SUFFIX));
+        yearArchiveService = createService();
+        when(budgetRepository.findArchivedIdsByExpenseId(15L)).thenReturn(List.of(1L));
+
+        // When
+        Optional<ExpenseDTO> expense = yearArchiveService.findExpense(15L);
+
+        // Then
+        assertTrue(expense.isPresent());
+        assertEquals(0, new BigDecimal("2.50").compareTo(expense.get().getAmount()));
+        assertTrue(yearArchiveService.findExpense(99L).isEmpty());
+    }
+
+    private YearArchiveService createService() throws Exception {
+        ArchiveProperties properties = new ArchiveProperties();
+        properties.setDirectory(directory.toString());
+        return new YearArchiveService(budgetRepository, expenseRepository, budgetSummaryRepository, mock(UserRepository.class),
+                new LocalTransactionManager(), properties, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    private void givenExpenses(Budget budget, ExpenseColumnRow... rows) {
+        when(budgetRepository.findByIdForUpdate(budget.getId())).thenReturn(Optional.of(budget));
+        when(expenseRepository.streamColumnRows(budget.getId())).thenAnswer(invocation -> Stream.of(rows));
+        when(expenseRepository.deleteByBudgetId(budget.getId())).thenReturn(rows.length);
+    }
+
+    private static Budget budget(Long id, int year) {
+        return Budget.builder().id(id).year(year).totalAmount(BigDecimal.valueOf(1000)).build();
+    }
+
+    private static ExpenseColumnRow row(Long id, int cents) {
+        return new ExpenseColumnRow() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public LocalDate getDate() {
+                return LocalDate.of(2022, 4, 1);
+            }
+
+            @Override
+            public CategoryType getCategoryType() {
+                return CategoryType.IT;
+            }
+
+            @Override
+            public BigDecimal getAmount() {
+                return BigDecimal.valueOf(cents, 2);
+            }
+
+            @Override
+            public String getDescription() {
+                return "Expense " + id;
+            }
+
+            @Override
+            public Long getUserId() {
+                return null;
+            }
+        };
+    }
+
+    // Runs transaction synchronizations like a real transaction manager, so commits and rollbacks reach the service
+    private static class LocalTransactionManager extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}